@@ -31,9 +31,20 @@
 #include <errno.h>//-D_TS_ERRNO use for Solaris C++ compiler
 
 #include <sys/select.h>//since 2.5.0
+#include <sys/time.h>//since 2.9.0
+#include <sys/uio.h>//since 2.9.0
+#include <string.h>//since 2.9.0 (memchr())
+#ifndef __APPLE__
+    #include <poll.h>//since 2.9.0 (poll() doesn't work with devices in Mac OS X, select() is used there)
+#endif
 
 #ifdef __linux__
     #include <linux/serial.h>
+    #include <sys/epoll.h>//since 2.9.0
+    #include <sys/eventfd.h>//since 2.9.0
+    #include <stdint.h>//since 2.9.0
+    #include <pthread.h>//since 2.9.0
+    #include <signal.h>//since 2.9.0
 #endif
 #ifdef __SunOS
     #include <sys/filio.h>//Needed for FIONREAD in Solaris
@@ -73,9 +84,8 @@ JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_openPort(JNIEnv *env, jo
                 ioctl(hComm, TIOCEXCL);
             }
         #endif
-            int flags = fcntl(hComm, F_GETFL, 0);
-            flags &= ~O_NDELAY;
-            fcntl(hComm, F_SETFL, flags);
+            //since 2.9.0 descriptor stays in non-blocking mode: writing threads wait for free space
+            //in cancellable waitPort() and write() never blocks, so closePort() can stop them
         }
         else {
             close(hComm);//since 2.7.0
@@ -204,7 +214,7 @@ speed_t getBaudRateByNum(jint baudRate) {
             return B4000000;
     #endif
         default:
-            return -1;
+            return (speed_t)-1;
     }
 }
 
@@ -227,6 +237,68 @@ int getDataBitsByNum(jint byteSize) {
     }
 }
 
+//since 2.9.0 ->
+#ifdef __linux__
+/*
+ * Structure from <asm/termbits.h>, which can't be included together with <termios.h>.
+ * Used with TCGETS2/TCSETS2 for setting of arbitrary baudrates (BOTHER)
+ */
+struct termios2 {
+    tcflag_t c_iflag;
+    tcflag_t c_oflag;
+    tcflag_t c_cflag;
+    tcflag_t c_lflag;
+    cc_t c_line;
+    cc_t c_cc[19];
+    speed_t c_ispeed;
+    speed_t c_ospeed;
+};
+
+#ifndef BOTHER
+    #define BOTHER 0010000
+#endif
+#ifndef IBSHIFT
+    #define IBSHIFT 16
+#endif
+
+/*
+ * Set baudrate which has no Bxxx constant. termios2 with BOTHER is supported by almost all
+ * drivers (including USB adapters), custom divisor of TIOCSSERIAL is used only if it has failed
+ */
+bool setNonStandardBaudRate(jlong portHandle, termios *settings, jint baudRate) {
+#ifdef TCGETS2
+    struct termios2 settings2;
+    if(ioctl(portHandle, TCGETS2, &settings2) == 0){
+        settings2.c_cflag &= ~(CBAUD | (CBAUD << IBSHIFT));
+        settings2.c_cflag |= (BOTHER | (BOTHER << IBSHIFT));
+        settings2.c_ispeed = baudRate;
+        settings2.c_ospeed = baudRate;
+        if(ioctl(portHandle, TCSETS2, &settings2) == 0){
+            return true;
+        }
+    }
+#endif
+    //Try to calculate a divisor for setting non standart baudrate
+    serial_struct serial_info;
+    if(ioctl(portHandle, TIOCGSERIAL, &serial_info) < 0){
+        return false;
+    }
+    serial_info.flags |= ASYNC_SPD_CUST;
+    serial_info.custom_divisor = (serial_info.baud_base/baudRate); //Calculate divisor
+    if(serial_info.custom_divisor == 0){ //If divisor == 0 return to prevent "division by zero" error
+        return false;
+    }
+    if(cfsetispeed(settings, B38400) < 0 || cfsetospeed(settings, B38400) < 0){
+        return false;
+    }
+    if(ioctl(portHandle, TIOCSSERIAL, &serial_info) < 0){//Try to set new settings with non standart baudrate
+        return false;
+    }
+    return tcsetattr(portHandle, TCSANOW, settings) == 0;
+}
+#endif
+//<- since 2.9.0
+
 //since 2.6.0 ->
 const jint PARAMS_FLAG_IGNPAR = 1;
 const jint PARAMS_FLAG_PARMRK = 2;
@@ -247,41 +319,20 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setParams
     
     termios *settings = new termios();
     if(tcgetattr(portHandle, settings) == 0){
-        if(baudRateValue != -1){
+        if(baudRateValue != (speed_t)-1){
             //Set standart baudrate from "termios.h"
             if(cfsetispeed(settings, baudRateValue) < 0 || cfsetospeed(settings, baudRateValue) < 0){
                 goto methodEnd;
             }
+        #if defined __linux__ && defined CIBAUD
+            settings->c_cflag &= ~CIBAUD;//Input speed is the same as output (it may be BOTHER after previous call) since 2.9.0
+        #endif
         }
         else {
         #ifdef __SunOS
             goto methodEnd;//Solaris don't support non standart baudrates
-        #elif defined __linux__
-            //Try to calculate a divisor for setting non standart baudrate
-            serial_struct *serial_info = new serial_struct();
-            if(ioctl(portHandle, TIOCGSERIAL, serial_info) < 0){ //Getting serial_info structure
-                delete serial_info;
-                goto methodEnd;
-            }
-            else {
-                serial_info->flags |= ASYNC_SPD_CUST;
-                serial_info->custom_divisor = (serial_info->baud_base/baudRate); //Calculate divisor
-                if(serial_info->custom_divisor == 0){ //If divisor == 0 go to method end to prevent "division by zero" error
-                    delete serial_info;
-                    goto methodEnd;
-                }
-                settings->c_cflag |= B38400;
-                if(cfsetispeed(settings, B38400) < 0 || cfsetospeed(settings, B38400) < 0){
-                    delete serial_info;
-                    goto methodEnd;
-                }
-                if(ioctl(portHandle, TIOCSSERIAL, serial_info) < 0){//Try to set new settings with non standart baudrate
-                    delete serial_info;
-                    goto methodEnd;
-                }
-                delete serial_info;
-            }
         #endif
+            //In Linux non standart baudrate is set after tcsetattr() (since 2.9.0)
         }
     }
 
@@ -379,12 +430,18 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setParams
     if(tcsetattr(portHandle, TCSANOW, settings) == 0){//Try to set all settings
     #ifdef __APPLE__
         //Try to set non-standard baud rate in Mac OS X
-        if(baudRateValue == -1){
+        if(baudRateValue == (speed_t)-1){
             speed_t speed = (speed_t)baudRate;
             if(ioctl(portHandle, IOSSIOSPEED, &speed) < 0){//IOSSIOSPEED must be used only after tcsetattr
                 goto methodEnd;
             }
         }
+    #elif defined __linux__
+        //since 2.9.0 ->
+        if(baudRateValue == (speed_t)-1 && !setNonStandardBaudRate(portHandle, settings, baudRate)){
+            goto methodEnd;
+        }
+        //<- since 2.9.0
     #endif
         int lineStatus;
         if(ioctl(portHandle, TIOCMGET, &lineStatus) >= 0){
@@ -509,6 +566,8 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setDTR
     return (returnValue >= 0 ? JNI_TRUE : JNI_FALSE);
 }
 
+jint writeAll(jlong portHandle, const jbyte *buffer, jint length);//since 2.9.0
+
 /* OK */
 /*
  * Writing data to the port
@@ -517,16 +576,30 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_writeBytes
   (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer){
     jbyte* jBuffer = env->GetByteArrayElements(buffer, JNI_FALSE);
     jint bufferSize = env->GetArrayLength(buffer);
-    jint result = write(portHandle, jBuffer, (size_t)bufferSize);
-    env->ReleaseByteArrayElements(buffer, jBuffer, 0);
+    jint result = writeAll(portHandle, jBuffer, bufferSize);//since 2.9.0 (partial write is continued)
+    env->ReleaseByteArrayElements(buffer, jBuffer, JNI_ABORT);
     return result == bufferSize ? JNI_TRUE : JNI_FALSE;
 }
 
+//since 2.9.0 ->
+/*
+ * Check that port is still connected. After hang up (USB adapter was unplugged, other
+ * side of pty was closed) all ioctl() calls fail, so tcgetattr() is enough for the check
+ */
+bool isPortConnected(jlong portHandle) {
+    termios settings;
+    return tcgetattr(portHandle, &settings) == 0;
+}
+//<- since 2.9.0
+
 /* OK */
 /*
  * Reading data from the port
  *
  * Rewrited in 2.5.0 (using select() function for correct block reading in MacOS X)
+ *
+ * In 2.9.0 reading is stopped if port is hung up (select() returns at once and read() returns 0
+ * or error), NULL is returned in this case
  */
 JNIEXPORT jbyteArray JNICALL Java_jssc_SerialNativeInterface_readBytes
   (JNIEnv *env, jobject object, jlong portHandle, jint byteCount){
@@ -536,19 +609,315 @@ JNIEXPORT jbyteArray JNICALL Java_jssc_SerialNativeInterface_readBytes
     while(byteRemains > 0) {
         FD_ZERO(&read_fd_set);
         FD_SET(portHandle, &read_fd_set);
-        select(portHandle + 1, &read_fd_set, NULL, NULL, NULL);
+        if(select(portHandle + 1, &read_fd_set, NULL, NULL, NULL) < 0){
+            if(errno == EINTR){
+                continue;
+            }
+            break;
+        }
         int result = read(portHandle, lpBuffer + (byteCount - byteRemains), byteRemains);
         if(result > 0){
             byteRemains -= result;
         }
+        else if(result < 0 && errno != EINTR && errno != EAGAIN){
+            break;
+        }
+        else if(result == 0 && !isPortConnected(portHandle)){
+            break;
+        }
     }
     FD_CLR(portHandle, &read_fd_set);
-    jbyteArray returnArray = env->NewByteArray(byteCount);
-    env->SetByteArrayRegion(returnArray, 0, byteCount, lpBuffer);
-    delete lpBuffer;
+    jbyteArray returnArray = NULL;
+    if(byteRemains == 0){
+        returnArray = env->NewByteArray(byteCount);
+        env->SetByteArrayRegion(returnArray, 0, byteCount, lpBuffer);
+    }
+    delete[] lpBuffer;
     return returnArray;
 }
 
+//since 2.9.0 ->
+/*
+ * Get value of monotonic clock in milliseconds (used for calculation of timeouts,
+ * so it mustn't depend on changes of system time)
+ */
+jlong getMonotonicMillis() {
+#if defined CLOCK_MONOTONIC
+    struct timespec now;
+    if(clock_gettime(CLOCK_MONOTONIC, &now) == 0){
+        return (jlong)now.tv_sec * 1000 + now.tv_nsec / 1000000;
+    }
+#endif
+    struct timeval tv;
+    gettimeofday(&tv, NULL);
+    return (jlong)tv.tv_sec * 1000 + tv.tv_usec / 1000;
+}
+
+/*
+ * Waiting until input buffer is not empty or timeout is elapsed (timeout < 0 means infinite waiting).
+ * Thread is sleeping in the kernel all this time, interrupted calls are restarted with remaining time
+ *
+ * Returns count of bytes in input buffer, 0 if timeout is elapsed or -1 if error has occurred
+ * (empty input buffer after successful waiting means that port was hung up)
+ */
+int waitBytesAvailable(jlong portHandle, jint timeout) {
+    jlong deadline = (timeout > 0 ? getMonotonicMillis() + timeout : 0);
+    jint remains = timeout;
+    int result;
+    while(true){
+    #ifdef __APPLE__
+        fd_set read_fd_set;
+        FD_ZERO(&read_fd_set);
+        FD_SET(portHandle, &read_fd_set);
+        struct timeval tv;
+        tv.tv_sec = remains / 1000;
+        tv.tv_usec = (remains % 1000) * 1000;
+        result = select(portHandle + 1, &read_fd_set, NULL, NULL, (remains < 0 ? NULL : &tv));
+    #else
+        struct pollfd pfd;
+        pfd.fd = portHandle;
+        pfd.events = POLLIN;
+        pfd.revents = 0;
+        result = poll(&pfd, 1, remains);
+    #endif
+        if(result >= 0 || errno != EINTR){
+            break;
+        }
+        if(timeout > 0){
+            remains = (jint)(deadline - getMonotonicMillis());
+            if(remains < 0){
+                remains = 0;
+            }
+        }
+    }
+    if(result <= 0){
+        return result < 0 ? -1 : 0;
+    }
+    int bytesAvailable = 0;
+    if(ioctl(portHandle, FIONREAD, &bytesAvailable) < 0 || bytesAvailable <= 0){
+        return -1;
+    }
+    return bytesAvailable;
+}
+
+/*
+ * Waiting until output buffer of the port has free space (descriptor is in non-blocking
+ * mode, write() returns EAGAIN if output buffer is full)
+ *
+ * Returns false if error has occurred
+ */
+bool waitWritable(jlong portHandle) {
+    int result;
+    do {
+    #ifdef __APPLE__
+        fd_set write_fd_set;
+        FD_ZERO(&write_fd_set);
+        FD_SET(portHandle, &write_fd_set);
+        result = select(portHandle + 1, NULL, &write_fd_set, NULL, NULL);
+    #else
+        struct pollfd pfd;
+        pfd.fd = portHandle;
+        pfd.events = POLLOUT;
+        pfd.revents = 0;
+        result = poll(&pfd, 1, -1);
+        if(result > 0 && (pfd.revents & (POLLERR | POLLHUP | POLLNVAL))){
+            return false;
+        }
+    #endif
+    } while(result < 0 && errno == EINTR);
+    return result > 0;
+}
+
+/*
+ * Writing all "length" bytes from memory block to the port. The thread sleeps in poll()/select()
+ * while output buffer is full, so it's used only by writeBytes() which isn't called by Java code
+ * since 2.9.0 (Java code waits for free space itself and calls writeAvailable())
+ *
+ * Returns count of written bytes or -1 if error has occurred
+ */
+jint writeAll(jlong portHandle, const jbyte *buffer, jint length) {
+    jint written = 0;
+    while(written < length){
+        ssize_t result = write(portHandle, buffer + written, (size_t)(length - written));
+        if(result > 0){
+            written += result;
+        }
+        else if(result < 0 && errno == EINTR){
+            continue;
+        }
+        else if(result < 0 && (errno == EAGAIN || errno == EWOULDBLOCK) && waitWritable(portHandle)){
+            continue;
+        }
+        else {
+            return -1;
+        }
+    }
+    return written;
+}
+
+/*
+ * Writing bytes from memory block to the port while output buffer has free space
+ *
+ * Returns count of written bytes (less than "length" if output buffer is full, 0 as well)
+ * or -1 if error has occurred and nothing was written
+ */
+jint writeAvailable(jlong portHandle, const jbyte *buffer, jint length) {
+    jint written = 0;
+    while(written < length){
+        ssize_t result = write(portHandle, buffer + written, (size_t)(length - written));
+        if(result > 0){
+            written += result;
+        }
+        else if(result < 0 && errno == EINTR){
+            continue;
+        }
+        else if(result < 0 && (errno == EAGAIN || errno == EWOULDBLOCK)){
+            break;
+        }
+        else {
+            return written > 0 ? written : -1;//Error will be returned by the next call
+        }
+    }
+    return written;
+}
+
+/*
+ * Reading data from the port into byte[] without allocation of temporary buffers
+ *
+ * Waiting is performed outside of critical region, so read() is called only for bytes
+ * which are already in input buffer and can't block the GC
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesArray
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint length){
+    if(length <= 0){
+        return 0;
+    }
+    int bytesAvailable = waitBytesAvailable(portHandle, -1);
+    if(bytesAvailable < 0){
+        return -1;
+    }
+    jint byteCount = (bytesAvailable < length ? bytesAvailable : length);
+    jbyte *jBuffer = (jbyte*)env->GetPrimitiveArrayCritical(buffer, NULL);
+    if(jBuffer == NULL){
+        return -1;
+    }
+    ssize_t result = read(portHandle, jBuffer + offset, (size_t)byteCount);
+    env->ReleasePrimitiveArrayCritical(buffer, jBuffer, 0);
+    return result > 0 ? (jint)result : -1;
+}
+
+/*
+ * Reading data from the port into direct ByteBuffer
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesDirect
+  (JNIEnv *env, jobject object, jlong portHandle, jobject buffer, jint position, jint length){
+    jbyte *jBuffer = (jbyte*)env->GetDirectBufferAddress(buffer);
+    if(jBuffer == NULL){
+        return -1;
+    }
+    if(length <= 0){
+        return 0;
+    }
+    int bytesAvailable = waitBytesAvailable(portHandle, -1);
+    if(bytesAvailable < 0){
+        return -1;
+    }
+    jint byteCount = (bytesAvailable < length ? bytesAvailable : length);
+    ssize_t result = read(portHandle, jBuffer + position, (size_t)byteCount);
+    return result > 0 ? (jint)result : -1;
+}
+
+/*
+ * Reading at least "minCount" (but not more than "maxCount") bytes into byte[] with timeout.
+ * Bytes which are already in input buffer are read at once, after that the thread sleeps
+ * in poll()/select() until the next bytes will be received or deadline will come
+ *
+ * Returns count of read bytes (less than "minCount" if timeout is elapsed) or -1 if error has occurred.
+ * If error occurs after some bytes were read, they are returned and the error is reported by the next call
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesTimeout
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint minCount, jint maxCount, jint timeout){
+    jlong deadline = getMonotonicMillis() + timeout;
+    jint readCount = 0;
+    while(true){
+        int bytesAvailable = 0;
+        if(ioctl(portHandle, FIONREAD, &bytesAvailable) < 0){
+            return readCount > 0 ? readCount : -1;
+        }
+        if(bytesAvailable > 0 && readCount < maxCount){
+            jint byteCount = (bytesAvailable < (maxCount - readCount) ? bytesAvailable : (maxCount - readCount));
+            jbyte *jBuffer = (jbyte*)env->GetPrimitiveArrayCritical(buffer, NULL);
+            if(jBuffer == NULL){
+                return readCount > 0 ? readCount : -1;
+            }
+            ssize_t result = read(portHandle, jBuffer + offset + readCount, (size_t)byteCount);
+            env->ReleasePrimitiveArrayCritical(buffer, jBuffer, 0);
+            if(result > 0){
+                readCount += result;
+            }
+            else if(result == 0 || (errno != EINTR && errno != EAGAIN)){
+                return readCount > 0 ? readCount : -1;
+            }
+        }
+        if(readCount >= minCount){
+            break;
+        }
+        jint remains = (jint)(deadline - getMonotonicMillis());
+        if(remains <= 0){
+            break;
+        }
+        if(waitBytesAvailable(portHandle, remains) < 0){
+            return readCount > 0 ? readCount : -1;
+        }
+    }
+    return readCount;
+}
+
+/*
+ * Writing part of byte[] to the port. Only bytes which fit into output buffer are written,
+ * the rest shall be written after waiting for free space by waitPort()
+ *
+ * Data is copied by chunks through the stack buffer, so the array isn't pinned
+ *
+ * Returns count of written bytes (may be less than "length", 0 as well) or -1 if error has occurred
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesArray
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint length){
+    jbyte chunk[4096];
+    jint written = 0;
+    while(written < length){
+        jint chunkSize = length - written;
+        if(chunkSize > (jint)sizeof(chunk)){
+            chunkSize = sizeof(chunk);
+        }
+        env->GetByteArrayRegion(buffer, offset + written, chunkSize, chunk);
+        jint result = writeAvailable(portHandle, chunk, chunkSize);
+        if(result < 0){
+            return written > 0 ? written : -1;
+        }
+        written += result;
+        if(result < chunkSize){
+            break;//Output buffer is full
+        }
+    }
+    return written;
+}
+
+/*
+ * Writing content of direct ByteBuffer to the port (only bytes which fit into output buffer)
+ *
+ * Returns count of written bytes (may be less than "length", 0 as well) or -1 if error has occurred
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesDirect
+  (JNIEnv *env, jobject object, jlong portHandle, jobject buffer, jint position, jint length){
+    jbyte *jBuffer = (jbyte*)env->GetDirectBufferAddress(buffer);
+    if(jBuffer == NULL){
+        return -1;
+    }
+    return writeAvailable(portHandle, jBuffer + position, length);
+}
+//<- since 2.9.0
+
 /* OK */
 /*
  * Get bytes count in serial port buffers (Input and Output)
@@ -695,7 +1064,7 @@ const jint EV_DSR = 16;
 const jint EV_RING = 256;
 const jint EV_RLSD = 32;
 const jint EV_RXCHAR = 1;
-//const jint EV_RXFLAG = 2; //Not supported
+const jint EV_RXFLAG = 2;//since 2.9.0
 const jint EV_TXEMPTY = 4;
 const jint events[] = {INTERRUPT_BREAK,
                        INTERRUPT_TX,
@@ -707,7 +1076,7 @@ const jint events[] = {INTERRUPT_BREAK,
                        EV_RING,
                        EV_RLSD,
                        EV_RXCHAR,
-                       //EV_RXFLAG, //Not supported
+                       EV_RXFLAG,//since 2.9.0
                        EV_TXEMPTY};
 
 /* OK */
@@ -767,7 +1136,7 @@ JNIEXPORT jobjectArray JNICALL Java_jssc_SerialNativeInterface_waitEvents
     jint interruptOverrun = interrupts[3];
     jint interruptParity = interrupts[4];
 
-    for(int i = 0; i < sizeof(events)/sizeof(jint); i++){
+    for(int i = 0; i < (int)(sizeof(events)/sizeof(jint)); i++){
         jint returnValues[2];
         switch(events[i]) {
             
@@ -801,10 +1170,11 @@ JNIEXPORT jobjectArray JNICALL Java_jssc_SerialNativeInterface_waitEvents
             case EV_RXCHAR:
                 returnValues[1] = bytesCountIn;
                 goto forEnd;
-            /*case EV_RXFLAG: // Event RXFLAG - Not supported
-                returnValues[0] = EV_RXFLAG;
+            case EV_RXFLAG://since 2.9.0
+                //Received bytes can't be inspected here without reading them, the event character
+                //is searched by the event thread of LocalSerialPort, so this state is always "not received"
                 returnValues[1] = 0;
-                goto forEnd;*/
+                goto forEnd;
             case EV_TXEMPTY:
                 returnValues[1] = bytesCountOut;
                 goto forEnd;
@@ -872,3 +1242,1102 @@ JNIEXPORT jintArray JNICALL Java_jssc_SerialNativeInterface_getLinesStatus
     env->SetIntArrayRegion(returnArray, 0, 4, returnValues);
     return returnArray;
 }
+
+//since 2.9.0 ->
+/*
+ * Fill caller-owned array with state of port, which is used for generation of events
+ * (the same data as in waitEvents(), but without allocation of 11 arrays on every call)
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_getEventsState
+  (JNIEnv *env, jobject object, jlong portHandle, jintArray state){
+    jint values[jssc_SerialNativeInterface_STATE_SIZE];
+    values[jssc_SerialNativeInterface_STATE_INPUT_BYTES] = 0;
+    values[jssc_SerialNativeInterface_STATE_OUTPUT_BYTES] = 0;
+    if(ioctl(portHandle, FIONREAD, &values[jssc_SerialNativeInterface_STATE_INPUT_BYTES]) < 0){
+        return JNI_FALSE;
+    }
+    ioctl(portHandle, TIOCOUTQ, &values[jssc_SerialNativeInterface_STATE_OUTPUT_BYTES]);
+
+    int statusLines = 0;
+    ioctl(portHandle, TIOCMGET, &statusLines);
+    values[jssc_SerialNativeInterface_STATE_CTS] = (statusLines & TIOCM_CTS) ? 1 : 0;
+    values[jssc_SerialNativeInterface_STATE_DSR] = (statusLines & TIOCM_DSR) ? 1 : 0;
+    values[jssc_SerialNativeInterface_STATE_RING] = (statusLines & TIOCM_RNG) ? 1 : 0;
+    values[jssc_SerialNativeInterface_STATE_RLSD] = (statusLines & TIOCM_CAR) ? 1 : 0;
+
+    int interrupts[] = {-1, -1, -1, -1, -1};
+    getInterruptsCount(portHandle, interrupts);
+    values[jssc_SerialNativeInterface_STATE_INTERRUPT_BREAK] = interrupts[0];
+    values[jssc_SerialNativeInterface_STATE_INTERRUPT_TX] = interrupts[1];
+    values[jssc_SerialNativeInterface_STATE_INTERRUPT_FRAME] = interrupts[2];
+    values[jssc_SerialNativeInterface_STATE_INTERRUPT_OVERRUN] = interrupts[3];
+    values[jssc_SerialNativeInterface_STATE_INTERRUPT_PARITY] = interrupts[4];
+
+    env->SetIntArrayRegion(state, 0, jssc_SerialNativeInterface_STATE_SIZE, values);
+    return JNI_TRUE;
+}
+
+/*
+ * Poller is implemented only for Linux (epoll). In other OS createPoller() returns -1 and
+ * event thread works in the old way
+ */
+#ifdef __linux__
+//Handles of ports are file descriptors, so this value can't be mixed up with handle
+const uint64_t POLLER_WAKEUP_TAG = (uint64_t)-1;
+const int POLLER_MAX_EVENTS = 64;
+
+struct Poller {
+    int epollFd;
+    int wakeupFd;//eventfd, used by pollerWakeup()
+};
+
+uint32_t toEpollEvents(jint events) {
+    uint32_t epollEvents = 0;
+    if(events & jssc_SerialNativeInterface_POLLER_IN){
+        epollEvents |= EPOLLIN;
+    }
+    if(events & jssc_SerialNativeInterface_POLLER_OUT){
+        epollEvents |= EPOLLOUT;
+    }
+    if(events & jssc_SerialNativeInterface_POLLER_EDGE_TRIGGERED){
+        epollEvents |= EPOLLET;
+    }
+    return epollEvents;
+}
+
+jint fromEpollEvents(uint32_t epollEvents) {
+    jint events = 0;
+    if(epollEvents & EPOLLIN){
+        events |= jssc_SerialNativeInterface_POLLER_IN;
+    }
+    if(epollEvents & EPOLLOUT){
+        events |= jssc_SerialNativeInterface_POLLER_OUT;
+    }
+    if(epollEvents & EPOLLERR){
+        events |= jssc_SerialNativeInterface_POLLER_ERROR;
+    }
+    if(epollEvents & EPOLLHUP){
+        events |= jssc_SerialNativeInterface_POLLER_HANGUP;
+    }
+    return events;
+}
+
+jboolean pollerControl(jlong pollerHandle, int operation, jlong portHandle, jint events) {
+    Poller *poller = (Poller*)(intptr_t)pollerHandle;
+    struct epoll_event event;
+    event.events = toEpollEvents(events);
+    event.data.u64 = (uint64_t)portHandle;
+    return epoll_ctl(poller->epollFd, operation, (int)portHandle, &event) == 0 ? JNI_TRUE : JNI_FALSE;
+}
+#endif
+
+/*
+ * Create epoll set and eventfd for waking up of waiting thread
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createPoller
+  (JNIEnv *env, jobject object){
+#ifdef __linux__
+    int epollFd = epoll_create1(EPOLL_CLOEXEC);
+    if(epollFd < 0){
+        return -1;
+    }
+    int wakeupFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if(wakeupFd < 0){
+        close(epollFd);
+        return -1;
+    }
+    struct epoll_event event;
+    event.events = EPOLLIN;
+    event.data.u64 = POLLER_WAKEUP_TAG;
+    if(epoll_ctl(epollFd, EPOLL_CTL_ADD, wakeupFd, &event) != 0){
+        close(wakeupFd);
+        close(epollFd);
+        return -1;
+    }
+    Poller *poller = new Poller();
+    poller->epollFd = epollFd;
+    poller->wakeupFd = wakeupFd;
+    return (jlong)(intptr_t)poller;
+#else
+    return -1;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerAdd
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlong portHandle, jint events){
+#ifdef __linux__
+    return pollerControl(pollerHandle, EPOLL_CTL_ADD, portHandle, events);
+#else
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerModify
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlong portHandle, jint events){
+#ifdef __linux__
+    return pollerControl(pollerHandle, EPOLL_CTL_MOD, portHandle, events);
+#else
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerRemove
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlong portHandle){
+#ifdef __linux__
+    return pollerControl(pollerHandle, EPOLL_CTL_DEL, portHandle, 0);
+#else
+    return JNI_FALSE;
+#endif
+}
+
+/*
+ * Waiting for events in epoll_wait(). Wake up requests are consumed here and aren't returned
+ * to the caller, interrupted call (EINTR) is returned as elapsed timeout
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_pollerWait
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlongArray handles, jintArray events, jint timeout){
+#ifdef __linux__
+    Poller *poller = (Poller*)(intptr_t)pollerHandle;
+    struct epoll_event epollEvents[POLLER_MAX_EVENTS];
+    jlong readyHandles[POLLER_MAX_EVENTS];
+    jint readyEvents[POLLER_MAX_EVENTS];
+    jint maxEvents = env->GetArrayLength(handles);
+    if(maxEvents > env->GetArrayLength(events)){
+        maxEvents = env->GetArrayLength(events);
+    }
+    if(maxEvents > POLLER_MAX_EVENTS){
+        maxEvents = POLLER_MAX_EVENTS;
+    }
+    if(maxEvents <= 0){
+        return -1;
+    }
+    int result = epoll_wait(poller->epollFd, epollEvents, maxEvents, timeout);
+    if(result < 0){
+        return errno == EINTR ? 0 : -1;
+    }
+    jint readyCount = 0;
+    for(int i = 0; i < result; i++){
+        if(epollEvents[i].data.u64 == POLLER_WAKEUP_TAG){
+            uint64_t value;
+            while(read(poller->wakeupFd, &value, sizeof(value)) > 0);
+            continue;
+        }
+        readyHandles[readyCount] = (jlong)epollEvents[i].data.u64;
+        readyEvents[readyCount] = fromEpollEvents(epollEvents[i].events);
+        readyCount++;
+    }
+    if(readyCount > 0){
+        env->SetLongArrayRegion(handles, 0, readyCount, readyHandles);
+        env->SetIntArrayRegion(events, 0, readyCount, readyEvents);
+    }
+    return readyCount;
+#else
+    return -1;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerWakeup
+  (JNIEnv *env, jobject object, jlong pollerHandle){
+#ifdef __linux__
+    Poller *poller = (Poller*)(intptr_t)pollerHandle;
+    uint64_t value = 1;
+    return write(poller->wakeupFd, &value, sizeof(value)) == sizeof(value) ? JNI_TRUE : JNI_FALSE;
+#else
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyPoller
+  (JNIEnv *env, jobject object, jlong pollerHandle){
+#ifdef __linux__
+    Poller *poller = (Poller*)(intptr_t)pollerHandle;
+    close(poller->wakeupFd);
+    close(poller->epollFd);
+    delete poller;
+#endif
+}
+
+/*
+ * Lines waiter is a native thread, which sleeps in ioctl(TIOCMIWAIT) and notifies event thread
+ * through the eventfd (it can be added to the poller). Changed lines are detected by deltas of
+ * TIOCGICOUNT counters, so even short pulses (for example RING) are not lost.
+ * The thread is stopped by the signal, which interrupts TIOCMIWAIT (handler does nothing).
+ *
+ * SIGRTMIN + 4 is reserved for this: its handler is installed process-wide by the first
+ * createLinesWaiter() call, but only if the signal has no handler yet. Otherwise lines waiter
+ * isn't used and the event thread checks lines periodically.
+ *
+ * Works only in Linux, in other OS createLinesWaiter() returns -1
+ */
+#ifdef __linux__
+#define LINES_WAITER_SIGNAL (SIGRTMIN + 4)
+const int LINES_WAITER_FAILED = 0x40000000;
+const int LINES_WAITER_ALL_LINES = EV_CTS | EV_DSR | EV_RING | EV_RLSD;
+//Stopping sends the signal every millisecond, but not longer than this count of milliseconds
+const int LINES_WAITER_STOP_ATTEMPTS = 1000;
+
+//States of the thread
+const int LINES_WAITER_RUNNING = 0;
+const int LINES_WAITER_FINISHED = 1;
+//The thread didn't stop in time, it releases resources of the waiter itself
+const int LINES_WAITER_ABANDONED = 2;
+
+struct LinesWaiter {
+    int portFd;
+    int eventFd;
+    pthread_t thread;
+    volatile int stop;
+    volatile int state;//LINES_WAITER_* state, changed by atomic operations
+    volatile int changedLines;//EV_* flags, accessed by atomic operations
+};
+
+void linesWaiterSignalHandler(int signal) {
+    //Do nothing, signal is used only for interruption of ioctl()
+}
+
+pthread_once_t linesWaiterSignalOnce = PTHREAD_ONCE_INIT;
+bool linesWaiterSignalInstalled = false;
+
+/*
+ * Signal handler is installed only if this signal is not used by someone else
+ */
+void installLinesWaiterSignal() {
+    struct sigaction action;
+    if(sigaction(LINES_WAITER_SIGNAL, NULL, &action) != 0 || action.sa_handler != SIG_DFL){
+        return;
+    }
+    action.sa_handler = linesWaiterSignalHandler;
+    action.sa_flags = 0;//Without SA_RESTART, interrupted ioctl() must return EINTR
+    sigemptyset(&action.sa_mask);
+    linesWaiterSignalInstalled = (sigaction(LINES_WAITER_SIGNAL, &action, NULL) == 0);
+}
+
+void notifyLinesWaiter(LinesWaiter *waiter, int changedLines) {
+    __sync_fetch_and_or(&waiter->changedLines, changedLines);
+    uint64_t value = 1;
+    write(waiter->eventFd, &value, sizeof(value));
+}
+
+void* linesWaiterThread(void *arg) {
+    LinesWaiter *waiter = (LinesWaiter*)arg;
+    sigset_t signals;
+    sigemptyset(&signals);
+    sigaddset(&signals, LINES_WAITER_SIGNAL);
+    pthread_sigmask(SIG_UNBLOCK, &signals, NULL);
+
+    struct serial_icounter_struct before;
+    struct serial_icounter_struct after;
+    bool countersSupported = (ioctl(waiter->portFd, TIOCGICOUNT, &before) == 0);
+    while(!waiter->stop){
+        if(ioctl(waiter->portFd, TIOCMIWAIT, TIOCM_CTS | TIOCM_DSR | TIOCM_RNG | TIOCM_CAR) < 0){
+            if(errno == EINTR){
+                continue;
+            }
+            notifyLinesWaiter(waiter, LINES_WAITER_FAILED);//TIOCMIWAIT is not supported or port was closed
+            break;
+        }
+        int changedLines = LINES_WAITER_ALL_LINES;
+        if(countersSupported && ioctl(waiter->portFd, TIOCGICOUNT, &after) == 0){
+            changedLines = 0;
+            if(after.cts != before.cts){
+                changedLines |= EV_CTS;
+            }
+            if(after.dsr != before.dsr){
+                changedLines |= EV_DSR;
+            }
+            if(after.rng != before.rng){
+                changedLines |= EV_RING;
+            }
+            if(after.dcd != before.dcd){
+                changedLines |= EV_RLSD;
+            }
+            before = after;
+        }
+        if(changedLines != 0){
+            notifyLinesWaiter(waiter, changedLines);
+        }
+    }
+    if(!__sync_bool_compare_and_swap(&waiter->state, LINES_WAITER_RUNNING, LINES_WAITER_FINISHED)){
+        //destroyLinesWaiter() has given up waiting for the thread
+        close(waiter->eventFd);
+        delete waiter;
+    }
+    return NULL;
+}
+#endif
+
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createLinesWaiter
+  (JNIEnv *env, jobject object, jlong portHandle){
+#ifdef __linux__
+    pthread_once(&linesWaiterSignalOnce, installLinesWaiterSignal);
+    if(!linesWaiterSignalInstalled){
+        return -1;
+    }
+    LinesWaiter *waiter = new LinesWaiter();
+    waiter->portFd = (int)portHandle;
+    waiter->stop = 0;
+    waiter->state = LINES_WAITER_RUNNING;
+    waiter->changedLines = 0;
+    waiter->eventFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if(waiter->eventFd < 0){
+        delete waiter;
+        return -1;
+    }
+    if(pthread_create(&waiter->thread, NULL, linesWaiterThread, waiter) != 0){
+        close(waiter->eventFd);
+        delete waiter;
+        return -1;
+    }
+    return (jlong)(intptr_t)waiter;
+#else
+    return -1;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_getLinesWaiterEventHandle
+  (JNIEnv *env, jobject object, jlong waiterHandle){
+#ifdef __linux__
+    return ((LinesWaiter*)(intptr_t)waiterHandle)->eventFd;
+#else
+    return -1;
+#endif
+}
+
+/*
+ * Returns lines changed since the previous call and resets notification
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_getChangedLines
+  (JNIEnv *env, jobject object, jlong waiterHandle){
+#ifdef __linux__
+    LinesWaiter *waiter = (LinesWaiter*)(intptr_t)waiterHandle;
+    uint64_t value;
+    while(read(waiter->eventFd, &value, sizeof(value)) > 0);
+    int changedLines = __sync_fetch_and_and(&waiter->changedLines, 0);
+    if(changedLines & LINES_WAITER_FAILED){
+        return -1;
+    }
+    return changedLines;
+#else
+    return -1;
+#endif
+}
+
+/*
+ * Signal is sent repeatedly, because it may come before the thread enters ioctl(). If the thread
+ * doesn't stop in time (driver doesn't interrupt TIOCMIWAIT), it's detached and releases resources
+ * of the waiter itself when ioctl() returns
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyLinesWaiter
+  (JNIEnv *env, jobject object, jlong waiterHandle){
+#ifdef __linux__
+    LinesWaiter *waiter = (LinesWaiter*)(intptr_t)waiterHandle;
+    waiter->stop = 1;
+    for(int i = 0; i < LINES_WAITER_STOP_ATTEMPTS && waiter->state == LINES_WAITER_RUNNING; i++){
+        pthread_kill(waiter->thread, LINES_WAITER_SIGNAL);
+        usleep(1000);
+    }
+    if(__sync_bool_compare_and_swap(&waiter->state, LINES_WAITER_RUNNING, LINES_WAITER_ABANDONED)){
+        pthread_detach(waiter->thread);
+        return;
+    }
+    pthread_join(waiter->thread, NULL);
+    close(waiter->eventFd);
+    delete waiter;
+#endif
+}
+
+/*
+ * Background reader is a native thread, which reads data from the port into the ring buffer
+ * (memory of direct ByteBuffer shared with Java). Producer (native thread) and consumer (Java)
+ * exchange only positions - total counts of written and read bytes, which are stored in the header
+ * at the start of the buffer (layout is described by BACKGROUND_READER_* constants in SerialNativeInterface).
+ * Java reads and writes them by plain memory access, so data is taken from the ring without system calls.
+ * eventfd descriptors are used only if one of the sides has to wait for the other:
+ * dataFd - for the consumer waiting in waitBackgroundReader(), controlFd - for the producer waiting
+ * for free space, eventFd - for the poller of the event thread, which requests notification about new data
+ *
+ * Works only in Linux, in other OS createBackgroundReader() returns -1
+ */
+#ifdef __linux__
+#define BACKGROUND_READER_HEADER_SIZE 128
+#define BACKGROUND_READER_WRITE_POSITION 0
+#define BACKGROUND_READER_STOPPED 8
+#define BACKGROUND_READER_PRODUCER_WAITING 12
+#define BACKGROUND_READER_READ_POSITION 64
+#define BACKGROUND_READER_EVENT_REQUESTED 72
+
+struct BackgroundReader {
+    int portFd;
+    jbyte *ring;
+    jlong capacity;
+    int dataFd;//eventfd, signaled by the producer for waiting consumer
+    int controlFd;//eventfd, signaled for the producer waiting for free space and by stop request
+    int eventFd;//eventfd, signaled by the producer for poller if notification was requested
+    pthread_t thread;
+    bool joined;
+    int consumerWaiting;
+    //Fields in the header of shared buffer
+    jlong *writePosition;
+    jint *stopped;//set by stop request or when reading from the port has failed
+    jint *producerWaiting;
+    jlong *readPosition;
+    jint *eventRequested;
+};
+
+void signalEventFd(int fd) {
+    uint64_t value = 1;
+    write(fd, &value, sizeof(value));
+}
+
+void drainEventFd(int fd) {
+    uint64_t value;
+    while(read(fd, &value, sizeof(value)) > 0);
+}
+
+/*
+ * Wake up everybody, who waits for new data (called by the producer after change of its position or state)
+ */
+void notifyBackgroundReaderConsumers(BackgroundReader *reader) {
+    if(__atomic_load_n(&reader->consumerWaiting, __ATOMIC_SEQ_CST)){
+        signalEventFd(reader->dataFd);
+    }
+    if(__atomic_load_n(reader->eventRequested, __ATOMIC_SEQ_CST) &&
+       __atomic_exchange_n(reader->eventRequested, 0, __ATOMIC_SEQ_CST)){
+        signalEventFd(reader->eventFd);
+    }
+}
+
+void* backgroundReaderThread(void *arg) {
+    BackgroundReader *reader = (BackgroundReader*)arg;
+    struct pollfd fds[2];
+    fds[0].fd = reader->portFd;
+    fds[0].events = POLLIN;
+    fds[1].fd = reader->controlFd;
+    fds[1].events = POLLIN;
+    while(!__atomic_load_n(reader->stopped, __ATOMIC_SEQ_CST)){
+        jlong writePosition = *reader->writePosition;//changed only by this thread
+        jlong freeSpace = reader->capacity - (writePosition - __atomic_load_n(reader->readPosition, __ATOMIC_SEQ_CST));
+        if(freeSpace == 0){
+            //Ring is full, data is kept in the kernel buffer until the consumer frees some space
+            __atomic_store_n(reader->producerWaiting, 1, __ATOMIC_SEQ_CST);
+            if(writePosition - __atomic_load_n(reader->readPosition, __ATOMIC_SEQ_CST) == reader->capacity &&
+               !__atomic_load_n(reader->stopped, __ATOMIC_SEQ_CST)){
+                poll(&fds[1], 1, -1);
+            }
+            __atomic_store_n(reader->producerWaiting, 0, __ATOMIC_SEQ_CST);
+            drainEventFd(reader->controlFd);
+            continue;
+        }
+        int result = poll(fds, 2, -1);
+        if(result < 0){
+            if(errno == EINTR){
+                continue;
+            }
+            break;
+        }
+        if(fds[1].revents & POLLIN){
+            drainEventFd(reader->controlFd);
+        }
+        if(fds[0].revents & (POLLIN | POLLERR | POLLHUP)){
+            jlong offset = writePosition % reader->capacity;
+            jlong byteCount = reader->capacity - offset;
+            if(byteCount > freeSpace){
+                byteCount = freeSpace;
+            }
+            ssize_t count = read(reader->portFd, reader->ring + offset, (size_t)byteCount);
+            if(count > 0){
+                __atomic_store_n(reader->writePosition, writePosition + count, __ATOMIC_SEQ_CST);
+                notifyBackgroundReaderConsumers(reader);
+            }
+            else if(count < 0 && (errno == EINTR || errno == EAGAIN)){
+                continue;
+            }
+            else {
+                break;//Port is hung up or error has occurred
+            }
+        }
+    }
+    __atomic_store_n(reader->stopped, 1, __ATOMIC_SEQ_CST);
+    signalEventFd(reader->dataFd);
+    signalEventFd(reader->eventFd);
+    return NULL;
+}
+#endif
+
+/*
+ * Start background reader, which fills memory of "ring" direct buffer after the header
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createBackgroundReader
+  (JNIEnv *env, jobject object, jlong portHandle, jobject ring){
+#ifdef __linux__
+    jbyte *ringAddress = (jbyte*)env->GetDirectBufferAddress(ring);
+    jlong capacity = env->GetDirectBufferCapacity(ring) - BACKGROUND_READER_HEADER_SIZE;
+    if(ringAddress == NULL || capacity <= 0 || ((intptr_t)ringAddress % sizeof(jlong)) != 0){
+        return -1;
+    }
+    memset(ringAddress, 0, BACKGROUND_READER_HEADER_SIZE);
+    BackgroundReader *reader = new BackgroundReader();
+    reader->portFd = (int)portHandle;
+    reader->ring = ringAddress + BACKGROUND_READER_HEADER_SIZE;
+    reader->capacity = capacity;
+    reader->joined = false;
+    reader->consumerWaiting = 0;
+    reader->writePosition = (jlong*)(ringAddress + BACKGROUND_READER_WRITE_POSITION);
+    reader->stopped = (jint*)(ringAddress + BACKGROUND_READER_STOPPED);
+    reader->producerWaiting = (jint*)(ringAddress + BACKGROUND_READER_PRODUCER_WAITING);
+    reader->readPosition = (jlong*)(ringAddress + BACKGROUND_READER_READ_POSITION);
+    reader->eventRequested = (jint*)(ringAddress + BACKGROUND_READER_EVENT_REQUESTED);
+    reader->dataFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    reader->controlFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    reader->eventFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if(reader->dataFd >= 0 && reader->controlFd >= 0 && reader->eventFd >= 0 &&
+       pthread_create(&reader->thread, NULL, backgroundReaderThread, reader) == 0){
+        return (jlong)(intptr_t)reader;
+    }
+    if(reader->dataFd >= 0){
+        close(reader->dataFd);
+    }
+    if(reader->controlFd >= 0){
+        close(reader->controlFd);
+    }
+    if(reader->eventFd >= 0){
+        close(reader->eventFd);
+    }
+    delete reader;
+#endif
+    return -1;
+}
+
+/*
+ * Descriptor for poller, it's signaled once per request written into the header
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_getBackgroundReaderEventHandle
+  (JNIEnv *env, jobject object, jlong readerHandle){
+#ifdef __linux__
+    BackgroundReader *reader = (BackgroundReader*)(intptr_t)readerHandle;
+    return reader->eventFd;
+#else
+    return -1;
+#endif
+}
+
+/*
+ * Wait up to "timeout" milliseconds (timeout < 0 means infinite waiting) until the producer will
+ * move its position beyond position of the consumer or will stop
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_waitBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle, jint timeout){
+#ifdef __linux__
+    BackgroundReader *reader = (BackgroundReader*)(intptr_t)readerHandle;
+    jlong deadline = (timeout > 0 ? getMonotonicMillis() + timeout : 0);
+    jint remains = timeout;
+    __atomic_store_n(&reader->consumerWaiting, 1, __ATOMIC_SEQ_CST);
+    while(__atomic_load_n(reader->writePosition, __ATOMIC_SEQ_CST) == __atomic_load_n(reader->readPosition, __ATOMIC_SEQ_CST) &&
+          !__atomic_load_n(reader->stopped, __ATOMIC_SEQ_CST)){
+        struct pollfd pfd;
+        pfd.fd = reader->dataFd;
+        pfd.events = POLLIN;
+        pfd.revents = 0;
+        int result = poll(&pfd, 1, remains);
+        if(result == 0 || (result < 0 && errno != EINTR)){
+            break;
+        }
+        drainEventFd(reader->dataFd);
+        if(timeout > 0){
+            remains = (jint)(deadline - getMonotonicMillis());
+            if(remains <= 0){
+                break;
+            }
+        }
+    }
+    __atomic_store_n(&reader->consumerWaiting, 0, __ATOMIC_SEQ_CST);
+#endif
+}
+
+/*
+ * Wake up the producer waiting for free space, called by the consumer after change of its position
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_wakeupBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle){
+#ifdef __linux__
+    BackgroundReader *reader = (BackgroundReader*)(intptr_t)readerHandle;
+    signalEventFd(reader->controlFd);
+#endif
+}
+
+/*
+ * Stop the thread of background reader, waiting consumer is woken up. Data in the ring stays available
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_stopBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle){
+#ifdef __linux__
+    BackgroundReader *reader = (BackgroundReader*)(intptr_t)readerHandle;
+    if(!reader->joined){
+        __atomic_store_n(reader->stopped, 1, __ATOMIC_SEQ_CST);
+        signalEventFd(reader->controlFd);
+        pthread_join(reader->thread, NULL);
+        reader->joined = true;
+    }
+#endif
+}
+
+/*
+ * Release resources of background reader, must be called when nobody uses it.
+ * Closed eventFd is removed from pollers automatically
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle){
+#ifdef __linux__
+    BackgroundReader *reader = (BackgroundReader*)(intptr_t)readerHandle;
+    Java_jssc_SerialNativeInterface_stopBackgroundReader(env, object, readerHandle);
+    close(reader->dataFd);
+    close(reader->controlFd);
+    close(reader->eventFd);
+    delete reader;
+#endif
+}
+
+/*
+ * Get baudrate, which is really used by the driver
+ *
+ * Returns baudrate or -1 if it can't be determined
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_getBaudRate
+  (JNIEnv *env, jobject object, jlong portHandle){
+#ifdef __linux__
+    serial_struct serial_info;
+    if(ioctl(portHandle, TIOCGSERIAL, &serial_info) == 0 &&
+       (serial_info.flags & ASYNC_SPD_MASK) == ASYNC_SPD_CUST && serial_info.custom_divisor > 0){
+        termios customSettings;
+        if(tcgetattr(portHandle, &customSettings) == 0 && cfgetospeed(&customSettings) == B38400){
+            return serial_info.baud_base / serial_info.custom_divisor;//Old way of setting of non standart baudrate
+        }
+    }
+#ifdef TCGETS2
+    struct termios2 settings2;
+    if(ioctl(portHandle, TCGETS2, &settings2) == 0){
+        return (jint)settings2.c_ospeed;//Kernel keeps this value actual for standart baudrates too
+    }
+#endif
+#endif
+    termios settings;
+    if(tcgetattr(portHandle, &settings) != 0){
+        return -1;
+    }
+    speed_t speed = cfgetospeed(&settings);
+#ifdef __APPLE__
+    return (jint)speed;//Value of speed_t is a baudrate in Mac OS X
+#else
+    const jint baudRates[] = {0, 50, 75, 110, 134, 150, 200, 300, 600, 1200, 1800, 2400, 4800, 9600, 19200, 38400,
+                              57600, 115200, 230400, 460800, 500000, 576000, 921600, 1000000, 1152000, 1500000,
+                              2000000, 2500000, 3000000, 3500000, 4000000};
+    for(size_t i = 0; i < sizeof(baudRates)/sizeof(jint); i++){
+        if(getBaudRateByNum(baudRates[i]) == speed){
+            return baudRates[i];
+        }
+    }
+    return -1;
+#endif
+}
+
+/*
+ * Switch ASYNC_LOW_LATENCY flag of the driver. With this flag the driver pushes received
+ * bytes to the tty layer immediately instead of batching them
+ *
+ * Returns JNI_TRUE if the driver has accepted the requested state
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setLowLatency
+  (JNIEnv *env, jobject object, jlong portHandle, jboolean enabled){
+#if defined __linux__ && defined ASYNC_LOW_LATENCY
+    serial_struct serial_info;
+    if(ioctl(portHandle, TIOCGSERIAL, &serial_info) < 0){
+        return JNI_FALSE;
+    }
+    if(enabled == JNI_TRUE){
+        serial_info.flags |= ASYNC_LOW_LATENCY;
+    }
+    else {
+        serial_info.flags &= ~ASYNC_LOW_LATENCY;
+    }
+    if(ioctl(portHandle, TIOCSSERIAL, &serial_info) < 0){
+        return JNI_FALSE;
+    }
+    //Some drivers silently ignore the flag, so read it back
+    if(ioctl(portHandle, TIOCGSERIAL, &serial_info) < 0){
+        return JNI_FALSE;
+    }
+    bool applied = (serial_info.flags & ASYNC_LOW_LATENCY) != 0;
+    return (applied == (enabled == JNI_TRUE)) ? JNI_TRUE : JNI_FALSE;
+#else
+    return JNI_FALSE;
+#endif
+}
+
+/*
+ * Reading one frame, which is finished by silence on the line. The thread waits for the first byte
+ * up to "timeout" milliseconds (timeout < 0 means infinite waiting) and after that reads bytes until
+ * "maxSize" bytes are received or no byte is received during "gap" milliseconds.
+ *
+ * The thread sleeps in poll()/select() between reads of received bytes. VMIN/VTIME are not used:
+ * they work only on blocking descriptor and would have to be changed on the descriptor shared with
+ * writers and setters of parameters (VTIME also can't express few milliseconds gaps of Modbus RTU)
+ *
+ * Returns count of read bytes, 0 if timeout is elapsed or -1 if error has occurred
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readFrame
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint maxSize, jint gap, jint timeout){
+    if(maxSize <= 0){
+        return 0;
+    }
+    int bytesAvailable = waitBytesAvailable(portHandle, timeout);
+    if(bytesAvailable <= 0){
+        return bytesAvailable;
+    }
+    jint readCount = 0;
+    while(true){
+        jint byteCount = (bytesAvailable < (maxSize - readCount) ? bytesAvailable : (maxSize - readCount));
+        jbyte *jBuffer = (jbyte*)env->GetPrimitiveArrayCritical(buffer, NULL);
+        if(jBuffer == NULL){
+            return -1;
+        }
+        ssize_t result = read(portHandle, jBuffer + offset + readCount, (size_t)byteCount);
+        env->ReleasePrimitiveArrayCritical(buffer, jBuffer, 0);
+        if(result > 0){
+            readCount += result;
+        }
+        else if(result == 0 || errno != EINTR){
+            return readCount > 0 ? readCount : -1;
+        }
+        if(readCount >= maxSize){
+            break;
+        }
+        bytesAvailable = waitBytesAvailable(portHandle, gap);
+        if(bytesAvailable <= 0){
+            break;//Line is quiet (error will be returned by the next read operation)
+        }
+    }
+    return readCount;
+}
+
+/*
+ * Max count of parts passed to one writev() call (POSIX guarantees at least 16)
+ */
+#define WRITE_VECTOR_SIZE 16
+
+/*
+ * Writing bytes described by "iov" by writev() while output buffer has free space. If only part
+ * of data was written, vectors are advanced and the rest is written by the next call
+ *
+ * Returns count of written bytes (less than total length if output buffer is full, 0 as well)
+ * or -1 if error has occurred and nothing was written
+ */
+jint writevAvailable(jlong portHandle, struct iovec *iov, int iovCount) {
+    jint written = 0;
+    while(iovCount > 0){
+        ssize_t result = writev(portHandle, iov, iovCount);
+        if(result < 0 && errno == EINTR){
+            continue;
+        }
+        if(result < 0 && (errno == EAGAIN || errno == EWOULDBLOCK)){
+            break;
+        }
+        if(result <= 0){
+            return written > 0 ? written : -1;
+        }
+        written += result;
+        while(iovCount > 0 && (size_t)result >= iov->iov_len){
+            result -= iov->iov_len;
+            iov++;
+            iovCount--;
+        }
+        if(iovCount > 0){
+            iov->iov_base = (char*)iov->iov_base + result;
+            iov->iov_len -= result;
+        }
+    }
+    return written;
+}
+
+/*
+ * Gather writing of several buffers (byte[] or direct ByteBuffer) by one writev() call.
+ * Direct buffers are passed to the kernel as is, parts of arrays are copied into the stack
+ * buffer (arrays aren't pinned). More than one call is made only if there are more than
+ * WRITE_VECTOR_SIZE parts or arrays don't fit into the stack buffer. Writing is stopped
+ * when output buffer is full, the rest shall be written after waiting for free space by waitPort()
+ *
+ * Returns count of written bytes (may be less than total length, 0 as well) or -1 if error has occurred
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesVector
+  (JNIEnv *env, jobject object, jlong portHandle, jobjectArray buffers, jintArray offsets, jintArray lengths){
+    jbyte chunk[4096];
+    struct iovec iov[WRITE_VECTOR_SIZE];
+    int iovCount = 0;
+    jint iovSize = 0;
+    jint chunkUsed = 0;
+    jint written = 0;
+    jsize count = env->GetArrayLength(buffers);
+    jint *jOffsets = env->GetIntArrayElements(offsets, NULL);
+    jint *jLengths = env->GetIntArrayElements(lengths, NULL);
+    for(jsize i = 0; i < count; i++){
+        jobject buffer = env->GetObjectArrayElement(buffers, i);
+        jbyte *address = (jbyte*)env->GetDirectBufferAddress(buffer);
+        jint offset = jOffsets[i];
+        jint length = jLengths[i];
+        while(length > 0){
+            if(iovCount == WRITE_VECTOR_SIZE || (address == NULL && chunkUsed == (jint)sizeof(chunk))){
+                jint result = writevAvailable(portHandle, iov, iovCount);
+                if(result < 0 || result < iovSize){
+                    //Error or output buffer is full
+                    written = (result < 0 ? (written > 0 ? written : -1) : written + result);
+                    env->DeleteLocalRef(buffer);
+                    goto methodEnd;
+                }
+                written += result;
+                iovCount = 0;
+                iovSize = 0;
+                chunkUsed = 0;
+            }
+            if(address != NULL){
+                iov[iovCount].iov_base = address + offset;
+                iov[iovCount].iov_len = (size_t)length;
+                iovSize += length;
+                length = 0;
+            }
+            else {
+                jint partSize = (jint)sizeof(chunk) - chunkUsed;
+                if(partSize > length){
+                    partSize = length;
+                }
+                env->GetByteArrayRegion((jbyteArray)buffer, offset, partSize, chunk + chunkUsed);
+                iov[iovCount].iov_base = chunk + chunkUsed;
+                iov[iovCount].iov_len = (size_t)partSize;
+                iovSize += partSize;
+                chunkUsed += partSize;
+                offset += partSize;
+                length -= partSize;
+            }
+            iovCount++;
+        }
+        env->DeleteLocalRef(buffer);
+    }
+    if(iovCount > 0){
+        jint result = writevAvailable(portHandle, iov, iovCount);
+        written = (result < 0 ? (written > 0 ? written : -1) : written + result);
+    }
+    methodEnd: {
+        env->ReleaseIntArrayElements(offsets, jOffsets, JNI_ABORT);
+        env->ReleaseIntArrayElements(lengths, jLengths, JNI_ABORT);
+    }
+    return written;
+}
+
+/*
+ * Check that port is still connected
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_isConnected
+  (JNIEnv *env, jobject object, jlong portHandle){
+    return isPortConnected(portHandle) ? JNI_TRUE : JNI_FALSE;
+}
+
+/*
+ * Canceller wakes up threads waiting in waitPort() when the port is closed by other thread.
+ * It's eventfd in Linux and non-blocking pipe in other *nix. Both descriptors are packed into
+ * the handle: write end in the high half, read end in the low half (the same descriptor for eventfd)
+ */
+int getCancellerReadFd(jlong canceller) {
+    return (int)(canceller & 0xFFFFFFFF);
+}
+
+int getCancellerWriteFd(jlong canceller) {
+    return (int)(canceller >> 32);
+}
+
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createCanceller
+  (JNIEnv *env, jobject object){
+#ifdef __linux__
+    int fd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if(fd < 0){
+        return -1;
+    }
+    return ((jlong)fd << 32) | (jlong)fd;
+#else
+    int fds[2];
+    if(pipe(fds) != 0){
+        return -1;
+    }
+    for(int i = 0; i < 2; i++){
+        fcntl(fds[i], F_SETFL, fcntl(fds[i], F_GETFL) | O_NONBLOCK);
+        fcntl(fds[i], F_SETFD, FD_CLOEXEC);
+    }
+    return ((jlong)fds[1] << 32) | (jlong)fds[0];
+#endif
+}
+
+/*
+ * Signal canceller. Signal isn't consumed by waitPort(), so all next waits return at once
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_cancel
+  (JNIEnv *env, jobject object, jlong canceller){
+#ifdef __linux__
+    uint64_t value = 1;
+    return write(getCancellerWriteFd(canceller), &value, sizeof(value)) == sizeof(value) ? JNI_TRUE : JNI_FALSE;
+#else
+    char value = 1;
+    //Full pipe means that canceller is signaled already
+    return (write(getCancellerWriteFd(canceller), &value, 1) == 1 || errno == EAGAIN) ? JNI_TRUE : JNI_FALSE;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyCanceller
+  (JNIEnv *env, jobject object, jlong canceller){
+    int readFd = getCancellerReadFd(canceller);
+    int writeFd = getCancellerWriteFd(canceller);
+    close(readFd);
+    if(writeFd != readFd){
+        close(writeFd);
+    }
+}
+
+/*
+ * Waiting until the port is ready for reading and/or writing, canceller is signaled or timeout
+ * is elapsed (timeout < 0 means infinite waiting). Interrupted calls are restarted with remaining time
+ *
+ * Returns "POLLER_" flags of the port, 0 if timeout is elapsed or canceller is signaled, -1 if error has occurred
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_waitPort
+  (JNIEnv *env, jobject object, jlong portHandle, jlong canceller, jint events, jint timeout){
+    jlong deadline = (timeout > 0 ? getMonotonicMillis() + timeout : 0);
+    jint remains = timeout;
+    int cancelFd = (canceller == -1 ? -1 : getCancellerReadFd(canceller));
+    while(true){
+        int result;
+        jint ready = 0;
+    #ifdef __APPLE__
+        fd_set read_fd_set;
+        fd_set write_fd_set;
+        FD_ZERO(&read_fd_set);
+        FD_ZERO(&write_fd_set);
+        if(events & jssc_SerialNativeInterface_POLLER_IN){
+            FD_SET(portHandle, &read_fd_set);
+        }
+        if(events & jssc_SerialNativeInterface_POLLER_OUT){
+            FD_SET(portHandle, &write_fd_set);
+        }
+        int maxFd = (int)portHandle;
+        if(cancelFd >= 0){
+            FD_SET(cancelFd, &read_fd_set);
+            if(cancelFd > maxFd){
+                maxFd = cancelFd;
+            }
+        }
+        struct timeval tv;
+        tv.tv_sec = remains / 1000;
+        tv.tv_usec = (remains % 1000) * 1000;
+        result = select(maxFd + 1, &read_fd_set, &write_fd_set, NULL, (remains < 0 ? NULL : &tv));
+        if(result > 0){
+            if(cancelFd >= 0 && FD_ISSET(cancelFd, &read_fd_set)){
+                return 0;
+            }
+            if(FD_ISSET(portHandle, &read_fd_set)){
+                ready |= jssc_SerialNativeInterface_POLLER_IN;
+            }
+            if(FD_ISSET(portHandle, &write_fd_set)){
+                ready |= jssc_SerialNativeInterface_POLLER_OUT;
+            }
+        }
+    #else
+        struct pollfd pfd[2];
+        pfd[0].fd = portHandle;
+        pfd[0].events = 0;
+        if(events & jssc_SerialNativeInterface_POLLER_IN){
+            pfd[0].events |= POLLIN;
+        }
+        if(events & jssc_SerialNativeInterface_POLLER_OUT){
+            pfd[0].events |= POLLOUT;
+        }
+        pfd[0].revents = 0;
+        pfd[1].fd = cancelFd;//negative descriptor is ignored
+        pfd[1].events = POLLIN;
+        pfd[1].revents = 0;
+        result = poll(pfd, 2, remains);
+        if(result > 0){
+            if(pfd[1].revents != 0){
+                return 0;
+            }
+            if(pfd[0].revents & POLLIN){
+                ready |= jssc_SerialNativeInterface_POLLER_IN;
+            }
+            if(pfd[0].revents & POLLOUT){
+                ready |= jssc_SerialNativeInterface_POLLER_OUT;
+            }
+            if(pfd[0].revents & (POLLERR | POLLNVAL)){
+                ready |= jssc_SerialNativeInterface_POLLER_ERROR;
+            }
+            if(pfd[0].revents & POLLHUP){
+                ready |= jssc_SerialNativeInterface_POLLER_HANGUP;
+            }
+        }
+    #endif
+        if(result >= 0){
+            return ready;
+        }
+        if(errno != EINTR){
+            return -1;
+        }
+        if(timeout > 0){
+            remains = (jint)(deadline - getMonotonicMillis());
+            if(remains < 0){
+                remains = 0;
+            }
+        }
+    }
+}
+/*
+ * Reading bytes which are in input buffer now (but not more than "length") into byte[] and searching
+ * the delimiter among them by memchr(), so a whole line is delivered by one read() and one copy.
+ * The thread doesn't wait for data here, it's awaited by waitPort() before the call
+ *
+ * Returns count of read bytes in low 32 bits and length of the line in high 32 bits (0 if delimiter
+ * isn't found) or -1 if error has occurred
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_readUntil
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint length, jint delimiter){
+    if(length <= 0){
+        return 0;
+    }
+    int bytesAvailable = waitBytesAvailable(portHandle, 0);
+    if(bytesAvailable <= 0){
+        return bytesAvailable;
+    }
+    jint byteCount = (bytesAvailable < length ? bytesAvailable : length);
+    jbyte *jBuffer = (jbyte*)env->GetPrimitiveArrayCritical(buffer, NULL);
+    if(jBuffer == NULL){
+        return -1;
+    }
+    ssize_t result;
+    do {
+        result = read(portHandle, jBuffer + offset, (size_t)byteCount);
+    } while(result < 0 && errno == EINTR);
+    jlong lineLength = 0;
+    if(result > 0){
+        jbyte *found = (jbyte*)memchr(jBuffer + offset, delimiter, (size_t)result);
+        if(found != NULL){
+            lineLength = (jlong)(found - (jBuffer + offset)) + 1;
+        }
+    }
+    env->ReleasePrimitiveArrayCritical(buffer, jBuffer, 0);
+    if(result <= 0){
+        return -1;
+    }
+    return (lineLength << 32) | (jlong)result;
+}
+
+/*
+ * Event character is searched by Java code in *nix (the driver can't report it)
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setEventChar
+  (JNIEnv *env, jobject object, jlong portHandle, jint eventChar){
+    return JNI_FALSE;
+}
+
+//<- since 2.9.0
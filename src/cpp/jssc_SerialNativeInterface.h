@@ -51,6 +51,40 @@ extern "C" {
 #define jssc_SerialNativeInterface_ERR_PERMISSION_DENIED -3LL
 #undef jssc_SerialNativeInterface_ERR_INCORRECT_SERIAL_PORT
 #define jssc_SerialNativeInterface_ERR_INCORRECT_SERIAL_PORT -4LL
+#undef jssc_SerialNativeInterface_STATE_INPUT_BYTES
+#define jssc_SerialNativeInterface_STATE_INPUT_BYTES 0L
+#undef jssc_SerialNativeInterface_STATE_OUTPUT_BYTES
+#define jssc_SerialNativeInterface_STATE_OUTPUT_BYTES 1L
+#undef jssc_SerialNativeInterface_STATE_CTS
+#define jssc_SerialNativeInterface_STATE_CTS 2L
+#undef jssc_SerialNativeInterface_STATE_DSR
+#define jssc_SerialNativeInterface_STATE_DSR 3L
+#undef jssc_SerialNativeInterface_STATE_RING
+#define jssc_SerialNativeInterface_STATE_RING 4L
+#undef jssc_SerialNativeInterface_STATE_RLSD
+#define jssc_SerialNativeInterface_STATE_RLSD 5L
+#undef jssc_SerialNativeInterface_STATE_INTERRUPT_BREAK
+#define jssc_SerialNativeInterface_STATE_INTERRUPT_BREAK 6L
+#undef jssc_SerialNativeInterface_STATE_INTERRUPT_TX
+#define jssc_SerialNativeInterface_STATE_INTERRUPT_TX 7L
+#undef jssc_SerialNativeInterface_STATE_INTERRUPT_FRAME
+#define jssc_SerialNativeInterface_STATE_INTERRUPT_FRAME 8L
+#undef jssc_SerialNativeInterface_STATE_INTERRUPT_OVERRUN
+#define jssc_SerialNativeInterface_STATE_INTERRUPT_OVERRUN 9L
+#undef jssc_SerialNativeInterface_STATE_INTERRUPT_PARITY
+#define jssc_SerialNativeInterface_STATE_INTERRUPT_PARITY 10L
+#undef jssc_SerialNativeInterface_STATE_SIZE
+#define jssc_SerialNativeInterface_STATE_SIZE 11L
+#undef jssc_SerialNativeInterface_POLLER_IN
+#define jssc_SerialNativeInterface_POLLER_IN 1L
+#undef jssc_SerialNativeInterface_POLLER_OUT
+#define jssc_SerialNativeInterface_POLLER_OUT 2L
+#undef jssc_SerialNativeInterface_POLLER_ERROR
+#define jssc_SerialNativeInterface_POLLER_ERROR 4L
+#undef jssc_SerialNativeInterface_POLLER_HANGUP
+#define jssc_SerialNativeInterface_POLLER_HANGUP 8L
+#undef jssc_SerialNativeInterface_POLLER_EDGE_TRIGGERED
+#define jssc_SerialNativeInterface_POLLER_EDGE_TRIGGERED 16L
 /*
  * Class:     jssc_SerialNativeInterface
  * Method:    getNativeLibraryVersion
@@ -147,6 +181,46 @@ JNIEXPORT jbyteArray JNICALL Java_jssc_SerialNativeInterface_readBytes
 JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_writeBytes
   (JNIEnv *, jobject, jlong, jbyteArray);
 
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    readBytesArray
+ * Signature: (J[BII)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesArray
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    readBytesDirect
+ * Signature: (JLjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesDirect
+  (JNIEnv *, jobject, jlong, jobject, jint, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    readBytesTimeout
+ * Signature: (J[BIIII)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesTimeout
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jint, jint, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    writeBytesArray
+ * Signature: (J[BII)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesArray
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    writeBytesDirect
+ * Signature: (JLjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesDirect
+  (JNIEnv *, jobject, jlong, jobject, jint, jint);
+
 /*
  * Class:     jssc_SerialNativeInterface
  * Method:    getBuffersBytesCount
@@ -195,6 +269,238 @@ JNIEXPORT jintArray JNICALL Java_jssc_SerialNativeInterface_getLinesStatus
 JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_sendBreak
   (JNIEnv *, jobject, jlong, jint);
 
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    getEventsState
+ * Signature: (J[I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_getEventsState
+  (JNIEnv *, jobject, jlong, jintArray);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    createPoller
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createPoller
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    pollerAdd
+ * Signature: (JJI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerAdd
+  (JNIEnv *, jobject, jlong, jlong, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    pollerModify
+ * Signature: (JJI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerModify
+  (JNIEnv *, jobject, jlong, jlong, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    pollerRemove
+ * Signature: (JJ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerRemove
+  (JNIEnv *, jobject, jlong, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    pollerWait
+ * Signature: (J[J[II)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_pollerWait
+  (JNIEnv *, jobject, jlong, jlongArray, jintArray, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    pollerWakeup
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerWakeup
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    destroyPoller
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyPoller
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    createLinesWaiter
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createLinesWaiter
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    getLinesWaiterEventHandle
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_getLinesWaiterEventHandle
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    getChangedLines
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_getChangedLines
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    destroyLinesWaiter
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyLinesWaiter
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    createBackgroundReader
+ * Signature: (JLjava/nio/ByteBuffer;)J
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createBackgroundReader
+  (JNIEnv *, jobject, jlong, jobject);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    getBackgroundReaderEventHandle
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_getBackgroundReaderEventHandle
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    waitBackgroundReader
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_waitBackgroundReader
+  (JNIEnv *, jobject, jlong, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    wakeupBackgroundReader
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_wakeupBackgroundReader
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    stopBackgroundReader
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_stopBackgroundReader
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    destroyBackgroundReader
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyBackgroundReader
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    getBaudRate
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_getBaudRate
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    setLowLatency
+ * Signature: (JZ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setLowLatency
+  (JNIEnv *, jobject, jlong, jboolean);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    readFrame
+ * Signature: (J[BIIII)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readFrame
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jint, jint, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    writeBytesVector
+ * Signature: (J[Ljava/lang/Object;[I[I)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesVector
+  (JNIEnv *, jobject, jlong, jobjectArray, jintArray, jintArray);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    isConnected
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_isConnected
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    createCanceller
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createCanceller
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    cancel
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_cancel
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    destroyCanceller
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyCanceller
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    waitPort
+ * Signature: (JJII)I
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_waitPort
+  (JNIEnv *, jobject, jlong, jlong, jint, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    readUntil
+ * Signature: (J[BIII)J
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_readUntil
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     jssc_SerialNativeInterface
+ * Method:    setEventChar
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setEventChar
+  (JNIEnv *, jobject, jlong, jint);
+
 #ifdef __cplusplus
 }
 #endif
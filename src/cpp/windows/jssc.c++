@@ -24,7 +24,9 @@
  */
 #include <jni.h>
 #include <stdlib.h>
+#include <string.h>//since 2.9.0
 #include <windows.h>
+#include <map>//since 2.9.0
 #include "../jssc_SerialNativeInterface.h"
 
 //#include <iostream>
@@ -36,6 +38,123 @@ JNIEXPORT jstring JNICALL Java_jssc_SerialNativeInterface_getNativeLibraryVersio
     return env->NewStringUTF(jSSC_NATIVE_LIB_VERSION);
 }
 
+//since 2.9.0 ->
+/*
+ * Overlapped structures of the port, they are created by openPort() and destroyed by closePort().
+ * Reads and writes are serialized by the Java code (one read and one write at a time), so every
+ * call reuses OVERLAPPED and event of its direction and doesn't allocate anything.
+ *
+ * "peeked" is the byte which was read by waitPort() while it was waiting for data (-1 if there is
+ * no such byte), all reading functions return it before data of the driver
+ */
+struct PortIo {
+    OVERLAPPED readOverlapped;
+    OVERLAPPED writeOverlapped;
+    volatile LONG peeked;
+};
+
+struct PortIoMap {
+    CRITICAL_SECTION lock;
+    std::map<HANDLE, PortIo*> ports;
+    PortIoMap() {
+        InitializeCriticalSection(&lock);
+    }
+};
+
+PortIoMap portIoMap;
+
+bool createPortIo(HANDLE hComm) {
+    PortIo *io = new PortIo();
+    io->peeked = -1;
+    io->readOverlapped.hEvent = CreateEventA(NULL, true, false, NULL);
+    io->writeOverlapped.hEvent = CreateEventA(NULL, true, false, NULL);
+    if(io->readOverlapped.hEvent == NULL || io->writeOverlapped.hEvent == NULL){
+        if(io->readOverlapped.hEvent != NULL){
+            CloseHandle(io->readOverlapped.hEvent);
+        }
+        if(io->writeOverlapped.hEvent != NULL){
+            CloseHandle(io->writeOverlapped.hEvent);
+        }
+        delete io;
+        return false;
+    }
+    EnterCriticalSection(&portIoMap.lock);
+    portIoMap.ports[hComm] = io;
+    LeaveCriticalSection(&portIoMap.lock);
+    return true;
+}
+
+void destroyPortIo(HANDLE hComm) {
+    PortIo *io = NULL;
+    EnterCriticalSection(&portIoMap.lock);
+    std::map<HANDLE, PortIo*>::iterator it = portIoMap.ports.find(hComm);
+    if(it != portIoMap.ports.end()){
+        io = it->second;
+        portIoMap.ports.erase(it);
+    }
+    LeaveCriticalSection(&portIoMap.lock);
+    if(io != NULL){
+        CloseHandle(io->readOverlapped.hEvent);
+        CloseHandle(io->writeOverlapped.hEvent);
+        delete io;
+    }
+}
+
+/*
+ * Get overlapped structures of the port. Returns NULL if port wasn't opened by openPort()
+ */
+PortIo* getPortIo(HANDLE hComm) {
+    PortIo *io = NULL;
+    EnterCriticalSection(&portIoMap.lock);
+    std::map<HANDLE, PortIo*>::iterator it = portIoMap.ports.find(hComm);
+    if(it != portIoMap.ports.end()){
+        io = it->second;
+    }
+    LeaveCriticalSection(&portIoMap.lock);
+    return io;
+}
+
+/*
+ * Get OVERLAPPED of the port for reading or writing, it's prepared for the next operation
+ * (event is reset by ReadFile()/WriteFile() itself). Returns NULL if port wasn't opened by openPort()
+ */
+OVERLAPPED* getOverlapped(HANDLE hComm, bool write) {
+    PortIo *io = getPortIo(hComm);
+    OVERLAPPED *overlapped = NULL;
+    if(io != NULL){
+        overlapped = (write ? &io->writeOverlapped : &io->readOverlapped);
+        HANDLE hEvent = overlapped->hEvent;
+        ZeroMemory(overlapped, sizeof(OVERLAPPED));
+        overlapped->hEvent = hEvent;
+    }
+    return overlapped;
+}
+
+/*
+ * Take the byte read by waitPort() into "buffer". Returns 1 if there was such byte, otherwise 0
+ */
+jint takePeeked(HANDLE hComm, jbyte *buffer) {
+    PortIo *io = getPortIo(hComm);
+    if(io == NULL || io->peeked < 0){
+        return 0;
+    }
+    LONG value = InterlockedExchange(&io->peeked, -1);
+    if(value < 0){
+        return 0;
+    }
+    buffer[0] = (jbyte)value;
+    return 1;
+}
+
+/*
+ * Count of bytes read by waitPort() and not taken yet (0 or 1)
+ */
+jint getPeekedCount(HANDLE hComm) {
+    PortIo *io = getPortIo(hComm);
+    return (io != NULL && io->peeked >= 0) ? 1 : 0;
+}
+//<- since 2.9.0
+
 /*
  * Port opening.
  *
@@ -67,6 +186,10 @@ JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_openPort(JNIEnv *env, jo
     		CloseHandle(hComm);//since 2.7.0
     		hComm = (HANDLE)jssc_SerialNativeInterface_ERR_INCORRECT_SERIAL_PORT;//(-4)Incorrect serial port
     	}
+    	else if(!createPortIo(hComm)){//since 2.9.0
+    		CloseHandle(hComm);
+    		hComm = (HANDLE)jssc_SerialNativeInterface_ERR_INCORRECT_SERIAL_PORT;
+    	}
     	delete dcb;
     }
     else {
@@ -153,6 +276,14 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_purgePort
   (JNIEnv *env, jobject object, jlong portHandle, jint flags){
     HANDLE hComm = (HANDLE)portHandle;
     DWORD dwFlags = (DWORD)flags;
+    //since 2.9.0 ->
+    if(dwFlags & PURGE_RXCLEAR){
+        PortIo *io = getPortIo(hComm);
+        if(io != NULL){
+            InterlockedExchange(&io->peeked, -1);
+        }
+    }
+    //<- since 2.9.0
     return (PurgeComm(hComm, dwFlags) ? JNI_TRUE : JNI_FALSE);
 }
 
@@ -162,7 +293,9 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_purgePort
 JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_closePort
   (JNIEnv *env, jobject object, jlong portHandle){
     HANDLE hComm = (HANDLE)portHandle;
-    return (CloseHandle(hComm) ? JNI_TRUE : JNI_FALSE);
+    jboolean returnValue = (CloseHandle(hComm) ? JNI_TRUE : JNI_FALSE);
+    destroyPortIo(hComm);//since 2.9.0
+    return returnValue;
 }
 
 /*
@@ -228,10 +361,12 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_writeBytes
     HANDLE hComm = (HANDLE)portHandle;
     DWORD lpNumberOfBytesTransferred;
     DWORD lpNumberOfBytesWritten;
-    OVERLAPPED *overlapped = new OVERLAPPED();
+    OVERLAPPED *overlapped = getOverlapped(hComm, true);//since 2.9.0
     jboolean returnValue = JNI_FALSE;
+    if(overlapped == NULL){
+        return JNI_FALSE;
+    }
     jbyte* jBuffer = env->GetByteArrayElements(buffer, JNI_FALSE);
-    overlapped->hEvent = CreateEventA(NULL, true, false, NULL);
     if(WriteFile(hComm, jBuffer, (DWORD)env->GetArrayLength(buffer), &lpNumberOfBytesWritten, overlapped)){
         returnValue = JNI_TRUE;
     }
@@ -243,8 +378,6 @@ JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_writeBytes
         }
     }
     env->ReleaseByteArrayElements(buffer, jBuffer, 0);
-    CloseHandle(overlapped->hEvent);
-    delete overlapped;
     return returnValue;
 }
 
@@ -258,25 +391,250 @@ JNIEXPORT jbyteArray JNICALL Java_jssc_SerialNativeInterface_readBytes
     HANDLE hComm = (HANDLE)portHandle;
     DWORD lpNumberOfBytesTransferred;
     DWORD lpNumberOfBytesRead;
-    OVERLAPPED *overlapped = new OVERLAPPED();
+    OVERLAPPED *overlapped = getOverlapped(hComm, false);//since 2.9.0
     jbyte lpBuffer[byteCount];
-    jbyteArray returnArray = env->NewByteArray(byteCount);
-    overlapped->hEvent = CreateEventA(NULL, true, false, NULL);
-    if(ReadFile(hComm, lpBuffer, (DWORD)byteCount, &lpNumberOfBytesRead, overlapped)){
+    jbyteArray returnArray = NULL;//since 2.9.0 (NULL is returned if reading has failed)
+    if(overlapped == NULL){
+        return NULL;
+    }
+    //since 2.9.0 ->
+    jint peeked = (byteCount > 0 ? takePeeked(hComm, lpBuffer) : 0);
+    if(peeked == byteCount){
+        returnArray = env->NewByteArray(byteCount);
+        env->SetByteArrayRegion(returnArray, 0, byteCount, lpBuffer);
+        return returnArray;
+    }
+    //<- since 2.9.0
+    if(ReadFile(hComm, lpBuffer + peeked, (DWORD)(byteCount - peeked), &lpNumberOfBytesRead, overlapped)){
+        returnArray = env->NewByteArray(byteCount);
         env->SetByteArrayRegion(returnArray, 0, byteCount, lpBuffer);
     }
     else if(GetLastError() == ERROR_IO_PENDING){
         if(WaitForSingleObject(overlapped->hEvent, INFINITE) == WAIT_OBJECT_0){
             if(GetOverlappedResult(hComm, overlapped, &lpNumberOfBytesTransferred, false)){
+                returnArray = env->NewByteArray(byteCount);
                 env->SetByteArrayRegion(returnArray, 0, byteCount, lpBuffer);
             }
         }
     }
-    CloseHandle(overlapped->hEvent);
-    delete overlapped;
     return returnArray;
 }
 
+//since 2.9.0 ->
+/*
+ * Read "byteCount" bytes from the driver into memory block (waiting is defined by timeouts of the port)
+ * Returns count of read bytes or -1 if error has occurred
+ */
+jint readDriver(HANDLE hComm, jbyte *buffer, DWORD byteCount){
+    DWORD lpNumberOfBytesRead = 0;
+    jint returnValue = -1;
+    OVERLAPPED *overlapped = getOverlapped(hComm, false);
+    if(overlapped == NULL){
+        return -1;
+    }
+    if(ReadFile(hComm, buffer, byteCount, &lpNumberOfBytesRead, overlapped)){
+        returnValue = (jint)lpNumberOfBytesRead;
+    }
+    else if(GetLastError() == ERROR_IO_PENDING){
+        if(WaitForSingleObject(overlapped->hEvent, INFINITE) == WAIT_OBJECT_0){
+            if(GetOverlappedResult(hComm, overlapped, &lpNumberOfBytesRead, false)){
+                returnValue = (jint)lpNumberOfBytesRead;
+            }
+        }
+    }
+    return returnValue;
+}
+
+/*
+ * Read "byteCount" bytes from port into memory block. If waitPort() has read a byte, it's returned
+ * first and the rest is taken only from bytes which are in input buffer now, so the call doesn't wait
+ * for data which are already received
+ * Returns count of read bytes or -1 if error has occurred
+ */
+jint readOverlapped(HANDLE hComm, jbyte *buffer, DWORD byteCount){
+    if(byteCount == 0 || takePeeked(hComm, buffer) == 0){
+        return readDriver(hComm, buffer, byteCount);
+    }
+    DWORD lpErrors;
+    COMSTAT comstat;
+    if(byteCount > 1 && ClearCommError(hComm, &lpErrors, &comstat) && comstat.cbInQue > 0){
+        jint result = readDriver(hComm, buffer + 1, (comstat.cbInQue < byteCount - 1 ? comstat.cbInQue : byteCount - 1));
+        if(result > 0){
+            return result + 1;
+        }
+    }
+    return 1;
+}
+
+/*
+ * Write "byteCount" bytes from memory block to port
+ * Returns count of written bytes or -1 if error has occurred
+ */
+jint writeOverlapped(HANDLE hComm, const jbyte *buffer, DWORD byteCount){
+    DWORD lpNumberOfBytesWritten = 0;
+    jint returnValue = -1;
+    OVERLAPPED *overlapped = getOverlapped(hComm, true);
+    if(overlapped == NULL){
+        return -1;
+    }
+    if(WriteFile(hComm, buffer, byteCount, &lpNumberOfBytesWritten, overlapped)){
+        returnValue = (jint)lpNumberOfBytesWritten;
+    }
+    else if(GetLastError() == ERROR_IO_PENDING){
+        if(WaitForSingleObject(overlapped->hEvent, INFINITE) == WAIT_OBJECT_0){
+            if(GetOverlappedResult(hComm, overlapped, &lpNumberOfBytesWritten, false)){
+                returnValue = (jint)lpNumberOfBytesWritten;
+            }
+        }
+    }
+    return returnValue;
+}
+
+/*
+ * Read all bytes from input buffer (but not more than "length"). If input buffer is
+ * empty, method blocks until the first byte will be received
+ */
+jint readAvailable(HANDLE hComm, jbyte *buffer, jint length){
+    DWORD lpErrors;
+    COMSTAT comstat;
+    jint byteCount = 1;
+    if(ClearCommError(hComm, &lpErrors, &comstat) && comstat.cbInQue > 0){
+        jint available = (jint)comstat.cbInQue + getPeekedCount(hComm);
+        byteCount = (available < length ? available : length);
+    }
+    return readOverlapped(hComm, buffer, (DWORD)byteCount);
+}
+
+/*
+ * Read data from port into byte array
+ *
+ * Overlapped operation can't use memory of Java array, so data is read through the stack buffer
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesArray
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint length){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte chunk[4096];
+    if(length <= 0){
+        return 0;
+    }
+    jint result = readAvailable(hComm, chunk, (length < (jint)sizeof(chunk) ? length : (jint)sizeof(chunk)));
+    if(result > 0){
+        env->SetByteArrayRegion(buffer, offset, result, chunk);
+        return result;
+    }
+    return -1;
+}
+
+/*
+ * Read data from port into direct buffer
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesDirect
+  (JNIEnv *env, jobject object, jlong portHandle, jobject buffer, jint position, jint length){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte *jBuffer = (jbyte*)env->GetDirectBufferAddress(buffer);
+    if(jBuffer == NULL){
+        return -1;
+    }
+    if(length <= 0){
+        return 0;
+    }
+    jint result = readAvailable(hComm, jBuffer + position, length);
+    return result > 0 ? result : -1;
+}
+
+/*
+ * Read at least "minCount" (but not more than "maxCount") bytes into byte array with timeout
+ *
+ * Waiting is performed by the driver: while this method works, read timeouts of the port are
+ * changed so ReadFile() returns as soon as any byte is received or remaining time is elapsed
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readBytesTimeout
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint minCount, jint maxCount, jint timeout){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte chunk[4096];
+    COMMTIMEOUTS originalTimeouts;
+    COMMTIMEOUTS commTimeouts;
+    if(!GetCommTimeouts(hComm, &originalTimeouts)){
+        return -1;
+    }
+    DWORD deadline = GetTickCount() + (DWORD)timeout;
+    jint readCount = 0;
+    while(readCount < maxCount){
+        jint remains = (jint)(deadline - GetTickCount());
+        if(remains < 0){
+            remains = 0;
+        }
+        commTimeouts.ReadIntervalTimeout = MAXDWORD;
+        commTimeouts.ReadTotalTimeoutMultiplier = (remains > 0 ? MAXDWORD : 0);
+        commTimeouts.ReadTotalTimeoutConstant = (DWORD)remains;
+        commTimeouts.WriteTotalTimeoutMultiplier = originalTimeouts.WriteTotalTimeoutMultiplier;
+        commTimeouts.WriteTotalTimeoutConstant = originalTimeouts.WriteTotalTimeoutConstant;
+        if(!SetCommTimeouts(hComm, &commTimeouts)){
+            if(readCount == 0){
+                readCount = -1;
+            }
+            break;
+        }
+        jint chunkSize = maxCount - readCount;
+        if(chunkSize > (jint)sizeof(chunk)){
+            chunkSize = sizeof(chunk);
+        }
+        jint result = readOverlapped(hComm, chunk, (DWORD)chunkSize);
+        if(result < 0){
+            if(readCount == 0){
+                readCount = -1;
+            }
+            break;
+        }
+        if(result > 0){
+            env->SetByteArrayRegion(buffer, offset + readCount, result, chunk);
+            readCount += result;
+        }
+        if(readCount >= minCount || remains == 0){
+            break;
+        }
+    }
+    SetCommTimeouts(hComm, &originalTimeouts);
+    return readCount;
+}
+
+/*
+ * Write part of byte array to port
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesArray
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint length){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte chunk[4096];
+    jint written = 0;
+    while(written < length){
+        jint chunkSize = length - written;
+        if(chunkSize > (jint)sizeof(chunk)){
+            chunkSize = sizeof(chunk);
+        }
+        env->GetByteArrayRegion(buffer, offset + written, chunkSize, chunk);
+        if(writeOverlapped(hComm, chunk, (DWORD)chunkSize) != chunkSize){
+            return -1;
+        }
+        written += chunkSize;
+    }
+    return written;
+}
+
+/*
+ * Write content of direct buffer to port
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesDirect
+  (JNIEnv *env, jobject object, jlong portHandle, jobject buffer, jint position, jint length){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte *jBuffer = (jbyte*)env->GetDirectBufferAddress(buffer);
+    if(jBuffer == NULL){
+        return -1;
+    }
+    jint result = writeOverlapped(hComm, jBuffer + position, (DWORD)length);
+    return result == length ? result : -1;
+}
+//<- since 2.9.0
+
 /*
  * Get bytes count in serial port buffers (Input and Output)
  */
@@ -290,7 +648,7 @@ JNIEXPORT jintArray JNICALL Java_jssc_SerialNativeInterface_getBuffersBytesCount
 	DWORD lpErrors;
 	COMSTAT *comstat = new COMSTAT();
 	if(ClearCommError(hComm, &lpErrors, comstat)){
-		returnValues[0] = (jint)comstat->cbInQue;
+		returnValues[0] = (jint)comstat->cbInQue + getPeekedCount(hComm);//since 2.9.0 (byte read by waitPort() is added)
 		returnValues[1] = (jint)comstat->cbOutQue;
 	}
 	else {
@@ -513,7 +871,7 @@ JNIEXPORT jobjectArray JNICALL Java_jssc_SerialNativeInterface_waitEvents
             COMSTAT *comstat = new COMSTAT();
             if(ClearCommError(hComm, &lpErrors, comstat)){
                 successClearCommError = true;
-                bytesCountIn = (jint)comstat->cbInQue;
+                bytesCountIn = (jint)comstat->cbInQue + getPeekedCount(hComm);//since 2.9.0
                 bytesCountOut = (jint)comstat->cbOutQue;
                 communicationsErrors = (jint)lpErrors;
             }
@@ -691,3 +1049,414 @@ JNIEXPORT jintArray JNICALL Java_jssc_SerialNativeInterface_getLinesStatus
     env->SetIntArrayRegion(returnArray, 0, 4, returnValues);
     return returnArray;
 }
+
+//since 2.9.0 ->
+/*
+ * Fill caller-owned array with state of port. Interrupts counters are not available in Windows
+ * (WaitCommEvent() reports these events itself), so they are set to -1
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_getEventsState
+  (JNIEnv *env, jobject object, jlong portHandle, jintArray state){
+    HANDLE hComm = (HANDLE)portHandle;
+    jint values[jssc_SerialNativeInterface_STATE_SIZE];
+    for(jint i = 0; i < jssc_SerialNativeInterface_STATE_SIZE; i++){
+        values[i] = (i < jssc_SerialNativeInterface_STATE_INTERRUPT_BREAK ? 0 : -1);
+    }
+    DWORD lpErrors;
+    COMSTAT comstat;
+    if(!ClearCommError(hComm, &lpErrors, &comstat)){
+        return JNI_FALSE;
+    }
+    values[jssc_SerialNativeInterface_STATE_INPUT_BYTES] = (jint)comstat.cbInQue;
+    values[jssc_SerialNativeInterface_STATE_OUTPUT_BYTES] = (jint)comstat.cbOutQue;
+    DWORD lpModemStat;
+    if(GetCommModemStatus(hComm, &lpModemStat)){
+        values[jssc_SerialNativeInterface_STATE_CTS] = ((MS_CTS_ON & lpModemStat) == MS_CTS_ON) ? 1 : 0;
+        values[jssc_SerialNativeInterface_STATE_DSR] = ((MS_DSR_ON & lpModemStat) == MS_DSR_ON) ? 1 : 0;
+        values[jssc_SerialNativeInterface_STATE_RING] = ((MS_RING_ON & lpModemStat) == MS_RING_ON) ? 1 : 0;
+        values[jssc_SerialNativeInterface_STATE_RLSD] = ((MS_RLSD_ON & lpModemStat) == MS_RLSD_ON) ? 1 : 0;
+    }
+    env->SetIntArrayRegion(state, 0, jssc_SerialNativeInterface_STATE_SIZE, values);
+    return JNI_TRUE;
+}
+
+/*
+ * Poller is not supported in Windows (events are received by WaitCommEvent() in EventThread)
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createPoller
+  (JNIEnv *env, jobject object){
+    return -1;
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerAdd
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlong portHandle, jint events){
+    return JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerModify
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlong portHandle, jint events){
+    return JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerRemove
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlong portHandle){
+    return JNI_FALSE;
+}
+
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_pollerWait
+  (JNIEnv *env, jobject object, jlong pollerHandle, jlongArray handles, jintArray events, jint timeout){
+    return -1;
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_pollerWakeup
+  (JNIEnv *env, jobject object, jlong pollerHandle){
+    return JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyPoller
+  (JNIEnv *env, jobject object, jlong pollerHandle){
+}
+
+/*
+ * Lines waiter is not needed in Windows (WaitCommEvent() reports changes of lines)
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createLinesWaiter
+  (JNIEnv *env, jobject object, jlong portHandle){
+    return -1;
+}
+
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_getLinesWaiterEventHandle
+  (JNIEnv *env, jobject object, jlong waiterHandle){
+    return -1;
+}
+
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_getChangedLines
+  (JNIEnv *env, jobject object, jlong waiterHandle){
+    return -1;
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyLinesWaiter
+  (JNIEnv *env, jobject object, jlong waiterHandle){
+}
+
+/*
+ * Background reader isn't implemented in Windows
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createBackgroundReader
+  (JNIEnv *env, jobject object, jlong portHandle, jobject ring){
+    return -1;
+}
+
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_getBackgroundReaderEventHandle
+  (JNIEnv *env, jobject object, jlong readerHandle){
+    return -1;
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_waitBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle, jint timeout){
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_wakeupBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle){
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_stopBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle){
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyBackgroundReader
+  (JNIEnv *env, jobject object, jlong readerHandle){
+}
+
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_getBaudRate
+  (JNIEnv *env, jobject object, jlong portHandle){
+    HANDLE hComm = (HANDLE)portHandle;
+    DCB dcb;
+    dcb.DCBlength = sizeof(DCB);
+    if(!GetCommState(hComm, &dcb)){
+        return -1;
+    }
+    return (jint)dcb.BaudRate;
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setLowLatency
+  (JNIEnv *env, jobject object, jlong portHandle, jboolean enabled){
+    return JNI_FALSE;
+}
+
+/*
+ * Read one frame, which is finished by silence on the line
+ *
+ * Waiting is performed by the driver: the first ReadFile() waits for data up to "timeout", each next
+ * returns all received bytes at once or waits up to "gap" for the next byte. Frame is finished when
+ * "maxSize" bytes are received or nothing is received during "gap"
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_readFrame
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint maxSize, jint gap, jint timeout){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte chunk[4096];
+    COMMTIMEOUTS originalTimeouts;
+    COMMTIMEOUTS commTimeouts;
+    if(maxSize <= 0){
+        return 0;
+    }
+    if(!GetCommTimeouts(hComm, &originalTimeouts)){
+        return -1;
+    }
+    commTimeouts.WriteTotalTimeoutMultiplier = originalTimeouts.WriteTotalTimeoutMultiplier;
+    commTimeouts.WriteTotalTimeoutConstant = originalTimeouts.WriteTotalTimeoutConstant;
+    jint readCount = 0;
+    jint wait = timeout;
+    while(readCount < maxSize){
+        if(wait < 0){
+            //Infinite waiting for the first byte
+            commTimeouts.ReadIntervalTimeout = 0;
+            commTimeouts.ReadTotalTimeoutMultiplier = 0;
+            commTimeouts.ReadTotalTimeoutConstant = 0;
+        }
+        else {
+            commTimeouts.ReadIntervalTimeout = MAXDWORD;
+            commTimeouts.ReadTotalTimeoutMultiplier = (wait > 0 ? MAXDWORD : 0);
+            commTimeouts.ReadTotalTimeoutConstant = (DWORD)wait;
+        }
+        if(!SetCommTimeouts(hComm, &commTimeouts)){
+            readCount = -1;
+            break;
+        }
+        jint chunkSize = (wait < 0 ? 1 : maxSize - readCount);
+        if(chunkSize > (jint)sizeof(chunk)){
+            chunkSize = sizeof(chunk);
+        }
+        jint result = readOverlapped(hComm, chunk, (DWORD)chunkSize);
+        if(result < 0){
+            if(readCount == 0){
+                readCount = -1;
+            }
+            break;
+        }
+        if(result == 0){
+            break;
+        }
+        env->SetByteArrayRegion(buffer, offset + readCount, result, chunk);
+        readCount += result;
+        wait = gap;
+    }
+    SetCommTimeouts(hComm, &originalTimeouts);
+    return readCount;
+}
+
+/*
+ * Gather writing of several buffers (byte[] or direct ByteBuffer). There is no writev() for
+ * comm devices, so parts are collected in the stack buffer and written by one WriteFile() call
+ * (few calls if data doesn't fit into the buffer)
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_writeBytesVector
+  (JNIEnv *env, jobject object, jlong portHandle, jobjectArray buffers, jintArray offsets, jintArray lengths){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte chunk[4096];
+    jint chunkUsed = 0;
+    jint written = 0;
+    jsize count = env->GetArrayLength(buffers);
+    jint *jOffsets = env->GetIntArrayElements(offsets, NULL);
+    jint *jLengths = env->GetIntArrayElements(lengths, NULL);
+    for(jsize i = 0; i < count && written >= 0; i++){
+        jobject buffer = env->GetObjectArrayElement(buffers, i);
+        jbyte *address = (jbyte*)env->GetDirectBufferAddress(buffer);
+        jint offset = jOffsets[i];
+        jint length = jLengths[i];
+        while(length > 0){
+            jint partSize = (jint)sizeof(chunk) - chunkUsed;
+            if(partSize > length){
+                partSize = length;
+            }
+            if(address != NULL){
+                CopyMemory(chunk + chunkUsed, address + offset, (SIZE_T)partSize);
+            }
+            else {
+                env->GetByteArrayRegion((jbyteArray)buffer, offset, partSize, chunk + chunkUsed);
+            }
+            chunkUsed += partSize;
+            offset += partSize;
+            length -= partSize;
+            if(chunkUsed == (jint)sizeof(chunk)){
+                if(writeOverlapped(hComm, chunk, (DWORD)chunkUsed) != chunkUsed){
+                    written = -1;
+                    break;
+                }
+                written += chunkUsed;
+                chunkUsed = 0;
+            }
+        }
+        env->DeleteLocalRef(buffer);
+    }
+    if(written >= 0 && chunkUsed > 0){
+        written = (writeOverlapped(hComm, chunk, (DWORD)chunkUsed) == chunkUsed ? written + chunkUsed : -1);
+    }
+    env->ReleaseIntArrayElements(offsets, jOffsets, JNI_ABORT);
+    env->ReleaseIntArrayElements(lengths, jLengths, JNI_ABORT);
+    return written;
+}
+
+/*
+ * Check that port is still connected. After removal of the device all functions
+ * of comm handle fail, GetCommState() is used because it doesn't change the state
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_isConnected
+  (JNIEnv *env, jobject object, jlong portHandle){
+    HANDLE hComm = (HANDLE)portHandle;
+    DCB dcb;
+    dcb.DCBlength = sizeof(DCB);
+    return GetCommState(hComm, &dcb) ? JNI_TRUE : JNI_FALSE;
+}
+
+/*
+ * Canceller is manual-reset event, which wakes up threads waiting in waitPort()
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_createCanceller
+  (JNIEnv *env, jobject object){
+    HANDLE hEvent = CreateEventA(NULL, TRUE, FALSE, NULL);
+    return hEvent != NULL ? (jlong)hEvent : -1;
+}
+
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_cancel
+  (JNIEnv *env, jobject object, jlong canceller){
+    return SetEvent((HANDLE)canceller) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL Java_jssc_SerialNativeInterface_destroyCanceller
+  (JNIEnv *env, jobject object, jlong canceller){
+    CloseHandle((HANDLE)canceller);
+}
+
+/*
+ * Waiting until the port is ready, canceller is signaled or timeout is elapsed.
+ * WaitCommEvent() can't be used here: only one wait for events may be pending on the port and it belongs
+ * to the event thread. So the thread waits for data by overlapped ReadFile() of one byte, which completes
+ * as soon as any byte is received, and for the canceller in the same WaitForMultipleObjects() call.
+ * The received byte is kept in PortIo and returned first by the next read.
+ * Writing is always ready (it's overlapped and the driver accepts data at once)
+ */
+JNIEXPORT jint JNICALL Java_jssc_SerialNativeInterface_waitPort
+  (JNIEnv *env, jobject object, jlong portHandle, jlong canceller, jint events, jint timeout){
+    HANDLE hComm = (HANDLE)portHandle;
+    HANDLE hCancel = (canceller == -1 ? NULL : (HANDLE)canceller);
+    jint ready = 0;
+    if(events & jssc_SerialNativeInterface_POLLER_OUT){
+        ready |= jssc_SerialNativeInterface_POLLER_OUT;
+    }
+    if(!(events & jssc_SerialNativeInterface_POLLER_IN)){
+        return ready;
+    }
+    PortIo *io = getPortIo(hComm);
+    DWORD errors;
+    COMSTAT comstat;
+    if(io == NULL || !ClearCommError(hComm, &errors, &comstat)){
+        return -1;
+    }
+    if(io->peeked >= 0 || comstat.cbInQue > 0){
+        return ready | jssc_SerialNativeInterface_POLLER_IN;
+    }
+    if(ready != 0 || timeout == 0 || (hCancel != NULL && WaitForSingleObject(hCancel, 0) == WAIT_OBJECT_0)){
+        return ready;
+    }
+    COMMTIMEOUTS originalTimeouts;
+    COMMTIMEOUTS commTimeouts;
+    if(!GetCommTimeouts(hComm, &originalTimeouts)){
+        return -1;
+    }
+    //ReadFile() returns as soon as the first byte is received or after "timeout" without data
+    commTimeouts.ReadIntervalTimeout = MAXDWORD;
+    commTimeouts.ReadTotalTimeoutMultiplier = MAXDWORD;
+    commTimeouts.ReadTotalTimeoutConstant = (timeout < 0 ? MAXDWORD - 1 : (DWORD)timeout);
+    commTimeouts.WriteTotalTimeoutMultiplier = originalTimeouts.WriteTotalTimeoutMultiplier;
+    commTimeouts.WriteTotalTimeoutConstant = originalTimeouts.WriteTotalTimeoutConstant;
+    if(!SetCommTimeouts(hComm, &commTimeouts)){
+        return -1;
+    }
+    OVERLAPPED *overlapped = getOverlapped(hComm, false);
+    jbyte value = 0;
+    DWORD lpNumberOfBytesRead = 0;
+    jint returnValue = -1;
+    if(ReadFile(hComm, &value, 1, &lpNumberOfBytesRead, overlapped)){
+        returnValue = 0;
+    }
+    else if(GetLastError() == ERROR_IO_PENDING){
+        HANDLE handles[2] = {overlapped->hEvent, hCancel};
+        if(WaitForMultipleObjects((hCancel != NULL ? 2 : 1), handles, FALSE, INFINITE) != WAIT_OBJECT_0){
+            //Canceller is signaled. ReadFile() is issued by this thread, so CancelIo() aborts only it
+            CancelIo(hComm);
+        }
+        if(GetOverlappedResult(hComm, overlapped, &lpNumberOfBytesRead, TRUE)){
+            returnValue = 0;
+        }
+        else if(GetLastError() == ERROR_OPERATION_ABORTED){
+            lpNumberOfBytesRead = 0;
+            returnValue = 0;
+        }
+    }
+    SetCommTimeouts(hComm, &originalTimeouts);
+    if(returnValue == 0 && lpNumberOfBytesRead == 1){
+        //The byte could be received even after cancellation, it isn't lost in any case
+        InterlockedExchange(&io->peeked, (LONG)(unsigned char)value);
+        returnValue = jssc_SerialNativeInterface_POLLER_IN;
+    }
+    return returnValue;
+}
+
+/*
+ * Read bytes which are in input buffer now (but not more than "length") and search the delimiter
+ * among them, so a whole line is delivered by one ReadFile() and one copy. The thread doesn't wait
+ * for data here, it's awaited before the call
+ *
+ * Returns count of read bytes in low 32 bits and length of the line in high 32 bits (0 if delimiter
+ * isn't found) or -1 if error has occurred
+ */
+JNIEXPORT jlong JNICALL Java_jssc_SerialNativeInterface_readUntil
+  (JNIEnv *env, jobject object, jlong portHandle, jbyteArray buffer, jint offset, jint length, jint delimiter){
+    HANDLE hComm = (HANDLE)portHandle;
+    jbyte chunk[4096];
+    DWORD lpErrors;
+    COMSTAT comstat;
+    if(length <= 0){
+        return 0;
+    }
+    if(!ClearCommError(hComm, &lpErrors, &comstat)){
+        return -1;
+    }
+    jint available = (jint)comstat.cbInQue + getPeekedCount(hComm);
+    if(available == 0){
+        return 0;
+    }
+    jint byteCount = (available < length ? available : length);
+    if(byteCount > (jint)sizeof(chunk)){
+        byteCount = sizeof(chunk);
+    }
+    jint result = readOverlapped(hComm, chunk, (DWORD)byteCount);
+    if(result <= 0){
+        return -1;
+    }
+    jlong lineLength = 0;
+    jbyte *found = (jbyte*)memchr(chunk, delimiter, (size_t)result);
+    if(found != NULL){
+        lineLength = (jlong)(found - chunk) + 1;
+    }
+    env->SetByteArrayRegion(buffer, offset, result, chunk);
+    return (lineLength << 32) | (jlong)result;
+}
+
+/*
+ * Set the character which fires EV_RXFLAG event
+ */
+JNIEXPORT jboolean JNICALL Java_jssc_SerialNativeInterface_setEventChar
+  (JNIEnv *env, jobject object, jlong portHandle, jint eventChar){
+    HANDLE hComm = (HANDLE)portHandle;
+    DCB dcb;
+    dcb.DCBlength = sizeof(DCB);
+    if(!GetCommState(hComm, &dcb)){
+        return JNI_FALSE;
+    }
+    dcb.EvtChar = (char)eventChar;
+    return SetCommState(hComm, &dcb) ? JNI_TRUE : JNI_FALSE;
+}
+
+//<- since 2.9.0
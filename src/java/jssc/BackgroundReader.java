@@ -0,0 +1,409 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Consumer side of native background reader. The native thread reads data from the port into
+ * the ring in direct buffer, this class takes it from there by plain memory access. Positions of the producer
+ * and the consumer are kept in the header of the same buffer, so the native code is called only when
+ * one of the sides has to wait for the other. A burst of data is read without system calls and the kernel
+ * buffer is emptied even if Java threads are paused
+ *
+ * @since 2.9.0
+ */
+class BackgroundReader {
+
+    private static final int HEADER_SIZE = SerialNativeInterface.BACKGROUND_READER_HEADER_SIZE;
+
+    private final SerialNativeInterface serialInterface;
+    private final ByteBuffer header;//positions and flags shared with native thread
+    private final ByteBuffer view;//keeps memory of the ring, which is used by native thread
+    private final ByteBuffer scanView;//for search without locking, its limit is never changed
+    private final int capacity;
+    private final Object readLock = new Object();
+    private final Object handleLock = new Object();
+    private long handle;
+    private boolean stopped = false;
+
+    private volatile long readPosition = 0;
+    private long writePosition = 0;
+    private volatile int barrier;//see fence()
+
+    private BackgroundReader(SerialNativeInterface serialInterface, ByteBuffer buffer, long handle) {
+        this.serialInterface = serialInterface;
+        this.header = buffer.duplicate().order(ByteOrder.nativeOrder());
+        buffer.position(HEADER_SIZE);
+        ByteBuffer ring = buffer.slice();
+        this.view = ring.duplicate();
+        this.scanView = ring.duplicate();
+        this.capacity = ring.capacity();
+        this.handle = handle;
+    }
+
+    /**
+     * Start background reader for opened port
+     *
+     * @return reader or <b>null</b> if it's not supported in current OS
+     */
+    static BackgroundReader start(SerialNativeInterface serialInterface, long portHandle, int bufferSize) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + bufferSize);
+        long handle = serialInterface.createBackgroundReader(portHandle, buffer);
+        if(handle == -1){
+            return null;
+        }
+        return new BackgroundReader(serialInterface, buffer, handle);
+    }
+
+    /**
+     * Get size of the ring
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get count of bytes in the ring. Doesn't block if other thread is waiting for data
+     */
+    int getBytesCount() {
+        return (int)(loadWritePosition() - readPosition);
+    }
+
+    /**
+     * Wait until the ring will be not empty (timeout < 0 means infinite waiting)
+     *
+     * @return Count of available bytes, 0 if timeout is elapsed or -1 if the reader is stopped and the ring is empty
+     */
+    int await(int timeout) {
+        synchronized(readLock){
+            return waitBytes(timeout);
+        }
+    }
+
+    /**
+     * Read bytes into array. The thread waits until at least one byte will be available
+     * (timeout < 0 means infinite waiting)
+     *
+     * @return Count of read bytes, 0 if timeout is elapsed or -1 if the reader is stopped and the ring is empty
+     */
+    int read(byte[] buffer, int offset, int length, int timeout) {
+        if(length == 0){
+            return 0;
+        }
+        synchronized(readLock){
+            int byteCount = waitBytes(timeout);
+            if(byteCount <= 0){
+                return byteCount;
+            }
+            byteCount = Math.min(byteCount, length);
+            int index = (int)(readPosition % capacity);
+            int firstPart = Math.min(byteCount, capacity - index);
+            view.clear();
+            view.position(index);
+            view.get(buffer, offset, firstPart);
+            if(firstPart < byteCount){
+                view.clear();
+                view.get(buffer, offset + firstPart, byteCount - firstPart);
+            }
+            consume(byteCount);
+            return byteCount;
+        }
+    }
+
+    /**
+     * Read bytes into remaining space of buffer, position of buffer is advanced by count of read bytes
+     *
+     * @return the same as {@link #read(byte[], int, int, int)}
+     */
+    int read(ByteBuffer buffer, int timeout) {
+        if(!buffer.hasRemaining()){
+            return 0;
+        }
+        synchronized(readLock){
+            int byteCount = waitBytes(timeout);
+            if(byteCount <= 0){
+                return byteCount;
+            }
+            byteCount = Math.min(byteCount, buffer.remaining());
+            int index = (int)(readPosition % capacity);
+            int firstPart = Math.min(byteCount, capacity - index);
+            view.clear();
+            view.position(index);
+            view.limit(index + firstPart);
+            buffer.put(view);
+            if(firstPart < byteCount){
+                view.clear();
+                view.limit(byteCount - firstPart);
+                buffer.put(view);
+            }
+            consume(byteCount);
+            return byteCount;
+        }
+    }
+
+    /**
+     * Read from <b>minCount</b> to <b>maxCount</b> bytes, the same as
+     * {@link SerialNativeInterface#readBytesTimeout(long, byte[], int, int, int, int)}
+     *
+     * @return Count of read bytes (less than "minCount" if timeout is elapsed) or -1 if the reader is stopped
+     */
+    int readAtLeast(byte[] buffer, int offset, int minCount, int maxCount, int timeout) {
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        int readCount = 0;
+        synchronized(readLock){
+            while(readCount < maxCount){
+                int remains = 0;
+                if(readCount < minCount){
+                    remains = (int)((deadline - System.nanoTime()) / 1000000L);
+                    if(remains <= 0){
+                        remains = 0;
+                    }
+                }
+                int result = read(buffer, offset + readCount, maxCount - readCount, remains);
+                if(result < 0){
+                    return -1;
+                }
+                if(result == 0){
+                    break;
+                }
+                readCount += result;
+            }
+        }
+        return readCount;
+    }
+
+    /**
+     * Read one frame, the same as {@link SerialNativeInterface#readFrame(long, byte[], int, int, int, int)}
+     *
+     * @return Count of read bytes, 0 if timeout is elapsed or -1 if the reader is stopped and the ring is empty
+     */
+    int readFrame(byte[] buffer, int offset, int maxSize, int gap, int timeout) {
+        synchronized(readLock){
+            int readCount = read(buffer, offset, maxSize, timeout);
+            while(readCount > 0 && readCount < maxSize){
+                int result = read(buffer, offset + readCount, maxSize - readCount, gap);
+                if(result <= 0){
+                    break;
+                }
+                readCount += result;
+            }
+            return readCount;
+        }
+    }
+
+    /**
+     * Read bytes up to and including the delimiter (but not more than <b>length</b>). The delimiter is searched
+     * in the ring, so bytes after it are left there and only the line is copied. The thread waits until at least
+     * one byte will be available (timeout < 0 means infinite waiting)
+     *
+     * @return Count of read bytes (the last one is the delimiter if it was found), 0 if timeout is elapsed
+     * or -1 if the reader is stopped and the ring is empty
+     */
+    int readUntil(byte[] buffer, int offset, int length, byte delimiter, int timeout) {
+        if(length == 0){
+            return 0;
+        }
+        synchronized(readLock){
+            int byteCount = waitBytes(timeout);
+            if(byteCount <= 0){
+                return byteCount;
+            }
+            byteCount = Math.min(byteCount, length);
+            int index = (int)(readPosition % capacity);
+            view.clear();
+            for(int i = 0; i < byteCount; i++){
+                if(view.get(index) == delimiter){
+                    byteCount = i + 1;
+                    break;
+                }
+                if(++index == capacity){
+                    index = 0;
+                }
+            }
+            return read(buffer, offset, byteCount, 0);
+        }
+    }
+
+    /**
+     * Get position of the producer (count of bytes received since the start).
+     * Doesn't block if other thread is waiting for data
+     */
+    long getReceivedPosition() {
+        return loadWritePosition();
+    }
+
+    /**
+     * Request notification about new data: handle of the reader (see {@link #addToPoller(long)}) will be signaled
+     * when the producer moves its position or stops. The request is made before the position is read, so data
+     * received after the returned position is never missed
+     *
+     * @return Position of the producer
+     */
+    long requestEvent() {
+        header.putInt(SerialNativeInterface.BACKGROUND_READER_EVENT_REQUESTED, 1);
+        fence();
+        return loadWritePosition();
+    }
+
+    /**
+     * Add event handle of the reader to the poller, it's removed automatically when the reader is stopped
+     *
+     * @return false if the reader is stopped already or handle can't be added
+     */
+    boolean addToPoller(long poller) {
+        synchronized(handleLock){
+            if(handle == -1 || stopped){
+                return false;
+            }
+            return serialInterface.pollerAdd(poller, serialInterface.getBackgroundReaderEventHandle(handle),
+                                             SerialNativeInterface.POLLER_IN | SerialNativeInterface.POLLER_EDGE_TRIGGERED);
+        }
+    }
+
+    /**
+     * Check if the value is among bytes between positions <b>from</b> and <b>to</b>, which are not consumed yet.
+     * The ring isn't locked, so bytes consumed by other thread during the search may be missed
+     */
+    boolean contains(byte value, long from, long to) {
+        long position = Math.max(from, readPosition);
+        int index = (int)(position % capacity);
+        for(; position < to; position++){
+            if(scanView.get(index) == value){
+                return true;
+            }
+            if(++index == capacity){
+                index = 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop all bytes, which are in the ring now
+     */
+    void clear() {
+        synchronized(readLock){
+            int byteCount = waitBytes(0);
+            if(byteCount > 0){
+                consume(byteCount);
+            }
+        }
+    }
+
+    /**
+     * Stop native thread and release resources. Data which is left in the ring is returned
+     */
+    byte[] stop() {
+        synchronized(handleLock){
+            if(handle != -1 && !stopped){
+                serialInterface.stopBackgroundReader(handle);
+                stopped = true;
+            }
+        }
+        byte[] rest;
+        synchronized(readLock){
+            rest = new byte[getBytesCount()];
+            read(rest, 0, rest.length, 0);
+            synchronized(handleLock){
+                if(handle != -1){
+                    serialInterface.destroyBackgroundReader(handle);
+                    handle = -1;
+                }
+            }
+        }
+        return rest;
+    }
+
+    /**
+     * Wait until the ring will be not empty
+     *
+     * @return Count of available bytes, 0 if timeout is elapsed or -1 if the reader is stopped
+     */
+    private int waitBytes(int timeout) {
+        writePosition = loadWritePosition();
+        if(writePosition != readPosition){
+            return (int)(writePosition - readPosition);
+        }
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        while(!isProducerStopped()){
+            if(timeout == 0){
+                return 0;
+            }
+            serialInterface.waitBackgroundReader(handle, timeout);
+            writePosition = loadWritePosition();
+            if(writePosition != readPosition){
+                return (int)(writePosition - readPosition);
+            }
+            if(timeout > 0){
+                timeout = (int)((deadline - System.nanoTime()) / 1000000L);
+                if(timeout <= 0){
+                    return 0;
+                }
+            }
+        }
+        //The producer sets the flag after its last move, so the position is final now
+        writePosition = loadWritePosition();
+        return writePosition != readPosition ? (int)(writePosition - readPosition) : -1;
+    }
+
+    /**
+     * Advance position of the consumer and publish it, the producer is woken up if it waits for free space
+     */
+    private void consume(int byteCount) {
+        readPosition += byteCount;
+        fence();//Bytes are copied before their space is given to the producer
+        header.putLong(SerialNativeInterface.BACKGROUND_READER_READ_POSITION, readPosition);
+        fence();
+        if(header.getInt(SerialNativeInterface.BACKGROUND_READER_PRODUCER_WAITING) != 0 && handle != -1){
+            serialInterface.wakeupBackgroundReader(handle);
+        }
+    }
+
+    private long loadWritePosition() {
+        long position = header.getLong(SerialNativeInterface.BACKGROUND_READER_WRITE_POSITION);
+        fence();//Bytes up to the position are read after the position
+        return position;
+    }
+
+    private boolean isProducerStopped() {
+        if(handle == -1){
+            return true;
+        }
+        boolean result = (header.getInt(SerialNativeInterface.BACKGROUND_READER_STOPPED) != 0);
+        fence();
+        return result;
+    }
+
+    /**
+     * Full memory barrier for accesses to the buffer shared with native thread. Java 6 has no fences,
+     * but volatile write followed by volatile read isn't reordered with any memory access around them
+     */
+    private int fence() {
+        barrier = 0;
+        return barrier;
+    }
+}
@@ -0,0 +1,131 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+/**
+ * Encoding of binary values in byte arrays for {@link SerialPortBinaryReader}, {@link SerialPortBinaryWriter}
+ * and int array methods of ports. This implementation assembles values by shifts, it works in Java 6.
+ * In Java 9+ {@link #getInstance()} returns implementation based on <b>VarHandle</b> byte array views
+ * (<b>jssc.VarHandleBinaryCodec</b>), which reads and writes a whole value by one memory access
+ *
+ * @since 2.9.0
+ */
+class BinaryCodec {
+
+    private static final String VAR_HANDLE_CLASS_NAME = "jssc.VarHandleBinaryCodec";
+
+    private static final BinaryCodec instance = createInstance();
+
+    BinaryCodec() {
+    }
+
+    /**
+     * Get the fastest implementation supported by current Java
+     */
+    static BinaryCodec getInstance() {
+        return instance;
+    }
+
+    private static BinaryCodec createInstance() {
+        try {
+            return (BinaryCodec)Class.forName(VAR_HANDLE_CLASS_NAME).getDeclaredConstructor().newInstance();
+        }
+        catch (Throwable ex) {
+            //Java 6-8 (class isn't found or it's compiled for newer version)
+            return new BinaryCodec();
+        }
+    }
+
+    short getShort(byte[] buffer, int index, boolean bigEndian) {
+        if(bigEndian){
+            return (short)((buffer[index] << 8) | (buffer[index + 1] & 0xFF));
+        }
+        return (short)((buffer[index + 1] << 8) | (buffer[index] & 0xFF));
+    }
+
+    int getInt(byte[] buffer, int index, boolean bigEndian) {
+        if(bigEndian){
+            return (buffer[index] << 24) | ((buffer[index + 1] & 0xFF) << 16) |
+                   ((buffer[index + 2] & 0xFF) << 8) | (buffer[index + 3] & 0xFF);
+        }
+        return (buffer[index + 3] << 24) | ((buffer[index + 2] & 0xFF) << 16) |
+               ((buffer[index + 1] & 0xFF) << 8) | (buffer[index] & 0xFF);
+    }
+
+    long getLong(byte[] buffer, int index, boolean bigEndian) {
+        long high = getInt(buffer, bigEndian ? index : index + 4, bigEndian);
+        long low = getInt(buffer, bigEndian ? index + 4 : index, bigEndian);
+        return (high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    void putShort(byte[] buffer, int index, short value, boolean bigEndian) {
+        if(bigEndian){
+            buffer[index] = (byte)(value >> 8);
+            buffer[index + 1] = (byte)value;
+        }
+        else {
+            buffer[index] = (byte)value;
+            buffer[index + 1] = (byte)(value >> 8);
+        }
+    }
+
+    void putInt(byte[] buffer, int index, int value, boolean bigEndian) {
+        if(bigEndian){
+            buffer[index] = (byte)(value >> 24);
+            buffer[index + 1] = (byte)(value >> 16);
+            buffer[index + 2] = (byte)(value >> 8);
+            buffer[index + 3] = (byte)value;
+        }
+        else {
+            buffer[index] = (byte)value;
+            buffer[index + 1] = (byte)(value >> 8);
+            buffer[index + 2] = (byte)(value >> 16);
+            buffer[index + 3] = (byte)(value >> 24);
+        }
+    }
+
+    void putLong(byte[] buffer, int index, long value, boolean bigEndian) {
+        putInt(buffer, bigEndian ? index : index + 4, (int)(value >> 32), bigEndian);
+        putInt(buffer, bigEndian ? index + 4 : index, (int)value, bigEndian);
+    }
+
+    /**
+     * Convert bytes to unsigned values (0-255)
+     */
+    void getUnsignedBytes(byte[] src, int srcIndex, int[] dst, int dstIndex, int length) {
+        for(int i = 0; i < length; i++){
+            dst[dstIndex + i] = src[srcIndex + i] & 0xFF;
+        }
+    }
+
+    /**
+     * Convert low 8 bits of values to bytes
+     */
+    void putBytes(int[] src, int srcIndex, byte[] dst, int dstIndex, int length) {
+        for(int i = 0; i < length; i++){
+            dst[dstIndex + i] = (byte)src[srcIndex + i];
+        }
+    }
+}
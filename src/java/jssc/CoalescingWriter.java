@@ -0,0 +1,383 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINER;
+
+/**
+ * Writer which collects small writes into reusable direct buffer and writes them to the port by one call.
+ * Collected bytes are written when their count reaches <b>flush threshold</b>, when {@link #flush()}
+ * is called or when <b>flush delay</b> is elapsed after the first byte of the batch was collected
+ * (delay is kept by the timer thread of the writer, it's started only if delay is set).
+ * Writes which are not less than threshold are passed to the port directly after the collected bytes.
+ * Statistics of batches show how many writes were coalesced.
+ * <br>Writer may be used by several threads, bytes of every call are not mixed with bytes of other calls.
+ * Error of the timer flush is thrown by the next call
+ *
+ * @since 2.9.0
+ */
+public class CoalescingWriter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private Logger logger = Logger.getLogger("CoalescingWriter");
+
+    private final IExtendedSerialPort port;
+    private final int flushThreshold;
+    private final long flushDelayNanos;
+    //Collected bytes (in write mode)
+    private final ByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchStarted = lock.newCondition();
+    private Thread timer;
+    private long batchDeadline;
+    private SerialPortException timerFailure;
+    private boolean closed = false;
+
+    //Statistics
+    private long batchCount = 0;
+    private long batchBytes = 0;
+    private int maxBatchSize = 0;
+    private long writeCount = 0;
+
+    /**
+     * Create writer with 4096 bytes buffer, which is flushed when it's full or by explicit flush only
+     *
+     * @param port opened port
+     */
+    public CoalescingWriter(IExtendedSerialPort port) {
+        this(port, DEFAULT_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * @param port opened port
+     * @param flushThreshold count of collected bytes, which are flushed at once (size of the buffer)
+     * @param flushDelay the longest time in microseconds between collecting of the byte and its writing
+     * (0 means that bytes are written only when threshold is reached or by explicit flush)
+     */
+    public CoalescingWriter(IExtendedSerialPort port, int flushThreshold, int flushDelay) {
+        if(flushThreshold <= 0 || flushDelay < 0){
+            throw new IllegalArgumentException("Flush threshold <= 0 or flush delay < 0");
+        }
+        this.port = port;
+        this.flushThreshold = flushThreshold;
+        this.flushDelayNanos = TimeUnit.MICROSECONDS.toNanos(flushDelay);
+        buffer = ByteBuffer.allocateDirect(flushThreshold);
+    }
+
+    /**
+     * Write one byte (without allocation of array)
+     *
+     * @throws SerialPortException
+     */
+    public void writeByte(byte singleByte) throws SerialPortException {
+        lock.lock();
+        try {
+            beforeWrite();
+            buffer.put(singleByte);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write low byte of int value, the same as {@link ISerialPort#writeInt(int)}
+     *
+     * @throws SerialPortException
+     */
+    public void writeInt(int singleInt) throws SerialPortException {
+        writeByte((byte)singleInt);
+    }
+
+    /**
+     * Write bytes of array
+     *
+     * @throws SerialPortException
+     */
+    public void writeBytes(byte[] buffer) throws SerialPortException {
+        write(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Write part of array
+     *
+     * @param buffer array with bytes to write
+     * @param offset start offset in array
+     * @param length count of bytes to write
+     *
+     * @throws SerialPortException
+     */
+    public void write(byte[] buffer, int offset, int length) throws SerialPortException {
+        if(offset < 0 || length < 0 || offset > buffer.length - length){
+            throw new IndexOutOfBoundsException();
+        }
+        lock.lock();
+        try {
+            beforeWrite();
+            if(length > this.buffer.remaining()){
+                flushBuffer();
+            }
+            if(length >= flushThreshold){
+                //Large block isn't copied, it's written after collected bytes
+                writeCount++;
+                writeFully(ByteBuffer.wrap(buffer, offset, length));
+                countBatch(length);
+                return;
+            }
+            this.buffer.put(buffer, offset, length);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write all collected bytes
+     *
+     * @throws SerialPortException
+     */
+    public void flush() throws SerialPortException {
+        lock.lock();
+        try {
+            checkFailure();
+            flushBuffer();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write all collected bytes and stop the timer thread. Port isn't closed
+     *
+     * @throws SerialPortException
+     */
+    public void close() throws SerialPortException {
+        lock.lock();
+        try {
+            if(closed){
+                return;
+            }
+            closed = true;
+            batchStarted.signal();
+            checkFailure();
+            if(port.isOpened()){
+                flushBuffer();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getting count of write operations of the port
+     */
+    public long getBatchCount() {
+        lock.lock();
+        try {
+            return batchCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getting count of bytes written to the port
+     */
+    public long getBatchBytes() {
+        lock.lock();
+        try {
+            return batchBytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getting size of the largest batch
+     */
+    public int getMaxBatchSize() {
+        lock.lock();
+        try {
+            return maxBatchSize;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getting average count of bytes written by one write operation of the port
+     */
+    public double getAverageBatchSize() {
+        lock.lock();
+        try {
+            return batchCount == 0 ? 0 : (double)batchBytes / batchCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getting average count of write calls, which were coalesced into one write operation of the port
+     */
+    public double getAverageWritesPerBatch() {
+        lock.lock();
+        try {
+            return batchCount == 0 ? 0 : (double)writeCount / batchCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public IExtendedSerialPort getPort() {
+        return port;
+    }
+
+    private void beforeWrite() throws SerialPortException {
+        checkFailure();
+        if(closed){
+            throw new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_PORT_NOT_OPENED);
+        }
+        if(!buffer.hasRemaining()){
+            flushBuffer();
+        }
+    }
+
+    private void afterWrite() throws SerialPortException {
+        writeCount++;
+        if(buffer.position() >= flushThreshold){
+            flushBuffer();
+        }
+        else if(flushDelayNanos > 0 && batchDeadline == 0){
+            batchDeadline = System.nanoTime() + flushDelayNanos;
+            startTimer();
+            batchStarted.signal();
+        }
+    }
+
+    private void flushBuffer() throws SerialPortException {
+        batchDeadline = 0;
+        if(buffer.position() == 0){
+            return;
+        }
+        buffer.flip();
+        int byteCount = buffer.remaining();
+        try {
+            writeFully(buffer);
+        }
+        finally {
+            buffer.clear();
+        }
+        countBatch(byteCount);
+    }
+
+    private void writeFully(ByteBuffer data) throws SerialPortException {
+        while(data.hasRemaining()){
+            if(port.write(data) < 0){
+                throw new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_IO_ERROR);
+            }
+        }
+    }
+
+    private void countBatch(int byteCount) {
+        batchCount++;
+        batchBytes += byteCount;
+        if(byteCount > maxBatchSize){
+            maxBatchSize = byteCount;
+        }
+    }
+
+    private void checkFailure() throws SerialPortException {
+        if(timerFailure != null){
+            SerialPortException ex = timerFailure;
+            timerFailure = null;
+            throw ex;
+        }
+    }
+
+    private void startTimer() {
+        if(timer != null){
+            return;
+        }
+        timer = new Thread("jSSC coalescing timer " + port.getPortName()) {
+            @Override
+            public void run() {
+                runTimer();
+            }
+        };
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    /**
+     * Timer thread: waits for the start of batch and flushes it when its deadline is elapsed
+     */
+    private void runTimer() {
+        if (logger.isLoggable(FINER)) { logger.finer("Coalescing timer of " + port.getPortName() + " started"); }
+        lock.lock();
+        try {
+            while(!closed){
+                if(batchDeadline == 0){
+                    batchStarted.awaitUninterruptibly();
+                    continue;
+                }
+                long remains = batchDeadline - System.nanoTime();
+                if(remains > 0){
+                    batchStarted.awaitNanos(remains);
+                    continue;
+                }
+                try {
+                    flushBuffer();
+                }
+                catch (SerialPortException ex) {
+                    timerFailure = ex;
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            //Timer isn't interrupted by the writer
+        }
+        finally {
+            timer = null;
+            lock.unlock();
+        }
+        if (logger.isLoggable(FINER)) { logger.finer("Coalescing timer of " + port.getPortName() + " stopped"); }
+    }
+}
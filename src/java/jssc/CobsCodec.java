@@ -0,0 +1,127 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * COBS framing (Consistent Overhead Byte Stuffing): zero bytes are removed from the frame, every block
+ * of non-zero bytes is preceded by code byte (length of the block + 1), frame is finished by zero byte.
+ * Overhead is one byte per 254 bytes of data. Extra zero bytes between frames are ignored
+ *
+ * @since 2.9.0
+ */
+public class CobsCodec implements FrameCodec {
+
+    private static final int MAX_CODE = 0xFF;
+
+    //Count of data bytes left in the current block (0 - the next byte is code of block)
+    private int remaining = 0;
+    //Zero byte, which is added before the next block (it's not added at the end of frame)
+    private boolean zeroPending = false;
+    private boolean started = false;
+    private boolean corrupted = false;
+
+    @Override
+    public int decode(ByteBuffer in, ByteBuffer out) {
+        while(in.hasRemaining()){
+            int value = in.get() & 0xFF;
+            if(value == 0){
+                boolean error = corrupted || remaining > 0;
+                boolean frame = started;
+                reset();
+                if(error){
+                    return RESULT_ERROR;
+                }
+                if(frame){
+                    return RESULT_FRAME;
+                }
+                continue;
+            }
+            if(corrupted){
+                continue;
+            }
+            if(remaining > 0){
+                remaining--;
+                if(!put(out, (byte)value)){
+                    corrupted = true;
+                }
+                continue;
+            }
+            //Code of the next block
+            if(zeroPending && !put(out, (byte)0)){
+                corrupted = true;
+                continue;
+            }
+            started = true;
+            remaining = value - 1;
+            zeroPending = (value < MAX_CODE);
+        }
+        return RESULT_UNDERFLOW;
+    }
+
+    private static boolean put(ByteBuffer out, byte value) {
+        if(!out.hasRemaining()){
+            return false;
+        }
+        out.put(value);
+        return true;
+    }
+
+    @Override
+    public void encode(ByteBuffer frame, ByteBuffer out) {
+        int codeIndex = out.position();
+        int code = 1;
+        out.put((byte)0);//place of the code
+        while(frame.hasRemaining()){
+            byte value = frame.get();
+            if(value != 0){
+                out.put(value);
+                code++;
+            }
+            if(value == 0 || code == MAX_CODE){
+                out.put(codeIndex, (byte)code);
+                codeIndex = out.position();
+                code = 1;
+                out.put((byte)0);
+            }
+        }
+        out.put(codeIndex, (byte)code);
+        out.put((byte)0);
+    }
+
+    @Override
+    public int getMaxEncodedLength(int frameLength) {
+        return frameLength + frameLength / 254 + 2;
+    }
+
+    @Override
+    public void reset() {
+        remaining = 0;
+        zeroPending = false;
+        started = false;
+        corrupted = false;
+    }
+}
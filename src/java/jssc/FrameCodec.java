@@ -0,0 +1,84 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec of frames for {@link SerialPortFramer}. Decoder is incremental: received bytes are passed
+ * as they come and content of the current frame is collected in the output buffer, so one frame may
+ * be split between many reads and one read may contain many frames. Encoder writes the whole frame
+ * with its delimiters (or header) into the output buffer.
+ * <br><b>Note: </b>codec keeps state of decoding, so one instance shall be used by one framer only.
+ * Encoding doesn't use this state, it may be done by other thread while the frame is being decoded
+ *
+ * @since 2.9.0
+ */
+public interface FrameCodec {
+
+    /**
+     * All input is consumed, but the frame isn't finished yet
+     */
+    int RESULT_UNDERFLOW = 0;
+    /**
+     * Frame is finished, it's in the output buffer (from 0 to position)
+     */
+    int RESULT_FRAME = 1;
+    /**
+     * Frame is corrupted or doesn't fit into the output buffer, it's dropped
+     * (content of output buffer shall be discarded) and decoder is synchronized with the next frame
+     */
+    int RESULT_ERROR = 2;
+
+    /**
+     * Decode received bytes. Bytes are consumed until the end of the frame or the end of input
+     *
+     * @param in received bytes, position is advanced by count of consumed bytes
+     * @param out content of the current frame, the same buffer shall be passed until the frame is finished
+     *
+     * @return <b>RESULT_UNDERFLOW</b>, <b>RESULT_FRAME</b> or <b>RESULT_ERROR</b>
+     */
+    int decode(ByteBuffer in, ByteBuffer out);
+
+    /**
+     * Encode the frame with its delimiters (or header)
+     *
+     * @param frame content of the frame, all remaining bytes are consumed
+     * @param out output buffer, it shall have at least {@link #getMaxEncodedLength(int)} bytes remaining
+     */
+    void encode(ByteBuffer frame, ByteBuffer out);
+
+    /**
+     * Get the longest length of encoded frame (the worst case of escaping)
+     *
+     * @param frameLength length of the frame content
+     */
+    int getMaxEncodedLength(int frameLength);
+
+    /**
+     * Drop state of decoding, the next byte is expected to be the beginning of a frame
+     */
+    void reset();
+}
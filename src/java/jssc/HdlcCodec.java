@@ -0,0 +1,150 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HDLC-like framing (RFC 1662): frame is enclosed by FLAG bytes (0x7E), FLAG and ESC (0x7D) bytes
+ * inside of the frame are sent as ESC and the byte XOR 0x20. Frame is protected by 16-bit FCS
+ * (CRC-16/X.25), which is appended after the content (low byte first) and checked by decoder,
+ * frames with wrong FCS are dropped. Control characters are not escaped (empty ACCM),
+ * several FLAG bytes in a row are allowed
+ *
+ * @since 2.9.0
+ */
+public class HdlcCodec implements FrameCodec {
+
+    public static final byte FLAG = 0x7E;
+    public static final byte ESC = 0x7D;
+    public static final int ESC_MASK = 0x20;
+
+    private static final int FCS_INIT = 0xFFFF;
+    //Residue of FCS calculated over content and its FCS
+    private static final int FCS_GOOD = 0xF0B8;
+    private static final int FCS_LENGTH = 2;
+    private static final int[] FCS_TABLE = new int[256];
+
+    static {
+        for(int i = 0; i < 256; i++){
+            int value = i;
+            for(int bit = 0; bit < 8; bit++){
+                value = ((value & 1) != 0 ? (value >>> 1) ^ 0x8408 : value >>> 1);
+            }
+            FCS_TABLE[i] = value;
+        }
+    }
+
+    private int fcs = FCS_INIT;
+    //The last two received bytes may be FCS, so they are moved to the output buffer only when the next
+    //byte is received. Content of maximum size fits into the output buffer without space for FCS
+    private final byte[] tail = new byte[FCS_LENGTH];
+    private int length = 0;
+    private boolean escaped = false;
+    private boolean corrupted = false;
+
+    @Override
+    public int decode(ByteBuffer in, ByteBuffer out) {
+        while(in.hasRemaining()){
+            byte value = in.get();
+            if(value == FLAG){
+                boolean error = corrupted || escaped || (length > 0 && (length < FCS_LENGTH || fcs != FCS_GOOD));
+                boolean frame = (length > 0);
+                reset();
+                if(error){
+                    return RESULT_ERROR;
+                }
+                if(frame){
+                    return RESULT_FRAME;
+                }
+                continue;
+            }
+            if(corrupted){
+                continue;
+            }
+            if(escaped){
+                escaped = false;
+                value ^= ESC_MASK;
+            }
+            else if(value == ESC){
+                escaped = true;
+                continue;
+            }
+            if(length >= FCS_LENGTH){
+                if(!out.hasRemaining()){
+                    corrupted = true;
+                    continue;
+                }
+                out.put(tail[0]);
+            }
+            tail[0] = tail[1];
+            tail[1] = value;
+            fcs = updateFcs(fcs, value);
+            length++;
+        }
+        return RESULT_UNDERFLOW;
+    }
+
+    @Override
+    public void encode(ByteBuffer frame, ByteBuffer out) {
+        int value = FCS_INIT;
+        out.put(FLAG);
+        while(frame.hasRemaining()){
+            byte b = frame.get();
+            value = updateFcs(value, b);
+            putEscaped(out, b);
+        }
+        value ^= 0xFFFF;
+        putEscaped(out, (byte)value);
+        putEscaped(out, (byte)(value >>> 8));
+        out.put(FLAG);
+    }
+
+    private static void putEscaped(ByteBuffer out, byte value) {
+        if(value == FLAG || value == ESC){
+            out.put(ESC).put((byte)(value ^ ESC_MASK));
+        }
+        else {
+            out.put(value);
+        }
+    }
+
+    private static int updateFcs(int fcs, byte value) {
+        return (fcs >>> 8) ^ FCS_TABLE[(fcs ^ value) & 0xFF];
+    }
+
+    @Override
+    public int getMaxEncodedLength(int frameLength) {
+        return (frameLength + FCS_LENGTH) * 2 + 2;
+    }
+
+    @Override
+    public void reset() {
+        fcs = FCS_INIT;
+        length = 0;
+        escaped = false;
+        corrupted = false;
+    }
+}
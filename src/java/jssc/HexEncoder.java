@@ -0,0 +1,130 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.io.IOException;
+
+/**
+ * Table-driven encoding of bytes to hexadecimal strings (upper case, two digits per byte),
+ * the same format as <b>readHexString()</b> methods of the port use. Strings are built in
+ * arrays of exact size, arrays of strings share one instance per byte value
+ *
+ * @since 2.9.0
+ */
+public final class HexEncoder {
+
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final String[] BYTE_STRINGS = new String[256];
+
+    static {
+        for(int i = 0; i < 256; i++){
+            BYTE_STRINGS[i] = new String(new char[]{DIGITS[i >>> 4], DIGITS[i & 0x0F]});
+        }
+    }
+
+    private HexEncoder() {
+    }
+
+    /**
+     * Encode bytes to string with separator between values (example if separator is "::": FF::0A::FF)
+     *
+     * @param buffer bytes to encode
+     * @param offset start offset in array
+     * @param length count of bytes to encode
+     * @param separator separator of values (may be empty)
+     *
+     * @return Hexadecimal string
+     */
+    public static String toHexString(byte[] buffer, int offset, int length, String separator) {
+        checkBounds(buffer, offset, length);
+        if(length == 0){
+            return "";
+        }
+        int separatorLength = separator.length();
+        char[] chars = new char[length * 2 + (length - 1) * separatorLength];
+        int position = 0;
+        for(int i = offset; i < offset + length; i++){
+            if(i > offset && separatorLength > 0){
+                separator.getChars(0, separatorLength, chars, position);
+                position += separatorLength;
+            }
+            int value = buffer[i] & 0xFF;
+            chars[position++] = DIGITS[value >>> 4];
+            chars[position++] = DIGITS[value & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Encode every byte to separate string
+     *
+     * @param buffer bytes to encode
+     * @param offset start offset in array
+     * @param length count of bytes to encode
+     *
+     * @return Array of hexadecimal strings with "length" length
+     */
+    public static String[] toHexStringArray(byte[] buffer, int offset, int length) {
+        checkBounds(buffer, offset, length);
+        String[] strings = new String[length];
+        for(int i = 0; i < length; i++){
+            strings[i] = BYTE_STRINGS[buffer[offset + i] & 0xFF];
+        }
+        return strings;
+    }
+
+    /**
+     * Append hexadecimal values of bytes to the output (for example to <b>StringBuilder</b> or <b>Writer</b>)
+     * without building of intermediate strings
+     *
+     * @param out output for characters
+     * @param buffer bytes to encode
+     * @param offset start offset in array
+     * @param length count of bytes to encode
+     * @param separator separator of values (may be empty)
+     *
+     * @return The output
+     *
+     * @throws IOException if output fails
+     */
+    public static <T extends Appendable> T appendHex(T out, byte[] buffer, int offset, int length, String separator) throws IOException {
+        checkBounds(buffer, offset, length);
+        boolean hasSeparator = separator.length() > 0;
+        for(int i = offset; i < offset + length; i++){
+            if(i > offset && hasSeparator){
+                out.append(separator);
+            }
+            int value = buffer[i] & 0xFF;
+            out.append(DIGITS[value >>> 4]).append(DIGITS[value & 0x0F]);
+        }
+        return out;
+    }
+
+    private static void checkBounds(byte[] buffer, int offset, int length) {
+        if(offset < 0 || length < 0 || offset > buffer.length - length){
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + buffer.length);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Port with operations added in 2.9.0: reading and writing of parts of arrays and of NIO buffers
+ * without temporary copies, gather write, reading of frames and delimited messages, background
+ * reader, low latency mode, reopening policy, event character and snapshot of port status. It's implemented by {@link SerialPort},
+ * {@link LocalSerialPort} and {@link NetworkSerialPort}, helper classes which use these operations
+ * (streams, channel, framer, selectors and others) accept it
+ *
+ * @since 2.9.0
+ */
+public interface IExtendedSerialPort extends ISerialPort {
+
+    /**
+     * Get baud rate, which is really used by the driver. Any integer baud rate may be passed to
+     * <b>setParams()</b> (in Linux it's set through termios2 with BOTHER), this method allows to check
+     * the rate which was applied
+     *
+     * @return baud rate or -1 if it can't be determined
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    int getBaudRate() throws SerialPortException;
+
+    /**
+     * Switch low latency mode of the port. In Linux the driver's <b>ASYNC_LOW_LATENCY</b> flag is set
+     * (or cleared) through <b>TIOCGSERIAL/TIOCSSERIAL</b>, and if the port is an USB-serial adapter with
+     * <b>latency_timer</b> in sysfs (FTDI), the timer is set to 1 ms. Its previous value is saved and
+     * written back when the mode is disabled (the timer isn't changed if it wasn't set by this port).
+     * Writing to sysfs usually requires root privileges or udev rule.
+     * <br><b>Note: </b>not all drivers support this, so returned value shall be checked
+     *
+     * @param enabled true to enable low latency mode, false to restore previous behaviour
+     *
+     * @return Additive value of settings which were really applied: <b>LOW_LATENCY_DRIVER</b>,
+     * <b>LOW_LATENCY_TIMER</b>, or 0 if nothing was applied
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    int setLowLatency(boolean enabled) throws SerialPortException;
+
+    /**
+     * Set policy of reopening of disconnected port (USB adapter was unplugged, port was hung up).
+     * When disconnection is detected by the event thread or by failed read operation, the port
+     * is closed and opened again every <b>retryInterval</b> milliseconds, until it's opened,
+     * <b>maxAttempts</b> attempts are made or <b>closePort()</b> is called. Parameters, flow control
+     * mode, events mask and background reader are restored after reopening.
+     * <br>Read operation which has detected disconnection throws exception with <b>TYPE_PORT_DISCONNECTED</b>
+     * type anyway, listener is notified through <b>errorOccurred(SerialPortException)</b> method
+     * (if it's defined). By default reopening is disabled
+     *
+     * @param retryInterval interval between attempts in milliseconds, 0 disables reopening
+     * @param maxAttempts maximum count of attempts, 0 means unlimited count
+     *
+     * @return true if reopening is supported for this port
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    boolean setReopenPolicy(int retryInterval, int maxAttempts) throws SerialPortException;
+
+    /**
+     * Set the event character. When it's received, event <b>MASK_RXFLAG</b> is sent to the listener.
+     * In *nix received bytes can't be inspected without reading them, so the event thread moves them into
+     * the pushback buffer of the port (they are returned by the next read operation) or searches the character
+     * in the ring of background reader. Bytes taken by a read operation, which is already waiting for data, are not inspected
+     *
+     * @param eventChar event character (0-255) or -1 to disable the event
+     *
+     * @return true if the character was applied, otherwise false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    boolean setEventChar(int eventChar) throws SerialPortException;
+
+    /**
+     * Write part of byte array to port. Method doesn't allocate any temporary arrays
+     *
+     * @param buffer array of bytes to write
+     * @param offset start offset in array
+     * @param length count of bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    int write(byte[] buffer, int offset, int length) throws SerialPortException;
+
+    /**
+     * Write remaining bytes of buffer to port. Position of buffer is advanced by count of
+     * written bytes. Direct buffers are passed to the native code without any copying
+     *
+     * @param buffer buffer with bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    int write(ByteBuffer buffer) throws SerialPortException;
+
+    /**
+     * Write several byte arrays to port as one block (for example header, payload and CRC of the frame).
+     * In *nix all parts are passed to the kernel by one writev() call, so arrays are neither
+     * concatenated in Java nor written by separate calls with gaps between parts
+     *
+     * @param parts byte arrays to write
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    boolean writeBytes(byte[]... parts) throws SerialPortException;
+
+    /**
+     * Write remaining bytes of <b>length</b> buffers starting from <b>buffers[offset]</b> as one block
+     * (gather write). Positions of buffers are advanced by count of written bytes. Direct buffers
+     * are passed to the native code without any copying
+     *
+     * @param buffers buffers with bytes to write
+     * @param offset index of the first buffer
+     * @param length count of buffers
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    long write(ByteBuffer[] buffers, int offset, int length) throws SerialPortException;
+
+    /**
+     * Write remaining bytes of all buffers as one block, the same as <b>write(buffers, 0, buffers.length)</b>
+     *
+     * @param buffers buffers with bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    long write(ByteBuffer[] buffers) throws SerialPortException;
+
+    /**
+     * Read bytes from port into part of byte array. Method blocks until at least one byte
+     * is received and then reads all available bytes, but not more than <b>length</b>.
+     * Method doesn't allocate any temporary arrays
+     *
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param length maximum count of bytes to read
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    int read(byte[] buffer, int offset, int length) throws SerialPortException;
+
+    /**
+     * Read bytes from port into buffer. Method blocks until at least one byte is received
+     * and then reads all available bytes, but not more than remaining space of buffer.
+     * Position of buffer is advanced by count of read bytes. Direct buffers are filled
+     * by the native code without any copying
+     *
+     * @param buffer buffer for storing read bytes
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    int read(ByteBuffer buffer) throws SerialPortException;
+
+    /**
+     * Read not less than <b>minByteCount</b> and not more than <b>maxByteCount</b> bytes from port.
+     * Method returns as soon as <b>minByteCount</b> bytes are received (all bytes which are available
+     * at this moment are returned too). If timeout is elapsed, received bytes are not lost and
+     * will be returned by the next read operation
+     *
+     * @param minByteCount minimum count of bytes for reading
+     * @param maxByteCount maximum count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with length from "minByteCount" to "maxByteCount"
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    byte[] readAtLeast(int minByteCount, int maxByteCount, int timeout) throws SerialPortException, SerialPortTimeoutException;
+
+    /**
+     * Read one frame, which is finished by silence on the line (Modbus RTU and many other protocols
+     * separate frames in this way). Method waits for the first byte up to <b>timeout</b> milliseconds
+     * and then reads bytes until <b>maxFrameSize</b> bytes are received or no byte is received during
+     * <b>interCharTimeout</b> milliseconds. The thread sleeps in the driver (Windows) or in poll() (*nix)
+     * between received bytes, so it doesn't poll input buffer. Port settings are not changed by the call
+     *
+     * @param maxFrameSize maximum size of the frame
+     * @param interCharTimeout inter-character gap in milliseconds, which finishes the frame
+     * @param timeout timeout of waiting for the first byte in milliseconds
+     *
+     * @return received frame
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    byte[] readFrame(int maxFrameSize, int interCharTimeout, int timeout) throws SerialPortException, SerialPortTimeoutException;
+
+    /**
+     * Read bytes until the delimiter is received (for example a line finished by '\n'). Bytes which are
+     * already received are searched at once, so a whole line is delivered by one wakeup and one copy.
+     * Bytes received after the delimiter will be returned by the next read operation
+     *
+     * @param delimiter byte which finishes the data
+     * @param maxLength maximum count of bytes to read
+     * @param timeout timeout in milliseconds
+     *
+     * @return Bytes up to and including the delimiter, or <b>maxLength</b> bytes if delimiter
+     * isn't found among them (the last byte isn't the delimiter in this case)
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    byte[] readUntil(byte delimiter, int maxLength, int timeout) throws SerialPortException, SerialPortTimeoutException;
+
+    /**
+     * Start background reader. Native thread reads data from the port into off-heap ring buffer as soon
+     * as it is received and all read methods take data from this buffer. Data bursts are read without
+     * system calls and the kernel buffer isn't overrun while the application is paused (for example by GC).
+     * Works only in Linux with JNI library, in other cases method returns false.
+     * While background reader is running, the event listener gets <b>MASK_RXCHAR</b> (and <b>MASK_RXFLAG</b>)
+     * once per portion of data moved into the ring, the event thread is woken up by the reader itself
+     *
+     * @param bufferSize size of ring buffer in bytes
+     *
+     * @return true if background reader is running after the call (method does nothing if it's running already)
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    boolean startBackgroundReader(int bufferSize) throws SerialPortException;
+
+    /**
+     * Stop background reader. Data left in ring buffer is not lost and will be returned by the next read operation
+     *
+     * @return true if background reader was running
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    boolean stopBackgroundReader() throws SerialPortException;
+
+    /**
+     * Get snapshot of port state: counts of bytes in buffers, state of lines and counters of
+     * interrupts. All values are taken in one native call without allocation of objects
+     *
+     * @param status object for storing of state, it may be reused by the next calls
+     * (if it's <b>null</b> new object is created)
+     *
+     * @return Filled status object
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    PortStatus getPortStatus(PortStatus status) throws SerialPortException;
+}
@@ -0,0 +1,126 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Framing by length prefix: every frame is preceded by header with length of its content
+ * (unsigned integer of 1, 2 or 4 bytes). There is no delimiter, so the frame which doesn't fit
+ * into the output buffer is skipped and decoder can't be synchronized with the stream after lost bytes
+ * (port shall be purged and {@link #reset()} called in this case)
+ *
+ * @since 2.9.0
+ */
+public class LengthPrefixCodec implements FrameCodec {
+
+    private final int headerSize;
+    private final boolean bigEndian;
+
+    private int headerRead = 0;
+    private long length = 0;
+    //Count of content bytes which are not received yet
+    private long remaining = -1;
+    private boolean skipping = false;
+
+    /**
+     * Create codec with 2 bytes big-endian header
+     */
+    public LengthPrefixCodec() {
+        this(2, true);
+    }
+
+    /**
+     * @param headerSize size of header: 1, 2 or 4 bytes
+     * @param bigEndian true if the most significant byte of length is sent first
+     */
+    public LengthPrefixCodec(int headerSize, boolean bigEndian) {
+        if(headerSize != 1 && headerSize != 2 && headerSize != 4){
+            throw new IllegalArgumentException("Header size shall be 1, 2 or 4: " + headerSize);
+        }
+        this.headerSize = headerSize;
+        this.bigEndian = bigEndian;
+    }
+
+    @Override
+    public int decode(ByteBuffer in, ByteBuffer out) {
+        if(remaining < 0){
+            //Header
+            while(headerRead < headerSize && in.hasRemaining()){
+                long value = in.get() & 0xFF;
+                length |= (bigEndian ? value << ((headerSize - 1 - headerRead) * 8) : value << (headerRead * 8));
+                headerRead++;
+            }
+            if(headerRead < headerSize){
+                return RESULT_UNDERFLOW;
+            }
+            remaining = length;
+            skipping = (length > out.remaining());
+        }
+        int byteCount = (int)Math.min(remaining, in.remaining());
+        if(skipping){
+            in.position(in.position() + byteCount);
+        }
+        else if(byteCount > 0){
+            int limit = in.limit();
+            in.limit(in.position() + byteCount);
+            out.put(in);
+            in.limit(limit);
+        }
+        remaining -= byteCount;
+        if(remaining > 0){
+            return RESULT_UNDERFLOW;
+        }
+        boolean error = skipping;
+        reset();
+        return error ? RESULT_ERROR : RESULT_FRAME;
+    }
+
+    @Override
+    public void encode(ByteBuffer frame, ByteBuffer out) {
+        long value = frame.remaining();
+        if(value >>> (headerSize * 8) != 0){
+            throw new IllegalArgumentException("Frame is too long for " + headerSize + " bytes header: " + value);
+        }
+        for(int i = 0; i < headerSize; i++){
+            int shift = (bigEndian ? (headerSize - 1 - i) * 8 : i * 8);
+            out.put((byte)(value >>> shift));
+        }
+        out.put(frame);
+    }
+
+    @Override
+    public int getMaxEncodedLength(int frameLength) {
+        return frameLength + headerSize;
+    }
+
+    @Override
+    public void reset() {
+        headerRead = 0;
+        length = 0;
+        remaining = -1;
+        skipping = false;
+    }
+}
@@ -27,28 +27,88 @@ package jssc;
 import static java.util.logging.Level.FINER;
 import static java.util.logging.Level.FINEST;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 
 /**
+ * Port may be used by one reader thread and any count of writer threads at the same time (since 2.9.0).
+ * Reads and writes don't wait for each other, every write call is atomic and closePort() waits until
+ * operations of other threads are finished
  *
  * @author scream3r
  */
-public class LocalSerialPort implements ISerialPort {
+public class LocalSerialPort implements IExtendedSerialPort {
 
     private Logger logger = Logger.getLogger("LocalSerialPort");
 
     private SerialNativeInterface serialInterface;
-    private SerialPortEventListener eventListener;
-    private long portHandle;
+    private volatile SerialPortEventListener eventListener;//since 2.9.0 volatile (port is used by several threads)
+    private volatile long portHandle;//since 2.9.0 volatile (handle is changed when port is reopened)
     private String portName;
-    private boolean portOpened = false;
-    private boolean maskAssigned = false;
-    private boolean eventListenerAdded = false;
+    private volatile boolean portOpened = false;
+    private volatile boolean maskAssigned = false;
+    private volatile boolean eventListenerAdded = false;
 
     //since 2.2.0 ->
-    private Method methodErrorOccurred = null;
+    private volatile Method methodErrorOccurred = null;
+
+    //since 2.9.0 ->
+    //Bytes which were already taken from the port, but weren't returned to the caller (timed read was failed)
+    private byte[] pushbackBuffer = new byte[0];
+    private volatile int pushbackCount = 0;
+    private final Object pushbackLock = new Object();
+    //Native thread, which takes data from the port into the ring buffer (null if it's not started)
+    private volatile BackgroundReader backgroundReader;
+    //Status for getters, which return single value
+    private final PortStatus portStatus = new PortStatus();
+    //Reopen policy (disabled if interval is 0) and settings, which are restored after reopening
+    private volatile int reopenInterval = 0;
+    private volatile int reopenAttempts = 0;
+    private final Object reopenLock = new Object();
+    private boolean reopening = false;
+    private Thread reopenThread;
+    //Number of connection, it's changed when port is reopened or closed (handle can be the same)
+    private volatile int connection = 0;
+    private int reportedConnection = -1;
+    private volatile boolean closing = false;
+    private boolean useTIOCEXCL;
+    private volatile int[] portParams;
+    private volatile int flowControlMode = -1;
+    private volatile int windowsMask;
+    private volatile int eventChar = -1;
+    //Value of latency_timer before low latency mode was enabled, it's restored when the mode is disabled
+    //(-1 if the timer wasn't changed). It's guarded by termiosLock
+    private int savedLatencyTimer = -1;
+    //Canceller wakes up threads waiting for the port when it's closed by other thread
+    private long canceller = -1;
+    //Concurrency model: one reader thread and any count of writer threads. All operations share
+    //stateLock, only closePort() takes it exclusively. Reads and writes are serialized by own locks,
+    //so they don't contend with each other and every write call is atomic
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final ReentrantLock readLock = new ReentrantLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    //Terminal settings are changed under this lock by setters of parameters, so read-modify-write of termios
+    //by one setter doesn't lose changes of other one. Reads and writes don't take it, they never change
+    //settings or mode of the descriptor. It's taken after readLock/writeLock and stateLock
+    private final ReentrantLock termiosLock = new ReentrantLock();
+    //Listener and background reader are started and stopped under this lock
+    private final Object configLock = new Object();
+    //Reusable arrays of readIntArray() and writeIntArray(), guarded by readLock and writeLock
+    private final byte[] intArrayReadBuffer = new byte[INT_ARRAY_CHUNK];
+    private final byte[] intArrayWriteBuffer = new byte[INT_ARRAY_CHUNK];
+    private final BinaryCodec codec = BinaryCodec.getInstance();
+    //<- since 2.9.0
     //<- since 2.2.0
 
     public static final int BAUDRATE_110 = 110;
@@ -115,14 +175,31 @@ public class LocalSerialPort implements ISerialPort {
     public static final int ERROR_PARITY = 0x0004;
     //<- since 0.8
 
+    //since 2.9.0 ->
+    public static final int LOW_LATENCY_DRIVER = 1;
+    public static final int LOW_LATENCY_TIMER = 2;
+    //<- since 2.9.0
+
     //since 2.6.0 ->
     private static final int PARAMS_FLAG_IGNPAR = 1;
     private static final int PARAMS_FLAG_PARMRK = 2;
     //<- since 2.6.0
 
+    //since 2.9.0 ->
+    private static final int LATENCY_TIMER_LOW = 1;
+    //Blocking waits are split into slices of this length (ms), so interrupt of the thread is noticed in time
+    private static final int WAIT_SLICE = 100;
+    //Event thread moves received bytes into pushback buffer for search of the event character up to this count
+    private static final int PEEK_LIMIT = 4096;
+    //Int arrays are converted by parts of this size
+    private static final int INT_ARRAY_CHUNK = 256;
+    //Thread.isVirtual() (Java 21), null in older versions
+    private static final Method methodIsVirtual = getIsVirtualMethod();
+    //<- since 2.9.0
+
     public LocalSerialPort(String portName) {
         this.portName = portName;
-        serialInterface = new SerialNativeInterface();
+        serialInterface = SerialNativeInterface.createInterface();
     }
 
     /**
@@ -159,7 +236,7 @@ public class LocalSerialPort implements ISerialPort {
             throw new SerialPortException(portName, "openPort()", SerialPortException.TYPE_PORT_ALREADY_OPENED);
         }
         if (portName != null) {
-            boolean useTIOCEXCL = (System.getProperty(SerialNativeInterface.PROPERTY_JSSC_NO_TIOCEXCL) == null &&
+            useTIOCEXCL = (System.getProperty(SerialNativeInterface.PROPERTY_JSSC_NO_TIOCEXCL) == null &&
                                    System.getProperty(SerialNativeInterface.PROPERTY_JSSC_NO_TIOCEXCL.toLowerCase()) == null);
             portHandle = serialInterface.openPort(portName, useTIOCEXCL);//since 2.3.0 -> (if JSSC_NO_TIOCEXCL defined, exclusive lock for serial port will be disabled)
         }
@@ -184,6 +261,7 @@ public class LocalSerialPort implements ISerialPort {
             throw new SerialPortException(portName, "openPort()", SerialPortException.TYPE_INCORRECT_SERIAL_PORT);
         }
         portOpened = true;
+        canceller = serialInterface.createCanceller();//since 2.9.0
         if (logger.isLoggable(FINER)) { logger.finer("Opening Port " + portName +" opened"); }
         return true;
     }
@@ -222,21 +300,178 @@ public class LocalSerialPort implements ISerialPort {
      */
     public boolean setParams(int baudRate, int dataBits, int stopBits, int parity, boolean setRTS, boolean setDTR) throws SerialPortException {
         if (logger.isLoggable(FINER)) { logger.finer("Setting params: (" + baudRate + "," + dataBits + "," +  stopBits + "," + parity + "," + setRTS + "," + setDTR + ")"); }
-        checkPortOpened("setParams()");
-        if(stopBits == 1){
-            stopBits = 0;
+        enterWrite("setParams()");
+        try {
+            if(stopBits == 1){
+                stopBits = 0;
+            }
+            else if(stopBits == 3){
+                stopBits = 1;
+            }
+            int flags = 0;
+            if(System.getProperty(SerialNativeInterface.PROPERTY_JSSC_IGNPAR) != null || System.getProperty(SerialNativeInterface.PROPERTY_JSSC_IGNPAR.toLowerCase()) != null){
+                flags |= PARAMS_FLAG_IGNPAR;
+            }
+            if(System.getProperty(SerialNativeInterface.PROPERTY_JSSC_PARMRK) != null || System.getProperty(SerialNativeInterface.PROPERTY_JSSC_PARMRK.toLowerCase()) != null){
+                flags |= PARAMS_FLAG_PARMRK;
+            }
+            lockInterruptibly(termiosLock, "setParams()");//since 2.9.0
+            try {
+                portParams = new int[]{baudRate, dataBits, stopBits, parity, setRTS ? 1 : 0, setDTR ? 1 : 0, flags};//since 2.9.0
+                return serialInterface.setParams(portHandle, baudRate, dataBits, stopBits, parity, setRTS, setDTR, flags);
+            }
+            finally {
+                termiosLock.unlock();
+            }
+        }
+        finally {
+            exitWrite();
+        }
+    }
+
+    /**
+     * Get baud rate, which is really used by the driver. Any integer baud rate may be passed to
+     * <b>setParams()</b> (in Linux it's set through termios2 with BOTHER), this method allows to check
+     * the rate which was applied
+     *
+     * @return baud rate or -1 if it can't be determined
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int getBaudRate() throws SerialPortException {
+        enter("getBaudRate()");
+        try {
+            int baudRate = serialInterface.getBaudRate(portHandle);
+            if (logger.isLoggable(FINER)) { logger.finer("Get baud rate: " + baudRate); }
+            return baudRate;
+        }
+        finally {
+            exit();
+        }
+    }
+
+    /**
+     * Switch low latency mode of the port. In Linux the driver's <b>ASYNC_LOW_LATENCY</b> flag is set
+     * (or cleared) through <b>TIOCGSERIAL/TIOCSSERIAL</b>, and if the port is an USB-serial adapter with
+     * <b>latency_timer</b> in sysfs (FTDI), the timer is set to 1 ms. Its previous value is saved and
+     * written back when the mode is disabled (the timer isn't changed if it wasn't set by this port).
+     * Writing to sysfs usually requires root privileges or udev rule.
+     * <br><b>Note: </b>not all drivers support this, so returned value shall be checked
+     *
+     * @param enabled true to enable low latency mode, false to restore previous behaviour
+     *
+     * @return Additive value of settings which were really applied: <b>LOW_LATENCY_DRIVER</b>,
+     * <b>LOW_LATENCY_TIMER</b>, or 0 if nothing was applied
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int setLowLatency(boolean enabled) throws SerialPortException {
+        enter("setLowLatency()");
+        try {
+            lockInterruptibly(termiosLock, "setLowLatency()");
+            try {
+                int applied = 0;
+                if(serialInterface.setLowLatency(portHandle, enabled)){
+                    applied |= LOW_LATENCY_DRIVER;
+                }
+                File timerFile = (SerialNativeInterface.getOsType() == SerialNativeInterface.OS_LINUX ? getLatencyTimerFile() : null);
+                if(timerFile != null){
+                    if(enabled){
+                        if(savedLatencyTimer < 0){
+                            savedLatencyTimer = readLatencyTimer(timerFile);
+                        }
+                        if(setLatencyTimer(timerFile, LATENCY_TIMER_LOW)){
+                            applied |= LOW_LATENCY_TIMER;
+                        }
+                    }
+                    else if(savedLatencyTimer >= 0 && setLatencyTimer(timerFile, savedLatencyTimer)){
+                        savedLatencyTimer = -1;
+                        applied |= LOW_LATENCY_TIMER;
+                    }
+                }
+                if (logger.isLoggable(FINER)) { logger.finer("Set low latency: " + enabled + " Applied: (" + applied + ")"); }
+                return applied;
+            }
+            finally {
+                termiosLock.unlock();
+            }
+        }
+        finally {
+            exit();
+        }
+    }
+
+    /**
+     * Getting <b>latency_timer</b> file of USB-serial adapter in sysfs
+     *
+     * @return File or null if the port has no such timer
+     *
+     * @since 2.9.0
+     */
+    private File getLatencyTimerFile() {
+        try {
+            String deviceName = new File(portName).getCanonicalFile().getName();
+            File timerFile = new File("/sys/class/tty/" + deviceName + "/device/latency_timer");
+            return timerFile.exists() ? timerFile : null;
+        }
+        catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Read current value of <b>latency_timer</b>
+     *
+     * @return Value in milliseconds or -1 if it can't be read
+     *
+     * @since 2.9.0
+     */
+    private int readLatencyTimer(File timerFile) {
+        try {
+            BufferedReader in = new BufferedReader(new FileReader(timerFile));
+            try {
+                String line = in.readLine();
+                return line != null ? Integer.parseInt(line.trim()) : -1;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException ex) {
+            if (logger.isLoggable(FINER)) { logger.finer("Can't read " + timerFile + ": " + ex.getMessage()); }
+            return -1;
         }
-        else if(stopBits == 3){
-            stopBits = 1;
+        catch (NumberFormatException ex) {
+            return -1;
         }
-        int flags = 0;
-        if(System.getProperty(SerialNativeInterface.PROPERTY_JSSC_IGNPAR) != null || System.getProperty(SerialNativeInterface.PROPERTY_JSSC_IGNPAR.toLowerCase()) != null){
-            flags |= PARAMS_FLAG_IGNPAR;
+    }
+
+    /**
+     * Write value to <b>latency_timer</b> and check that it was accepted
+     *
+     * @return true if the timer has the required value now
+     *
+     * @since 2.9.0
+     */
+    private boolean setLatencyTimer(File timerFile, int value) {
+        try {
+            FileOutputStream out = new FileOutputStream(timerFile);
+            try {
+                out.write(String.valueOf(value).getBytes("US-ASCII"));
+            }
+            finally {
+                out.close();
+            }
         }
-        if(System.getProperty(SerialNativeInterface.PROPERTY_JSSC_PARMRK) != null || System.getProperty(SerialNativeInterface.PROPERTY_JSSC_PARMRK.toLowerCase()) != null){
-            flags |= PARAMS_FLAG_PARMRK;
+        catch (IOException ex) {
+            if (logger.isLoggable(FINER)) { logger.finer("Can't set " + timerFile + ": " + ex.getMessage()); }
+            return false;
         }
-        return serialInterface.setParams(portHandle, baudRate, dataBits, stopBits, parity, setRTS, setDTR, flags);
+        return readLatencyTimer(timerFile) == value;
     }
 
     /**
@@ -252,8 +487,22 @@ public class LocalSerialPort implements ISerialPort {
      */
     public boolean purgePort(int flags) throws SerialPortException {
         if (logger.isLoggable(FINER)) { logger.finer("Purging port Flags: (" + flags + ")"); }
-        checkPortOpened("purgePort()");
-        return serialInterface.purgePort(portHandle, flags);
+        enter("purgePort()");
+        try {
+            if((flags & PURGE_RXCLEAR) != 0){
+                synchronized(pushbackLock){
+                    pushbackCount = 0;
+                }
+                BackgroundReader reader = backgroundReader;
+                if(reader != null){
+                    reader.clear();
+                }
+            }
+            return serialInterface.purgePort(portHandle, flags);
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -261,7 +510,7 @@ public class LocalSerialPort implements ISerialPort {
      *
      * @since 0.8
      */
-    private int linuxMask;
+    private volatile int linuxMask;
 
     /**
      * Set events mask. Required flags shall be sent to the input. Variables with prefix
@@ -269,6 +518,10 @@ public class LocalSerialPort implements ISerialPort {
      * Sent parameter "mask" is additive value, so addition of flags is allowed.
      * For example if messages about data receipt and CTS and DSR status changing
      * shall be received, it is required to set the mask - <b>"MASK_RXCHAR | MASK_CTS | MASK_DSR"</b>
+     * <br><b>Note: </b>in Linux changes of CTS, DSR, RING and RLSD lines are awaited by native thread in
+     * <b>ioctl(TIOCMIWAIT)</b>, which is stopped by signal <b>SIGRTMIN + 4</b>. Empty handler of this signal
+     * is installed for the whole process when such thread is started for the first time, if the signal has
+     * no handler yet. If the application uses this signal, lines are checked periodically instead
      *
      * @return If the operation is successfully completed, the method returns true, otherwise false
      *
@@ -276,30 +529,39 @@ public class LocalSerialPort implements ISerialPort {
      */
     public boolean setEventsMask(int mask) throws SerialPortException {
         if (logger.isLoggable(FINER)) { logger.finer("Setting event mask: (" + mask + ")"); }
-        checkPortOpened("setEventsMask()");
-        if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_LINUX ||
-           SerialNativeInterface.getOsType() == SerialNativeInterface.OS_SOLARIS ||
-           SerialNativeInterface.getOsType() == SerialNativeInterface.OS_MAC_OS_X){//since 0.9.0
-            linuxMask = mask;
+        enter("setEventsMask()");
+        try {
+            if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_LINUX ||
+               SerialNativeInterface.getOsType() == SerialNativeInterface.OS_SOLARIS ||
+               SerialNativeInterface.getOsType() == SerialNativeInterface.OS_MAC_OS_X){//since 0.9.0
+                linuxMask = mask;
+                if(eventThread != null){
+                    eventThread.wakeup();//since 2.9.0 (event thread may wait without timeout)
+                }
+                if(mask > 0){
+                    maskAssigned = true;
+                }
+                else {
+                    maskAssigned = false;
+                }
+                return true;
+            }
+            boolean returnValue = serialInterface.setEventsMask(portHandle, mask);
+            if(!returnValue){
+                throw new SerialPortException(portName, "setEventsMask()", SerialPortException.TYPE_CANT_SET_MASK);
+            }
+            windowsMask = mask;//since 2.9.0
             if(mask > 0){
                 maskAssigned = true;
             }
             else {
                 maskAssigned = false;
             }
-            return true;
+            return returnValue;
         }
-        boolean returnValue = serialInterface.setEventsMask(portHandle, mask);
-        if(!returnValue){
-            throw new SerialPortException(portName, "setEventsMask()", SerialPortException.TYPE_CANT_SET_MASK);
+        finally {
+            exit();
         }
-        if(mask > 0){
-            maskAssigned = true;
-        }
-        else {
-            maskAssigned = false;
-        }
-        return returnValue;
     }
 
     /**
@@ -310,15 +572,20 @@ public class LocalSerialPort implements ISerialPort {
      * @throws SerialPortException
      */
     public int getEventsMask() throws SerialPortException {
-        checkPortOpened("getEventsMask()");
-        if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_LINUX ||
-           SerialNativeInterface.getOsType() == SerialNativeInterface.OS_SOLARIS ||
-           SerialNativeInterface.getOsType() == SerialNativeInterface.OS_MAC_OS_X){//since 0.9.0
-            return linuxMask;
+        enter("getEventsMask()");
+        try {
+            if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_LINUX ||
+               SerialNativeInterface.getOsType() == SerialNativeInterface.OS_SOLARIS ||
+               SerialNativeInterface.getOsType() == SerialNativeInterface.OS_MAC_OS_X){//since 0.9.0
+                return linuxMask;
+            }
+            int mask = serialInterface.getEventsMask(portHandle);
+            if (logger.isLoggable(FINER)) { logger.finer("Returning event mask: (" + mask + ")"); }
+            return mask;
+        }
+        finally {
+            exit();
         }
-        int mask = serialInterface.getEventsMask(portHandle);
-        if (logger.isLoggable(FINER)) { logger.finer("Returning event mask: (" + mask + ")"); }
-        return mask;
     }
 
     /**
@@ -330,6 +597,47 @@ public class LocalSerialPort implements ISerialPort {
         return linuxMask;
     }
 
+    /**
+     * Set the event character. When it's received, event <b>MASK_RXFLAG</b> is sent to the listener
+     * (value of the event is count of bytes in input buffer). In Windows the character is detected by the driver.
+     * In *nix received bytes can't be inspected without reading them, so the event thread moves them into
+     * the pushback buffer (they are returned by the next read operation, see {@link #peekEventChar(int)})
+     * or searches the character in the ring of background reader (see {@link #startBackgroundReader(int)}).
+     * Bytes taken by a read operation, which is already waiting for data, are not inspected
+     *
+     * @param eventChar event character (0-255) or -1 to disable the event (in Windows the driver always has
+     * event character, it's set to 0 and the event is disabled by the mask only)
+     *
+     * @return true if the character was applied, otherwise false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean setEventChar(int eventChar) throws SerialPortException {
+        enter("setEventChar()");
+        try {
+            if(eventChar < -1 || eventChar > 255){
+                throw new SerialPortException(portName, "setEventChar()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            boolean returnValue = true;
+            if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_WINDOWS){
+                returnValue = serialInterface.setEventChar(portHandle, eventChar == -1 ? 0 : eventChar);
+            }
+            if(returnValue){
+                this.eventChar = eventChar;
+                if(eventThread != null){
+                    eventThread.wakeup();//Event thread may wait without timeout
+                }
+            }
+            if (logger.isLoggable(FINER)) { logger.finer("Set event char: " + eventChar + " Result: " + returnValue); }
+            return returnValue;
+        }
+        finally {
+            exit();
+        }
+    }
+
     /**
      * Change RTS line state. Set "true" for switching ON and "false" for switching OFF RTS line
      *
@@ -339,8 +647,13 @@ public class LocalSerialPort implements ISerialPort {
      */
     public boolean setRTS(boolean enabled) throws SerialPortException {
         if (logger.isLoggable(FINER)) { logger.finer("setRTS(" + enabled + ")"); }
-        checkPortOpened("setRTS()");
-        return serialInterface.setRTS(portHandle, enabled);
+        enter("setRTS()");
+        try {
+            return serialInterface.setRTS(portHandle, enabled);
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -352,8 +665,13 @@ public class LocalSerialPort implements ISerialPort {
      */
     public boolean setDTR(boolean enabled) throws SerialPortException {
         if (logger.isLoggable(FINER)) { logger.finer("setDTR(" + enabled + ")"); }
-        checkPortOpened("setDTR()");
-        return serialInterface.setDTR(portHandle, enabled);
+        enter("setDTR()");
+        try {
+            return serialInterface.setDTR(portHandle, enabled);
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -365,8 +683,13 @@ public class LocalSerialPort implements ISerialPort {
      */
     public boolean writeBytes(byte[] buffer) throws SerialPortException {
         if (logger.isLoggable(FINEST)) { logger.finest("writeBytes count: " + buffer.length + ""); }
-        checkPortOpened("writeBytes()");
-        return serialInterface.writeBytes(portHandle, buffer);
+        enterWrite("writeBytes()");
+        try {
+            return writeArray("writeBytes()", buffer, 0, buffer.length) == buffer.length;//since 2.9.0
+        }
+        finally {
+            exitWrite();
+        }
     }
 
     /**
@@ -435,247 +758,1070 @@ public class LocalSerialPort implements ISerialPort {
      * @since 0.8
      */
     public boolean writeIntArray(int[] buffer) throws SerialPortException {
-        checkPortOpened("writeIntArray()");
-        byte[] byteArray = new byte[buffer.length];
-        for(int i = 0; i < buffer.length; i++){
-            byteArray[i] = (byte)buffer[i];
+        enterWrite("writeIntArray()");
+        try {
+            //since 2.9.0 (values are converted by parts into reusable array)
+            for(int offset = 0; offset < buffer.length; offset += INT_ARRAY_CHUNK){
+                int length = Math.min(buffer.length - offset, INT_ARRAY_CHUNK);
+                codec.putBytes(buffer, offset, intArrayWriteBuffer, 0, length);
+                if(writeArray("writeIntArray()", intArrayWriteBuffer, 0, length) != length){
+                    return false;
+                }
+            }
+            return true;
+        }
+        finally {
+            exitWrite();
         }
-        return writeBytes(byteArray);
     }
 
     /**
-     * Read byte array from port
+     * Write part of byte array to port. Method doesn't allocate any temporary arrays
      *
-     * @param byteCount count of bytes for reading
+     * @param buffer array of bytes to write
+     * @param offset start offset in array
+     * @param length count of bytes to write
      *
-     * @return byte array with "byteCount" length
+     * @return Count of written bytes or -1 if error has occurred
      *
      * @throws SerialPortException
+     *
+     * @since 2.9.0
      */
-    public byte[] readBytes(int byteCount) throws SerialPortException {
-        if (logger.isLoggable(FINEST)) { logger.finest("readBytes count:(" + byteCount + ")"); }
-        checkPortOpened("readBytes()");
-        return serialInterface.readBytes(portHandle, byteCount);
+    public int write(byte[] buffer, int offset, int length) throws SerialPortException {
+        if (logger.isLoggable(FINEST)) { logger.finest("write count: " + length); }
+        enterWrite("write()");
+        try {
+            checkArrayBounds("write()", buffer, offset, length);
+            return writeArray("write()", buffer, offset, length);
+        }
+        finally {
+            exitWrite();
+        }
     }
 
     /**
-     * Read string from port
+     * Write remaining bytes of buffer to port. Position of buffer is advanced by count of
+     * written bytes. Direct buffers are passed to the native code without any copying
      *
-     * @param byteCount count of bytes for reading
+     * @param buffer buffer with bytes to write
      *
-     * @return byte array with "byteCount" length converted to String
+     * @return Count of written bytes or -1 if error has occurred
      *
      * @throws SerialPortException
      *
-     * @since 0.8
+     * @since 2.9.0
      */
-    public String readString(int byteCount) throws SerialPortException {
-        checkPortOpened("readString()");
-        return new String(readBytes(byteCount));
+    public int write(ByteBuffer buffer) throws SerialPortException {
+        if (logger.isLoggable(FINEST)) { logger.finest("write count: " + buffer.remaining()); }
+        enterWrite("write()");
+        try {
+            int position = buffer.position();
+            int length = buffer.remaining();
+            byte[] byteArray = null;
+            int arrayOffset = 0;
+            if(buffer.hasArray()){
+                byteArray = buffer.array();
+                arrayOffset = buffer.arrayOffset() + position;
+            }
+            else if(!buffer.isDirect()){
+                //Read-only heap buffer, it's content is not accessible without copying
+                byteArray = new byte[length];
+                buffer.duplicate().get(byteArray);
+            }
+            //Position is advanced by written bytes even if writing is cancelled by closePort() or interrupt
+            int written = 0;
+            try {
+                while(written < length){
+                    awaitPort("write()", SerialNativeInterface.POLLER_OUT, -1);
+                    int result;
+                    if(byteArray != null){
+                        result = serialInterface.writeBytesArray(portHandle, byteArray, arrayOffset + written, length - written);
+                    }
+                    else {
+                        result = serialInterface.writeBytesDirect(portHandle, buffer, position + written, length - written);
+                    }
+                    if(result < 0){
+                        return -1;
+                    }
+                    written += result;
+                }
+                return written;
+            }
+            finally {
+                buffer.position(position + written);
+            }
+        }
+        finally {
+            exitWrite();
+        }
     }
 
     /**
-     * Read Hex string from port (example: FF 0A FF). Separator by default is a space
+     * Write several byte arrays to port as one block (for example header, payload and CRC of the frame).
+     * In *nix all parts are passed to the kernel by one writev() call, so arrays are neither
+     * concatenated in Java nor written by separate calls with gaps between parts
      *
-     * @param byteCount count of bytes for reading
+     * @param parts byte arrays to write
      *
-     * @return byte array with "byteCount" length converted to Hexadecimal String
+     * @return If the operation is successfully completed, the method returns true, otherwise false
      *
      * @throws SerialPortException
      *
-     * @since 0.8
+     * @since 2.9.0
      */
-    public String readHexString(int byteCount) throws SerialPortException {
-        checkPortOpened("readHexString()");
-        return readHexString(byteCount, " ");
+    public boolean writeBytes(byte[]... parts) throws SerialPortException {
+        enterWrite("writeBytes()");
+        try {
+            int[] offsets = new int[parts.length];
+            int[] lengths = new int[parts.length];
+            int byteCount = 0;
+            for(int i = 0; i < parts.length; i++){
+                lengths[i] = parts[i].length;
+                byteCount += lengths[i];
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest("writeBytes parts: " + parts.length + " count: " + byteCount); }
+            return writeVector("writeBytes()", parts, offsets, lengths) == byteCount;
+        }
+        finally {
+            exitWrite();
+        }
     }
 
     /**
-     * Read Hex string from port with setted separator (example if separator is "::": FF::0A::FF)
+     * Write remaining bytes of <b>length</b> buffers starting from <b>buffers[offset]</b> as one block
+     * (gather write). Positions of buffers are advanced by count of written bytes. Direct buffers
+     * are passed to the native code without any copying
      *
-     * @param byteCount count of bytes for reading
+     * @param buffers buffers with bytes to write
+     * @param offset index of the first buffer
+     * @param length count of buffers
      *
-     * @return byte array with "byteCount" length converted to Hexadecimal String
+     * @return Count of written bytes or -1 if error has occurred
      *
      * @throws SerialPortException
      *
-     * @since 0.8
+     * @since 2.9.0
      */
-    public String readHexString(int byteCount, String separator) throws SerialPortException {
-        checkPortOpened("readHexString()");
-        String[] strBuffer = readHexStringArray(byteCount);
-        String returnString = "";
-        boolean insertSeparator = false;
-        for(String value : strBuffer){
-            if(insertSeparator){
-                returnString += separator;
+    public long write(ByteBuffer[] buffers, int offset, int length) throws SerialPortException {
+        enterWrite("write()");
+        try {
+            if(offset < 0 || length < 0 || offset > buffers.length - length){
+                throw new SerialPortException(portName, "write()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            Object[] parts = new Object[length];
+            int[] offsets = new int[length];
+            int[] lengths = new int[length];
+            long byteCount = 0;
+            for(int i = 0; i < length; i++){
+                ByteBuffer buffer = buffers[offset + i];
+                lengths[i] = buffer.remaining();
+                byteCount += lengths[i];
+                if(buffer.isDirect()){
+                    parts[i] = buffer;
+                    offsets[i] = buffer.position();
+                }
+                else if(buffer.hasArray()){
+                    parts[i] = buffer.array();
+                    offsets[i] = buffer.arrayOffset() + buffer.position();
+                }
+                else {
+                    //Read-only heap buffer, it's content is not accessible without copying
+                    byte[] byteArray = new byte[lengths[i]];
+                    buffer.duplicate().get(byteArray);
+                    parts[i] = byteArray;
+                }
+            }
+            try {
+                long result = writeVector("write()", parts, offsets, lengths);
+                if (logger.isLoggable(FINEST)) { logger.finest("write buffers: " + length + " count: " + result); }
+                return result;
+            }
+            finally {
+                //Positions are advanced by written bytes even if writing is cancelled by closePort() or interrupt
+                long remains = 0;
+                for(int i = 0; i < length; i++){
+                    remains += lengths[i];
+                }
+                advancePositions(buffers, offset, length, byteCount - remains);
             }
-            returnString += value;
-            insertSeparator = true;
         }
-        return returnString;
+        finally {
+            exitWrite();
+        }
     }
 
     /**
-     * Read Hex String array from port
-     *
-     * @param byteCount count of bytes for reading
-     *
-     * @return String array with "byteCount" length and Hexadecimal String values
+     * Write part of array by slices. Native code writes only bytes which fit into output buffer of the port
+     * and the thread waits for free space by cancellable <b>awaitPort()</b> between slices, so closePort()
+     * and interrupt stop the writing in time
      *
-     * @throws SerialPortException
+     * @return Count of written bytes or -1 if error has occurred
      *
-     * @since 0.8
+     * @since 2.9.0
      */
-    public String[] readHexStringArray(int byteCount) throws SerialPortException {
-        checkPortOpened("readHexStringArray()");
-        int[] intBuffer = readIntArray(byteCount);
-        String[] strBuffer = new String[intBuffer.length];
-        for(int i = 0; i < intBuffer.length; i++){
-            String value = Integer.toHexString(intBuffer[i]).toUpperCase();
-            if(value.length() == 1) {
-                value = "0" + value;
+    private int writeArray(String methodName, byte[] buffer, int offset, int length) throws SerialPortException {
+        int written = 0;
+        while(written < length){
+            awaitPort(methodName, SerialNativeInterface.POLLER_OUT, -1);
+            int result = serialInterface.writeBytesArray(portHandle, buffer, offset + written, length - written);
+            if(result < 0){
+                return -1;
             }
-            strBuffer[i] = value;
+            written += result;
         }
-        return strBuffer;
+        return written;
     }
 
     /**
-     * Read int array from port
-     *
-     * @param byteCount count of bytes for reading
-     *
-     * @return int array with values in range from 0 to 255
+     * Gather writing by slices, the same as <b>writeArray()</b>. Written bytes are skipped by
+     * advancing of <b>offsets</b> and decreasing of <b>lengths</b>, so the caller can see how many
+     * bytes of each part were written, if the writing is cancelled
      *
-     * @throws SerialPortException
+     * @return Count of written bytes or -1 if error has occurred
      *
-     * @since 0.8
+     * @since 2.9.0
      */
-    public int[] readIntArray(int byteCount) throws SerialPortException {
-        checkPortOpened("readIntArray()");
-        byte[] buffer = readBytes(byteCount);
-        int[] intBuffer = new int[buffer.length];
-        for(int i = 0; i < buffer.length; i++){
-            if(buffer[i] < 0){
-                intBuffer[i] = 256 + buffer[i];
+    private long writeVector(String methodName, Object[] parts, int[] offsets, int[] lengths) throws SerialPortException {
+        long byteCount = 0;
+        for(int i = 0; i < lengths.length; i++){
+            byteCount += lengths[i];
+        }
+        long written = 0;
+        while(written < byteCount){
+            awaitPort(methodName, SerialNativeInterface.POLLER_OUT, -1);
+            int result = serialInterface.writeBytesVector(portHandle, parts, offsets, lengths);
+            if(result < 0){
+                return -1;
             }
-            else {
-                intBuffer[i] = buffer[i];
+            written += result;
+            for(int i = 0; i < lengths.length && result > 0; i++){
+                int step = Math.min(lengths[i], result);
+                offsets[i] += step;
+                lengths[i] -= step;
+                result -= step;
             }
         }
-        return intBuffer;
+        return written;
     }
 
-    private void waitBytesWithTimeout(String methodName, int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
-        checkPortOpened("waitBytesWithTimeout()");
-        boolean timeIsOut = true;
-        long startTime = System.currentTimeMillis();
-        while((System.currentTimeMillis() - startTime) < timeout){
-            if(getInputBufferBytesCount() >= byteCount){
-                timeIsOut = false;
-                break;
-            }
-            try {
-                Thread.sleep(0, 100);//Need to sleep some time to prevent high CPU loading
-            }
-            catch (InterruptedException ex) {
-                //Do nothing
-            }
-        }
-        if(timeIsOut){
-            throw new SerialPortTimeoutException(portName, methodName, timeout);
+    /**
+     * Advance positions of <b>length</b> buffers starting from <b>buffers[offset]</b> by <b>count</b>
+     * written bytes, buffer by buffer in the order they were written
+     */
+    private static void advancePositions(ByteBuffer[] buffers, int offset, int length, long count) {
+        for(int i = offset; i < offset + length && count > 0; i++){
+            int step = (int)Math.min(buffers[i].remaining(), count);
+            buffers[i].position(buffers[i].position() + step);
+            count -= step;
         }
     }
 
+    /**
+     * Write remaining bytes of all buffers as one block, the same as <b>write(buffers, 0, buffers.length)</b>
+     *
+     * @param buffers buffers with bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public long write(ByteBuffer[] buffers) throws SerialPortException {
+        return write(buffers, 0, buffers.length);
+    }
+
     /**
      * Read byte array from port
      *
      * @param byteCount count of bytes for reading
-     * @param timeout timeout in milliseconds
      *
      * @return byte array with "byteCount" length
      *
      * @throws SerialPortException
-     * @throws SerialPortTimeoutException
-     *
-     * @since 2.0
      */
-    public byte[] readBytes(int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
-        checkPortOpened("readBytes()");
-        waitBytesWithTimeout("readBytes()", byteCount, timeout);
-        return readBytes(byteCount);
+    public byte[] readBytes(int byteCount) throws SerialPortException {
+        if (logger.isLoggable(FINEST)) { logger.finest("readBytes count:(" + byteCount + ")"); }
+        enterRead("readBytes()");
+        try {
+            //since 2.9.0 (bytes are read by parts after cancellable waiting)
+            byte[] buffer = new byte[byteCount];
+            int offset = 0;
+            try {
+                while(offset < byteCount){
+                    awaitPort("readBytes()", SerialNativeInterface.POLLER_IN, -1);
+                    int result = readFromPort(buffer, offset, byteCount - offset);
+                    if(result < 0){
+                        throw ioError("readBytes()");
+                    }
+                    offset += result;
+                }
+            }
+            catch (SerialPortException ex) {
+                //Bytes aren't lost if reading was interrupted
+                unread(buffer, 0, offset);
+                throw ex;
+            }
+            return buffer;
+        }
+        finally {
+            exitRead();
+        }
     }
 
     /**
      * Read string from port
      *
      * @param byteCount count of bytes for reading
-     * @param timeout timeout in milliseconds
      *
      * @return byte array with "byteCount" length converted to String
      *
      * @throws SerialPortException
-     * @throws SerialPortTimeoutException
      *
-     * @since 2.0
+     * @since 0.8
      */
-    public String readString(int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+    public String readString(int byteCount) throws SerialPortException {
         checkPortOpened("readString()");
-        waitBytesWithTimeout("readString()", byteCount, timeout);
-        return readString(byteCount);
+        return new String(readBytes(byteCount));
     }
 
     /**
      * Read Hex string from port (example: FF 0A FF). Separator by default is a space
      *
      * @param byteCount count of bytes for reading
-     * @param timeout timeout in milliseconds
      *
      * @return byte array with "byteCount" length converted to Hexadecimal String
      *
      * @throws SerialPortException
-     * @throws SerialPortTimeoutException
      *
-     * @since 2.0
+     * @since 0.8
      */
-    public String readHexString(int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+    public String readHexString(int byteCount) throws SerialPortException {
         checkPortOpened("readHexString()");
-        waitBytesWithTimeout("readHexString()", byteCount, timeout);
-        return readHexString(byteCount);
+        return readHexString(byteCount, " ");
     }
 
     /**
      * Read Hex string from port with setted separator (example if separator is "::": FF::0A::FF)
      *
      * @param byteCount count of bytes for reading
-     * @param timeout timeout in milliseconds
      *
      * @return byte array with "byteCount" length converted to Hexadecimal String
      *
      * @throws SerialPortException
-     * @throws SerialPortTimeoutException
      *
-     * @since 2.0
+     * @since 0.8
      */
-    public String readHexString(int byteCount, String separator, int timeout) throws SerialPortException, SerialPortTimeoutException {
+    public String readHexString(int byteCount, String separator) throws SerialPortException {
         checkPortOpened("readHexString()");
-        waitBytesWithTimeout("readHexString()", byteCount, timeout);
-        return readHexString(byteCount, separator);
+        byte[] buffer = readBytes(byteCount);
+        return HexEncoder.toHexString(buffer, 0, buffer.length, separator);//since 2.9.0
     }
 
     /**
      * Read Hex String array from port
      *
      * @param byteCount count of bytes for reading
-     * @param timeout timeout in milliseconds
      *
      * @return String array with "byteCount" length and Hexadecimal String values
      *
      * @throws SerialPortException
-     * @throws SerialPortTimeoutException
      *
-     * @since 2.0
+     * @since 0.8
+     */
+    public String[] readHexStringArray(int byteCount) throws SerialPortException {
+        checkPortOpened("readHexStringArray()");
+        byte[] buffer = readBytes(byteCount);
+        return HexEncoder.toHexStringArray(buffer, 0, buffer.length);//since 2.9.0
+    }
+
+    /**
+     * Read int array from port
+     *
+     * @param byteCount count of bytes for reading
+     *
+     * @return int array with values in range from 0 to 255
+     *
+     * @throws SerialPortException
+     *
+     * @since 0.8
+     */
+    public int[] readIntArray(int byteCount) throws SerialPortException {
+        enterRead("readIntArray()");
+        try {
+            //since 2.9.0 (bytes are read by parts into reusable array and converted without other copies)
+            int[] intBuffer = new int[byteCount];
+            int offset = 0;
+            try {
+                while(offset < byteCount){
+                    awaitPort("readIntArray()", SerialNativeInterface.POLLER_IN, -1);
+                    int result = readFromPort(intArrayReadBuffer, 0, Math.min(byteCount - offset, INT_ARRAY_CHUNK));
+                    if(result < 0){
+                        throw ioError("readIntArray()");
+                    }
+                    codec.getUnsignedBytes(intArrayReadBuffer, 0, intBuffer, offset, result);
+                    offset += result;
+                }
+            }
+            catch (SerialPortException ex) {
+                //Bytes aren't lost if reading was interrupted
+                byte[] rest = new byte[offset];
+                codec.putBytes(intBuffer, 0, rest, 0, offset);
+                unread(rest, 0, offset);
+                throw ex;
+            }
+            return intBuffer;
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Read bytes from port into part of byte array. Method blocks until at least one byte
+     * is received and then reads all available bytes, but not more than <b>length</b>.
+     * Method doesn't allocate any temporary arrays
+     *
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param length maximum count of bytes to read
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int read(byte[] buffer, int offset, int length) throws SerialPortException {
+        enterRead("read()");
+        try {
+            checkArrayBounds("read()", buffer, offset, length);
+            if(length == 0){
+                return 0;
+            }
+            int result;
+            if(pushbackCount > 0){
+                result = readPushback(buffer, offset, length);
+            }
+            else {
+                awaitPort("read()", SerialNativeInterface.POLLER_IN, -1);
+                result = readFromPort(buffer, offset, length);
+                if(result < 0){
+                    checkConnection("read()");
+                }
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest("read count: " + result); }
+            return result;
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Read bytes from port into buffer. Method blocks until at least one byte is received
+     * and then reads all available bytes, but not more than remaining space of buffer.
+     * Position of buffer is advanced by count of read bytes. Direct buffers are filled
+     * by the native code without any copying
+     *
+     * @param buffer buffer for storing read bytes
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int read(ByteBuffer buffer) throws SerialPortException {
+        enterRead("read()");
+        try {
+            if(buffer.isReadOnly()){
+                throw new SerialPortException(portName, "read()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            if(pushbackCount == 0 && buffer.hasRemaining()){
+                awaitPort("read()", SerialNativeInterface.POLLER_IN, -1);
+            }
+            int position = buffer.position();
+            int result;
+            if(pushbackCount > 0){
+                result = readPushback(buffer);
+                if (logger.isLoggable(FINEST)) { logger.finest("read count: " + result); }
+                return result;
+            }
+            BackgroundReader reader = backgroundReader;
+            if(reader != null){
+                result = reader.read(buffer, -1);
+                if(result < 0){
+                    checkConnection("read()");
+                }
+                if (logger.isLoggable(FINEST)) { logger.finest("read count: " + result); }
+                return result;
+            }
+            if(buffer.isDirect()){
+                result = serialInterface.readBytesDirect(portHandle, buffer, position, buffer.remaining());
+            }
+            else {
+                result = serialInterface.readBytesArray(portHandle, buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+            }
+            if(result > 0){
+                buffer.position(position + result);
+            }
+            else if(result < 0){
+                checkConnection("read()");
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest("read count: " + result); }
+            return result;
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Read available bytes (waiting for at least one) from background reader if it's running or from the port
+     * (or from pushback buffer if background reader was stopped by other thread)
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     */
+    private int readFromPort(byte[] buffer, int offset, int length) {
+        if(pushbackCount > 0){
+            return readPushback(buffer, offset, length);
+        }
+        BackgroundReader reader = backgroundReader;
+        if(reader != null){
+            return reader.read(buffer, offset, length, -1);
+        }
+        return serialInterface.readBytesArray(portHandle, buffer, offset, length);
+    }
+
+    /**
+     * Move bytes from the beginning of pushback buffer into array
+     *
+     * @return Count of moved bytes
+     */
+    private int readPushback(byte[] buffer, int offset, int length) {
+        synchronized(pushbackLock){
+            int byteCount = Math.min(pushbackCount, length);
+            System.arraycopy(pushbackBuffer, 0, buffer, offset, byteCount);
+            dropPushback(byteCount);
+            return byteCount;
+        }
+    }
+
+    /**
+     * Move bytes from the beginning of pushback buffer into byte buffer
+     *
+     * @return Count of moved bytes
+     */
+    private int readPushback(ByteBuffer buffer) {
+        synchronized(pushbackLock){
+            int byteCount = Math.min(pushbackCount, buffer.remaining());
+            buffer.put(pushbackBuffer, 0, byteCount);
+            dropPushback(byteCount);
+            return byteCount;
+        }
+    }
+
+    /**
+     * Move bytes up to and including the delimiter from the beginning of pushback buffer into array
+     *
+     * @return Count of moved bytes (the last one is the delimiter if it was found)
+     */
+    private int readPushbackUntil(byte[] buffer, int offset, int length, byte delimiter) {
+        synchronized(pushbackLock){
+            int byteCount = Math.min(pushbackCount, length);
+            for(int i = 0; i < byteCount; i++){
+                if(pushbackBuffer[i] == delimiter){
+                    byteCount = i + 1;
+                    break;
+                }
+            }
+            System.arraycopy(pushbackBuffer, 0, buffer, offset, byteCount);
+            dropPushback(byteCount);
+            return byteCount;
+        }
+    }
+
+    private void dropPushback(int byteCount) {
+        pushbackCount -= byteCount;
+        System.arraycopy(pushbackBuffer, byteCount, pushbackBuffer, 0, pushbackCount);
+    }
+
+    /**
+     * Add bytes to the end of pushback buffer, they were read from the port after bytes, which are there already
+     *
+     * @since 2.9.0
+     */
+    private void appendPushback(byte[] buffer, int offset, int length) {
+        synchronized(pushbackLock){
+            if(pushbackCount + length > pushbackBuffer.length){
+                pushbackBuffer = Arrays.copyOf(pushbackBuffer, pushbackCount + length);
+            }
+            System.arraycopy(buffer, offset, pushbackBuffer, pushbackCount, length);
+            pushbackCount += length;
+        }
+    }
+
+    /**
+     * Move bytes, which are in input buffer of the port now, to the end of pushback buffer and search the event
+     * character among them. A tty can't be peeked, so in *nix the event thread detects <b>MASK_RXFLAG</b> this way
+     * if background reader isn't running. Nothing is done while other thread is reading (bytes are taken by it) or
+     * if pushback buffer holds <b>PEEK_LIMIT</b> bytes already (the rest stays in the kernel, so flow control works)
+     *
+     * @return true if the event character was found
+     *
+     * @since 2.9.0
+     */
+    private boolean peekEventChar(int eventChar) {
+        if(!readLock.tryLock()){
+            return false;
+        }
+        try {
+            if(!stateLock.readLock().tryLock()){
+                return false;//Port is being closed
+            }
+            try {
+                boolean found = false;
+                synchronized(configLock){//Background reader can't be started meanwhile
+                    while(portOpened && portHandle != -1 && backgroundReader == null && pushbackCount < PEEK_LIMIT){
+                        int length = PEEK_LIMIT - pushbackCount;
+                        byte[] buffer = new byte[length];
+                        long value = serialInterface.readUntil(portHandle, buffer, 0, length, eventChar);
+                        int byteCount = (int)value;
+                        if(value <= 0 || byteCount <= 0){
+                            break;
+                        }
+                        appendPushback(buffer, 0, byteCount);
+                        found |= ((value >>> 32) > 0);
+                        if(byteCount < length){
+                            break;//Input buffer is empty now
+                        }
+                    }
+                }
+                return found;
+            }
+            finally {
+                stateLock.readLock().unlock();
+            }
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Return bytes to the beginning of pushback buffer, so they will be read again by the next read operation
+     * (pushback buffer is filled by other threads too, when background reader is stopped or port is reopened)
+     */
+    private void unread(byte[] buffer, int offset, int length) {
+        synchronized(pushbackLock){
+            if(pushbackCount + length > pushbackBuffer.length){
+                pushbackBuffer = Arrays.copyOf(pushbackBuffer, pushbackCount + length);
+            }
+            System.arraycopy(pushbackBuffer, 0, pushbackBuffer, length, pushbackCount);
+            System.arraycopy(buffer, offset, pushbackBuffer, 0, length);
+            pushbackCount += length;
+        }
+    }
+
+    /**
+     * Read from <b>minByteCount</b> to <b>maxByteCount</b> bytes into the beginning of array. The thread
+     * waits for data inside of the native code, so there is no polling of input buffer.
+     * If timeout is elapsed all read bytes are returned to pushback buffer and nothing is lost
+     *
+     * @return Count of read bytes
+     */
+    private int readWithTimeout(String methodName, byte[] buffer, int minByteCount, int maxByteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        int byteCount = readPushback(buffer, 0, maxByteCount);
+        //since 2.9.0 (the first byte is awaited by cancellable waiting, the rest by slices)
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        boolean virtual = isVirtualThread();
+        try {
+            while(byteCount < minByteCount){
+                int remains = (int)Math.max(0, (deadline - System.nanoTime()) / 1000000L);
+                if(!awaitPort(methodName, SerialNativeInterface.POLLER_IN, remains)){
+                    break;
+                }
+                //Data is available, the native code waits for the rest not longer than one slice (virtual thread doesn't wait there at all)
+                remains = (int)Math.max(0, (deadline - System.nanoTime()) / 1000000L);
+                int slice = (virtual ? 0 : Math.min(remains, WAIT_SLICE));
+                BackgroundReader reader = backgroundReader;
+                int result;
+                if(pushbackCount > 0){
+                    result = readPushback(buffer, byteCount, maxByteCount - byteCount);
+                }
+                else if(reader != null){
+                    result = reader.readAtLeast(buffer, byteCount, minByteCount - byteCount, maxByteCount - byteCount, slice);
+                }
+                else {
+                    result = serialInterface.readBytesTimeout(portHandle, buffer, byteCount, minByteCount - byteCount, maxByteCount - byteCount, slice);
+                }
+                if(result < 0){
+                    throw ioError(methodName);
+                }
+                byteCount += result;
+            }
+        }
+        catch (SerialPortException ex) {
+            unread(buffer, 0, byteCount);
+            throw ex;
+        }
+        if(byteCount < minByteCount){
+            unread(buffer, 0, byteCount);
+            throw new SerialPortTimeoutException(portName, methodName, timeout);
+        }
+        return byteCount;
+    }
+
+    /**
+     * Waiting for "byteCount" bytes. Received bytes are stored in pushback buffer
+     * and will be returned by the next read operation
+     */
+    private void waitBytesWithTimeout(String methodName, int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        enterRead("waitBytesWithTimeout()");
+        try {
+            if(pushbackCount >= byteCount){
+                return;
+            }
+            byte[] buffer = new byte[byteCount];
+            int readCount = readWithTimeout(methodName, buffer, byteCount, byteCount, timeout);
+            unread(buffer, 0, readCount);
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Read byte array from port
+     *
+     * @param byteCount count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with "byteCount" length
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.0
+     */
+    public byte[] readBytes(int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        enterRead("readBytes()");
+        try {
+            byte[] buffer = new byte[byteCount];
+            readWithTimeout("readBytes()", buffer, byteCount, byteCount, timeout);
+            return buffer;
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Read not less than <b>minByteCount</b> and not more than <b>maxByteCount</b> bytes from port.
+     * Method returns as soon as <b>minByteCount</b> bytes are received (all bytes which are available
+     * at this moment are returned too). If timeout is elapsed, received bytes are not lost and
+     * will be returned by the next read operation
+     *
+     * @param minByteCount minimum count of bytes for reading
+     * @param maxByteCount maximum count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with length from "minByteCount" to "maxByteCount"
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readAtLeast(int minByteCount, int maxByteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        enterRead("readAtLeast()");
+        try {
+            if(minByteCount < 0 || maxByteCount < minByteCount){
+                throw new SerialPortException(portName, "readAtLeast()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            byte[] buffer = new byte[maxByteCount];
+            int byteCount = readWithTimeout("readAtLeast()", buffer, minByteCount, maxByteCount, timeout);
+            return byteCount == maxByteCount ? buffer : Arrays.copyOf(buffer, byteCount);
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Read one frame, which is finished by silence on the line (Modbus RTU and many other protocols
+     * separate frames in this way). Method waits for the first byte up to <b>timeout</b> milliseconds
+     * and then reads bytes until <b>maxFrameSize</b> bytes are received or no byte is received during
+     * <b>interCharTimeout</b> milliseconds. The thread sleeps in the driver (Windows) or in poll() (*nix)
+     * between received bytes, so it doesn't poll input buffer. Port settings are not changed by the call
+     *
+     * @param maxFrameSize maximum size of the frame
+     * @param interCharTimeout inter-character gap in milliseconds, which finishes the frame
+     * @param timeout timeout of waiting for the first byte in milliseconds
+     *
+     * @return received frame
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readFrame(int maxFrameSize, int interCharTimeout, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        enterRead("readFrame()");
+        try {
+            if(maxFrameSize <= 0 || interCharTimeout <= 0){
+                throw new SerialPortException(portName, "readFrame()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            byte[] buffer = new byte[maxFrameSize];
+            int byteCount = readPushback(buffer, 0, maxFrameSize);
+            if(byteCount < maxFrameSize){
+                //Bytes from pushback buffer are the beginning of the frame, so only the gap is waited for the rest.
+                //The first byte is awaited by cancellable waiting (since 2.9.0), so the native code waits only for gaps
+                if(byteCount == 0 && !awaitPort("readFrame()", SerialNativeInterface.POLLER_IN, timeout)){
+                    throw new SerialPortTimeoutException(portName, "readFrame()", timeout);
+                }
+                BackgroundReader reader = backgroundReader;
+                int result;
+                if(reader != null){
+                    result = reader.readFrame(buffer, byteCount, maxFrameSize - byteCount, interCharTimeout, interCharTimeout);
+                }
+                else {
+                    result = serialInterface.readFrame(portHandle, buffer, byteCount, maxFrameSize - byteCount, interCharTimeout, interCharTimeout);
+                }
+                if(result < 0){
+                    unread(buffer, 0, byteCount);
+                    throw ioError("readFrame()");
+                }
+                byteCount += result;
+                if(byteCount == 0){
+                    throw new SerialPortTimeoutException(portName, "readFrame()", timeout);
+                }
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest("readFrame count: " + byteCount); }
+            return byteCount == maxFrameSize ? buffer : Arrays.copyOf(buffer, byteCount);
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Read bytes until the delimiter is received (for example a line finished by '\n'). Bytes which are
+     * already received are searched at once: in the native code after one read of input buffer, or in the ring
+     * of background reader without copying, so a whole line is delivered by one wakeup and one copy.
+     * Bytes received after the delimiter are not lost, they will be returned by the next read operation.
+     * If timeout is elapsed, received bytes are not lost too
+     *
+     * @param delimiter byte which finishes the data
+     * @param maxLength maximum count of bytes to read
+     * @param timeout timeout in milliseconds
+     *
+     * @return Bytes up to and including the delimiter, or <b>maxLength</b> bytes if delimiter
+     * isn't found among them (the last byte isn't the delimiter in this case)
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readUntil(byte delimiter, int maxLength, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        enterRead("readUntil()");
+        try {
+            if(maxLength <= 0){
+                throw new SerialPortException(portName, "readUntil()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            byte[] buffer = new byte[maxLength];
+            int byteCount = readPushbackUntil(buffer, 0, maxLength, delimiter);
+            boolean found = (byteCount > 0 && buffer[byteCount - 1] == delimiter);
+            long deadline = System.nanoTime() + timeout * 1000000L;
+            try {
+                while(!found && byteCount < maxLength){
+                    int remains = (int)Math.max(0, (deadline - System.nanoTime()) / 1000000L);
+                    if(!awaitPort("readUntil()", SerialNativeInterface.POLLER_IN, remains)){
+                        break;
+                    }
+                    BackgroundReader reader = backgroundReader;
+                    int result;
+                    if(pushbackCount > 0){
+                        result = readPushbackUntil(buffer, byteCount, maxLength - byteCount, delimiter);
+                    }
+                    else if(reader != null){
+                        result = reader.readUntil(buffer, byteCount, maxLength - byteCount, delimiter, 0);
+                    }
+                    else {
+                        long value = serialInterface.readUntil(portHandle, buffer, byteCount, maxLength - byteCount, delimiter & 0xFF);
+                        result = (int)value;
+                        int lineLength = (int)(value >>> 32);
+                        if(value > 0 && lineLength > 0){
+                            //Bytes after the delimiter belong to the next read operation
+                            unread(buffer, byteCount + lineLength, result - lineLength);
+                            result = lineLength;
+                        }
+                    }
+                    if(result < 0){
+                        throw ioError("readUntil()");
+                    }
+                    byteCount += result;
+                    found = (byteCount > 0 && buffer[byteCount - 1] == delimiter);
+                }
+            }
+            catch (SerialPortException ex) {
+                unread(buffer, 0, byteCount);
+                throw ex;
+            }
+            if(!found && byteCount < maxLength){
+                unread(buffer, 0, byteCount);
+                throw new SerialPortTimeoutException(portName, "readUntil()", timeout);
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest("readUntil count: " + byteCount); }
+            return byteCount == maxLength ? buffer : Arrays.copyOf(buffer, byteCount);
+        }
+        finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * Start background reader. Native thread reads data from the port into off-heap ring buffer as soon
+     * as it is received and all read methods take data from this buffer. Data bursts are read without
+     * system calls and the kernel buffer isn't overrun while the application is paused (for example by GC).
+     * Works only in Linux with JNI library, in other cases method returns false.
+     * While background reader is running, the event listener gets <b>MASK_RXCHAR</b> (and <b>MASK_RXFLAG</b>)
+     * once per portion of data moved into the ring, the event thread is woken up by the reader itself
+     *
+     * @param bufferSize size of ring buffer in bytes
+     *
+     * @return true if background reader is running after the call (method does nothing if it's running already)
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean startBackgroundReader(int bufferSize) throws SerialPortException {
+        enter("startBackgroundReader()");
+        try {
+            if(bufferSize <= 0){
+                throw new SerialPortException(portName, "startBackgroundReader()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            synchronized(configLock){
+                if(backgroundReader == null){
+                    backgroundReader = BackgroundReader.start(serialInterface, portHandle, bufferSize);
+                    if (logger.isLoggable(FINER)) { logger.finer("Background reader " + (backgroundReader != null ? "started" : "is not supported")); }
+                }
+                return backgroundReader != null;
+            }
+        }
+        finally {
+            exit();
+        }
+    }
+
+    /**
+     * Stop background reader. Data left in ring buffer is not lost and will be returned by the next read operation
+     *
+     * @return true if background reader was running
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean stopBackgroundReader() throws SerialPortException {
+        enter("stopBackgroundReader()");
+        try {
+            BackgroundReader reader;
+            synchronized(configLock){
+                reader = backgroundReader;
+                if(reader == null){
+                    return false;
+                }
+                backgroundReader = null;
+            }
+            byte[] rest = reader.stop();
+            unread(rest, 0, rest.length);
+            if (logger.isLoggable(FINER)) { logger.finer("Background reader stopped, " + rest.length + " bytes left"); }
+            return true;
+        }
+        finally {
+            exit();
+        }
+    }
+
+    private int getBackgroundReaderBytesCount() {
+        BackgroundReader reader = backgroundReader;
+        return reader != null ? reader.getBytesCount() : 0;
+    }
+
+    /**
+     * Read string from port
+     *
+     * @param byteCount count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with "byteCount" length converted to String
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.0
+     */
+    public String readString(int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        checkPortOpened("readString()");
+        waitBytesWithTimeout("readString()", byteCount, timeout);
+        return readString(byteCount);
+    }
+
+    /**
+     * Read Hex string from port (example: FF 0A FF). Separator by default is a space
+     *
+     * @param byteCount count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with "byteCount" length converted to Hexadecimal String
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.0
+     */
+    public String readHexString(int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        checkPortOpened("readHexString()");
+        waitBytesWithTimeout("readHexString()", byteCount, timeout);
+        return readHexString(byteCount);
+    }
+
+    /**
+     * Read Hex string from port with setted separator (example if separator is "::": FF::0A::FF)
+     *
+     * @param byteCount count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with "byteCount" length converted to Hexadecimal String
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.0
+     */
+    public String readHexString(int byteCount, String separator, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        checkPortOpened("readHexString()");
+        waitBytesWithTimeout("readHexString()", byteCount, timeout);
+        return readHexString(byteCount, separator);
+    }
+
+    /**
+     * Read Hex String array from port
+     *
+     * @param byteCount count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return String array with "byteCount" length and Hexadecimal String values
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.0
      */
     public String[] readHexStringArray(int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
         checkPortOpened("readHexStringArray()");
@@ -820,10 +1966,18 @@ public class LocalSerialPort implements ISerialPort {
      * @since 0.8
      */
     public int getInputBufferBytesCount() throws SerialPortException {
-        checkPortOpened("getInputBufferBytesCount()");
-        int count = serialInterface.getBuffersBytesCount(portHandle)[0];
-        if (logger.isLoggable(FINEST)) { logger.finest("Input buffer count: " + count); }
-        return count;
+        enter("getInputBufferBytesCount()");
+        try {
+            int count;
+            synchronized(portStatus){
+                count = (fillPortStatus(portStatus) ? portStatus.getInputBufferBytesCount() : -1);
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest("Input buffer count: " + count); }
+            return count;
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -836,10 +1990,18 @@ public class LocalSerialPort implements ISerialPort {
      * @since 0.8
      */
     public int getOutputBufferBytesCount() throws SerialPortException {
-        checkPortOpened("getOutputBufferBytesCount()");
-        int count = serialInterface.getBuffersBytesCount(portHandle)[1];
-        if (logger.isLoggable(FINEST)) { logger.finest("Output buffer count: " + count); }
-        return count;
+        enter("getOutputBufferBytesCount()");
+        try {
+            int count;
+            synchronized(portStatus){
+                count = (fillPortStatus(portStatus) ? portStatus.getOutputBufferBytesCount() : -1);
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest("Output buffer count: " + count); }
+            return count;
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -853,9 +2015,21 @@ public class LocalSerialPort implements ISerialPort {
      * @since 0.8
      */
     public boolean setFlowControlMode(int mask) throws SerialPortException {
-        checkPortOpened("setFlowControlMode()");
-        if (logger.isLoggable(FINER)) { logger.finer("Set flow control mode mask:(" + mask + ")"); }
-        return serialInterface.setFlowControlMode(portHandle, mask);
+        enter("setFlowControlMode()");//since 2.9.0 (write lock isn't taken, blocked write may wait for flow control change)
+        try {
+            if (logger.isLoggable(FINER)) { logger.finer("Set flow control mode mask:(" + mask + ")"); }
+            lockInterruptibly(termiosLock, "setFlowControlMode()");//since 2.9.0
+            try {
+                flowControlMode = mask;//since 2.9.0
+                return serialInterface.setFlowControlMode(portHandle, mask);
+            }
+            finally {
+                termiosLock.unlock();
+            }
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -868,10 +2042,15 @@ public class LocalSerialPort implements ISerialPort {
      * @since 0.8
      */
     public int getFlowControlMode() throws SerialPortException {
-        checkPortOpened("getFlowControlMode()");
-        int mask = serialInterface.getFlowControlMode(portHandle);
-        if (logger.isLoggable(FINER)) { logger.finer("Get flow control mode mask:(" + mask + ")"); }
-        return mask;
+        enter("getFlowControlMode()");
+        try {
+            int mask = serialInterface.getFlowControlMode(portHandle);
+            if (logger.isLoggable(FINER)) { logger.finer("Get flow control mode mask:(" + mask + ")"); }
+            return mask;
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -886,10 +2065,15 @@ public class LocalSerialPort implements ISerialPort {
      * @since 0.8
      */
     public boolean sendBreak(int duration)throws SerialPortException {
-        checkPortOpened("sendBreak()");
-        boolean brk = serialInterface.sendBreak(portHandle, duration);
-        if (logger.isLoggable(FINER)) { logger.finer("Sending break; duration: " + duration + ", got: " + brk); }
-        return brk;
+        enterWrite("sendBreak()");
+        try {
+            boolean brk = serialInterface.sendBreak(portHandle, duration);
+            if (logger.isLoggable(FINER)) { logger.finer("Sending break; duration: " + duration + ", got: " + brk); }
+            return brk;
+        }
+        finally {
+            exitWrite();
+        }
     }
 
     private int[][] waitEvents() {
@@ -907,22 +2091,323 @@ public class LocalSerialPort implements ISerialPort {
         if(!portOpened){
             throw new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_NOT_OPENED);
         }
+        //since 2.9.0 ->
+        if(portHandle == -1){
+            synchronized(reopenLock){
+                waitReopening();
+            }
+            if(portHandle == -1){
+                throw new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_DISCONNECTED);
+            }
+        }
+        //<- since 2.9.0
+    }
+
+    /**
+     * Enter operation with opened port. Any count of operations may be executed at the same time,
+     * closePort() waits until all of them are finished. Shall be paired with <b>exit()</b>
+     *
+     * @since 2.9.0
+     */
+    private void enter(String methodName) throws SerialPortException {
+        stateLock.readLock().lock();
+        try {
+            checkPortOpened(methodName);
+        }
+        catch (SerialPortException ex) {
+            stateLock.readLock().unlock();
+            throw ex;
+        }
+    }
+
+    private void exit() {
+        stateLock.readLock().unlock();
+    }
+
+    /**
+     * Enter read operation. Read operations are executed one by one (bytes of concurrent
+     * reads would be mixed), but they don't wait for write operations
+     *
+     * @since 2.9.0
+     */
+    private void enterRead(String methodName) throws SerialPortException {
+        lockInterruptibly(readLock, methodName);
+        try {
+            enter(methodName);
+        }
+        catch (SerialPortException ex) {
+            readLock.unlock();
+            throw ex;
+        }
+    }
+
+    private void exitRead() {
+        exit();
+        readLock.unlock();
+    }
+
+    /**
+     * Enter write operation. Write operations are executed one by one, so bytes of one call are
+     * never mixed with bytes of other threads. Parameters of the port are changed between write operations
+     *
+     * @since 2.9.0
+     */
+    private void enterWrite(String methodName) throws SerialPortException {
+        lockInterruptibly(writeLock, methodName);
+        try {
+            enter(methodName);
+        }
+        catch (SerialPortException ex) {
+            writeLock.unlock();
+            throw ex;
+        }
+    }
+
+    private void exitWrite() {
+        exit();
+        writeLock.unlock();
+    }
+
+    private void lockInterruptibly(ReentrantLock lock, String methodName) throws SerialPortException {
+        try {
+            lock.lockInterruptibly();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SerialPortException(portName, methodName, SerialPortException.TYPE_INTERRUPTED);
+        }
+    }
+
+    /**
+     * Wait until operations of other threads are finished (threads waiting for data are woken up
+     * repeatedly, so threads which started waiting after the first cancelling don't block closing)
+     *
+     * @since 2.9.0
+     */
+    private void lockExclusive() {
+        boolean interrupted = false;
+        while(true){
+            try {
+                if(stateLock.writeLock().tryLock(WAIT_SLICE, TimeUnit.MILLISECONDS)){
+                    break;
+                }
+            }
+            catch (InterruptedException ex) {
+                interrupted = true;
+            }
+            cancelWaits();
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait until the port will be ready for reading (<b>POLLER_IN</b>: there are bytes in input buffer,
+     * in background reader or in pushback buffer) or writing (<b>POLLER_OUT</b>). Virtual threads are parked
+     * in shared poller (Linux), so they don't hold carrier threads. Other threads wait in the native code
+     * by slices, so interrupt of the thread is noticed in time. closePort() wakes up all waiting threads at once
+     *
+     * @param timeout timeout in milliseconds (timeout < 0 means infinite waiting)
+     *
+     * @return false if timeout is elapsed
+     *
+     * @throws SerialPortException <b>TYPE_PORT_NOT_OPENED</b> if port was closed, <b>TYPE_INTERRUPTED</b>
+     * if the thread was interrupted (interrupt status is not cleared)
+     *
+     * @since 2.9.0
+     */
+    private boolean awaitPort(String methodName, int events, int timeout) throws SerialPortException {
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        int remains = timeout;
+        PortPoller poller = (isVirtualThread() ? PortPoller.getInstance() : null);
+        while(true){
+            checkWaitCancelled(methodName);
+            if(events == SerialNativeInterface.POLLER_IN && pushbackCount > 0){
+                return true;
+            }
+            int slice = (remains < 0 || remains > WAIT_SLICE ? WAIT_SLICE : remains);
+            BackgroundReader reader = backgroundReader;
+            int result;
+            if(events == SerialNativeInterface.POLLER_IN && reader != null){
+                result = reader.await(slice);
+                if(result < 0){
+                    if(reader == backgroundReader){
+                        //Native thread has stopped because of error, the read operation will report it
+                        return true;
+                    }
+                    //Reader was stopped by other thread, rest of data is moved to pushback buffer
+                    continue;
+                }
+            }
+            else if(poller != null){
+                //Parking is interrupted by Thread.interrupt() and closePort(), so slices are not needed
+                result = poller.await(portHandle, events, remains);
+                if(result < 0){
+                    poller = null;
+                    continue;
+                }
+            }
+            else {
+                result = serialInterface.waitPort(portHandle, canceller, events, slice);
+            }
+            if(result < 0){
+                throw ioError(methodName);
+            }
+            if(result > 0){
+                return true;
+            }
+            if(timeout >= 0){
+                remains = (int)((deadline - System.nanoTime()) / 1000000L);
+                if(remains <= 0){
+                    checkWaitCancelled(methodName);
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void checkWaitCancelled(String methodName) throws SerialPortException {
+        if(closing || !portOpened){
+            throw new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_NOT_OPENED);
+        }
+        if(Thread.currentThread().isInterrupted()){
+            throw new SerialPortException(portName, methodName, SerialPortException.TYPE_INTERRUPTED);
+        }
+    }
+
+    /**
+     * Wake up all threads waiting for the port, it's called when port is being closed
+     *
+     * @since 2.9.0
+     */
+    private void cancelWaits() {
+        if(canceller != -1){
+            serialInterface.cancel(canceller);
+        }
+        PortPoller.cancelWaits(portHandle);
+    }
+
+    private static boolean isVirtualThread() {
+        if(methodIsVirtual == null){
+            return false;
+        }
+        try {
+            return (Boolean)methodIsVirtual.invoke(Thread.currentThread());
+        }
+        catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static Method getIsVirtualMethod() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        }
+        catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Check that offset and length define correct region of array
+     *
+     * @param methodName method name
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    private void checkArrayBounds(String methodName, byte[] buffer, int offset, int length) throws SerialPortException {
+        if(offset < 0 || length < 0 || offset > buffer.length - length){
+            throw new SerialPortException(portName, methodName, SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+    }
+
+    /**
+     * Getting native handle of opened port (for internal use)
+     *
+     * @since 2.9.0
+     */
+    long getPortHandle(String methodName) throws SerialPortException {
+        checkPortOpened(methodName);
+        return portHandle;
+    }
+
+    /**
+     * Getting lines status. Lines status is sent as 0 – OFF and 1 - ON
+     *
+     * @return Method returns the array containing information about lines in following order:
+     * <br><b>element 0</b> - <b>CTS</b> line state</br>
+     * <br><b>element 1</b> - <b>DSR</b> line state</br>
+     * <br><b>element 2</b> - <b>RING</b> line state</br>
+     * <br><b>element 3</b> - <b>RLSD</b> line state</br>
+     *
+     * @throws SerialPortException
+     */
+    public int[] getLinesStatus() throws SerialPortException {
+        enter("getLinesStatus()");
+        try {
+            synchronized(portStatus){
+                return (fillPortStatus(portStatus) ? portStatus.getLinesStatus() : new int[4]);
+            }
+        }
+        finally {
+            exit();
+        }
+    }
+
+    /**
+     * Get snapshot of port state: counts of bytes in buffers, state of lines and counters of
+     * interrupts. All values are taken in one native call without allocation of objects
+     *
+     * @param status object for storing of state, it may be reused by the next calls
+     * (if it's <b>null</b> new object is created)
+     *
+     * @return Filled status object
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public PortStatus getPortStatus(PortStatus status) throws SerialPortException {
+        enter("getPortStatus()");
+        try {
+            if(status == null){
+                status = new PortStatus();
+            }
+            if(!fillPortStatus(status)){
+                throw ioError("getPortStatus()");
+            }
+            if (logger.isLoggable(FINEST)) { logger.finest(status.toString()); }
+            return status;
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
-     * Getting lines status. Lines status is sent as 0 – OFF and 1 - ON
-     *
-     * @return Method returns the array containing information about lines in following order:
-     * <br><b>element 0</b> - <b>CTS</b> line state</br>
-     * <br><b>element 1</b> - <b>DSR</b> line state</br>
-     * <br><b>element 2</b> - <b>RING</b> line state</br>
-     * <br><b>element 3</b> - <b>RLSD</b> line state</br>
-     *
-     * @throws SerialPortException
+     * Fill status object, bytes of pushback buffer and background reader are counted as bytes of input buffer
      */
-    public int[] getLinesStatus() throws SerialPortException {
-        checkPortOpened("getLinesStatus()");
-        return serialInterface.getLinesStatus(portHandle);
+    private boolean fillPortStatus(PortStatus status) {
+        if(!serialInterface.getEventsState(portHandle, status.state)){
+            return false;
+        }
+        status.state[SerialNativeInterface.STATE_INPUT_BYTES] += pushbackCount + getBackgroundReaderBytesCount();
+        return true;
+    }
+
+    private int getLines(String methodName) throws SerialPortException {
+        enter(methodName);
+        try {
+            synchronized(portStatus){
+                return (fillPortStatus(portStatus) ? portStatus.getLines() : 0);
+            }
+        }
+        finally {
+            exit();
+        }
     }
 
     /**
@@ -933,15 +2418,9 @@ public class LocalSerialPort implements ISerialPort {
      * @throws SerialPortException
      */
     public boolean isCTS() throws SerialPortException {
-        checkPortOpened("isCTS()");
-        if(serialInterface.getLinesStatus(portHandle)[0] == 1){
-            if (logger.isLoggable(FINER)) { logger.finer("isCTS()=true"); }
-            return true;
-        }
-        else {
-            if (logger.isLoggable(FINER)) { logger.finer("isCTS()=false"); }
-            return false;
-        }
+        boolean value = ((getLines("isCTS()") & MASK_CTS) != 0);
+        if (logger.isLoggable(FINER)) { logger.finer("isCTS()=" + value); }
+        return value;
     }
 
     /**
@@ -952,15 +2431,9 @@ public class LocalSerialPort implements ISerialPort {
      * @throws SerialPortException
      */
     public boolean isDSR() throws SerialPortException {
-        checkPortOpened("isDSR()");
-        if(serialInterface.getLinesStatus(portHandle)[1] == 1){
-            if (logger.isLoggable(FINER)) { logger.finer("isDSR()=true"); }
-            return true;
-        }
-        else {
-            if (logger.isLoggable(FINER)) { logger.finer("isDSR()=false"); }
-            return false;
-        }
+        boolean value = ((getLines("isDSR()") & MASK_DSR) != 0);
+        if (logger.isLoggable(FINER)) { logger.finer("isDSR()=" + value); }
+        return value;
     }
 
     /**
@@ -971,15 +2444,9 @@ public class LocalSerialPort implements ISerialPort {
      * @throws SerialPortException
      */
     public boolean isRING() throws SerialPortException {
-        checkPortOpened("isRING()");
-        if(serialInterface.getLinesStatus(portHandle)[2] == 1){
-            if (logger.isLoggable(FINER)) { logger.finer("isRING()=true"); }
-            return true;
-        }
-        else {
-            if (logger.isLoggable(FINER)) { logger.finer("isRING()=false"); }
-            return false;
-        }
+        boolean value = ((getLines("isRING()") & MASK_RING) != 0);
+        if (logger.isLoggable(FINER)) { logger.finer("isRING()=" + value); }
+        return value;
     }
 
     /**
@@ -990,15 +2457,9 @@ public class LocalSerialPort implements ISerialPort {
      * @throws SerialPortException
      */
     public boolean isRLSD() throws SerialPortException {
-        checkPortOpened("isRLSD()");
-        if(serialInterface.getLinesStatus(portHandle)[3] == 1){
-            if (logger.isLoggable(FINER)) { logger.finer("isRLSD()=true"); }
-            return true;
-        }
-        else {
-            if (logger.isLoggable(FINER)) { logger.finer("isRLSD()=false"); }
-            return false;
-        }
+        boolean value = ((getLines("isRLSD()") & MASK_RLSD) != 0);
+        if (logger.isLoggable(FINER)) { logger.finer("isRLSD()=" + value); }
+        return value;
     }
 
     /**
@@ -1043,32 +2504,39 @@ public class LocalSerialPort implements ISerialPort {
      */
     private void addEventListener(SerialPortEventListener listener, int mask, boolean overwriteMask) throws SerialPortException {
         if (logger.isLoggable(FINER)) { logger.finer("Adding event listener mask: " + mask + ", overwrite: " + overwriteMask); }
-        checkPortOpened("addEventListener()");
-        if(!eventListenerAdded){
-            if((maskAssigned && overwriteMask) || !maskAssigned) {
-                setEventsMask(mask);
-            }
-            eventListener = listener;
-            eventThread = getNewEventThread();
-            eventThread.setName("EventThread " + portName);
-            //since 2.2.0 ->
-            try {
-                Method method = eventListener.getClass().getMethod("errorOccurred", new Class[]{SerialPortException.class});
-                method.setAccessible(true);
-                methodErrorOccurred = method;
-            }
-            catch (SecurityException ex) {
-                //Do nothing
-            }
-            catch (NoSuchMethodException ex) {
-                //Do nothing
+        enter("addEventListener()");
+        try {
+            synchronized(configLock){//since 2.9.0
+                if(!eventListenerAdded){
+                    if((maskAssigned && overwriteMask) || !maskAssigned) {
+                        setEventsMask(mask);
+                    }
+                    eventListener = listener;
+                    eventThread = getNewEventThread();
+                    eventThread.setName("EventThread " + portName);
+                    //since 2.2.0 ->
+                    try {
+                        Method method = eventListener.getClass().getMethod("errorOccurred", new Class[]{SerialPortException.class});
+                        method.setAccessible(true);
+                        methodErrorOccurred = method;
+                    }
+                    catch (SecurityException ex) {
+                        //Do nothing
+                    }
+                    catch (NoSuchMethodException ex) {
+                        //Do nothing
+                    }
+                    //<- since 2.2.0
+                    eventThread.start();
+                    eventListenerAdded = true;
+                }
+                else {
+                    throw new SerialPortException(portName, "addEventListener()", SerialPortException.TYPE_LISTENER_ALREADY_ADDED);
+                }
             }
-            //<- since 2.2.0
-            eventThread.start();
-            eventListenerAdded = true;
         }
-        else {
-            throw new SerialPortException(portName, "addEventListener()", SerialPortException.TYPE_LISTENER_ALREADY_ADDED);
+        finally {
+            exit();
         }
     }
 
@@ -1097,16 +2565,24 @@ public class LocalSerialPort implements ISerialPort {
      * @throws SerialPortException
      */
     public boolean removeEventListener() throws SerialPortException {
-        checkPortOpened("removeEventListener()");
-        if(!eventListenerAdded){
-            throw new SerialPortException(portName, "removeEventListener()", SerialPortException.TYPE_CANT_REMOVE_LISTENER);
-        }
-        eventThread.terminateThread();
-        setEventsMask(0);
-        if(Thread.currentThread().getId() != eventThread.getId()){
-            if(eventThread.isAlive()){
+        if(!portOpened){//since 2.9.0 (listener of disconnected port can be removed)
+            throw new SerialPortException(portName, "removeEventListener()", SerialPortException.TYPE_PORT_NOT_OPENED);
+        }
+        EventThread thread;
+        synchronized(configLock){//since 2.9.0 (thread is joined without lock, listener may use the port)
+            if(!eventListenerAdded){
+                throw new SerialPortException(portName, "removeEventListener()", SerialPortException.TYPE_CANT_REMOVE_LISTENER);
+            }
+            thread = eventThread;
+            thread.terminateThread();
+            if(portHandle != -1){//since 2.9.0 (port wasn't reopened after disconnection)
+                setEventsMask(0);
+            }
+        }
+        if(Thread.currentThread().getId() != thread.getId()){
+            if(thread.isAlive()){
                 try {
-                    eventThread.join(5000);
+                    thread.join(5000);
                 }
                 catch (InterruptedException ex) {
                     throw new SerialPortException(portName, "removeEventListener()", SerialPortException.TYPE_LISTENER_THREAD_INTERRUPTED);
@@ -1119,71 +2595,358 @@ public class LocalSerialPort implements ISerialPort {
     }
 
     /**
-     * Close port. This method deletes event listener first, then closes the port
+     * Close port. This method deletes event listener first, then closes the port.
+     * Threads which are blocked in read or write operations are woken up at once
+     * and get exception with <b>TYPE_PORT_NOT_OPENED</b> type (since 2.9.0).
+     * The port is closed when operations of other threads are finished, so the handle
+     * is never closed under a running native call (since 2.9.0).
+     * <br>Blocking operations are interrupted by <b>Thread.interrupt()</b> too
+     * (exception with <b>TYPE_INTERRUPTED</b> type, interrupt status isn't cleared)
      *
      * @return If the operation is successfully completed, the method returns true, otherwise false
      *
      * @throws SerialPortException
      */
     public boolean closePort() throws SerialPortException {
-        checkPortOpened("closePort()");
+        if(!portOpened){//since 2.9.0 (disconnected port can be closed)
+            throw new SerialPortException(portName, "closePort()", SerialPortException.TYPE_PORT_NOT_OPENED);
+        }
         if (logger.isLoggable(FINER)) { logger.finer("Closing port"); }
-        if(eventListenerAdded){
-            removeEventListener();
+        synchronized(reopenLock){//since 2.9.0 (stop reopening of disconnected port)
+            closing = true;
+            reopenLock.notifyAll();
+        }
+        cancelWaits();//since 2.9.0
+        //since 2.9.0 (operation of this thread can't be waited for, if the port is closed by listener inside of it)
+        boolean exclusive = (stateLock.getReadHoldCount() == 0);
+        try {
+            if(eventListenerAdded){
+                removeEventListener();
+            }
+            if(exclusive){
+                lockExclusive();//since 2.9.0
+            }
+            try {
+                BackgroundReader reader = backgroundReader;//since 2.9.0
+                if(reader != null){
+                    backgroundReader = null;
+                    reader.stop();
+                }
+                boolean returnValue;
+                synchronized(reopenLock){
+                    waitReopening();
+                    //Handle is -1 if disconnected port couldn't be reopened
+                    returnValue = (portHandle == -1 || serialInterface.closePort(portHandle));
+                }
+                if(returnValue){
+                    maskAssigned = false;
+                    portOpened = false;
+                    pushbackCount = 0;
+                    connection++;
+                }
+                //since 2.9.0 ->
+                if(canceller != -1){
+                    serialInterface.destroyCanceller(canceller);
+                    //Signaled canceller can't be used for opened port
+                    canceller = (returnValue ? -1 : serialInterface.createCanceller());
+                }
+                //<- since 2.9.0
+                return returnValue;
+            }
+            finally {
+                if(exclusive){
+                    stateLock.writeLock().unlock();
+                }
+            }
+        }
+        finally {
+            closing = false;
+        }
+    }
+
+    /**
+     * Set policy of reopening of disconnected port (USB adapter was unplugged, port was hung up).
+     * When disconnection is detected by the event thread or by failed read operation, the port
+     * is closed and opened again every <b>retryInterval</b> milliseconds, until it's opened,
+     * <b>maxAttempts</b> attempts are made or <b>closePort()</b> is called. Parameters, flow control
+     * mode, events mask and background reader are restored after reopening.
+     * <br>Read operation which has detected disconnection throws exception with <b>TYPE_PORT_DISCONNECTED</b>
+     * type anyway (data in buffers of the driver is lost), next operations work with reopened port.
+     * Listener is notified through <b>errorOccurred(SerialPortException)</b> method (if it's defined)
+     * before reopening. If port can't be reopened, all operations fail until <b>closePort()</b> is called.
+     * <br>By default reopening is disabled
+     *
+     * @param retryInterval interval between attempts in milliseconds, 0 disables reopening
+     * @param maxAttempts maximum count of attempts, 0 means unlimited count
+     *
+     * @return true if reopening is supported for this port
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean setReopenPolicy(int retryInterval, int maxAttempts) throws SerialPortException {
+        if(retryInterval < 0 || maxAttempts < 0){
+            throw new SerialPortException(portName, "setReopenPolicy()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        if (logger.isLoggable(FINER)) { logger.finer("Set reopen policy interval: " + retryInterval + " attempts: " + maxAttempts); }
+        reopenInterval = retryInterval;
+        reopenAttempts = maxAttempts;
+        return true;
+    }
+
+    /**
+     * Notify listener about disconnection of the port, then close the port and open it again
+     * according to reopen policy. Only one thread reopens the port, others wait for the result
+     *
+     * @param connectionNumber number of disconnected connection (if current number is other, port was already reopened)
+     * @param methodName method which has detected disconnection
+     *
+     * @return true if port is opened again
+     *
+     * @since 2.9.0
+     */
+    private boolean reopen(int connectionNumber, String methodName) {
+        synchronized(reopenLock){
+            waitReopening();
+            if(connection != connectionNumber){
+                return portHandle != -1;
+            }
+            if(!portOpened || closing || connectionNumber == reportedConnection){
+                return false;
+            }
+            reportedConnection = connectionNumber;
+            reopening = true;
+            reopenThread = Thread.currentThread();
+        }
+        try {
+            //Listener is called without lock, it may close the port
+            fireErrorOccurred(new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_DISCONNECTED));
+            synchronized(reopenLock){
+                if(!portOpened || closing || reopenInterval <= 0){
+                    return false;
+                }
+                int readerSize = 0;
+                BackgroundReader reader = backgroundReader;
+                if(reader != null){
+                    backgroundReader = null;
+                    readerSize = reader.getCapacity();
+                    byte[] rest = reader.stop();
+                    unread(rest, 0, rest.length);
+                }
+                serialInterface.closePort(portHandle);
+                portHandle = -1;
+                connection++;
+                int attempts = 0;
+                while(!closing){
+                    long newHandle = serialInterface.openPort(portName, useTIOCEXCL);
+                    if(newHandle >= 0){
+                        portHandle = newHandle;
+                        restoreSettings(readerSize);
+                        if (logger.isLoggable(FINER)) { logger.finer("Port " + portName + " is reopened"); }
+                        return true;
+                    }
+                    attempts++;
+                    if(reopenAttempts > 0 && attempts >= reopenAttempts){
+                        break;
+                    }
+                    try {
+                        reopenLock.wait(reopenInterval);
+                    }
+                    catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                if (logger.isLoggable(FINER)) { logger.finer("Port " + portName + " isn't reopened after " + attempts + " attempts"); }
+                return false;
+            }
+        }
+        finally {
+            synchronized(reopenLock){
+                reopening = false;
+                reopenThread = null;
+                reopenLock.notifyAll();
+            }
+            EventThread thread = eventThread;
+            if(thread != null){
+                thread.wakeup();//Event thread shall register new handle (or stop)
+            }
+        }
+    }
+
+    /**
+     * Wait until other thread will finish reopening of the port (shall be called with reopenLock).
+     * Thread which reopens the port doesn't wait (listener may close the port)
+     */
+    private void waitReopening() {
+        while(reopening && reopenThread != Thread.currentThread()){
+            try {
+                reopenLock.wait();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Apply settings of the port after reopening
+     */
+    private void restoreSettings(int readerSize) {
+        termiosLock.lock();
+        try {
+            int[] params = portParams;
+            if(params != null){
+                serialInterface.setParams(portHandle, params[0], params[1], params[2], params[3], params[4] == 1, params[5] == 1, params[6]);
+            }
+            if(flowControlMode != -1){
+                serialInterface.setFlowControlMode(portHandle, flowControlMode);
+            }
+        }
+        finally {
+            termiosLock.unlock();
+        }
+        if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_WINDOWS && maskAssigned){
+            serialInterface.setEventsMask(portHandle, windowsMask);
+        }
+        if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_WINDOWS && eventChar != -1){
+            serialInterface.setEventChar(portHandle, eventChar);
+        }
+        if(readerSize > 0){
+            backgroundReader = BackgroundReader.start(serialInterface, portHandle, readerSize);
+        }
+    }
+
+    /**
+     * Check that port is still connected after failed operation. If it's disconnected,
+     * reopen policy is applied
+     *
+     * @return true if port is connected (or it was reopened)
+     *
+     * @since 2.9.0
+     */
+    private boolean checkConnection(String methodName) {
+        int connectionNumber = connection;
+        long handle = portHandle;
+        if(handle != -1 && serialInterface.isConnected(handle)){
+            return true;
+        }
+        if (logger.isLoggable(FINER)) { logger.finer("Port " + portName + " is disconnected"); }
+        reopen(connectionNumber, methodName);
+        return false;
+    }
+
+    /**
+     * Create exception for failed I/O operation: <b>TYPE_PORT_DISCONNECTED</b> if port is disconnected,
+     * otherwise <b>TYPE_IO_ERROR</b>
+     *
+     * @since 2.9.0
+     */
+    private SerialPortException ioError(String methodName) {
+        if(closing || !portOpened){
+            //Port was closed by other thread during the operation
+            return new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_NOT_OPENED);
+        }
+        if(checkConnection(methodName)){
+            return new SerialPortException(portName, methodName, SerialPortException.TYPE_IO_ERROR);
         }
-        boolean returnValue = serialInterface.closePort(portHandle);
-        if(returnValue){
-            maskAssigned = false;
-            portOpened = false;
+        return new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_DISCONNECTED);
+    }
+
+    /**
+     * Pass exception to <b>errorOccurred(SerialPortException)</b> method of listener if it's defined
+     *
+     * @since 2.9.0
+     */
+    private void fireErrorOccurred(SerialPortException exception) {
+        Method method = methodErrorOccurred;
+        if(method != null){
+            try {
+                method.invoke(eventListener, new Object[]{exception});
+            }
+            catch (Exception ex) {
+                if (logger.isLoggable(FINER)) { logger.finer("errorOccurred() has failed: " + ex); }
+            }
         }
-        return returnValue;
     }
 
-    private EventThread eventThread;
+    private volatile EventThread eventThread;//since 2.9.0 volatile
 
     private class EventThread extends Thread {
 
-        private boolean threadTerminated = false;
+        private volatile boolean threadTerminated = false;
 
         @Override
         public void run() {
             while(!threadTerminated){
+                int connectionNumber = connection;//since 2.9.0
+                long handle = portHandle;
                 int[][] eventArray = waitEvents();
+                boolean failed = false;
                 for(int i = 0; i < eventArray.length; i++){
                     if(eventArray[i][0] > 0 && !threadTerminated){
                         eventListener.serialEvent(new SerialPortEvent(portName, eventArray[i][0], eventArray[i][1]));
-                        //FIXME
-                        /*if(methodErrorOccurred != null){
-                            try {
-                                methodErrorOccurred.invoke(eventListener, new Object[]{new SerialPortException("port", "method", "exception")});
-                            }
-                            catch (Exception ex) {
-                                System.out.println(ex);
-                            }
-                        }*/
+                    }
+                    else if(eventArray[i][0] < 0){
+                        failed = true;//since 2.9.0
+                    }
+                }
+                //since 2.9.0 ->
+                if(failed && !threadTerminated){
+                    if(serialInterface.isConnected(handle)){
+                        fireErrorOccurred(new SerialPortException(portName, "waitEvents()", SerialPortException.TYPE_IO_ERROR));
+                    }
+                    else if(!portDisconnected(connectionNumber)){
+                        break;
                     }
                 }
+                //<- since 2.9.0
             }
         }
 
-        private void terminateThread(){
+        /**
+         * Notify listener about disconnection of the port and reopen it if reopen policy is set
+         *
+         * @return true if port is reopened and thread shall continue its work
+         *
+         * @since 2.9.0
+         */
+        boolean portDisconnected(int connectionNumber){
+            if (logger.isLoggable(FINER)) { logger.finer("Port " + portName + " is disconnected"); }
+            return !threadTerminated && reopen(connectionNumber, "waitEvents()");
+        }
+
+        void terminateThread(){
             threadTerminated = true;
         }
+
+        /**
+         * Interrupt waiting of thread, so changed events mask will be applied
+         *
+         * @since 2.9.0
+         */
+        void wakeup(){
+            //Do nothing
+        }
     }
 
     /**
      * EventListener for Linux OS
+     * <br>In Linux thread sleeps in epoll_wait() until data is received (by the port or by background reader),
+     * output buffer is drained, lines are changed (native lines waiter) or port is hung up. Interrupts counters
+     * for BREAK and ERR events can't be awaited, so they are checked periodically, only if such
+     * events are in the mask. In other OS state of port is checked in the loop
      *
      * @since 0.8
      */
     private class LinuxEventThread extends EventThread {
 
-        //Essential interruptions for events: BREAK, ERR, TXEMPTY
-        private final int INTERRUPT_BREAK = 512;
-        private final int INTERRUPT_TX = 1024;
-        private final int INTERRUPT_FRAME = 2048;
-        private final int INTERRUPT_OVERRUN = 4096;
-        private final int INTERRUPT_PARITY = 8192;
+        //Period of checking in milliseconds for events, which can't be awaited by poller
+        private static final int CHECK_PERIOD = 10;
+        private static final int MASK_LINES = MASK_CTS | MASK_DSR | MASK_RING | MASK_RLSD;
+        private static final int MASK_CHECKED_PERIODICALLY = MASK_BREAK | MASK_ERR;
 
         //Count of interruptions
         private int interruptBreak;
@@ -1198,158 +2961,311 @@ public class LocalSerialPort implements ISerialPort {
         private int preRLSD;
         private int preRING;
 
+        //TX interrupt was occurred, but output buffer wasn't empty yet
+        private boolean txEmptyPending;
+
+        //Background reader, which notifies about new data through the poller, and its position
+        //at the previous check (since 2.9.0)
+        private BackgroundReader registeredReader;
+        private boolean readerRegistered;
+        private long receivedPosition;
+
+        //since 2.9.0 ->
+        private final PortStatus status = new PortStatus();
+        private long poller = -1;
+        private final Object pollerLock = new Object();
+        private final long[] readyHandles = new long[2];
+        private final int[] readyEvents = new int[2];
+        private long linesWaiter = -1;
+        private long linesWaiterHandle = -1;
+        private boolean linesWaiterSupported;
+        private int registeredConnection = -1;//number of connection, which handle was added to poller
+        //<- since 2.9.0
+
         //Need to get initial states
         public LinuxEventThread(){
-            int[][] eventArray = waitEvents();
-            for(int i = 0; i < eventArray.length; i++){
-                int eventType = eventArray[i][0];
-                int eventValue = eventArray[i][1];
-                switch(eventType){
-                    case INTERRUPT_BREAK:
-                        interruptBreak = eventValue;
-                        break;
-                    case INTERRUPT_TX:
-                        interruptTX = eventValue;
-                        break;
-                    case INTERRUPT_FRAME:
-                        interruptFrame = eventValue;
-                        break;
-                    case INTERRUPT_OVERRUN:
-                        interruptOverrun = eventValue;
-                        break;
-                    case INTERRUPT_PARITY:
-                        interruptParity = eventValue;
-                        break;
-                    case MASK_CTS:
-                        preCTS = eventValue;
-                        break;
-                    case MASK_DSR:
-                        preDSR = eventValue;
-                        break;
-                    case MASK_RING:
-                        preRING = eventValue;
-                        break;
-                    case MASK_RLSD:
-                        preRLSD = eventValue;
-                        break;
+            if(SerialNativeInterface.getOsType() == SerialNativeInterface.OS_LINUX){//since 2.9.0
+                poller = serialInterface.createPoller();
+                if(poller != -1 && !registerPort()){
+                    serialInterface.destroyPoller(poller);
+                    poller = -1;
                 }
+                linesWaiterSupported = (poller != -1);
+                if (logger.isLoggable(FINER)) { logger.finer("Linux event thread poller: " + (poller != -1)); }
             }
+            fillPortStatus(status);
+            interruptBreak = status.getBreakCount();
+            interruptTX = status.getTxCount();
+            interruptFrame = status.getFrameErrorCount();
+            interruptOverrun = status.getOverrunErrorCount();
+            interruptParity = status.getParityErrorCount();
+            preCTS = status.isCTS() ? 1 : 0;
+            preDSR = status.isDSR() ? 1 : 0;
+            preRING = status.isRING() ? 1 : 0;
+            preRLSD = status.isRLSD() ? 1 : 0;
         }
 
         @Override
         public void run() {
-            while(!super.threadTerminated){
-                int[][] eventArray = waitEvents();
-                int mask = getLinuxMask();
-                boolean interruptTxChanged = false;
-                int errorMask = 0;
-                for(int i = 0; i < eventArray.length; i++){
-                    boolean sendEvent = false;
-                    int eventType = eventArray[i][0];
-                    int eventValue = eventArray[i][1];
-                    if(eventType > 0 && !super.threadTerminated){
-                        switch(eventType){
-                            case INTERRUPT_BREAK:
-                                if(eventValue != interruptBreak){
-                                    interruptBreak = eventValue;
-                                    if((mask & MASK_BREAK) == MASK_BREAK){
-                                        eventType = MASK_BREAK;
-                                        eventValue = 0;
-                                        sendEvent = true;
-                                    }
-                                }
-                                break;
-                            case INTERRUPT_TX:
-                                if(eventValue != interruptTX){
-                                    interruptTX = eventValue;
-                                    interruptTxChanged = true;
-                                }
-                                break;
-                            case INTERRUPT_FRAME:
-                                if(eventValue != interruptFrame){
-                                    interruptFrame = eventValue;
-                                    errorMask |= ERROR_FRAME;
-                                }
-                                break;
-                            case INTERRUPT_OVERRUN:
-                                if(eventValue != interruptOverrun){
-                                    interruptOverrun = eventValue;
-                                    errorMask |= ERROR_OVERRUN;
-                                }
-                                break;
-                            case INTERRUPT_PARITY:
-                                if(eventValue != interruptParity){
-                                    interruptParity = eventValue;
-                                    errorMask |= ERROR_PARITY;
-                                }
-                                if((mask & MASK_ERR) == MASK_ERR && errorMask != 0){
-                                    eventType = MASK_ERR;
-                                    eventValue = errorMask;
-                                    sendEvent = true;
-                                }
-                                break;
-                            case MASK_CTS:
-                                if(eventValue != preCTS){
-                                    preCTS = eventValue;
-                                    if((mask & MASK_CTS) == MASK_CTS){
-                                        sendEvent = true;
-                                    }
-                                }
-                                break;
-                            case MASK_DSR:
-                                if(eventValue != preDSR){
-                                    preDSR = eventValue;
-                                    if((mask & MASK_DSR) == MASK_DSR){
-                                        sendEvent = true;
-                                    }
-                                }
-                                break;
-                            case MASK_RING:
-                                if(eventValue != preRING){
-                                    preRING = eventValue;
-                                    if((mask & MASK_RING) == MASK_RING){
-                                        sendEvent = true;
-                                    }
-                                }
-                                break;
-                            case MASK_RLSD: /*DCD*/
-                                if(eventValue != preRLSD){
-                                    preRLSD = eventValue;
-                                    if((mask & MASK_RLSD) == MASK_RLSD){
-                                        sendEvent = true;
-                                    }
-                                }
-                                break;
-                            case MASK_RXCHAR:
-                                if(((mask & MASK_RXCHAR) == MASK_RXCHAR) && (eventValue > 0)){
-                                    sendEvent = true;
-                                }
+            try {
+                while(!super.threadTerminated){
+                    int changedLines = 0;
+                    updateReader();
+                    if(poller != -1){
+                        if(registeredConnection != connection){
+                            //Port was reopened (or it's being reopened) by other thread
+                            stopLinesWaiter();
+                            if(!reopen(registeredConnection, "waitEvents()") || !registerPort()){
                                 break;
-                            /*case MASK_RXFLAG:
-                                //Do nothing at this moment
-                                if(((mask & MASK_RXFLAG) == MASK_RXFLAG) && (eventValue > 0)){
-                                    sendEvent = true;
-                                }
-                                break;*/
-                            case MASK_TXEMPTY:
-                                if(((mask & MASK_TXEMPTY) == MASK_TXEMPTY) && (eventValue == 0) && interruptTxChanged){
-                                    sendEvent = true;
+                            }
+                        }
+                        if(linesWaiter == -1 && linesWaiterSupported && (getLinuxMask() & MASK_LINES) != 0){
+                            startLinesWaiter();
+                        }
+                        int timeout = getWaitTimeout();
+                        if(timeout != 0 && readerRegistered && (getLinuxMask() & (MASK_RXCHAR | MASK_RXFLAG)) != 0 &&
+                           registeredReader.requestEvent() != receivedPosition){
+                            timeout = 0;
+                        }
+                        int result = serialInterface.pollerWait(poller, readyHandles, readyEvents, timeout);
+                        boolean hungUp = (result < 0);
+                        for(int i = 0; i < result; i++){
+                            if(readyHandles[i] == linesWaiterHandle){
+                                changedLines = serialInterface.getChangedLines(linesWaiter);
+                                if(changedLines < 0){
+                                    if (logger.isLoggable(FINER)) { logger.finer("Waiting of lines is not supported for " + portName); }
+                                    stopLinesWaiter();
+                                    linesWaiterSupported = false;
+                                    changedLines = 0;
                                 }
-                                break;
+                            }
+                            else if((readyEvents[i] & (SerialNativeInterface.POLLER_ERROR | SerialNativeInterface.POLLER_HANGUP)) != 0){
+                                hungUp = true;
+                            }
+                        }
+                        if(hungUp && !super.threadTerminated){
+                            stopLinesWaiter();
+                            if(portDisconnected(registeredConnection)){
+                                continue;
+                            }
+                            if (logger.isLoggable(FINER)) { logger.finer("Event thread stopped, port " + portName + " is hung up"); }
+                            break;
                         }
-                        if(sendEvent){
-                            eventListener.serialEvent(new SerialPortEvent(portName, eventType, eventValue));
+                    }
+                    else {
+                        //Need to sleep some time
+                        try {
+                            Thread.sleep(0, 100);
+                        }
+                        catch (Exception ex) {
+                            //Do nothing
                         }
                     }
+                    //Position is taken before count of bytes, so the count includes all received bytes
+                    long position = (registeredReader != null ? registeredReader.getReceivedPosition() : 0);
+                    if(!super.threadTerminated && fillPortStatus(status)){
+                        checkEvents(getLinuxMask(), changedLines, position);
+                    }
                 }
-                //Need to sleep some time
-                try {
-                    Thread.sleep(0, 100);
+            }
+            finally {
+                stopLinesWaiter();
+                destroyPoller();
+            }
+        }
+
+        /**
+         * Add current port handle to poller (handle of closed port is removed automatically)
+         *
+         * @return false if port can't be added
+         */
+        private boolean registerPort(){
+            long handle;
+            synchronized(reopenLock){
+                registeredConnection = connection;
+                handle = portHandle;
+            }
+            return handle != -1 && serialInterface.pollerAdd(poller, handle, SerialNativeInterface.POLLER_IN |
+                                                                             SerialNativeInterface.POLLER_OUT |
+                                                                             SerialNativeInterface.POLLER_EDGE_TRIGGERED);
+        }
+
+        /**
+         * Follow changes of background reader. Its handle is added to the poller, it's removed from there
+         * when the reader is stopped
+         *
+         * @since 2.9.0
+         */
+        private void updateReader(){
+            BackgroundReader reader = backgroundReader;
+            if(reader != registeredReader){
+                registeredReader = reader;
+                receivedPosition = 0;
+                readerRegistered = (reader != null && poller != -1 && reader.addToPoller(poller));
+            }
+        }
+
+        private void startLinesWaiter(){
+            linesWaiter = serialInterface.createLinesWaiter(portHandle);
+            if(linesWaiter != -1){
+                linesWaiterHandle = serialInterface.getLinesWaiterEventHandle(linesWaiter);
+                if(serialInterface.pollerAdd(poller, linesWaiterHandle, SerialNativeInterface.POLLER_IN)){
+                    return;
+                }
+                stopLinesWaiter();
+            }
+            linesWaiterSupported = false;
+        }
+
+        private void stopLinesWaiter(){
+            if(linesWaiter != -1){
+                serialInterface.pollerRemove(poller, linesWaiterHandle);
+                serialInterface.destroyLinesWaiter(linesWaiter);
+                linesWaiter = -1;
+                linesWaiterHandle = -1;
+            }
+        }
+
+        @Override
+        void terminateThread(){
+            super.terminateThread();
+            wakeup();
+        }
+
+        @Override
+        void wakeup(){
+            synchronized(pollerLock){
+                if(poller != -1){
+                    serialInterface.pollerWakeup(poller);
+                }
+            }
+        }
+
+        private void destroyPoller(){
+            synchronized(pollerLock){
+                if(poller != -1){
+                    serialInterface.destroyPoller(poller);
+                    poller = -1;
+                }
+            }
+        }
+
+        /**
+         * Infinite waiting is used only if all events from the mask will be reported by poller:
+         * RXCHAR (repeated while input buffer is not empty; background reader takes data from the port
+         * before the event thread wakes up, so the reader itself signals its handle in the poller about new data
+         * and event is sent once per portion of data), RXFLAG (received bytes are moved into pushback buffer
+         * and searched for the event character, bytes left in input buffer are checked periodically; with background
+         * reader the character is searched in its ring, which is awaited as for RXCHAR), TXEMPTY (output buffer is checked
+         * until it will be empty, because wake up is occurred when there are some bytes in buffer yet)
+         * and lines events if lines waiter is running
+         */
+        private int getWaitTimeout(){
+            int mask = getLinuxMask();
+            if((mask & MASK_CHECKED_PERIODICALLY) != 0 ||
+               ((mask & MASK_LINES) != 0 && linesWaiter == -1) ||
+               ((mask & MASK_RXCHAR) == MASK_RXCHAR && status.getInputBufferBytesCount() > 0 && registeredReader == null) ||
+               ((mask & MASK_RXFLAG) == MASK_RXFLAG && eventChar != -1 && status.getInputBufferBytesCount() > pushbackCount && registeredReader == null) ||
+               ((mask & (MASK_RXCHAR | MASK_RXFLAG)) != 0 && registeredReader != null && !readerRegistered) ||
+               ((mask & MASK_TXEMPTY) == MASK_TXEMPTY && status.getOutputBufferBytesCount() > 0)){
+                return CHECK_PERIOD;
+            }
+            return -1;
+        }
+
+        /**
+         * Compare current state of port with previous and send events allowed by mask.
+         * Lines from "changedLines" are reported even if their state is the same,
+         * "position" is position of background reader (if it's running) taken before the state
+         */
+        private void checkEvents(int mask, int changedLines, long position){
+            int value = status.getBreakCount();
+            if(value != interruptBreak){
+                interruptBreak = value;
+                if((mask & MASK_BREAK) == MASK_BREAK){
+                    sendEvent(MASK_BREAK, 0);
+                }
+            }
+            value = status.getTxCount();
+            if(value != interruptTX){
+                interruptTX = value;
+                txEmptyPending = true;
+            }
+            int errorMask = 0;
+            value = status.getFrameErrorCount();
+            if(value != interruptFrame){
+                interruptFrame = value;
+                errorMask |= ERROR_FRAME;
+            }
+            value = status.getOverrunErrorCount();
+            if(value != interruptOverrun){
+                interruptOverrun = value;
+                errorMask |= ERROR_OVERRUN;
+            }
+            value = status.getParityErrorCount();
+            if(value != interruptParity){
+                interruptParity = value;
+                errorMask |= ERROR_PARITY;
+            }
+            if((mask & MASK_ERR) == MASK_ERR && errorMask != 0){
+                sendEvent(MASK_ERR, errorMask);
+            }
+            value = (status.isCTS() ? 1 : 0);
+            if(value != preCTS || (changedLines & MASK_CTS) != 0){
+                preCTS = value;
+                if((mask & MASK_CTS) == MASK_CTS){
+                    sendEvent(MASK_CTS, value);
+                }
+            }
+            value = (status.isDSR() ? 1 : 0);
+            if(value != preDSR || (changedLines & MASK_DSR) != 0){
+                preDSR = value;
+                if((mask & MASK_DSR) == MASK_DSR){
+                    sendEvent(MASK_DSR, value);
+                }
+            }
+            value = (status.isRING() ? 1 : 0);
+            if(value != preRING || (changedLines & MASK_RING) != 0){
+                preRING = value;
+                if((mask & MASK_RING) == MASK_RING){
+                    sendEvent(MASK_RING, value);
+                }
+            }
+            value = (status.isRLSD() ? 1 : 0);/*DCD*/
+            if(value != preRLSD || (changedLines & MASK_RLSD) != 0){
+                preRLSD = value;
+                if((mask & MASK_RLSD) == MASK_RLSD){
+                    sendEvent(MASK_RLSD, value);
                 }
-                catch (Exception ex) {
-                    //Do nothing
+            }
+            value = status.getInputBufferBytesCount();
+            BackgroundReader reader = registeredReader;
+            boolean received = (reader != null && position > receivedPosition);
+            if((mask & MASK_RXCHAR) == MASK_RXCHAR && value > 0 && (reader == null || received)){
+                sendEvent(MASK_RXCHAR, value);
+            }
+            int flag = eventChar;
+            if((mask & MASK_RXFLAG) == MASK_RXFLAG && flag != -1 &&
+               (reader != null ? received && reader.contains((byte)flag, receivedPosition, position) :
+                                 value > pushbackCount && peekEventChar(flag))){
+                sendEvent(MASK_RXFLAG, value);
+            }
+            if(received){
+                receivedPosition = position;
+            }
+            value = status.getOutputBufferBytesCount();
+            if(value == 0 && txEmptyPending){
+                txEmptyPending = false;
+                if((mask & MASK_TXEMPTY) == MASK_TXEMPTY){
+                    sendEvent(MASK_TXEMPTY, value);
                 }
             }
         }
+
+        private void sendEvent(int eventType, int eventValue){
+            if(!super.threadTerminated){
+                eventListener.serialEvent(new SerialPortEvent(portName, eventType, eventValue));
+            }
+        }
     }
 }
@@ -30,6 +30,8 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,7 +39,7 @@ import java.util.logging.Logger;
  *
  * @author scream3r
  */
-public class NetworkSerialPort implements ISerialPort {
+public class NetworkSerialPort implements IExtendedSerialPort {
 
     private Logger logger = Logger.getLogger("NetworkSerialPort");
 
@@ -63,6 +65,14 @@ public class NetworkSerialPort implements ISerialPort {
     private InputStream socketIn;
     private OutputStream socketOut;
 
+    //since 2.9.0 ->
+    //Int arrays are converted by parts of this size in reusable arrays (locked by their users)
+    private static final int INT_ARRAY_CHUNK = 256;
+    private final byte[] intArrayReadBuffer = new byte[INT_ARRAY_CHUNK];
+    private final byte[] intArrayWriteBuffer = new byte[INT_ARRAY_CHUNK];
+    private final BinaryCodec codec = BinaryCodec.getInstance();
+    //<- since 2.9.0
+
     public NetworkSerialPort(String portName) {
         this.portName = portName;
         if (portName.startsWith("serialproxy://")) {
@@ -167,6 +177,47 @@ public class NetworkSerialPort implements ISerialPort {
         return true;
     }
 
+    /**
+     * Baud rate of remote port is unknown
+     *
+     * @return -1
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int getBaudRate() throws SerialPortException {
+        checkPortOpened("getBaudRate()");
+        return -1;
+    }
+
+    /**
+     * Low latency mode can't be set for remote port
+     *
+     * @return 0
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int setLowLatency(boolean enabled) throws SerialPortException {
+        checkPortOpened("setLowLatency()");
+        return 0;
+    }
+
+    /**
+     * Reopening isn't supported for remote port
+     *
+     * @return false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean setReopenPolicy(int retryInterval, int maxAttempts) throws SerialPortException {
+        return false;
+    }
+
     /**
      * Purge of input and output buffer. Required flags shall be sent to the input. Variables with prefix
      * <b>"PURGE_"</b>, for example <b>"PURGE_RXCLEAR"</b>. Sent parameter "flags" is additive value,
@@ -242,6 +293,20 @@ public class NetworkSerialPort implements ISerialPort {
         return linuxMask;
     }
 
+    /**
+     * Event character isn't supported for network ports
+     *
+     * @return false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean setEventChar(int eventChar) throws SerialPortException {
+        checkPortOpened("setEventChar()");
+        return false;
+    }
+
     /**
      * Getting events mask for the port is Linux OS (for internal use)
      *
@@ -363,11 +428,162 @@ public class NetworkSerialPort implements ISerialPort {
      */
     public boolean writeIntArray(int[] buffer) throws SerialPortException {
         checkPortOpened("writeIntArray()");
-        byte[] byteArray = new byte[buffer.length];
-        for(int i = 0; i < buffer.length; i++){
-            byteArray[i] = (byte)buffer[i];
+        synchronized(intArrayWriteBuffer){//since 2.9.0
+            for(int offset = 0; offset < buffer.length; offset += INT_ARRAY_CHUNK){
+                int length = Math.min(buffer.length - offset, INT_ARRAY_CHUNK);
+                codec.putBytes(buffer, offset, intArrayWriteBuffer, 0, length);
+                if(write(intArrayWriteBuffer, 0, length) != length){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write part of byte array to port
+     *
+     * @param buffer array of bytes to write
+     * @param offset start offset in array
+     * @param length count of bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int write(byte[] buffer, int offset, int length) throws SerialPortException {
+        checkPortOpened("write()");
+        checkArrayBounds("write()", buffer, offset, length);
+        try {
+            socketOut.write(buffer, offset, length);
+            if (logger.isLoggable(Level.FINEST)) { logger.finest(">(" + length + ")"); }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error writing bytes", e);
+            return -1;
+        }
+        return length;
+    }
+
+    /**
+     * Write remaining bytes of buffer to port. Position of buffer is advanced by count of
+     * written bytes
+     *
+     * @param buffer buffer with bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int write(ByteBuffer buffer) throws SerialPortException {
+        checkPortOpened("write()");
+        int result;
+        if (buffer.hasArray()) {
+            result = write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] byteArray = new byte[buffer.remaining()];
+            buffer.duplicate().get(byteArray);
+            result = write(byteArray, 0, byteArray.length);
         }
-        return writeBytes(byteArray);
+        if (result > 0) {
+            buffer.position(buffer.position() + result);
+        }
+        return result;
+    }
+
+    /**
+     * Write several byte arrays to port as one block. Parts are joined, so they are sent
+     * to the server by one socket write
+     *
+     * @param parts byte arrays to write
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean writeBytes(byte[]... parts) throws SerialPortException {
+        checkPortOpened("writeBytes()");
+        int byteCount = 0;
+        for (byte[] part : parts) {
+            byteCount += part.length;
+        }
+        byte[] block = new byte[byteCount];
+        int position = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, block, position, part.length);
+            position += part.length;
+        }
+        return writeBytes(block);
+    }
+
+    /**
+     * Write remaining bytes of <b>length</b> buffers starting from <b>buffers[offset]</b> as one block.
+     * Positions of buffers are advanced by count of written bytes
+     *
+     * @param buffers buffers with bytes to write
+     * @param offset index of the first buffer
+     * @param length count of buffers
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public long write(ByteBuffer[] buffers, int offset, int length) throws SerialPortException {
+        checkPortOpened("write()");
+        if (offset < 0 || length < 0 || offset > buffers.length - length) {
+            throw new SerialPortException(portName, "write()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        int byteCount = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byteCount += buffers[i].remaining();
+        }
+        byte[] block = new byte[byteCount];
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int remaining = buffers[i].remaining();
+            buffers[i].duplicate().get(block, position, remaining);
+            position += remaining;
+        }
+        int result = write(block, 0, byteCount);
+        if (result < 0) {
+            return -1;
+        }
+        advancePositions(buffers, offset, length, result);
+        return result;
+    }
+
+    /**
+     * Advance positions of <b>length</b> buffers starting from <b>buffers[offset]</b> by <b>count</b>
+     * written bytes, buffer by buffer in the order they were written
+     */
+    private static void advancePositions(ByteBuffer[] buffers, int offset, int length, long count) {
+        for (int i = offset; i < offset + length && count > 0; i++) {
+            int step = (int) Math.min(buffers[i].remaining(), count);
+            buffers[i].position(buffers[i].position() + step);
+            count -= step;
+        }
+    }
+
+    /**
+     * Write remaining bytes of all buffers as one block, the same as <b>write(buffers, 0, buffers.length)</b>
+     *
+     * @param buffers buffers with bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public long write(ByteBuffer[] buffers) throws SerialPortException {
+        return write(buffers, 0, buffers.length);
     }
 
     /**
@@ -450,17 +666,8 @@ public class NetworkSerialPort implements ISerialPort {
      */
     public String readHexString(int byteCount, String separator) throws SerialPortException {
         checkPortOpened("readHexString()");
-        String[] strBuffer = readHexStringArray(byteCount);
-        String returnString = "";
-        boolean insertSeparator = false;
-        for(String value : strBuffer){
-            if(insertSeparator){
-                returnString += separator;
-            }
-            returnString += value;
-            insertSeparator = true;
-        }
-        return returnString;
+        byte[] buffer = readBytes(byteCount);
+        return HexEncoder.toHexString(buffer, 0, buffer.length, separator);//since 2.9.0
     }
 
     /**
@@ -476,16 +683,8 @@ public class NetworkSerialPort implements ISerialPort {
      */
     public String[] readHexStringArray(int byteCount) throws SerialPortException {
         checkPortOpened("readHexStringArray()");
-        int[] intBuffer = readIntArray(byteCount);
-        String[] strBuffer = new String[intBuffer.length];
-        for(int i = 0; i < intBuffer.length; i++){
-            String value = Integer.toHexString(intBuffer[i]).toUpperCase();
-            if(value.length() == 1) {
-                value = "0" + value;
-            }
-            strBuffer[i] = value;
-        }
-        return strBuffer;
+        byte[] buffer = readBytes(byteCount);
+        return HexEncoder.toHexStringArray(buffer, 0, buffer.length);//since 2.9.0
     }
 
     /**
@@ -501,19 +700,86 @@ public class NetworkSerialPort implements ISerialPort {
      */
     public int[] readIntArray(int byteCount) throws SerialPortException {
         checkPortOpened("readIntArray()");
-        byte[] buffer = readBytes(byteCount);
-        int[] intBuffer = new int[buffer.length];
-        for(int i = 0; i < buffer.length; i++){
-            if(buffer[i] < 0){
-                intBuffer[i] = 256 + buffer[i];
-            }
-            else {
-                intBuffer[i] = buffer[i];
+        int[] intBuffer = new int[byteCount];
+        synchronized(intArrayReadBuffer){//since 2.9.0
+            int offset = 0;
+            while(offset < byteCount){
+                int result = read(intArrayReadBuffer, 0, Math.min(byteCount - offset, INT_ARRAY_CHUNK));
+                if(result <= 0){
+                    logger.warning("Error readIntArray(): read " + result + " and now got " + offset);
+                    throw new SerialPortException(portName, "readIntArray()", "Cannot read socket");
+                }
+                codec.getUnsignedBytes(intArrayReadBuffer, 0, intBuffer, offset, result);
+                offset += result;
             }
         }
         return intBuffer;
     }
 
+    /**
+     * Read bytes from port into part of byte array. Method blocks until at least one byte
+     * is received and then reads available bytes, but not more than <b>length</b>
+     *
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param length maximum count of bytes to read
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int read(byte[] buffer, int offset, int length) throws SerialPortException {
+        checkPortOpened("read()");
+        checkArrayBounds("read()", buffer, offset, length);
+        if (length == 0) {
+            return 0;
+        }
+        try {
+            int r = socketIn.read(buffer, offset, length);
+            if (logger.isLoggable(Level.FINEST)) { logger.finest("<(" + r + ")"); }
+            return r;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error read bytes", e);
+            throw new SerialPortException(portName, "read()", e.getMessage());
+        }
+    }
+
+    /**
+     * Read bytes from port into buffer. Method blocks until at least one byte is received
+     * and then reads available bytes, but not more than remaining space of buffer.
+     * Position of buffer is advanced by count of read bytes
+     *
+     * @param buffer buffer for storing read bytes
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int read(ByteBuffer buffer) throws SerialPortException {
+        checkPortOpened("read()");
+        if (buffer.isReadOnly()) {
+            throw new SerialPortException(portName, "read()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        int result;
+        if (buffer.hasArray()) {
+            result = read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (result > 0) {
+                buffer.position(buffer.position() + result);
+            }
+        } else {
+            byte[] byteArray = new byte[Math.min(buffer.remaining(), 4096)];
+            result = read(byteArray, 0, byteArray.length);
+            if (result > 0) {
+                buffer.put(byteArray, 0, result);
+            }
+        }
+        return result;
+    }
+
     private void waitBytesWithTimeout(String methodName, int byteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
         checkPortOpened("waitBytesWithTimeout()");
         boolean timeIsOut = true;
@@ -554,6 +820,132 @@ public class NetworkSerialPort implements ISerialPort {
         return readBytes(byteCount);
     }
 
+    /**
+     * Read not less than <b>minByteCount</b> and not more than <b>maxByteCount</b> bytes from port.
+     * Method returns as soon as <b>minByteCount</b> bytes are received (all bytes which are available
+     * at this moment are returned too). If timeout is elapsed, received bytes are not lost and
+     * will be returned by the next read operation
+     *
+     * @param minByteCount minimum count of bytes for reading
+     * @param maxByteCount maximum count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with length from "minByteCount" to "maxByteCount"
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readAtLeast(int minByteCount, int maxByteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        checkPortOpened("readAtLeast()");
+        if(minByteCount < 0 || maxByteCount < minByteCount){
+            throw new SerialPortException(portName, "readAtLeast()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        if(minByteCount > 0){
+            waitBytesWithTimeout("readAtLeast()", minByteCount, timeout);
+        }
+        return readBytes(Math.min(Math.max(getInputBufferBytesCount(), minByteCount), maxByteCount));
+    }
+
+    /**
+     * Read one frame, which is finished by silence on the line. For remote port the gap is
+     * measured by checking of input buffer, so it can't be less than network latency
+     *
+     * @param maxFrameSize maximum size of the frame
+     * @param interCharTimeout inter-character gap in milliseconds, which finishes the frame
+     * @param timeout timeout of waiting for the first byte in milliseconds
+     *
+     * @return received frame
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readFrame(int maxFrameSize, int interCharTimeout, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        checkPortOpened("readFrame()");
+        if(maxFrameSize <= 0 || interCharTimeout <= 0){
+            throw new SerialPortException(portName, "readFrame()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        waitBytesWithTimeout("readFrame()", 1, timeout);
+        int byteCount = getInputBufferBytesCount();
+        while(byteCount < maxFrameSize){
+            try {
+                waitBytesWithTimeout("readFrame()", byteCount + 1, interCharTimeout);
+            }
+            catch (SerialPortTimeoutException ex) {
+                break;
+            }
+            byteCount = getInputBufferBytesCount();
+        }
+        return readBytes(Math.min(byteCount, maxFrameSize));
+    }
+
+    /**
+     * Read bytes until the delimiter is received. Bytes can't be returned to the socket stream,
+     * so they are read one by one and bytes received before the timeout are lost
+     *
+     * @param delimiter byte which finishes the data
+     * @param maxLength maximum count of bytes to read
+     * @param timeout timeout in milliseconds
+     *
+     * @return Bytes up to and including the delimiter, or <b>maxLength</b> bytes if delimiter
+     * isn't found among them
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readUntil(byte delimiter, int maxLength, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        checkPortOpened("readUntil()");
+        if(maxLength <= 0){
+            throw new SerialPortException(portName, "readUntil()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        byte[] buffer = new byte[maxLength];
+        int byteCount = 0;
+        long startTime = System.currentTimeMillis();
+        while(byteCount < maxLength){
+            if(getInputBufferBytesCount() == 0){
+                waitBytesWithTimeout("readUntil()", 1, (int)(timeout - (System.currentTimeMillis() - startTime)));
+            }
+            buffer[byteCount++] = readBytes(1)[0];
+            if(buffer[byteCount - 1] == delimiter){
+                break;
+            }
+        }
+        return byteCount == maxLength ? buffer : Arrays.copyOf(buffer, byteCount);
+    }
+
+    /**
+     * Background reader is not supported for network ports
+     *
+     * @return false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean startBackgroundReader(int bufferSize) throws SerialPortException {
+        checkPortOpened("startBackgroundReader()");
+        return false;
+    }
+
+    /**
+     * Background reader is not supported for network ports
+     *
+     * @return false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean stopBackgroundReader() throws SerialPortException {
+        checkPortOpened("stopBackgroundReader()");
+        return false;
+    }
+
     /**
      * Read string from port
      *
@@ -857,6 +1249,21 @@ public class NetworkSerialPort implements ISerialPort {
         }
     }
 
+    /**
+     * Check that offset and length define correct region of array
+     *
+     * @param methodName method name
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    private void checkArrayBounds(String methodName, byte[] buffer, int offset, int length) throws SerialPortException {
+        if (offset < 0 || length < 0 || offset > buffer.length - length) {
+            throw new SerialPortException(portName, methodName, SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+    }
+
     /**
      * Getting lines status. Lines status is sent as 0 – OFF and 1 - ON
      *
@@ -873,6 +1280,31 @@ public class NetworkSerialPort implements ISerialPort {
         return new int[4];
     }
 
+    /**
+     * Get snapshot of port state. Only count of bytes in input buffer is known for network ports,
+     * lines are reported as inactive and counters of interrupts are -1
+     *
+     * @param status object for storing of state, it may be reused by the next calls
+     * (if it's <b>null</b> new object is created)
+     *
+     * @return Filled status object
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public PortStatus getPortStatus(PortStatus status) throws SerialPortException {
+        checkPortOpened("getPortStatus()");
+        if(status == null){
+            status = new PortStatus();
+        }
+        for(int i = 0; i < SerialNativeInterface.STATE_SIZE; i++){
+            status.state[i] = (i < SerialNativeInterface.STATE_INTERRUPT_BREAK ? 0 : -1);
+        }
+        status.state[SerialNativeInterface.STATE_INPUT_BYTES] = getInputBufferBytesCount();
+        return status;
+    }
+
     /**
      * Get state of CTS line
      *
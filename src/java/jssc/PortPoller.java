@@ -0,0 +1,287 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINER;
+
+/**
+ * Waiting for ports without blocking in the native code. The waiting thread registers the port and parks,
+ * one daemon thread waits for all registered ports by the poller of {@link SerialNativeInterface} (epoll in Linux)
+ * and unparks threads of ready ports. It's used by virtual threads: parked virtual thread releases its carrier
+ * thread, so thousands of them can wait for ports at the same time.
+ * <br>Supported only if poller is supported (Linux)
+ *
+ * @since 2.9.0
+ */
+final class PortPoller {
+
+    private static final int MAX_READY_PORTS = 64;
+
+    private static final Object instanceLock = new Object();
+    private static PortPoller instance;
+    private static boolean unsupported = false;
+
+    private Logger logger = Logger.getLogger("PortPoller");
+
+    private final SerialNativeInterface serialInterface;
+    private final long poller;
+    private final Object lock = new Object();
+    //Waiters and registered interest mask of each port handle
+    private final Map<Long, List<Waiter>> waiters = new HashMap<Long, List<Waiter>>();
+    private final Map<Long, Integer> registered = new HashMap<Long, Integer>();
+
+    private static class Waiter {
+
+        final Thread thread = Thread.currentThread();
+        final int events;
+        volatile boolean done = false;
+        volatile int readyEvents = 0;
+
+        Waiter(int events) {
+            this.events = events;
+        }
+    }
+
+    private PortPoller(SerialNativeInterface serialInterface, long poller) {
+        this.serialInterface = serialInterface;
+        this.poller = poller;
+    }
+
+    /**
+     * Get shared poller, it's started by the first call
+     *
+     * @return poller or <b>null</b> if it's not supported in current OS
+     */
+    static PortPoller getInstance() {
+        synchronized(instanceLock){
+            if(instance == null && !unsupported){
+                SerialNativeInterface serialInterface = SerialNativeInterface.createInterface();
+                long poller = serialInterface.createPoller();
+                if(poller == -1){
+                    unsupported = true;
+                    return null;
+                }
+                instance = new PortPoller(serialInterface, poller);
+                Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        instance.pollLoop();
+                    }
+                });
+                thread.setName("jSSC port poller");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Wake up all threads waiting for the port if shared poller is started
+     */
+    static void cancelWaits(long handle) {
+        PortPoller poller;
+        synchronized(instanceLock){
+            poller = instance;
+        }
+        if(poller != null){
+            poller.cancel(handle);
+        }
+    }
+
+    /**
+     * Wait until the port will be ready, the waiting is cancelled or timeout is elapsed
+     * (timeout < 0 means infinite waiting). Interrupt of the thread stops waiting too
+     *
+     * @param handle handle of opened port
+     * @param events interest mask (<b>POLLER_IN</b>, <b>POLLER_OUT</b>)
+     * @param timeout timeout in milliseconds
+     *
+     * @return <b>"POLLER_"</b> flags of ready port, 0 if timeout is elapsed, waiting was cancelled or interrupted,
+     * -1 if port can't be added to poller
+     */
+    int await(long handle, int events, int timeout) {
+        Waiter waiter = new Waiter(events);
+        synchronized(lock){
+            List<Waiter> list = waiters.get(handle);
+            if(list == null){
+                list = new ArrayList<Waiter>();
+                waiters.put(handle, list);
+            }
+            list.add(waiter);
+            if(!update(handle)){
+                remove(handle, waiter);
+                return -1;
+            }
+        }
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        try {
+            while(!waiter.done && !Thread.currentThread().isInterrupted()){
+                if(timeout < 0){
+                    LockSupport.park(this);
+                }
+                else {
+                    long remains = deadline - System.nanoTime();
+                    if(remains <= 0){
+                        break;
+                    }
+                    LockSupport.parkNanos(this, remains);
+                }
+            }
+        }
+        finally {
+            synchronized(lock){
+                if(!waiter.done){
+                    remove(handle, waiter);
+                }
+            }
+        }
+        return waiter.readyEvents;
+    }
+
+    /**
+     * Wake up all threads waiting for the port (port is being closed)
+     */
+    void cancel(long handle) {
+        synchronized(lock){
+            List<Waiter> list = waiters.remove(handle);
+            if(list != null){
+                for(Waiter waiter : list){
+                    waiter.done = true;
+                    LockSupport.unpark(waiter.thread);
+                }
+            }
+            update(handle);
+        }
+    }
+
+    private void pollLoop() {
+        long[] readyHandles = new long[MAX_READY_PORTS];
+        int[] readyEvents = new int[MAX_READY_PORTS];
+        while(true){
+            int result = serialInterface.pollerWait(poller, readyHandles, readyEvents, -1);
+            if(result < 0){
+                if (logger.isLoggable(FINER)) { logger.finer("Port poller has failed"); }
+                //Waiting threads shall not sleep forever, they will get 0 and check the port by themselves
+                synchronized(lock){
+                    Long[] handles = waiters.keySet().toArray(new Long[0]);
+                    for(Long handle : handles){
+                        cancel(handle);
+                    }
+                }
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException ex) {
+                    return;
+                }
+                continue;
+            }
+            synchronized(lock){
+                for(int i = 0; i < result; i++){
+                    fire(readyHandles[i], readyEvents[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unpark threads which wait for ready events (shall be called with lock)
+     */
+    private void fire(long handle, int events) {
+        List<Waiter> list = waiters.get(handle);
+        if(list == null){
+            return;
+        }
+        for(int i = list.size() - 1; i >= 0; i--){
+            Waiter waiter = list.get(i);
+            int ready = events & (waiter.events | SerialNativeInterface.POLLER_ERROR | SerialNativeInterface.POLLER_HANGUP);
+            if(ready != 0){
+                waiter.readyEvents = ready;
+                waiter.done = true;
+                list.remove(i);
+                LockSupport.unpark(waiter.thread);
+            }
+        }
+        if(list.isEmpty()){
+            waiters.remove(handle);
+        }
+        update(handle);
+    }
+
+    private void remove(long handle, Waiter waiter) {
+        List<Waiter> list = waiters.get(handle);
+        if(list != null){
+            list.remove(waiter);
+            if(list.isEmpty()){
+                waiters.remove(handle);
+            }
+        }
+        update(handle);
+    }
+
+    /**
+     * Register union of interest masks of all waiters for the port, port without waiters is removed
+     * from poller (shall be called with lock). Poller is level-triggered, so ready port is reported
+     * again to the next waiter
+     *
+     * @return false if port can't be added to poller
+     */
+    private boolean update(long handle) {
+        int events = 0;
+        List<Waiter> list = waiters.get(handle);
+        if(list != null){
+            for(Waiter waiter : list){
+                events |= waiter.events;
+            }
+        }
+        Integer current = registered.get(handle);
+        if(events == 0){
+            if(current != null){
+                registered.remove(handle);
+                serialInterface.pollerRemove(poller, handle);
+            }
+            return true;
+        }
+        if(current != null && current.intValue() == events){
+            return true;
+        }
+        //Closed descriptor is removed from epoll automatically, so modification may fail
+        if(current == null || !serialInterface.pollerModify(poller, handle, events)){
+            if(!serialInterface.pollerAdd(poller, handle, events)){
+                registered.remove(handle);
+                return false;
+            }
+        }
+        registered.put(handle, events);
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+/**
+ * Snapshot of port state: counts of bytes in buffers, state of lines and counters of interrupts.
+ * Object is filled by {@link SerialPort#getPortStatus(PortStatus)} in one native call and may be
+ * reused, so periodic checking of the port doesn't allocate anything.
+ * Counters of interrupts are supported only in Linux, in other cases they are -1
+ *
+ * @since 2.9.0
+ */
+public class PortStatus {
+
+    final int[] state = new int[SerialNativeInterface.STATE_SIZE];
+
+    /**
+     * Get count of bytes in input buffer
+     */
+    public int getInputBufferBytesCount() {
+        return state[SerialNativeInterface.STATE_INPUT_BYTES];
+    }
+
+    /**
+     * Get count of bytes in output buffer
+     */
+    public int getOutputBufferBytesCount() {
+        return state[SerialNativeInterface.STATE_OUTPUT_BYTES];
+    }
+
+    public boolean isCTS() {
+        return state[SerialNativeInterface.STATE_CTS] == 1;
+    }
+
+    public boolean isDSR() {
+        return state[SerialNativeInterface.STATE_DSR] == 1;
+    }
+
+    public boolean isRING() {
+        return state[SerialNativeInterface.STATE_RING] == 1;
+    }
+
+    public boolean isRLSD() {
+        return state[SerialNativeInterface.STATE_RLSD] == 1;
+    }
+
+    /**
+     * Get state of lines as a bitmask
+     *
+     * @return combination of <b>SerialPort.MASK_CTS</b>, <b>SerialPort.MASK_DSR</b>,
+     * <b>SerialPort.MASK_RING</b> and <b>SerialPort.MASK_RLSD</b> for active lines
+     */
+    public int getLines() {
+        int lines = 0;
+        if(isCTS()){
+            lines |= SerialPort.MASK_CTS;
+        }
+        if(isDSR()){
+            lines |= SerialPort.MASK_DSR;
+        }
+        if(isRING()){
+            lines |= SerialPort.MASK_RING;
+        }
+        if(isRLSD()){
+            lines |= SerialPort.MASK_RLSD;
+        }
+        return lines;
+    }
+
+    /**
+     * Get state of lines in the same format as {@link SerialPort#getLinesStatus()}
+     */
+    public int[] getLinesStatus() {
+        return new int[]{state[SerialNativeInterface.STATE_CTS],
+                         state[SerialNativeInterface.STATE_DSR],
+                         state[SerialNativeInterface.STATE_RING],
+                         state[SerialNativeInterface.STATE_RLSD]};
+    }
+
+    /**
+     * Get count of received breaks
+     */
+    public int getBreakCount() {
+        return state[SerialNativeInterface.STATE_INTERRUPT_BREAK];
+    }
+
+    /**
+     * Get count of transmit interrupts
+     */
+    public int getTxCount() {
+        return state[SerialNativeInterface.STATE_INTERRUPT_TX];
+    }
+
+    /**
+     * Get count of framing errors
+     */
+    public int getFrameErrorCount() {
+        return state[SerialNativeInterface.STATE_INTERRUPT_FRAME];
+    }
+
+    /**
+     * Get count of overruns of hardware or kernel buffer
+     */
+    public int getOverrunErrorCount() {
+        return state[SerialNativeInterface.STATE_INTERRUPT_OVERRUN];
+    }
+
+    /**
+     * Get count of parity errors
+     */
+    public int getParityErrorCount() {
+        return state[SerialNativeInterface.STATE_INTERRUPT_PARITY];
+    }
+
+    @Override
+    public String toString() {
+        return "PortStatus{input=" + getInputBufferBytesCount() + ", output=" + getOutputBufferBytesCount() +
+               ", CTS=" + isCTS() + ", DSR=" + isDSR() + ", RING=" + isRING() + ", RLSD=" + isRLSD() +
+               ", break=" + getBreakCount() + ", tx=" + getTxCount() + ", frame=" + getFrameErrorCount() +
+               ", overrun=" + getOverrunErrorCount() + ", parity=" + getParityErrorCount() + "}";
+    }
+}
@@ -29,6 +29,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -76,10 +78,72 @@ public class SerialNativeInterface {
      */
     public static final String PROPERTY_JSSC_PARMRK = "JSSC_PARMRK";
 
-    static {
-        String libFolderPath;
-        String libName;
+    //since 2.9.0 ->
+    /**
+     * Indexes of values in array filled by {@link #getEventsState(long, int[])}
+     *
+     * @since 2.9.0
+     */
+    public static final int STATE_INPUT_BYTES = 0;
+    public static final int STATE_OUTPUT_BYTES = 1;
+    public static final int STATE_CTS = 2;
+    public static final int STATE_DSR = 3;
+    public static final int STATE_RING = 4;
+    public static final int STATE_RLSD = 5;
+    public static final int STATE_INTERRUPT_BREAK = 6;
+    public static final int STATE_INTERRUPT_TX = 7;
+    public static final int STATE_INTERRUPT_FRAME = 8;
+    public static final int STATE_INTERRUPT_OVERRUN = 9;
+    public static final int STATE_INTERRUPT_PARITY = 10;
+    public static final int STATE_SIZE = 11;
+
+    /**
+     * Poller event flags. <b>POLLER_EDGE_TRIGGERED</b> may be used only in interest mask
+     * and means that event is reported once per change of handle state
+     *
+     * @since 2.9.0
+     */
+    public static final int POLLER_IN = 1;
+    public static final int POLLER_OUT = 2;
+    public static final int POLLER_ERROR = 4;
+    public static final int POLLER_HANGUP = 8;
+    public static final int POLLER_EDGE_TRIGGERED = 16;
+
+    /**
+     * Layout of the header of background reader buffer (see {@link #createBackgroundReader(long, ByteBuffer)}).
+     * Fields of the producer and of the consumer are in different cache lines: <b>WRITE_POSITION</b> (long),
+     * <b>STOPPED</b> (int) and <b>PRODUCER_WAITING</b> (int) are written by native thread,
+     * <b>READ_POSITION</b> (long) and <b>EVENT_REQUESTED</b> (int) are written by Java
+     *
+     * @since 2.9.0
+     */
+    public static final int BACKGROUND_READER_HEADER_SIZE = 128;
+    public static final int BACKGROUND_READER_WRITE_POSITION = 0;
+    public static final int BACKGROUND_READER_STOPPED = 8;
+    public static final int BACKGROUND_READER_PRODUCER_WAITING = 12;
+    public static final int BACKGROUND_READER_READ_POSITION = 64;
+    public static final int BACKGROUND_READER_EVENT_REQUESTED = 72;
+
+    /**
+     * Selects implementation returned by {@link #createInterface()}. Value <b>ffm</b> selects
+     * implementation based on Foreign Function and Memory API (Java 22+, Linux only), any other
+     * value or absence of the property selects JNI library
+     *
+     * @since 2.9.0
+     */
+    public static final String PROPERTY_JSSC_BACKEND = "JSSC_BACKEND";
+
+    private static final String FFM_BACKEND = "ffm";
+    private static final String FFM_CLASS_NAME = "jssc.FfmSerialNativeInterface";
 
+    private static String libFolderPath;
+    private static String libName;
+    private static String libOsName;
+    private static boolean libLoaded = false;
+    private static boolean ffmFailed = false;
+    //<- since 2.9.0
+
+    static {
         String osName = System.getProperty("os.name");
         String architecture = System.getProperty("os.arch");
         String userHome = System.getProperty("user.home");
@@ -147,6 +211,79 @@ public class SerialNativeInterface {
         if(libName.endsWith(".dylib")){//Since 2.1.0 MacOSX 10.8 fix
             libName = libName.replace(".dylib", ".jnilib");
         }
+        libOsName = osName;//since 2.9.0
+    }
+
+    //since 2.9.0 ->
+    public SerialNativeInterface() {
+        this(true);
+    }
+
+    /**
+     * Constructor for implementations which don't use JNI library
+     *
+     * @param loadLibrary load JNI library if it wasn't loaded yet
+     *
+     * @since 2.9.0
+     */
+    protected SerialNativeInterface(boolean loadLibrary) {
+        if(loadLibrary){
+            loadNativeLibrary();
+        }
+    }
+
+    /**
+     * Create interface implementation selected by <b>JSSC_BACKEND</b> property. If Foreign Function
+     * and Memory implementation is requested but can't be used in current environment, JNI library is used
+     *
+     * @return new interface instance
+     *
+     * @since 2.9.0
+     */
+    public static SerialNativeInterface createInterface() {
+        String backend = System.getProperty(PROPERTY_JSSC_BACKEND);
+        if(backend == null){
+            backend = System.getProperty(PROPERTY_JSSC_BACKEND.toLowerCase());
+        }
+        if(backend != null && backend.equalsIgnoreCase(FFM_BACKEND)){
+            synchronized (SerialNativeInterface.class) {
+                if(!ffmFailed){
+                    try {
+                        return (SerialNativeInterface)Class.forName(FFM_CLASS_NAME).getDeclaredConstructor().newInstance();
+                    }
+                    catch (Throwable ex) {
+                        if(ex instanceof InvocationTargetException){
+                            //Constructor has failed (for example libc functions aren't found)
+                            ex = ((InvocationTargetException)ex).getTargetException();
+                        }
+                        ffmFailed = true;
+                        System.err.println("Warning! jSSC FFM backend is not available, JNI library will be used (" + ex + ")");
+                    }
+                }
+            }
+        }
+        return new SerialNativeInterface();
+    }
+
+    /**
+     * Get name of the implementation
+     *
+     * @return <b>jni</b> for JNI library
+     *
+     * @since 2.9.0
+     */
+    public String getBackendName() {
+        return "jni";
+    }
+
+    private static synchronized void loadNativeLibrary() {
+        if(libLoaded){
+            return;
+        }
+        libLoaded = true;
+
+        String fileSeparator = System.getProperty("file.separator");
+        String osName = libOsName;
 
         boolean loadLib = false;
 
@@ -177,6 +314,7 @@ public class SerialNativeInterface {
             }
         }
     }
+    //<- since 2.9.0
 
     /**
      * Is library folder exists
@@ -329,6 +467,40 @@ public class SerialNativeInterface {
      */
     public native boolean setParams(long handle, int baudRate, int dataBits, int stopBits, int parity, boolean setRTS, boolean setDTR, int flags);
 
+    /**
+     * Get baudrate, which is really used by the driver
+     *
+     * @param handle handle of opened port
+     *
+     * @return baudrate or -1 if it can't be determined
+     *
+     * @since 2.9.0
+     */
+    public native int getBaudRate(long handle);
+
+    /**
+     * Switch low latency mode (ASYNC_LOW_LATENCY flag) of the driver. Supported only in Linux
+     *
+     * @param handle handle of opened port
+     * @param enabled true to enable low latency mode, false to disable it
+     *
+     * @return true if the driver has accepted the requested state, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean setLowLatency(long handle, boolean enabled);
+
+    /**
+     * Check that port is still connected (device wasn't unplugged and port isn't hung up)
+     *
+     * @param handle handle of opened port
+     *
+     * @return true if port is connected, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean isConnected(long handle);
+
     /**
      * Purge of input and output buffer
      * 
@@ -403,7 +575,7 @@ public class SerialNativeInterface {
      * @param handle handle of opened port
      * @param byteCount count of bytes required to read
      * 
-     * @return Method returns the array of read bytes
+     * @return Method returns the array of read bytes or <b>null</b> if error has occurred (since 2.9.0)
      */
     public native byte[] readBytes(long handle, int byteCount);
 
@@ -417,6 +589,154 @@ public class SerialNativeInterface {
      */
     public native boolean writeBytes(long handle, byte[] buffer);
 
+    /**
+     * Read data from port into the part of byte array. Method blocks until at least
+     * one byte is available and then reads not more than <b>length</b> bytes
+     *
+     * @param handle handle of opened port
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param length maximum count of bytes to read
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int readBytesArray(long handle, byte[] buffer, int offset, int length);
+
+    /**
+     * Read data from port into direct buffer. Method blocks until at least
+     * one byte is available and then reads not more than <b>length</b> bytes.
+     * Position of buffer is not changed
+     *
+     * @param handle handle of opened port
+     * @param buffer direct buffer for storing read bytes
+     * @param position start position in buffer
+     * @param length maximum count of bytes to read
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int readBytesDirect(long handle, ByteBuffer buffer, int position, int length);
+
+    /**
+     * Read at least <b>minCount</b> bytes (but not more than <b>maxCount</b>) into the part
+     * of byte array. While waiting for data the thread sleeps in the kernel until the next bytes
+     * will be received or <b>timeout</b> will be elapsed, so no CPU time is wasted for polling.
+     * Bytes received before the timeout are stored in array too
+     *
+     * @param handle handle of opened port
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param minCount minimum count of bytes to read
+     * @param maxCount maximum count of bytes to read
+     * @param timeout timeout in milliseconds
+     *
+     * @return Count of read bytes (less than <b>minCount</b> if timeout is elapsed or error has occurred after
+     * some bytes were read, the error is reported by the next call) or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int readBytesTimeout(long handle, byte[] buffer, int offset, int minCount, int maxCount, int timeout);
+
+    /**
+     * Read one frame, which is finished by silence on the line. The thread sleeps in the kernel until
+     * the first byte is received, after that bytes are read until <b>maxSize</b> bytes are received or
+     * no byte is received during <b>gap</b> milliseconds. Terminal settings and mode of the descriptor
+     * are not changed, so the call may run concurrently with writes
+     *
+     * @param handle handle of opened port
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param maxSize maximum size of the frame
+     * @param gap inter-character gap in milliseconds, which finishes the frame
+     * @param timeout timeout of waiting for the first byte in milliseconds (timeout < 0 means infinite waiting)
+     *
+     * @return Count of read bytes, 0 if timeout is elapsed or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int readFrame(long handle, byte[] buffer, int offset, int maxSize, int gap, int timeout);
+
+    /**
+     * Read bytes which are in input buffer now (but not more than <b>length</b>) into the part of byte array
+     * and search the delimiter among them, so a whole line is delivered by one call. The method doesn't wait
+     * for data, the caller shall wait until input buffer isn't empty. Bytes received after the delimiter
+     * are read too, they are returned after the line
+     *
+     * @param handle handle of opened port
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param length maximum count of bytes to read
+     * @param delimiter byte which finishes the line (0-255)
+     *
+     * @return Count of read bytes in low 32 bits and length of the line including the delimiter
+     * in high 32 bits (0 if delimiter isn't found) or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native long readUntil(long handle, byte[] buffer, int offset, int length, int delimiter);
+
+    /**
+     * Set the event character, receiving of which is reported by <b>EV_RXFLAG</b> event.
+     * Supported only in Windows (in *nix the event character is searched by Java code)
+     *
+     * @param handle handle of opened port
+     * @param eventChar event character (0-255)
+     *
+     * @return true if the driver has accepted the character, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean setEventChar(long handle, int eventChar);
+
+    /**
+     * Write part of byte array to port. In *nix the port is in non-blocking mode and only bytes which fit
+     * into output buffer are written, the rest shall be written after <b>waitPort()</b> with <b>POLLER_OUT</b>
+     *
+     * @param handle handle of opened port
+     * @param buffer array of bytes to write
+     * @param offset start offset in array
+     * @param length count of bytes to write
+     *
+     * @return Count of written bytes (may be less than <b>length</b>, 0 as well) or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int writeBytesArray(long handle, byte[] buffer, int offset, int length);
+
+    /**
+     * Write content of direct buffer to port. Position of buffer is not changed. The same as
+     * <b>writeBytesArray()</b>, only bytes which fit into output buffer are written in *nix
+     *
+     * @param handle handle of opened port
+     * @param buffer direct buffer with bytes to write
+     * @param position start position in buffer
+     * @param length count of bytes to write
+     *
+     * @return Count of written bytes (may be less than <b>length</b>, 0 as well) or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int writeBytesDirect(long handle, ByteBuffer buffer, int position, int length);
+
+    /**
+     * Gather write of several parts by one system call (writev() in *nix). Each part is byte array
+     * or direct buffer, positions of buffers are not changed. The same as <b>writeBytesArray()</b>,
+     * only bytes which fit into output buffer are written in *nix
+     *
+     * @param handle handle of opened port
+     * @param buffers parts to write, <b>byte[]</b> or direct <b>ByteBuffer</b>
+     * @param offsets start offset in each part
+     * @param lengths count of bytes to write from each part
+     *
+     * @return Count of written bytes (may be less than total length, 0 as well) or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int writeBytesVector(long handle, Object[] buffers, int[] offsets, int[] lengths);
+
     /**
      * Get bytes count in buffers of port
      *
@@ -483,4 +803,270 @@ public class SerialNativeInterface {
      * @since 0.8
      */
     public native boolean sendBreak(long handle, int duration);
+
+    /**
+     * Fill array with the current state of port, which is used for generation of events. Values are
+     * stored by indexes with prefix <b>"STATE_"</b>. Interrupts counters which are not supported by
+     * the driver are set to -1. Nothing is allocated, so method can be called as often as needed
+     *
+     * @param handle handle of opened port
+     * @param state array with length not less than <b>STATE_SIZE</b>
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean getEventsState(long handle, int[] state);
+
+    /**
+     * Create poller, which allows to wait for events of many port handles in one thread
+     * without polling (epoll is used in Linux)
+     *
+     * @return Handle of poller or -1 if poller is not supported in this OS or error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native long createPoller();
+
+    /**
+     * Add port handle to poller
+     *
+     * @param poller handle of poller
+     * @param handle handle of opened port
+     * @param events interest mask (<b>POLLER_IN</b>, <b>POLLER_OUT</b>, <b>POLLER_EDGE_TRIGGERED</b>).
+     * <b>POLLER_ERROR</b> and <b>POLLER_HANGUP</b> are reported always
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean pollerAdd(long poller, long handle, int events);
+
+    /**
+     * Change interest mask of port handle, which was added to poller
+     *
+     * @param poller handle of poller
+     * @param handle handle of opened port
+     * @param events new interest mask
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean pollerModify(long poller, long handle, int events);
+
+    /**
+     * Remove port handle from poller
+     *
+     * @param poller handle of poller
+     * @param handle handle of port
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean pollerRemove(long poller, long handle);
+
+    /**
+     * Wait for events of handles added to poller. The thread sleeps in the kernel until any event
+     * will be occurred, timeout will be elapsed or {@link #pollerWakeup(long)} will be called
+     *
+     * @param poller handle of poller
+     * @param handles array for storing handles of ports with events
+     * @param events array for storing events (<b>"POLLER_"</b> flags) of corresponding handles
+     * @param timeout timeout in milliseconds (-1 means infinite waiting)
+     *
+     * @return Count of stored handles (0 if timeout is elapsed or poller was woken up)
+     * or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int pollerWait(long poller, long[] handles, int[] events, int timeout);
+
+    /**
+     * Wake up thread waiting in {@link #pollerWait(long, long[], int[], int)}. If no thread is
+     * waiting at this moment, the next call of pollerWait() will return immediately
+     *
+     * @param poller handle of poller
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean pollerWakeup(long poller);
+
+    /**
+     * Destroy poller and release its resources. Port handles are not closed
+     *
+     * @param poller handle of poller
+     *
+     * @since 2.9.0
+     */
+    public native void destroyPoller(long poller);
+
+    /**
+     * Start native thread, which waits for changes of CTS, DSR, RING and RLSD lines in the kernel
+     * (TIOCMIWAIT in Linux). About changes it notifies through the handle returned by
+     * {@link #getLinesWaiterEventHandle(long)}, which can be added to the poller. The thread is stopped by
+     * signal <b>SIGRTMIN + 4</b>, its empty handler is installed for the whole process by the first call
+     * (only if the signal has no handler yet, otherwise lines waiter is not supported)
+     *
+     * @param handle handle of opened port
+     *
+     * @return Handle of lines waiter or -1 if it's not supported in this OS or error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native long createLinesWaiter(long handle);
+
+    /**
+     * Get handle, which becomes readable (<b>POLLER_IN</b>) when lines are changed
+     *
+     * @param waiter handle of lines waiter
+     *
+     * @return Handle for adding to the poller
+     *
+     * @since 2.9.0
+     */
+    public native long getLinesWaiterEventHandle(long waiter);
+
+    /**
+     * Get lines which were changed since the previous call. Changes are detected by interrupts
+     * counters, so line is reported even if it was switched twice and has the same state now
+     *
+     * @param waiter handle of lines waiter
+     *
+     * @return Additive value of <b>MASK_CTS</b>, <b>MASK_DSR</b>, <b>MASK_RING</b> and <b>MASK_RLSD</b>
+     * or -1 if waiting of lines is not supported by the driver (waiter is stopped in this case)
+     *
+     * @since 2.9.0
+     */
+    public native int getChangedLines(long waiter);
+
+    /**
+     * Stop native thread of lines waiter and release its resources. If the driver doesn't let the thread
+     * stop within a second, the thread is left to finish by itself and releases the resources later
+     *
+     * @param waiter handle of lines waiter
+     *
+     * @since 2.9.0
+     */
+    public native void destroyLinesWaiter(long waiter);
+
+    /**
+     * Start native thread, which reads data from the port into the ring buffer. Positions of the producer
+     * and the consumer are total counts of written and read bytes, byte with position <b>p</b> is stored
+     * at index <b>BACKGROUND_READER_HEADER_SIZE + p % (ring.capacity() - BACKGROUND_READER_HEADER_SIZE)</b>.
+     * Positions and flags are kept in the header at the start of the buffer (see <b>BACKGROUND_READER_*</b>
+     * constants, values have native byte order), so the consumer reads and publishes them by plain memory access
+     * (fenced, because the producer runs concurrently)
+     *
+     * @param handle handle of opened port
+     * @param ring direct buffer for the header and data, it mustn't be released until the reader is destroyed
+     *
+     * @return handle of background reader or -1 if it's not supported
+     *
+     * @since 2.9.0
+     */
+    public native long createBackgroundReader(long handle, ByteBuffer ring);
+
+    /**
+     * Get handle, which becomes readable (<b>POLLER_IN</b>) when the producer moves its position or stops
+     * after nonzero value was written into <b>BACKGROUND_READER_EVENT_REQUESTED</b> field of the header.
+     * The producer clears the field, so it's signaled once per request. The handle should be added to the poller
+     * with <b>POLLER_EDGE_TRIGGERED</b> flag, it's removed from the poller when the reader is destroyed
+     *
+     * @param reader handle of background reader
+     *
+     * @return Handle for adding to the poller
+     *
+     * @since 2.9.0
+     */
+    public native long getBackgroundReaderEventHandle(long reader);
+
+    /**
+     * Wait until position of the producer will be different from position of the consumer or
+     * the producer will stop. Should be called only by the consumer when the ring is empty
+     *
+     * @param reader handle of background reader
+     * @param timeout maximum time of waiting in milliseconds (negative value - infinite waiting)
+     *
+     * @since 2.9.0
+     */
+    public native void waitBackgroundReader(long reader, int timeout);
+
+    /**
+     * Wake up the producer, which waits for free space. Should be called by the consumer after it has published
+     * its position, if <b>BACKGROUND_READER_PRODUCER_WAITING</b> field of the header is nonzero
+     *
+     * @param reader handle of background reader
+     *
+     * @since 2.9.0
+     */
+    public native void wakeupBackgroundReader(long reader);
+
+    /**
+     * Stop native thread of background reader. Waiting consumer is woken up, data in the ring stays available
+     *
+     * @param reader handle of background reader
+     *
+     * @since 2.9.0
+     */
+    public native void stopBackgroundReader(long reader);
+
+    /**
+     * Stop background reader (if it's not stopped yet) and release its resources
+     *
+     * @param reader handle of background reader
+     *
+     * @since 2.9.0
+     */
+    public native void destroyBackgroundReader(long reader);
+
+    /**
+     * Create canceller, which wakes up threads waiting in {@link #waitPort(long, long, int, int)}
+     * (eventfd in Linux, pipe in other *nix, event in Windows)
+     *
+     * @return Handle of canceller or -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native long createCanceller();
+
+    /**
+     * Signal canceller. Signal is not reset, so all next calls of waitPort() with this canceller return at once
+     *
+     * @param canceller handle of canceller
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @since 2.9.0
+     */
+    public native boolean cancel(long canceller);
+
+    /**
+     * Release resources of canceller
+     *
+     * @param canceller handle of canceller
+     *
+     * @since 2.9.0
+     */
+    public native void destroyCanceller(long canceller);
+
+    /**
+     * Wait until the port will be ready for reading (there are bytes in input buffer) or writing.
+     * The thread sleeps in the kernel until the port is ready, canceller is signaled or timeout is elapsed
+     * (in Windows it waits for the first byte by overlapped ReadFile(), this byte is returned by the next read)
+     *
+     * @param handle handle of opened port
+     * @param canceller handle of canceller (-1 if it's not used)
+     * @param events interest mask (<b>POLLER_IN</b>, <b>POLLER_OUT</b>)
+     * @param timeout timeout in milliseconds (-1 means infinite waiting)
+     *
+     * @return <b>"POLLER_"</b> flags of ready port (<b>POLLER_ERROR</b> and <b>POLLER_HANGUP</b> are reported always),
+     * 0 if timeout is elapsed or canceller is signaled, -1 if error has occurred
+     *
+     * @since 2.9.0
+     */
+    public native int waitPort(long handle, long canceller, int events, int timeout);
 }
@@ -26,13 +26,14 @@ package jssc;
 
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 /**
  *
  * @author scream3r
  */
-public class SerialPort {
+public class SerialPort implements IExtendedSerialPort {
 
     private Logger logger = Logger.getLogger("SerialPort");
 
@@ -106,12 +107,17 @@ public class SerialPort {
     public static final int ERROR_PARITY = 0x0004;
     //<- since 0.8
 
+    //since 2.9.0 ->
+    public static final int LOW_LATENCY_DRIVER = 1;
+    public static final int LOW_LATENCY_TIMER = 2;
+    //<- since 2.9.0
+
     //since 2.6.0 ->
     private static final int PARAMS_FLAG_IGNPAR = 1;
     private static final int PARAMS_FLAG_PARMRK = 2;
     //<- since 2.6.0
 
-    private ISerialPort port;
+    private IExtendedSerialPort port;
 
     public SerialPort(String portName) {
         if (portName.startsWith("serialproxy://")) {
@@ -134,6 +140,15 @@ public class SerialPort {
         return port.getPortName();
     }
 
+    /**
+     * Getting implementation of port (for internal use)
+     *
+     * @since 2.9.0
+     */
+    IExtendedSerialPort getPort() {
+        return port;
+    }
+
     /**
      * Getting port state
      *
@@ -193,6 +208,65 @@ public class SerialPort {
         return port.setParams(baudRate, dataBits, stopBits, parity, setRTS, setDTR);
     }
 
+    /**
+     * Get baud rate, which is really used by the driver. Any integer baud rate may be passed to
+     * <b>setParams()</b> (in Linux it's set through termios2 with BOTHER), this method allows to check
+     * the rate which was applied
+     *
+     * @return baud rate or -1 if it can't be determined
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int getBaudRate() throws SerialPortException {
+        return port.getBaudRate();
+    }
+
+    /**
+     * Switch low latency mode of the port. In Linux the driver's <b>ASYNC_LOW_LATENCY</b> flag is set
+     * (or cleared) through <b>TIOCGSERIAL/TIOCSSERIAL</b>, and if the port is an USB-serial adapter with
+     * <b>latency_timer</b> in sysfs (FTDI), the timer is set to 1 ms. Its previous value is saved and
+     * written back when the mode is disabled (the timer isn't changed if it wasn't set by this port).
+     * Writing to sysfs usually requires root privileges or udev rule.
+     * <br><b>Note: </b>not all drivers support this, so returned value shall be checked
+     *
+     * @param enabled true to enable low latency mode, false to restore previous behaviour
+     *
+     * @return Additive value of settings which were really applied: <b>LOW_LATENCY_DRIVER</b>,
+     * <b>LOW_LATENCY_TIMER</b>, or 0 if nothing was applied
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int setLowLatency(boolean enabled) throws SerialPortException {
+        return port.setLowLatency(enabled);
+    }
+
+    /**
+     * Set policy of reopening of disconnected port (USB adapter was unplugged, port was hung up).
+     * When disconnection is detected by the event thread or by failed read operation, the port
+     * is closed and opened again every <b>retryInterval</b> milliseconds, until it's opened,
+     * <b>maxAttempts</b> attempts are made or <b>closePort()</b> is called. Parameters, flow control
+     * mode, events mask and background reader are restored after reopening.
+     * <br>Read operation which has detected disconnection throws exception with <b>TYPE_PORT_DISCONNECTED</b>
+     * type anyway, listener is notified through <b>errorOccurred(SerialPortException)</b> method
+     * (if it's defined). By default reopening is disabled
+     *
+     * @param retryInterval interval between attempts in milliseconds, 0 disables reopening
+     * @param maxAttempts maximum count of attempts, 0 means unlimited count
+     *
+     * @return true if reopening is supported for this port
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean setReopenPolicy(int retryInterval, int maxAttempts) throws SerialPortException {
+        return port.setReopenPolicy(retryInterval, maxAttempts);
+    }
+
     /**
      * Purge of input and output buffer. Required flags shall be sent to the input. Variables with prefix
      * <b>"PURGE_"</b>, for example <b>"PURGE_RXCLEAR"</b>. Sent parameter "flags" is additive value,
@@ -214,6 +288,10 @@ public class SerialPort {
      * Sent parameter "mask" is additive value, so addition of flags is allowed.
      * For example if messages about data receipt and CTS and DSR status changing
      * shall be received, it is required to set the mask - <b>"MASK_RXCHAR | MASK_CTS | MASK_DSR"</b>
+     * <br><b>Note: </b>in Linux changes of CTS, DSR, RING and RLSD lines are awaited by native thread in
+     * <b>ioctl(TIOCMIWAIT)</b>, which is stopped by signal <b>SIGRTMIN + 4</b>. Empty handler of this signal
+     * is installed for the whole process when such thread is started for the first time, if the signal has
+     * no handler yet. If the application uses this signal, lines are checked periodically instead
      *
      * @return If the operation is successfully completed, the method returns true, otherwise false
      *
@@ -234,6 +312,24 @@ public class SerialPort {
         return port.getEventsMask();
     }
 
+    /**
+     * Set the event character. When it's received, event <b>MASK_RXFLAG</b> is sent to the listener.
+     * In *nix received bytes can't be inspected without reading them, so the event thread moves them into
+     * the pushback buffer of the port (they are returned by the next read operation) or searches the character
+     * in the ring of background reader. Bytes taken by a read operation, which is already waiting for data, are not inspected
+     *
+     * @param eventChar event character (0-255) or -1 to disable the event
+     *
+     * @return true if the character was applied, otherwise false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean setEventChar(int eventChar) throws SerialPortException {
+        return port.setEventChar(eventChar);
+    }
+
     /**
      * Change RTS line state. Set "true" for switching ON and "false" for switching OFF RTS line
      *
@@ -332,6 +428,90 @@ public class SerialPort {
         return port.writeIntArray(buffer);
     }
 
+    /**
+     * Write part of byte array to port. Method doesn't allocate any temporary arrays
+     *
+     * @param buffer array of bytes to write
+     * @param offset start offset in array
+     * @param length count of bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int write(byte[] buffer, int offset, int length) throws SerialPortException {
+        return port.write(buffer, offset, length);
+    }
+
+    /**
+     * Write remaining bytes of buffer to port. Position of buffer is advanced by count of
+     * written bytes. Direct buffers are passed to the native code without any copying
+     *
+     * @param buffer buffer with bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int write(ByteBuffer buffer) throws SerialPortException {
+        return port.write(buffer);
+    }
+
+    /**
+     * Write several byte arrays to port as one block (for example header, payload and CRC of the frame).
+     * In *nix all parts are passed to the kernel by one writev() call, so arrays are neither
+     * concatenated in Java nor written by separate calls with gaps between parts
+     *
+     * @param parts byte arrays to write
+     *
+     * @return If the operation is successfully completed, the method returns true, otherwise false
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean writeBytes(byte[]... parts) throws SerialPortException {
+        return port.writeBytes(parts);
+    }
+
+    /**
+     * Write remaining bytes of <b>length</b> buffers starting from <b>buffers[offset]</b> as one block
+     * (gather write). Positions of buffers are advanced by count of written bytes. Direct buffers
+     * are passed to the native code without any copying
+     *
+     * @param buffers buffers with bytes to write
+     * @param offset index of the first buffer
+     * @param length count of buffers
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public long write(ByteBuffer[] buffers, int offset, int length) throws SerialPortException {
+        return port.write(buffers, offset, length);
+    }
+
+    /**
+     * Write remaining bytes of all buffers as one block, the same as <b>write(buffers, 0, buffers.length)</b>
+     *
+     * @param buffers buffers with bytes to write
+     *
+     * @return Count of written bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public long write(ByteBuffer[] buffers) throws SerialPortException {
+        return port.write(buffers);
+    }
+
     /**
      * Read byte array from port
      *
@@ -420,6 +600,43 @@ public class SerialPort {
         return port.readIntArray(byteCount);
     }
 
+    /**
+     * Read bytes from port into part of byte array. Method blocks until at least one byte
+     * is received and then reads all available bytes, but not more than <b>length</b>.
+     * Method doesn't allocate any temporary arrays
+     *
+     * @param buffer array for storing read bytes
+     * @param offset start offset in array
+     * @param length maximum count of bytes to read
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int read(byte[] buffer, int offset, int length) throws SerialPortException {
+        return port.read(buffer, offset, length);
+    }
+
+    /**
+     * Read bytes from port into buffer. Method blocks until at least one byte is received
+     * and then reads all available bytes, but not more than remaining space of buffer.
+     * Position of buffer is advanced by count of read bytes. Direct buffers are filled
+     * by the native code without any copying
+     *
+     * @param buffer buffer for storing read bytes
+     *
+     * @return Count of read bytes or -1 if error has occurred
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public int read(ByteBuffer buffer) throws SerialPortException {
+        return port.read(buffer);
+    }
+
     /**
      * Read byte array from port
      *
@@ -437,6 +654,103 @@ public class SerialPort {
         return port.readBytes(byteCount, timeout);
     }
 
+    /**
+     * Read not less than <b>minByteCount</b> and not more than <b>maxByteCount</b> bytes from port.
+     * Method returns as soon as <b>minByteCount</b> bytes are received (all bytes which are available
+     * at this moment are returned too). If timeout is elapsed, received bytes are not lost and
+     * will be returned by the next read operation
+     *
+     * @param minByteCount minimum count of bytes for reading
+     * @param maxByteCount maximum count of bytes for reading
+     * @param timeout timeout in milliseconds
+     *
+     * @return byte array with length from "minByteCount" to "maxByteCount"
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readAtLeast(int minByteCount, int maxByteCount, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        return port.readAtLeast(minByteCount, maxByteCount, timeout);
+    }
+
+    /**
+     * Read one frame, which is finished by silence on the line (Modbus RTU and many other protocols
+     * separate frames in this way). Method waits for the first byte up to <b>timeout</b> milliseconds
+     * and then reads bytes until <b>maxFrameSize</b> bytes are received or no byte is received during
+     * <b>interCharTimeout</b> milliseconds. The thread sleeps in the driver (Windows) or in poll() (*nix)
+     * between received bytes, so it doesn't poll input buffer. Port settings are not changed by the call
+     *
+     * @param maxFrameSize maximum size of the frame
+     * @param interCharTimeout inter-character gap in milliseconds, which finishes the frame
+     * @param timeout timeout of waiting for the first byte in milliseconds
+     *
+     * @return received frame
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readFrame(int maxFrameSize, int interCharTimeout, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        return port.readFrame(maxFrameSize, interCharTimeout, timeout);
+    }
+
+    /**
+     * Read bytes until the delimiter is received (for example a line finished by '\n'). Bytes which are
+     * already received are searched at once, so a whole line is delivered by one wakeup and one copy.
+     * Bytes received after the delimiter will be returned by the next read operation
+     *
+     * @param delimiter byte which finishes the data
+     * @param maxLength maximum count of bytes to read
+     * @param timeout timeout in milliseconds
+     *
+     * @return Bytes up to and including the delimiter, or <b>maxLength</b> bytes if delimiter
+     * isn't found among them (the last byte isn't the delimiter in this case)
+     *
+     * @throws SerialPortException
+     * @throws SerialPortTimeoutException
+     *
+     * @since 2.9.0
+     */
+    public byte[] readUntil(byte delimiter, int maxLength, int timeout) throws SerialPortException, SerialPortTimeoutException {
+        return port.readUntil(delimiter, maxLength, timeout);
+    }
+
+    /**
+     * Start background reader. Native thread reads data from the port into off-heap ring buffer as soon
+     * as it is received and all read methods take data from this buffer. Data bursts are read without
+     * system calls and the kernel buffer isn't overrun while the application is paused (for example by GC).
+     * Works only in Linux with JNI library, in other cases method returns false.
+     * While background reader is running, the event listener gets <b>MASK_RXCHAR</b> (and <b>MASK_RXFLAG</b>)
+     * once per portion of data moved into the ring, the event thread is woken up by the reader itself
+     *
+     * @param bufferSize size of ring buffer in bytes
+     *
+     * @return true if background reader is running after the call (method does nothing if it's running already)
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean startBackgroundReader(int bufferSize) throws SerialPortException {
+        return port.startBackgroundReader(bufferSize);
+    }
+
+    /**
+     * Stop background reader. Data left in ring buffer is not lost and will be returned by the next read operation
+     *
+     * @return true if background reader was running
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public boolean stopBackgroundReader() throws SerialPortException {
+        return port.stopBackgroundReader();
+    }
+
     /**
      * Read string from port
      *
@@ -683,6 +997,23 @@ public class SerialPort {
         return port.getLinesStatus();
     }
 
+    /**
+     * Get snapshot of port state: counts of bytes in buffers, state of lines and counters of
+     * interrupts. All values are taken in one native call without allocation of objects
+     *
+     * @param status object for storing of state, it may be reused by the next calls
+     * (if it's <b>null</b> new object is created)
+     *
+     * @return Filled status object
+     *
+     * @throws SerialPortException
+     *
+     * @since 2.9.0
+     */
+    public PortStatus getPortStatus(PortStatus status) throws SerialPortException {
+        return port.getPortStatus(status);
+    }
+
     /**
      * Get state of CTS line
      *
@@ -0,0 +1,256 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteOrder;
+
+/**
+ * Reader of binary values (signed and unsigned integers, IEEE 754 floats, varints) from the opened port.
+ * Bytes are read into reusable array (the native code fills it without intermediate copy) and values are
+ * decoded directly from it by {@link BinaryCodec} (<b>VarHandle</b> byte array views in Java 9+, shifts in older
+ * versions), so reading doesn't allocate any objects. Byte order is big-endian by default.
+ * Read operations block until all bytes of the value are received, value split between reads is decoded
+ * correctly. Bytes read from the port but not decoded yet are kept in the buffer, see {@link #available()}.
+ * <br><b>Note: </b>reader is not thread-safe
+ *
+ * @since 2.9.0
+ */
+public class SerialPortBinaryReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    //Longest value is 10 bytes varint
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private final IExtendedSerialPort port;
+    private final BinaryCodec codec = BinaryCodec.getInstance();
+    //Received bytes which are not decoded yet are between position and limit
+    private final byte[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean bigEndian;
+
+    public SerialPortBinaryReader(IExtendedSerialPort port) {
+        this(port, DEFAULT_BUFFER_SIZE, ByteOrder.BIG_ENDIAN);
+    }
+
+    public SerialPortBinaryReader(IExtendedSerialPort port, ByteOrder order) {
+        this(port, DEFAULT_BUFFER_SIZE, order);
+    }
+
+    public SerialPortBinaryReader(IExtendedSerialPort port, int bufferSize, ByteOrder order) {
+        if(bufferSize <= 0){
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.port = port;
+        buffer = new byte[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+        setByteOrder(order);
+    }
+
+    public ByteOrder getByteOrder() {
+        return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Change byte order of the next values (for protocols with mixed byte order)
+     */
+    public void setByteOrder(ByteOrder order) {
+        bigEndian = (order == ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Getting count of bytes which are read from the port but not decoded yet
+     */
+    public int available() {
+        return limit - position;
+    }
+
+    public byte readByte() throws SerialPortException {
+        require(1, "readByte()");
+        return buffer[position++];
+    }
+
+    public int readUnsignedByte() throws SerialPortException {
+        require(1, "readUnsignedByte()");
+        return buffer[position++] & 0xFF;
+    }
+
+    public short readShort() throws SerialPortException {
+        require(2, "readShort()");
+        short value = codec.getShort(buffer, position, bigEndian);
+        position += 2;
+        return value;
+    }
+
+    public int readUnsignedShort() throws SerialPortException {
+        return readShort() & 0xFFFF;
+    }
+
+    public int readInt() throws SerialPortException {
+        require(4, "readInt()");
+        int value = codec.getInt(buffer, position, bigEndian);
+        position += 4;
+        return value;
+    }
+
+    public long readUnsignedInt() throws SerialPortException {
+        return readInt() & 0xFFFFFFFFL;
+    }
+
+    public long readLong() throws SerialPortException {
+        require(8, "readLong()");
+        long value = codec.getLong(buffer, position, bigEndian);
+        position += 8;
+        return value;
+    }
+
+    public float readFloat() throws SerialPortException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws SerialPortException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Read unsigned varint (7 bits per byte, the least significant group first, high bit of byte
+     * is set if more bytes follow), it's encoding of Protocol Buffers and LEB128
+     *
+     * @return Value, encoded by 1-5 bytes
+     *
+     * @throws SerialPortException <b>TYPE_IO_ERROR</b> if varint is longer than 5 bytes
+     */
+    public int readVarInt() throws SerialPortException {
+        return (int)readVarint(35, "readVarInt()");
+    }
+
+    /**
+     * Read unsigned varint of 64 bits value
+     *
+     * @return Value, encoded by 1-10 bytes
+     *
+     * @throws SerialPortException <b>TYPE_IO_ERROR</b> if varint is longer than 10 bytes
+     */
+    public long readVarLong() throws SerialPortException {
+        return readVarint(70, "readVarLong()");
+    }
+
+    /**
+     * Read signed varint in ZigZag encoding (0 = 0, -1 = 1, 1 = 2, -2 = 3 ...)
+     */
+    public int readSignedVarInt() throws SerialPortException {
+        int value = (int)readVarint(35, "readSignedVarInt()");
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read signed varint of 64 bits value in ZigZag encoding
+     */
+    public long readSignedVarLong() throws SerialPortException {
+        long value = readVarint(70, "readSignedVarLong()");
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read exactly <b>length</b> bytes into part of array. Bytes which are not in the buffer
+     * yet are read from the port directly into the array
+     */
+    public void readFully(byte[] dst, int offset, int length) throws SerialPortException {
+        if(offset < 0 || length < 0 || offset > dst.length - length){
+            throw new IndexOutOfBoundsException();
+        }
+        int byteCount = Math.min(limit - position, length);
+        System.arraycopy(buffer, position, dst, offset, byteCount);
+        position += byteCount;
+        offset += byteCount;
+        length -= byteCount;
+        while(length > 0){
+            int result = port.read(dst, offset, length);
+            if(result < 0){
+                throw new SerialPortException(port.getPortName(), "readFully()", SerialPortException.TYPE_IO_ERROR);
+            }
+            offset += result;
+            length -= result;
+        }
+    }
+
+    public void readFully(byte[] dst) throws SerialPortException {
+        readFully(dst, 0, dst.length);
+    }
+
+    /**
+     * Skip <b>byteCount</b> bytes, method blocks until they are received
+     */
+    public void skipBytes(int byteCount) throws SerialPortException {
+        while(byteCount > 0){
+            int skipped = Math.min(byteCount, buffer.length);
+            require(skipped, "skipBytes()");
+            position += skipped;
+            byteCount -= skipped;
+        }
+    }
+
+    public IExtendedSerialPort getPort() {
+        return port;
+    }
+
+    /**
+     * Decode varint from the buffer, port is read only if the buffer is empty in the middle of varint
+     *
+     * @param maxShift shift of the group which is after the last allowed group
+     */
+    private long readVarint(int maxShift, String methodName) throws SerialPortException {
+        long value = 0;
+        for(int shift = 0; shift < maxShift; shift += 7){
+            if(position == limit){
+                require(1, methodName);
+            }
+            byte b = buffer[position++];
+            value |= (long)(b & 0x7F) << shift;
+            if(b >= 0){
+                return value;
+            }
+        }
+        throw new SerialPortException(port.getPortName(), methodName, SerialPortException.TYPE_IO_ERROR);
+    }
+
+    /**
+     * Read the port until at least <b>byteCount</b> bytes are in the buffer
+     */
+    private void require(int byteCount, String methodName) throws SerialPortException {
+        if(limit - position >= byteCount){
+            return;
+        }
+        limit -= position;
+        System.arraycopy(buffer, position, buffer, 0, limit);
+        position = 0;
+        while(limit < byteCount){
+            int result = port.read(buffer, limit, buffer.length - limit);
+            if(result < 0){
+                throw new SerialPortException(port.getPortName(), methodName, SerialPortException.TYPE_IO_ERROR);
+            }
+            limit += result;
+        }
+    }
+}
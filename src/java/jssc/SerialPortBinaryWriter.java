@@ -0,0 +1,231 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteOrder;
+
+/**
+ * Writer of binary values (integers, IEEE 754 floats, varints) to the opened port. Values are encoded
+ * directly into reusable array by {@link BinaryCodec} (<b>VarHandle</b> byte array views in Java 9+, shifts
+ * in older versions), the array is written by {@link #flush()} (or when it's full) without intermediate copy,
+ * so writing doesn't allocate any objects. Byte order is big-endian by default. Unsigned values are written
+ * by methods for signed values of the same size (low bits of the argument are written).
+ * <br><b>Note: </b>writer is not thread-safe
+ *
+ * @since 2.9.0
+ */
+public class SerialPortBinaryWriter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    //Longest value is 10 bytes varint
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private final IExtendedSerialPort port;
+    private final BinaryCodec codec = BinaryCodec.getInstance();
+    //Encoded bytes which are not written yet are before position
+    private final byte[] buffer;
+    private int position = 0;
+    private boolean bigEndian;
+
+    public SerialPortBinaryWriter(IExtendedSerialPort port) {
+        this(port, DEFAULT_BUFFER_SIZE, ByteOrder.BIG_ENDIAN);
+    }
+
+    public SerialPortBinaryWriter(IExtendedSerialPort port, ByteOrder order) {
+        this(port, DEFAULT_BUFFER_SIZE, order);
+    }
+
+    public SerialPortBinaryWriter(IExtendedSerialPort port, int bufferSize, ByteOrder order) {
+        if(bufferSize <= 0){
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.port = port;
+        buffer = new byte[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+        setByteOrder(order);
+    }
+
+    public ByteOrder getByteOrder() {
+        return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Change byte order of the next values (for protocols with mixed byte order)
+     */
+    public void setByteOrder(ByteOrder order) {
+        bigEndian = (order == ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Getting count of bytes which are encoded but not written to the port yet
+     */
+    public int getBufferedBytes() {
+        return position;
+    }
+
+    /**
+     * Write low 8 bits of value
+     */
+    public void writeByte(int value) throws SerialPortException {
+        ensure(1);
+        buffer[position++] = (byte)value;
+    }
+
+    /**
+     * Write low 16 bits of value
+     */
+    public void writeShort(int value) throws SerialPortException {
+        ensure(2);
+        codec.putShort(buffer, position, (short)value, bigEndian);
+        position += 2;
+    }
+
+    public void writeInt(int value) throws SerialPortException {
+        ensure(4);
+        codec.putInt(buffer, position, value, bigEndian);
+        position += 4;
+    }
+
+    /**
+     * Write low 32 bits of value
+     */
+    public void writeUnsignedInt(long value) throws SerialPortException {
+        writeInt((int)value);
+    }
+
+    public void writeLong(long value) throws SerialPortException {
+        ensure(8);
+        codec.putLong(buffer, position, value, bigEndian);
+        position += 8;
+    }
+
+    public void writeFloat(float value) throws SerialPortException {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    public void writeDouble(double value) throws SerialPortException {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Write value as unsigned varint (1-5 bytes)
+     *
+     * @see SerialPortBinaryReader#readVarInt()
+     */
+    public void writeVarInt(int value) throws SerialPortException {
+        writeVarint(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Write value as unsigned varint (1-10 bytes)
+     */
+    public void writeVarLong(long value) throws SerialPortException {
+        writeVarint(value);
+    }
+
+    /**
+     * Write value as signed varint in ZigZag encoding
+     */
+    public void writeSignedVarInt(int value) throws SerialPortException {
+        writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Write value as signed varint of 64 bits value in ZigZag encoding
+     */
+    public void writeSignedVarLong(long value) throws SerialPortException {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Write part of array. Array which is larger than free space of the buffer is written
+     * to the port directly after the buffered bytes
+     */
+    public void write(byte[] src, int offset, int length) throws SerialPortException {
+        if(offset < 0 || length < 0 || offset > src.length - length){
+            throw new IndexOutOfBoundsException();
+        }
+        if(length <= buffer.length - position){
+            System.arraycopy(src, offset, buffer, position, length);
+            position += length;
+            return;
+        }
+        flush();
+        if(length < buffer.length){
+            System.arraycopy(src, offset, buffer, 0, length);
+            position = length;
+            return;
+        }
+        while(length > 0){
+            int result = port.write(src, offset, length);
+            if(result < 0){
+                throw new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_IO_ERROR);
+            }
+            offset += result;
+            length -= result;
+        }
+    }
+
+    public void write(byte[] src) throws SerialPortException {
+        write(src, 0, src.length);
+    }
+
+    /**
+     * Write all buffered bytes to the port
+     */
+    public void flush() throws SerialPortException {
+        int offset = 0;
+        try {
+            while(offset < position){
+                int result = port.write(buffer, offset, position - offset);
+                if(result < 0){
+                    throw new SerialPortException(port.getPortName(), "flush()", SerialPortException.TYPE_IO_ERROR);
+                }
+                offset += result;
+            }
+        }
+        finally {
+            position = 0;
+        }
+    }
+
+    public IExtendedSerialPort getPort() {
+        return port;
+    }
+
+    private void writeVarint(long value) throws SerialPortException {
+        ensure(10);
+        while((value & ~0x7FL) != 0){
+            buffer[position++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte)value;
+    }
+
+    private void ensure(int byteCount) throws SerialPortException {
+        if(buffer.length - position < byteCount){
+            flush();
+        }
+    }
+}
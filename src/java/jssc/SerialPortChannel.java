@@ -0,0 +1,190 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * NIO channel over the opened port. Data is read and written directly from/to buffers
+ * (direct buffers are processed by the native code without copying), so channel can be
+ * used with FileChannel.transferFrom() and other NIO based code.
+ * <br>Read operations block until at least one byte is received, -1 is returned if port was
+ * closed or hung up. Closing of channel closes the port.
+ * <br><b>Note: </b>blocking operations are not interrupted by Thread.interrupt(), close the port instead
+ *
+ * @since 2.9.0
+ */
+public class SerialPortChannel implements ByteChannel, ScatteringByteChannel, GatheringByteChannel {
+
+    private final IExtendedSerialPort port;
+    private volatile boolean open = true;
+
+    public SerialPortChannel(IExtendedSerialPort port) {
+        this.port = port;
+    }
+
+    /**
+     * Getting port of this channel
+     */
+    public IExtendedSerialPort getPort() {
+        return port;
+    }
+
+    public int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+        if(!dst.hasRemaining()){
+            return 0;
+        }
+        try {
+            return port.read(dst);
+        }
+        catch (SerialPortException ex) {
+            return handleException(ex);
+        }
+    }
+
+    /**
+     * Read into sequence of buffers. Method blocks until the first byte is received, after that
+     * only bytes which are already in input buffer are read into the next buffers
+     */
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        checkOpen();
+        checkBounds(dsts.length, offset, length);
+        long total = 0;
+        try {
+            for(int i = offset; i < offset + length; i++){
+                ByteBuffer dst = dsts[i];
+                if(!dst.hasRemaining()){
+                    continue;
+                }
+                if(total > 0 && port.getInputBufferBytesCount() <= 0){
+                    break;
+                }
+                int result = port.read(dst);
+                if(result < 0){
+                    return total > 0 ? total : -1;
+                }
+                total += result;
+                if(dst.hasRemaining()){
+                    break;
+                }
+            }
+        }
+        catch (SerialPortException ex) {
+            if(total == 0){
+                return handleException(ex);
+            }
+        }
+        return total;
+    }
+
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    /**
+     * Write all remaining bytes of buffer (method blocks until all bytes are written)
+     */
+    public int write(ByteBuffer src) throws IOException {
+        checkOpen();
+        try {
+            int result = port.write(src);
+            if(result < 0){
+                throw new IOException("Can't write to port " + port.getPortName());
+            }
+            return result;
+        }
+        catch (SerialPortException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Write all remaining bytes of buffers as one block (in *nix by one writev() call)
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        checkOpen();
+        checkBounds(srcs.length, offset, length);
+        try {
+            long result = port.write(srcs, offset, length);
+            if(result < 0){
+                throw new IOException("Can't write to port " + port.getPortName());
+            }
+            return result;
+        }
+        catch (SerialPortException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    public boolean isOpen() {
+        return open && port.isOpened();
+    }
+
+    public void close() throws IOException {
+        if(open){
+            open = false;
+            if(port.isOpened()){
+                try {
+                    port.closePort();
+                }
+                catch (SerialPortException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        }
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if(!open){
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static void checkBounds(int arrayLength, int offset, int length) {
+        if(offset < 0 || length < 0 || offset > arrayLength - length){
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Closed port means the end of stream, other errors are thrown as IOException
+     */
+    private int handleException(SerialPortException ex) throws IOException {
+        if(!port.isOpened()){
+            return -1;
+        }
+        throw new IOException(ex);
+    }
+}
@@ -69,7 +69,7 @@ public class SerialPortEvent {
      * <br></br>
      * <br><u><b>Event values depending on their types:</b></u></br>
      * <br><b>RXCHAR</b> - bytes count in input buffer</br>
-     * <br><b>RXFLAG</b> - bytes count in input buffer (Not supported in Linux)</br>
+     * <br><b>RXFLAG</b> - bytes count in input buffer</br>
      * <br><b>TXEMPTY</b> - bytes count in output buffer</br>
      * <br><b>CTS</b> - state of CTS line (0 - OFF, 1 - ON)</br>
      * <br><b>DSR</b> - state of DSR line (0 - OFF, 1 - ON)</br>
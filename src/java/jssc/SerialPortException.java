@@ -60,6 +60,26 @@ public class SerialPortException extends Exception {
      * @since 2.3.0
      */
     final public static String TYPE_INCORRECT_SERIAL_PORT = "Incorrect serial port";
+    /**
+     * @since 2.9.0
+     */
+    final public static String TYPE_IO_ERROR = "I/O error";
+    /**
+     * @since 2.9.0
+     */
+    final public static String TYPE_NOT_SUPPORTED = "Operation not supported";
+    /**
+     * @since 2.9.0
+     */
+    final public static String TYPE_PORT_DISCONNECTED = "Port disconnected";
+    /**
+     * @since 2.9.0
+     */
+    final public static String TYPE_INTERRUPTED = "Operation interrupted";
+    /**
+     * @since 2.9.0
+     */
+    final public static String TYPE_QUEUE_FULL = "Queue is full";
 
     private String portName;
     private String methodName;
@@ -0,0 +1,261 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Framing layer over the port. Received bytes are read into reusable direct buffer (the native code fills it
+ * without copying) and decoded by the codec ({@link SlipCodec}, {@link CobsCodec}, {@link HdlcCodec},
+ * {@link LengthPrefixCodec} or custom one) into pooled buffers of frames. Frame belongs to the caller until
+ * {@link Frame#release()} is called, after that its buffer is reused for the next frames, so steady stream
+ * of frames doesn't produce garbage. Frames are encoded into reusable direct buffer and written at once.
+ * Corrupted frames are dropped and counted (see {@link #getErrorCount()}).
+ * <br>One thread may read frames while other threads write them, every frame is written atomically
+ *
+ * @since 2.9.0
+ */
+public class SerialPortFramer {
+
+    private static final int DEFAULT_MAX_FRAME_SIZE = 4096;
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+    //Released frames above this count are left for GC (they were held by the application at once)
+    private static final int MAX_POOLED_FRAMES = 32;
+
+    private final IExtendedSerialPort port;
+    private final FrameCodec codec;
+    private final int maxFrameSize;
+    //Received bytes which are not decoded yet (in read mode)
+    private final ByteBuffer receiveBuffer;
+    private final ByteBuffer encodeBuffer;
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+    //Released frames (it's guarded by itself)
+    private final ArrayDeque<Frame> pool = new ArrayDeque<Frame>();
+    //Frame which is being decoded
+    private Frame current;
+    private volatile long errorCount = 0;
+
+    /**
+     * Create framer for frames up to 4096 bytes
+     *
+     * @param port opened port
+     * @param codec codec of frames
+     */
+    public SerialPortFramer(IExtendedSerialPort port, FrameCodec codec) {
+        this(port, codec, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * @param port opened port
+     * @param codec codec of frames
+     * @param maxFrameSize maximum size of frame content (longer received frames are dropped as corrupted)
+     */
+    public SerialPortFramer(IExtendedSerialPort port, FrameCodec codec, int maxFrameSize) {
+        if(maxFrameSize <= 0){
+            throw new IllegalArgumentException("Frame size <= 0");
+        }
+        this.port = port;
+        this.codec = codec;
+        this.maxFrameSize = maxFrameSize;
+        receiveBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+        receiveBuffer.flip();
+        encodeBuffer = ByteBuffer.allocateDirect(codec.getMaxEncodedLength(maxFrameSize));
+    }
+
+    /**
+     * Read the next frame. Method blocks until the frame is received, bytes received after it
+     * are left for the next call. Frame shall be released when it's not needed more
+     *
+     * @return Frame or <b>null</b> if port was closed or hung up
+     *
+     * @throws SerialPortException
+     */
+    public Frame readFrame() throws SerialPortException {
+        synchronized(readLock){
+            if(current == null){
+                current = takeFrame();
+            }
+            while(true){
+                while(receiveBuffer.hasRemaining()){
+                    int result = codec.decode(receiveBuffer, current.buffer);
+                    if(result == FrameCodec.RESULT_FRAME){
+                        Frame frame = current;
+                        current = null;
+                        frame.buffer.flip();
+                        return frame;
+                    }
+                    if(result == FrameCodec.RESULT_ERROR){
+                        errorCount++;
+                        current.buffer.clear();
+                    }
+                }
+                receiveBuffer.clear();
+                int result;
+                try {
+                    result = readPort();
+                }
+                finally {
+                    receiveBuffer.flip();
+                }
+                if(result < 0){
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode and write the frame
+     *
+     * @param frame content of the frame (all remaining bytes), position is advanced to its limit
+     *
+     * @throws SerialPortException <b>TYPE_PARAMETER_IS_NOT_CORRECT</b> if frame is longer than maximum size
+     */
+    public void writeFrame(ByteBuffer frame) throws SerialPortException {
+        if(frame.remaining() > maxFrameSize){
+            throw new SerialPortException(port.getPortName(), "writeFrame()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        synchronized(writeLock){
+            encodeBuffer.clear();
+            codec.encode(frame, encodeBuffer);
+            encodeBuffer.flip();
+            while(encodeBuffer.hasRemaining()){
+                if(port.write(encodeBuffer) < 0){
+                    throw new SerialPortException(port.getPortName(), "writeFrame()", SerialPortException.TYPE_IO_ERROR);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode and write the frame
+     *
+     * @param buffer array with content of the frame
+     * @param offset start offset in array
+     * @param length length of the frame
+     *
+     * @throws SerialPortException <b>TYPE_PARAMETER_IS_NOT_CORRECT</b> if frame is longer than maximum size
+     */
+    public void writeFrame(byte[] buffer, int offset, int length) throws SerialPortException {
+        writeFrame(ByteBuffer.wrap(buffer, offset, length));
+    }
+
+    /**
+     * Getting count of dropped frames (corrupted or longer than maximum size)
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public IExtendedSerialPort getPort() {
+        return port;
+    }
+
+    private int readPort() throws SerialPortException {
+        if(!port.isOpened()){
+            return -1;
+        }
+        try {
+            return port.read(receiveBuffer);
+        }
+        catch (SerialPortException ex) {
+            //Waiting read is woken up by closePort() before the port is marked as closed
+            if(!port.isOpened() || SerialPortException.TYPE_PORT_NOT_OPENED.equals(ex.getExceptionType())){
+                return -1;
+            }
+            throw ex;
+        }
+    }
+
+    private Frame takeFrame() {
+        Frame frame;
+        synchronized(pool){
+            frame = pool.poll();
+        }
+        if(frame == null){
+            frame = new Frame(this, ByteBuffer.allocate(maxFrameSize));
+        }
+        frame.released = false;
+        return frame;
+    }
+
+    private void releaseFrame(Frame frame) {
+        synchronized(pool){
+            if(frame.released){
+                throw new IllegalStateException("Frame is released already");
+            }
+            frame.released = true;
+            frame.buffer.clear();
+            if(pool.size() < MAX_POOLED_FRAMES){
+                pool.add(frame);
+            }
+        }
+    }
+
+    /**
+     * Decoded frame. Its buffer is valid until the frame is released
+     */
+    public static final class Frame {
+
+        private final SerialPortFramer framer;
+        private final ByteBuffer buffer;
+        private volatile boolean released = true;
+
+        private Frame(SerialPortFramer framer, ByteBuffer buffer) {
+            this.framer = framer;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Getting content of the frame (from position to limit)
+         *
+         * @throws IllegalStateException if frame is released
+         */
+        public ByteBuffer getBuffer() {
+            if(released){
+                throw new IllegalStateException("Frame is released");
+            }
+            return buffer;
+        }
+
+        /**
+         * Getting length of the frame
+         */
+        public int getLength() {
+            return buffer.limit();
+        }
+
+        /**
+         * Return buffer of the frame to the pool of framer
+         *
+         * @throws IllegalStateException if frame is released already
+         */
+        public void release() {
+            framer.releaseFrame(this);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Buffered InputStream over the opened port. Read operations block until at least one byte
+ * is received (no polling of input buffer is needed), -1 is returned if port was closed
+ * or hung up. Large reads go directly into the array of the caller.
+ * Closing of stream closes the port.
+ * <br><b>Note: </b>stream is not thread-safe
+ *
+ * @since 2.9.0
+ */
+public class SerialPortInputStream extends InputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final IExtendedSerialPort port;
+    private final byte[] buffer;
+    private int position = 0;
+    private int count = 0;
+    private boolean closed = false;
+
+    public SerialPortInputStream(IExtendedSerialPort port) {
+        this(port, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SerialPortInputStream(IExtendedSerialPort port, int bufferSize) {
+        if(bufferSize <= 0){
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.port = port;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(position >= count && fill() < 0){
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || off > b.length - len){
+            throw new IndexOutOfBoundsException();
+        }
+        if(len == 0){
+            return 0;
+        }
+        if(position < count){
+            int byteCount = Math.min(count - position, len);
+            System.arraycopy(buffer, position, b, off, byteCount);
+            position += byteCount;
+            return byteCount;
+        }
+        if(len >= buffer.length){
+            return readPort(b, off, len);
+        }
+        if(fill() < 0){
+            return -1;
+        }
+        return read(b, off, len);
+    }
+
+    /**
+     * Count of bytes which can be read without blocking (buffered bytes and bytes in input buffer of port)
+     */
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        int available = count - position;
+        if(port.isOpened()){
+            try {
+                int portAvailable = port.getInputBufferBytesCount();
+                if(portAvailable > 0){
+                    available += portAvailable;
+                }
+            }
+            catch (SerialPortException ex) {
+                throw new IOException(ex);
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!closed){
+            closed = true;
+            if(port.isOpened()){
+                try {
+                    port.closePort();
+                }
+                catch (SerialPortException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        }
+    }
+
+    private int fill() throws IOException {
+        position = 0;
+        count = 0;
+        int result = readPort(buffer, 0, buffer.length);
+        if(result > 0){
+            count = result;
+        }
+        return result;
+    }
+
+    private int readPort(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if(!port.isOpened()){
+            return -1;
+        }
+        try {
+            return port.read(b, off, len);
+        }
+        catch (SerialPortException ex) {
+            //Waiting read is woken up by closePort() before the port is marked as closed
+            if(!port.isOpened() || SerialPortException.TYPE_PORT_NOT_OPENED.equals(ex.getExceptionType())){
+                return -1;
+            }
+            throw new IOException(ex);
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if(closed){
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -43,7 +43,7 @@ public class SerialPortList {
     private static final String PORTNAMES_PATH;
 
     static {
-        serialInterface = new SerialNativeInterface();
+        serialInterface = SerialNativeInterface.createInterface();
         switch (SerialNativeInterface.getOsType()) {
             case SerialNativeInterface.OS_LINUX: {
                 PORTNAMES_REGEXP = Pattern.compile("(ttyS|ttyUSB|ttyACM|ttyAMA|rfcomm|ttyO)[0-9]{1,3}");
@@ -0,0 +1,138 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffered OutputStream over the opened port. Bytes are collected in buffer and written
+ * by flush() (or when buffer is full), large arrays are written directly.
+ * Closing of stream flushes the buffer and closes the port.
+ * <br><b>Note: </b>stream is not thread-safe
+ *
+ * @since 2.9.0
+ */
+public class SerialPortOutputStream extends OutputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final IExtendedSerialPort port;
+    private final byte[] buffer;
+    private int count = 0;
+    private boolean closed = false;
+
+    public SerialPortOutputStream(IExtendedSerialPort port) {
+        this(port, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SerialPortOutputStream(IExtendedSerialPort port, int bufferSize) {
+        if(bufferSize <= 0){
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.port = port;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        if(count >= buffer.length){
+            flushBuffer();
+        }
+        buffer[count++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || off > b.length - len){
+            throw new IndexOutOfBoundsException();
+        }
+        checkClosed();
+        if(len >= buffer.length){
+            flushBuffer();
+            writePort(b, off, len);
+            return;
+        }
+        if(len > buffer.length - count){
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkClosed();
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!closed){
+            try {
+                if(port.isOpened()){
+                    flushBuffer();
+                }
+            }
+            finally {
+                closed = true;
+                if(port.isOpened()){
+                    try {
+                        port.closePort();
+                    }
+                    catch (SerialPortException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if(count > 0){
+            int byteCount = count;
+            count = 0;
+            writePort(buffer, 0, byteCount);
+        }
+    }
+
+    private void writePort(byte[] b, int off, int len) throws IOException {
+        try {
+            if(port.write(b, off, len) != len){
+                throw new IOException("Can't write to port " + port.getPortName());
+            }
+        }
+        catch (SerialPortException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if(closed){
+            throw new IOException("Stream closed");
+        }
+    }
+}
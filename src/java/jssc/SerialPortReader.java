@@ -0,0 +1,195 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader over the opened port. Bytes are read into direct buffer (without copying in the native code)
+ * and decoded by one decoder, so multi-byte characters split between reads are decoded correctly.
+ * Malformed input is replaced by replacement character. Read operations block until at least one
+ * character is received, -1 is returned if port was closed or hung up. For reading of lines wrap it
+ * by <b>BufferedReader</b>. Closing of reader closes the port.
+ * <br><b>Note: </b>reader is not thread-safe
+ *
+ * @since 2.9.0
+ */
+public class SerialPortReader extends Reader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int MIN_BYTE_BUFFER_SIZE = 16;
+
+    private final IExtendedSerialPort port;
+    private final CharsetDecoder decoder;
+    //Received bytes which are not decoded yet (in read mode)
+    private final ByteBuffer bytes;
+    //Decoded characters which are not returned yet (in read mode)
+    private final CharBuffer chars;
+    private boolean endOfInput = false;
+    private boolean decoderFlushed = false;
+    private boolean closed = false;
+
+    public SerialPortReader(IExtendedSerialPort port, Charset charset) {
+        this(port, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SerialPortReader(IExtendedSerialPort port, Charset charset, int bufferSize) {
+        if(bufferSize <= 0){
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.port = port;
+        decoder = charset.newDecoder()
+                         .onMalformedInput(CodingErrorAction.REPLACE)
+                         .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        //Buffer shall hold the longest sequence of bytes for one character at least
+        bytes = ByteBuffer.allocateDirect(Math.max(bufferSize, MIN_BYTE_BUFFER_SIZE));
+        bytes.flip();
+        //Decoder needs space for two chars at least (surrogate pair)
+        chars = CharBuffer.allocate(Math.max(bufferSize, 2));
+        chars.flip();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || off > cbuf.length - len){
+            throw new IndexOutOfBoundsException();
+        }
+        checkClosed();
+        if(len == 0){
+            return 0;
+        }
+        if(!chars.hasRemaining() && fill() < 0){
+            return -1;
+        }
+        int charCount = Math.min(chars.remaining(), len);
+        chars.get(cbuf, off, charCount);
+        return charCount;
+    }
+
+    /**
+     * Reader is ready if there are decoded characters or bytes which are not decoded yet
+     * (they may be the beginning of multi-byte character), or input buffer of port isn't empty
+     */
+    @Override
+    public boolean ready() throws IOException {
+        checkClosed();
+        if(chars.hasRemaining() || bytes.hasRemaining()){
+            return true;
+        }
+        if(port.isOpened()){
+            try {
+                return port.getInputBufferBytesCount() > 0;
+            }
+            catch (SerialPortException ex) {
+                throw new IOException(ex);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!closed){
+            closed = true;
+            if(port.isOpened()){
+                try {
+                    port.closePort();
+                }
+                catch (SerialPortException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode received bytes, reading the port until at least one character is decoded
+     *
+     * @return Count of decoded characters or -1 if end of input is reached
+     */
+    private int fill() throws IOException {
+        if(decoderFlushed){
+            return -1;
+        }
+        chars.clear();
+        try {
+            while(true){
+                decoder.decode(bytes, chars, endOfInput);
+                if(endOfInput){
+                    decoder.flush(chars);
+                    decoderFlushed = true;
+                }
+                if(chars.position() > 0 || endOfInput){
+                    break;
+                }
+                //Rest of bytes is the beginning of multi-byte character
+                bytes.compact();
+                int result;
+                try {
+                    result = readPort();
+                }
+                finally {
+                    bytes.flip();
+                }
+                if(result < 0){
+                    //Incomplete character at the end of input is decoded as replacement
+                    endOfInput = true;
+                }
+            }
+        }
+        finally {
+            chars.flip();
+        }
+        return chars.hasRemaining() ? chars.remaining() : -1;
+    }
+
+    private int readPort() throws IOException {
+        if(!port.isOpened()){
+            return -1;
+        }
+        try {
+            return port.read(bytes);
+        }
+        catch (SerialPortException ex) {
+            //Waiting read is woken up by closePort() before the port is marked as closed
+            if(!port.isOpened() || SerialPortException.TYPE_PORT_NOT_OPENED.equals(ex.getExceptionType())){
+                return -1;
+            }
+            throw new IOException(ex);
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if(closed){
+            throw new IOException("Reader closed");
+        }
+    }
+}
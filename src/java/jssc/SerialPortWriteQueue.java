@@ -0,0 +1,452 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINER;
+
+/**
+ * Queue of writes with priorities. Callers put data into the queue and don't wait for the port,
+ * the drainer thread writes it by chunks (partial writes are continued). Request with higher priority
+ * is written before all queued requests with lower priority, so urgent command isn't stalled behind
+ * bulk data. By default request is never split by other requests; if <b>interleave</b> is set, higher
+ * priority request is written between chunks of lower priority request (for protocols where it's allowed).
+ * <br>Capacity of the queue is limited by count of bytes. When it's full, <b>backpressure policy</b> is applied:
+ * <b>BACKPRESSURE_BLOCK</b> - the caller waits for free space, <b>BACKPRESSURE_FAIL</b> - exception with
+ * type <b>TYPE_QUEUE_FULL</b> is thrown. Request longer than capacity is accepted when the queue is empty.
+ * <br>Array passed to the queue isn't copied, it shall not be changed until the request is completed
+ *
+ * @since 2.9.0
+ */
+public class SerialPortWriteQueue {
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    public static final int BACKPRESSURE_BLOCK = 0;
+    public static final int BACKPRESSURE_FAIL = 1;
+
+    private static final int PRIORITY_COUNT = 3;
+    private static final int DEFAULT_CAPACITY = 65536;
+    private static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private Logger logger = Logger.getLogger("SerialPortWriteQueue");
+
+    private final IExtendedSerialPort port;
+    private final int capacity;
+    private final int backpressure;
+    private final int chunkSize;
+    private final boolean interleave;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Request>[] queues = new ArrayDeque[PRIORITY_COUNT];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private Thread drainer;
+    //Request which is being written by the drainer (it's left in the queue until it's completed)
+    private Request current;
+    private long queuedBytes = 0;
+    private boolean closed = false;
+
+    /**
+     * Create queue with capacity of 65536 bytes, <b>BACKPRESSURE_BLOCK</b> policy and chunks of 256 bytes
+     *
+     * @param port opened port
+     */
+    public SerialPortWriteQueue(IExtendedSerialPort port) {
+        this(port, DEFAULT_CAPACITY, BACKPRESSURE_BLOCK, DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * @param port opened port
+     * @param capacity maximum count of queued bytes
+     * @param backpressure <b>BACKPRESSURE_BLOCK</b> or <b>BACKPRESSURE_FAIL</b>
+     * @param chunkSize maximum count of bytes written by one call of the port
+     * @param interleave true if higher priority request may be written between chunks of other request
+     */
+    public SerialPortWriteQueue(IExtendedSerialPort port, int capacity, int backpressure, int chunkSize, boolean interleave) {
+        if(capacity <= 0 || chunkSize <= 0){
+            throw new IllegalArgumentException("Capacity <= 0 or chunk size <= 0");
+        }
+        if(backpressure != BACKPRESSURE_BLOCK && backpressure != BACKPRESSURE_FAIL){
+            throw new IllegalArgumentException("Unknown backpressure policy: " + backpressure);
+        }
+        this.port = port;
+        this.capacity = capacity;
+        this.backpressure = backpressure;
+        this.chunkSize = chunkSize;
+        this.interleave = interleave;
+        for(int i = 0; i < PRIORITY_COUNT; i++){
+            queues[i] = new ArrayDeque<Request>();
+        }
+    }
+
+    /**
+     * Put bytes of array into the queue with <b>PRIORITY_NORMAL</b>
+     *
+     * @return Future, which is completed with count of written bytes when all bytes are written
+     *
+     * @throws SerialPortException
+     */
+    public Future<Integer> write(byte[] buffer) throws SerialPortException {
+        return write(buffer, 0, buffer.length, PRIORITY_NORMAL);
+    }
+
+    /**
+     * Put bytes of array into the queue
+     *
+     * @param buffer array with bytes to write
+     * @param priority <b>PRIORITY_HIGH</b>, <b>PRIORITY_NORMAL</b> or <b>PRIORITY_LOW</b>
+     *
+     * @return Future, which is completed with count of written bytes when all bytes are written
+     *
+     * @throws SerialPortException
+     */
+    public Future<Integer> write(byte[] buffer, int priority) throws SerialPortException {
+        return write(buffer, 0, buffer.length, priority);
+    }
+
+    /**
+     * Put part of array into the queue. Method blocks if the queue is full and policy is <b>BACKPRESSURE_BLOCK</b>
+     *
+     * @param buffer array with bytes to write
+     * @param offset start offset in array
+     * @param length count of bytes to write
+     * @param priority <b>PRIORITY_HIGH</b>, <b>PRIORITY_NORMAL</b> or <b>PRIORITY_LOW</b>
+     *
+     * @return Future, which is completed with count of written bytes when all bytes are written,
+     * or with <b>SerialPortException</b> (wrapped into <b>ExecutionException</b>) if writing failed.
+     * Request can be cancelled until its writing is started
+     *
+     * @throws SerialPortException <b>TYPE_QUEUE_FULL</b> if the queue is full and policy is <b>BACKPRESSURE_FAIL</b>,
+     * <b>TYPE_INTERRUPTED</b> if the thread was interrupted while waiting, <b>TYPE_PORT_NOT_OPENED</b> if the queue is closed
+     */
+    public Future<Integer> write(byte[] buffer, int offset, int length, int priority) throws SerialPortException {
+        if(offset < 0 || length < 0 || offset > buffer.length - length){
+            throw new IndexOutOfBoundsException();
+        }
+        if(priority < PRIORITY_HIGH || priority > PRIORITY_LOW){
+            throw new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        Request request = new Request(buffer, offset, length, priority);
+        lock.lock();
+        try {
+            while(!closed && queuedBytes > 0 && queuedBytes + length > capacity){
+                if(backpressure == BACKPRESSURE_FAIL){
+                    throw new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_QUEUE_FULL);
+                }
+                try {
+                    notFull.await();
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_INTERRUPTED);
+                }
+            }
+            if(closed){
+                throw new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_PORT_NOT_OPENED);
+            }
+            queues[priority].add(request);
+            queuedBytes += length;
+            startDrainer();
+            notEmpty.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+        return request;
+    }
+
+    /**
+     * Wait until all queued requests are completed
+     *
+     * @throws SerialPortException <b>TYPE_INTERRUPTED</b> if the thread was interrupted
+     */
+    public void flush() throws SerialPortException {
+        lock.lock();
+        try {
+            while(queuedBytes > 0 || current != null){
+                drained.await();
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SerialPortException(port.getPortName(), "flush()", SerialPortException.TYPE_INTERRUPTED);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the drainer thread. Requests which are not started are cancelled, the request which
+     * is being written is finished. Port isn't closed
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if(closed){
+                return;
+            }
+            closed = true;
+            for(ArrayDeque<Request> queue : queues){
+                Iterator<Request> iterator = queue.iterator();
+                while(iterator.hasNext()){
+                    Request request = iterator.next();
+                    //Started requests are finished, so bytes of the port aren't broken
+                    if(request.written == 0 && request != current){
+                        iterator.remove();
+                        queuedBytes -= request.length;
+                        request.cancel();
+                    }
+                }
+            }
+            notEmpty.signal();
+            notFull.signalAll();
+            drained.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getting count of bytes in the queue (including not written bytes of the current request)
+     */
+    public long getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public IExtendedSerialPort getPort() {
+        return port;
+    }
+
+    private void startDrainer() {
+        if(drainer != null){
+            return;
+        }
+        drainer = new Thread("jSSC write queue " + port.getPortName()) {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Drainer thread: writes chunk of the request with the highest priority, after that priority is checked again
+     */
+    private void drain() {
+        if (logger.isLoggable(FINER)) { logger.finer("Write queue of " + port.getPortName() + " started"); }
+        while(true){
+            Request request;
+            lock.lock();
+            try {
+                request = (interleave || current == null ? nextRequest() : current);
+                while(request == null && !closed){
+                    drained.signalAll();
+                    notEmpty.awaitUninterruptibly();
+                    request = nextRequest();
+                }
+                if(request == null){
+                    drainer = null;
+                    drained.signalAll();
+                    break;
+                }
+                current = request;
+            }
+            finally {
+                lock.unlock();
+            }
+            int byteCount = Math.min(chunkSize, request.length - request.written);
+            SerialPortException error = null;
+            int result;
+            try {
+                result = (byteCount == 0 ? 0 : port.write(request.buffer, request.offset + request.written, byteCount));
+                if(result < 0){
+                    error = new SerialPortException(port.getPortName(), "write()", SerialPortException.TYPE_IO_ERROR);
+                }
+            }
+            catch (SerialPortException ex) {
+                error = ex;
+                result = -1;
+            }
+            lock.lock();
+            try {
+                int released;
+                if(error != null){
+                    released = request.length - request.written;
+                }
+                else {
+                    request.written += result;
+                    released = result;
+                }
+                queuedBytes -= released;
+                if(error != null || request.written == request.length){
+                    queues[request.priority].remove(request);
+                    current = null;
+                    request.complete(error);
+                }
+                notFull.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        if (logger.isLoggable(FINER)) { logger.finer("Write queue of " + port.getPortName() + " stopped"); }
+    }
+
+    private Request nextRequest() {
+        for(ArrayDeque<Request> queue : queues){
+            Request request = queue.peek();
+            if(request != null){
+                return request;
+            }
+        }
+        return null;
+    }
+
+    private boolean cancel(Request request) {
+        lock.lock();
+        try {
+            if(request.written > 0 || request == current || request.isDone()){
+                return false;
+            }
+            if(!queues[request.priority].remove(request)){
+                return false;
+            }
+            queuedBytes -= request.length;
+            request.cancel();
+            notFull.signalAll();
+            if(queuedBytes == 0 && current == null){
+                drained.signalAll();
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queued request, it's completed by the drainer
+     */
+    private class Request implements Future<Integer> {
+
+        final byte[] buffer;
+        final int offset;
+        final int length;
+        final int priority;
+        //Fields below are guarded by lock of the queue
+        int written = 0;
+        volatile boolean cancelled = false;
+        private boolean done = false;
+        private SerialPortException error;
+
+        Request(byte[] buffer, int offset, int length, int priority) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.priority = priority;
+        }
+
+        synchronized void complete(SerialPortException error) {
+            this.error = error;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return SerialPortWriteQueue.this.cancel(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public synchronized Integer get() throws InterruptedException, ExecutionException {
+            while(!isDone()){
+                wait();
+            }
+            return result();
+        }
+
+        @Override
+        public synchronized Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while(!isDone()){
+                long remains = deadline - System.nanoTime();
+                if(remains <= 0){
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remains);
+            }
+            return result();
+        }
+
+        private Integer result() throws ExecutionException {
+            if(cancelled){
+                throw new CancellationException();
+            }
+            if(error != null){
+                throw new ExecutionException(error);
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writer over the opened port. Characters are encoded by one encoder into direct buffer, which is
+ * written by flush() (or when it's full) and passed to the native code without copying. Strings and
+ * arrays are copied into reusable buffer of characters, so writing of text doesn't allocate any objects.
+ * Surrogate pair split between writes is encoded correctly, unmappable characters are replaced.
+ * Closing of writer flushes the buffer and closes the port.
+ * <br><b>Note: </b>writer is not thread-safe
+ *
+ * @since 2.9.0
+ */
+public class SerialPortWriter extends Writer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final IExtendedSerialPort port;
+    private final CharsetEncoder encoder;
+    //Characters which are not encoded yet (in write mode), only high surrogate may be left here
+    private final char[] charArray;
+    private final CharBuffer chars;
+    //Encoded bytes which are not written yet (in write mode)
+    private final ByteBuffer bytes;
+    private boolean closed = false;
+
+    public SerialPortWriter(IExtendedSerialPort port, Charset charset) {
+        this(port, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SerialPortWriter(IExtendedSerialPort port, Charset charset, int bufferSize) {
+        if(bufferSize <= 0){
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.port = port;
+        encoder = charset.newEncoder()
+                         .onMalformedInput(CodingErrorAction.REPLACE)
+                         .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        //Encoder needs space for the longest sequence of bytes for one character at least
+        bytes = ByteBuffer.allocateDirect(Math.max(bufferSize, (int)Math.ceil(encoder.maxBytesPerChar()) * 2));
+        charArray = new char[Math.max(bufferSize, 2)];
+        chars = CharBuffer.wrap(charArray);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        checkClosed();
+        chars.put((char)c);
+        encode(false);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || off > cbuf.length - len){
+            throw new IndexOutOfBoundsException();
+        }
+        checkClosed();
+        while(len > 0){
+            int charCount = Math.min(chars.remaining(), len);
+            chars.put(cbuf, off, charCount);
+            off += charCount;
+            len -= charCount;
+            encode(false);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || off > str.length() - len){
+            throw new IndexOutOfBoundsException();
+        }
+        checkClosed();
+        while(len > 0){
+            int charCount = Math.min(chars.remaining(), len);
+            str.getChars(off, off + charCount, charArray, chars.position());
+            chars.position(chars.position() + charCount);
+            off += charCount;
+            len -= charCount;
+            encode(false);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkClosed();
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!closed){
+            try {
+                if(port.isOpened()){
+                    encode(true);
+                    flushBuffer();
+                }
+            }
+            finally {
+                closed = true;
+                if(port.isOpened()){
+                    try {
+                        port.closePort();
+                    }
+                    catch (SerialPortException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode collected characters, full buffer of bytes is written to the port.
+     * Unpaired high surrogate is left for the next write (if it's not the end of input)
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        try {
+            while(true){
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if(result.isUnderflow() && endOfInput){
+                    result = encoder.flush(bytes);
+                }
+                if(!result.isOverflow()){
+                    break;
+                }
+                flushBuffer();
+            }
+        }
+        finally {
+            chars.compact();
+        }
+        if(endOfInput){
+            encoder.reset();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        bytes.flip();
+        try {
+            while(bytes.hasRemaining()){
+                if(port.write(bytes) < 0){
+                    throw new IOException("Can't write to port " + port.getPortName());
+                }
+            }
+        }
+        catch (SerialPortException ex) {
+            throw new IOException(ex);
+        }
+        finally {
+            bytes.clear();
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if(closed){
+            throw new IOException("Writer closed");
+        }
+    }
+}
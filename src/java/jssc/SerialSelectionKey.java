@@ -0,0 +1,159 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+/**
+ * Registration of port in {@link SerialSelector}. Key stores interest mask (operations which
+ * shall be awaited) and ready mask (operations which were detected by the last selection)
+ *
+ * @since 2.9.0
+ */
+public class SerialSelectionKey {
+
+    /**
+     * Input buffer of port is not empty
+     */
+    public static final int OP_READ = SerialNativeInterface.POLLER_IN;
+    /**
+     * Output buffer of port has free space
+     */
+    public static final int OP_WRITE = SerialNativeInterface.POLLER_OUT;
+    /**
+     * Port was hung up or error has occurred (reported always, key shall be cancelled in this case)
+     */
+    public static final int OP_HANGUP = SerialNativeInterface.POLLER_HANGUP;
+
+    private final SerialSelector selector;
+    private final IExtendedSerialPort port;
+    private final long portHandle;
+    private volatile int interestOps;
+    private volatile int readyOps;
+    private volatile Object attachment;
+    private volatile boolean valid = true;
+
+    SerialSelectionKey(SerialSelector selector, IExtendedSerialPort port, long portHandle, int interestOps, Object attachment) {
+        this.selector = selector;
+        this.port = port;
+        this.portHandle = portHandle;
+        this.interestOps = interestOps;
+        this.attachment = attachment;
+    }
+
+    /**
+     * Getting selector which created this key
+     */
+    public SerialSelector selector() {
+        return selector;
+    }
+
+    /**
+     * Getting registered port
+     */
+    public IExtendedSerialPort port() {
+        return port;
+    }
+
+    /**
+     * Getting interest mask (additive value of <b>"OP_"</b> flags)
+     */
+    public int interestOps() {
+        return interestOps;
+    }
+
+    /**
+     * Change interest mask. Can be called from any thread, including the thread which waits in
+     * {@link SerialSelector#select(int)}
+     *
+     * @throws SerialPortException
+     */
+    public SerialSelectionKey interestOps(int ops) throws SerialPortException {
+        selector.modify(this, ops);
+        interestOps = ops;
+        return this;
+    }
+
+    /**
+     * Getting operations which are ready (additive value of <b>"OP_"</b> flags)
+     */
+    public int readyOps() {
+        return readyOps;
+    }
+
+    public boolean isReadable() {
+        return (readyOps & OP_READ) != 0;
+    }
+
+    public boolean isWritable() {
+        return (readyOps & OP_WRITE) != 0;
+    }
+
+    public boolean isHungUp() {
+        return (readyOps & OP_HANGUP) != 0;
+    }
+
+    /**
+     * Getting object attached to the key
+     */
+    public Object attachment() {
+        return attachment;
+    }
+
+    /**
+     * Attach object to the key
+     *
+     * @return Previously attached object
+     */
+    public Object attach(Object attachment) {
+        Object previous = this.attachment;
+        this.attachment = attachment;
+        return previous;
+    }
+
+    /**
+     * Remove port from selector. Key shall be cancelled before port closing
+     */
+    public void cancel() {
+        if(valid){
+            valid = false;
+            selector.cancel(this);
+        }
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    long getPortHandle() {
+        return portHandle;
+    }
+
+    void setReadyOps(int readyOps) {
+        this.readyOps = readyOps;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+}
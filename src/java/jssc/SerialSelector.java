@@ -0,0 +1,231 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINER;
+
+/**
+ * Selector allows to wait for data of many ports in one thread (like java.nio.channels.Selector).
+ * Ports are registered with interest mask, after that {@link #select(int)} waits until some of them
+ * will be ready and {@link #selectedKeys()} returns keys of ready ports.
+ * <br>Readiness is level-triggered: port is selected while its input buffer is not empty.
+ * <br><b>Note: </b>selector is supported only in Linux (one epoll set for all ports)
+ *
+ * @since 2.9.0
+ */
+public class SerialSelector {
+
+    private static final int MAX_SELECTED_KEYS = 64;
+
+    private Logger logger = Logger.getLogger("SerialSelector");
+
+    private final SerialNativeInterface serialInterface = SerialNativeInterface.createInterface();
+    private final Map<Long, SerialSelectionKey> keys = new HashMap<Long, SerialSelectionKey>();
+    private final List<SerialSelectionKey> selectedKeys = new ArrayList<SerialSelectionKey>();
+    private final long[] readyHandles = new long[MAX_SELECTED_KEYS];
+    private final int[] readyEvents = new int[MAX_SELECTED_KEYS];
+    //stateLock protects poller handle and keys, selectLock guarantees that poller isn't destroyed during select()
+    private final Object stateLock = new Object();
+    private final Object selectLock = new Object();
+    private long poller;
+
+    /**
+     * Create new selector
+     *
+     * @throws SerialPortException if selector is not supported in this OS (<b>TYPE_NOT_SUPPORTED</b>)
+     */
+    public SerialSelector() throws SerialPortException {
+        poller = serialInterface.createPoller();
+        if(poller == -1){
+            throw new SerialPortException("", "SerialSelector()", SerialPortException.TYPE_NOT_SUPPORTED);
+        }
+    }
+
+    /**
+     * Register opened port in selector
+     *
+     * @param port opened port ({@link SerialPort} or {@link LocalSerialPort})
+     * @param ops interest mask (<b>OP_READ</b>, <b>OP_WRITE</b>)
+     * @param attachment object attached to the key (may be null)
+     *
+     * @return Key of port registration
+     *
+     * @throws SerialPortException
+     */
+    public SerialSelectionKey register(IExtendedSerialPort port, int ops, Object attachment) throws SerialPortException {
+        long portHandle = getPortHandle(port, "register()");
+        synchronized(stateLock){
+            checkOpened(port.getPortName(), "register()");
+            if(keys.containsKey(portHandle)){
+                throw new SerialPortException(port.getPortName(), "register()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            if(!serialInterface.pollerAdd(poller, portHandle, ops)){
+                throw new SerialPortException(port.getPortName(), "register()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+            SerialSelectionKey key = new SerialSelectionKey(this, port, portHandle, ops, attachment);
+            keys.put(portHandle, key);
+            if (logger.isLoggable(FINER)) { logger.finer("Registered port " + port.getPortName() + " ops: " + ops); }
+            return key;
+        }
+    }
+
+    /**
+     * Waiting until at least one of registered ports will be ready, timeout will be elapsed
+     * or {@link #wakeup()} will be called
+     *
+     * @param timeout timeout in milliseconds (-1 means infinite waiting, 0 - checking without waiting)
+     *
+     * @return Count of selected keys
+     *
+     * @throws SerialPortException
+     */
+    public int select(int timeout) throws SerialPortException {
+        synchronized(selectLock){
+            long currentPoller;
+            synchronized(stateLock){
+                checkOpened("", "select()");
+                currentPoller = poller;
+            }
+            selectedKeys.clear();
+            int result = serialInterface.pollerWait(currentPoller, readyHandles, readyEvents, timeout);
+            if(result < 0){
+                throw new SerialPortException("", "select()", SerialPortException.TYPE_IO_ERROR);
+            }
+            synchronized(stateLock){
+                for(int i = 0; i < result; i++){
+                    SerialSelectionKey key = keys.get(readyHandles[i]);
+                    if(key != null){
+                        int ops = readyEvents[i];
+                        if((ops & SerialNativeInterface.POLLER_ERROR) != 0){
+                            ops = (ops & ~SerialNativeInterface.POLLER_ERROR) | SerialSelectionKey.OP_HANGUP;
+                        }
+                        key.setReadyOps(ops);
+                        selectedKeys.add(key);
+                    }
+                }
+            }
+            return selectedKeys.size();
+        }
+    }
+
+    /**
+     * Getting keys selected by the last call of {@link #select(int)}. List shall be used only
+     * by the thread which calls select()
+     */
+    public List<SerialSelectionKey> selectedKeys() {
+        return selectedKeys;
+    }
+
+    /**
+     * Getting count of registered ports
+     */
+    public int getKeysCount() {
+        synchronized(stateLock){
+            return keys.size();
+        }
+    }
+
+    /**
+     * Interrupt waiting in {@link #select(int)}. If no thread is waiting at this moment,
+     * the next selection will return immediately
+     */
+    public void wakeup() {
+        synchronized(stateLock){
+            if(poller != -1){
+                serialInterface.pollerWakeup(poller);
+            }
+        }
+    }
+
+    /**
+     * Close selector. All keys are cancelled, ports stay opened
+     */
+    public void close() {
+        wakeup();
+        synchronized(selectLock){
+            synchronized(stateLock){
+                if(poller != -1){
+                    serialInterface.destroyPoller(poller);
+                    poller = -1;
+                    for(SerialSelectionKey key : keys.values()){
+                        key.invalidate();
+                    }
+                    keys.clear();
+                }
+            }
+        }
+    }
+
+    public boolean isOpened() {
+        synchronized(stateLock){
+            return poller != -1;
+        }
+    }
+
+    void modify(SerialSelectionKey key, int ops) throws SerialPortException {
+        synchronized(stateLock){
+            if(!key.isValid() || poller == -1 || !serialInterface.pollerModify(poller, key.getPortHandle(), ops)){
+                throw new SerialPortException(key.port().getPortName(), "interestOps()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+            }
+        }
+    }
+
+    void cancel(SerialSelectionKey key) {
+        synchronized(stateLock){
+            if(keys.get(key.getPortHandle()) == key){
+                keys.remove(key.getPortHandle());
+                if(poller != -1){
+                    serialInterface.pollerRemove(poller, key.getPortHandle());
+                }
+            }
+        }
+    }
+
+    private void checkOpened(String portName, String methodName) throws SerialPortException {
+        if(poller == -1){
+            throw new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_NOT_OPENED);
+        }
+    }
+
+    /**
+     * Getting native handle of opened local port
+     */
+    static long getPortHandle(IExtendedSerialPort port, String methodName) throws SerialPortException {
+        IExtendedSerialPort localPort = port;
+        if(localPort instanceof SerialPort){
+            localPort = ((SerialPort)localPort).getPort();
+        }
+        if(!(localPort instanceof LocalSerialPort)){
+            throw new SerialPortException(port.getPortName(), methodName, SerialPortException.TYPE_NOT_SUPPORTED);
+        }
+        return ((LocalSerialPort)localPort).getPortHandle(methodName);
+    }
+}
@@ -0,0 +1,174 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINER;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Group of selectors with own threads. Ports are distributed between selectors (each new port
+ * is registered in the selector with the least count of ports), so count of threads depends
+ * on count of processor cores and not on count of ports
+ *
+ * @since 2.9.0
+ */
+public class SerialSelectorGroup {
+
+    private Logger logger = Logger.getLogger("SerialSelectorGroup");
+
+    private final SerialSelector[] selectors;
+    private final Thread[] threads;
+    private final SerialSelectionListener listener;
+    private volatile boolean stopped = false;
+
+    /**
+     * Create group with one selector per processor core
+     *
+     * @param listener listener of selected ports
+     *
+     * @throws SerialPortException if selector is not supported in this OS
+     */
+    public SerialSelectorGroup(SerialSelectionListener listener) throws SerialPortException {
+        this(Runtime.getRuntime().availableProcessors(), listener);
+    }
+
+    /**
+     * Create group and start threads of selectors
+     *
+     * @param selectorCount count of selectors (threads)
+     * @param listener listener of selected ports
+     *
+     * @throws SerialPortException if selector is not supported in this OS
+     */
+    public SerialSelectorGroup(int selectorCount, SerialSelectionListener listener) throws SerialPortException {
+        if(selectorCount < 1 || listener == null){
+            throw new SerialPortException("", "SerialSelectorGroup()", SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT);
+        }
+        this.listener = listener;
+        selectors = new SerialSelector[selectorCount];
+        threads = new Thread[selectorCount];
+        try {
+            for(int i = 0; i < selectorCount; i++){
+                selectors[i] = new SerialSelector();
+            }
+        }
+        catch (SerialPortException ex) {
+            for(SerialSelector selector : selectors){
+                if(selector != null){
+                    selector.close();
+                }
+            }
+            throw ex;
+        }
+        for(int i = 0; i < selectorCount; i++){
+            final SerialSelector selector = selectors[i];
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    selectLoop(selector);
+                }
+            });
+            threads[i].setName("SerialSelector " + i);
+            threads[i].start();
+        }
+        if (logger.isLoggable(FINER)) { logger.finer("Started selector group, selectors: " + selectorCount); }
+    }
+
+    /**
+     * Register opened port in the least loaded selector
+     *
+     * @param port opened port
+     * @param ops interest mask (<b>OP_READ</b>, <b>OP_WRITE</b>)
+     * @param attachment object attached to the key (may be null)
+     *
+     * @return Key of port registration
+     *
+     * @throws SerialPortException
+     */
+    public SerialSelectionKey register(IExtendedSerialPort port, int ops, Object attachment) throws SerialPortException {
+        SerialSelector target = selectors[0];
+        for(int i = 1; i < selectors.length; i++){
+            if(selectors[i].getKeysCount() < target.getKeysCount()){
+                target = selectors[i];
+            }
+        }
+        return target.register(port, ops, attachment);
+    }
+
+    public int getSelectorCount() {
+        return selectors.length;
+    }
+
+    /**
+     * Stop threads and close selectors. Ports stay opened
+     *
+     * @throws SerialPortException if waiting for the threads was interrupted
+     */
+    public void close() throws SerialPortException {
+        stopped = true;
+        for(SerialSelector selector : selectors){
+            selector.wakeup();
+        }
+        try {
+            for(Thread thread : threads){
+                if(thread != Thread.currentThread()){
+                    thread.join();
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            throw new SerialPortException("", "close()", SerialPortException.TYPE_LISTENER_THREAD_INTERRUPTED);
+        }
+        finally {
+            for(SerialSelector selector : selectors){
+                selector.close();
+            }
+        }
+    }
+
+    private void selectLoop(SerialSelector selector) {
+        while(!stopped){
+            try {
+                selector.select(-1);
+            }
+            catch (SerialPortException ex) {
+                if (logger.isLoggable(FINER)) { logger.finer("Selector stopped: " + ex.getMessage()); }
+                break;
+            }
+            for(SerialSelectionKey key : selector.selectedKeys()){
+                if(stopped){
+                    break;
+                }
+                try {
+                    listener.selected(key);
+                }
+                catch (RuntimeException ex) {
+                    logger.log(WARNING, "Exception in selection listener of port " + key.port().getPortName(), ex);
+                }
+            }
+        }
+    }
+}
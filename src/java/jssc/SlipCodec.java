@@ -0,0 +1,119 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SLIP framing (RFC 1055): frame is finished by END byte (0xC0), END and ESC (0xDB) bytes inside
+ * of the frame are replaced by ESC ESC_END and ESC ESC_ESC. Encoded frame is started by END too,
+ * so noise received before the frame is dropped. Empty frames are ignored
+ *
+ * @since 2.9.0
+ */
+public class SlipCodec implements FrameCodec {
+
+    public static final byte END = (byte)0xC0;
+    public static final byte ESC = (byte)0xDB;
+    public static final byte ESC_END = (byte)0xDC;
+    public static final byte ESC_ESC = (byte)0xDD;
+
+    private boolean escaped = false;
+    private boolean corrupted = false;
+
+    @Override
+    public int decode(ByteBuffer in, ByteBuffer out) {
+        while(in.hasRemaining()){
+            byte value = in.get();
+            if(value == END){
+                boolean error = corrupted || escaped;
+                escaped = false;
+                corrupted = false;
+                if(error){
+                    return RESULT_ERROR;
+                }
+                if(out.position() > 0){
+                    return RESULT_FRAME;
+                }
+                continue;
+            }
+            if(corrupted){
+                continue;
+            }
+            if(escaped){
+                escaped = false;
+                if(value == ESC_END){
+                    value = END;
+                }
+                else if(value == ESC_ESC){
+                    value = ESC;
+                }
+                else {
+                    corrupted = true;
+                    continue;
+                }
+            }
+            else if(value == ESC){
+                escaped = true;
+                continue;
+            }
+            if(!out.hasRemaining()){
+                corrupted = true;
+                continue;
+            }
+            out.put(value);
+        }
+        return RESULT_UNDERFLOW;
+    }
+
+    @Override
+    public void encode(ByteBuffer frame, ByteBuffer out) {
+        out.put(END);
+        while(frame.hasRemaining()){
+            byte value = frame.get();
+            if(value == END){
+                out.put(ESC).put(ESC_END);
+            }
+            else if(value == ESC){
+                out.put(ESC).put(ESC_ESC);
+            }
+            else {
+                out.put(value);
+            }
+        }
+        out.put(END);
+    }
+
+    @Override
+    public int getMaxEncodedLength(int frameLength) {
+        return frameLength * 2 + 2;
+    }
+
+    @Override
+    public void reset() {
+        escaped = false;
+        corrupted = false;
+    }
+}
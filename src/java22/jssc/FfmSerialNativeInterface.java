@@ -0,0 +1,1456 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_LONG_UNALIGNED;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * Implementation of {@link SerialNativeInterface} which calls libc directly through the Foreign
+ * Function and Memory API instead of JNI library. Selected by <b>JSSC_BACKEND=ffm</b> property,
+ * requires Java 22+ and Linux (x86_64 or aarch64), the application should be started with
+ * <b>--enable-native-access=ALL-UNNAMED</b> (or the name of the module containing jSSC).
+ * <p>
+ * Handles of ports are the same file descriptors as in JNI library, data of direct buffers is
+ * passed to the kernel without copying, heap arrays are copied through per-thread native buffer.
+ * Lines waiter (event thread checks lines periodically) and background reader aren't implemented,
+ * non-standard baud rates are set only through termios2 (without fallback to custom divisor)
+ *
+ * @since 2.9.0
+ */
+final class FfmSerialNativeInterface extends SerialNativeInterface {
+
+    //Linux constants (asm-generic values, the same for x86_64 and aarch64)
+    private static final int O_RDWR = 0x2;
+    private static final int O_NOCTTY = 0x100;
+    private static final int O_NDELAY = 0x800;
+    private static final int F_GETFL = 3;
+    private static final int F_SETFL = 4;
+
+    private static final int EINTR = 4;
+    private static final int EAGAIN = 11;
+    private static final int ENOENT = 2;
+    private static final int EACCES = 13;
+    private static final int EBUSY = 16;
+
+    private static final long FIONREAD = 0x541B;
+    private static final long TIOCOUTQ = 0x5411;
+    private static final long TIOCMGET = 0x5415;
+    private static final long TIOCMSET = 0x5418;
+    private static final long TIOCEXCL = 0x540C;
+    private static final long TIOCNXCL = 0x540D;
+    private static final long TIOCSBRK = 0x5427;
+    private static final long TIOCCBRK = 0x5428;
+    private static final long TIOCGICOUNT = 0x545D;
+    private static final long TIOCGSERIAL = 0x541E;
+    private static final long TIOCSSERIAL = 0x541F;
+    private static final long SERIAL_FLAGS = 16;
+    private static final int ASYNC_LOW_LATENCY = 0x2000;
+
+    private static final int TIOCM_DTR = 0x002;
+    private static final int TIOCM_RTS = 0x004;
+    private static final int TIOCM_CTS = 0x020;
+    private static final int TIOCM_CAR = 0x040;
+    private static final int TIOCM_RNG = 0x080;
+    private static final int TIOCM_DSR = 0x100;
+
+    private static final int TERMIOS_SIZE = 60;
+    private static final long C_IFLAG = 0;
+    private static final long C_OFLAG = 4;
+    private static final long C_CFLAG = 8;
+    private static final long C_LFLAG = 12;
+    private static final long C_CC = 17;
+    private static final int VTIME = 5;
+    private static final int VMIN = 6;
+
+    private static final long TCGETS2 = 0x802C542AL;
+    private static final long TCSETS2 = 0x402C542BL;
+    private static final long C_ISPEED2 = 36;
+    private static final long C_OSPEED2 = 40;
+    private static final int CBAUD = 0x100F;
+    private static final int CIBAUD = 0x100F0000;
+    private static final int BOTHER = 0x1000;
+    private static final int IBSHIFT = 16;
+
+    private static final int CSIZE = 0x30;
+    private static final int CS5 = 0x00;
+    private static final int CS6 = 0x10;
+    private static final int CS7 = 0x20;
+    private static final int CS8 = 0x30;
+    private static final int CSTOPB = 0x40;
+    private static final int CREAD = 0x80;
+    private static final int PARENB = 0x100;
+    private static final int PARODD = 0x200;
+    private static final int CLOCAL = 0x800;
+    private static final int CMSPAR = 0x40000000;
+    private static final int CRTSCTS = 0x80000000;
+
+    private static final int ISIG = 0x1;
+    private static final int ICANON = 0x2;
+    private static final int ECHO = 0x8;
+    private static final int ECHOE = 0x10;
+    private static final int ECHOK = 0x20;
+    private static final int ECHONL = 0x40;
+    private static final int ECHOCTL = 0x200;
+    private static final int ECHOPRT = 0x400;
+    private static final int ECHOKE = 0x800;
+    private static final int IEXTEN = 0x8000;
+
+    private static final int IGNBRK = 0x1;
+    private static final int BRKINT = 0x2;
+    private static final int IGNPAR = 0x4;
+    private static final int PARMRK = 0x8;
+    private static final int INPCK = 0x10;
+    private static final int ISTRIP = 0x20;
+    private static final int INLCR = 0x40;
+    private static final int IGNCR = 0x80;
+    private static final int ICRNL = 0x100;
+    private static final int IUCLC = 0x200;
+    private static final int IXON = 0x400;
+    private static final int IXANY = 0x800;
+    private static final int IXOFF = 0x1000;
+    private static final int OPOST = 0x1;
+
+    private static final int TCSANOW = 0;
+    private static final int TCIFLUSH = 0;
+    private static final int TCOFLUSH = 1;
+    private static final int TCIOFLUSH = 2;
+
+    private static final short POLLIN = 0x1;
+    private static final short POLLOUT = 0x4;
+    private static final short POLLERR = 0x8;
+    private static final short POLLHUP = 0x10;
+    private static final short POLLNVAL = 0x20;
+    private static final int POLLFD_SIZE = 8;
+
+    private static final int EPOLLIN = 0x1;
+    private static final int EPOLLOUT = 0x4;
+    private static final int EPOLLERR = 0x8;
+    private static final int EPOLLHUP = 0x10;
+    private static final int EPOLLET = 0x80000000;
+    private static final int EPOLL_CTL_ADD = 1;
+    private static final int EPOLL_CTL_DEL = 2;
+    private static final int EPOLL_CTL_MOD = 3;
+    private static final int EPOLL_CLOEXEC = 0x80000;
+    private static final int EFD_NONBLOCK = 0x800;
+    private static final int EFD_CLOEXEC = 0x80000;
+    private static final int POLLER_MAX_EVENTS = 64;
+    private static final long POLLER_WAKEUP_TAG = -1;
+
+    //struct epoll_event is packed on x86_64 only
+    private static final boolean EPOLL_PACKED = System.getProperty("os.arch").equals("amd64");
+    private static final int EPOLL_EVENT_SIZE = EPOLL_PACKED ? 12 : 16;
+    private static final long EPOLL_DATA_OFFSET = EPOLL_PACKED ? 4 : 8;
+
+    private static final int ICOUNT_SIZE = 80;
+    private static final long ICOUNT_TX = 20;
+    private static final long ICOUNT_FRAME = 24;
+    private static final long ICOUNT_OVERRUN = 28;
+    private static final long ICOUNT_PARITY = 32;
+    private static final long ICOUNT_BRK = 36;
+
+    private static final int[][] BAUD_RATES = {
+        {0, 0}, {50, 1}, {75, 2}, {110, 3}, {134, 4}, {150, 5}, {200, 6}, {300, 7}, {600, 8},
+        {1200, 9}, {1800, 10}, {2400, 11}, {4800, 12}, {9600, 13}, {19200, 14}, {38400, 15},
+        {57600, 0x1001}, {115200, 0x1002}, {230400, 0x1003}, {460800, 0x1004}, {500000, 0x1005},
+        {576000, 0x1006}, {921600, 0x1007}, {1000000, 0x1008}, {1152000, 0x1009}, {1500000, 0x100A},
+        {2000000, 0x100B}, {2500000, 0x100C}, {3000000, 0x100D}, {3500000, 0x100E}, {4000000, 0x100F}
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int WRITE_VECTOR_SIZE = 16;
+    private static final long IOVEC_SIZE = 16;
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final SymbolLookup LIBC = LINKER.defaultLookup();
+    private static final StructLayout CALL_STATE_LAYOUT = Linker.Option.captureStateLayout();
+    private static final long ERRNO_OFFSET = CALL_STATE_LAYOUT.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+    private static final Linker.Option ERRNO = Linker.Option.captureCallState("errno");
+
+    private static final MethodHandle OPEN = downcall("open", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT), ERRNO, Linker.Option.firstVariadicArg(2));
+    private static final MethodHandle CLOSE = downcall("close", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle READ = downcall("read", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG), ERRNO);
+    private static final MethodHandle WRITE = downcall("write", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG), ERRNO);
+    private static final MethodHandle WRITEV = downcall("writev", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT), ERRNO);
+    private static final MethodHandle IOCTL_PTR = downcall("ioctl", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, ADDRESS), Linker.Option.firstVariadicArg(2));
+    private static final MethodHandle IOCTL_INT = downcall("ioctl", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_INT), Linker.Option.firstVariadicArg(2));
+    private static final MethodHandle FCNTL = downcall("fcntl", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT), Linker.Option.firstVariadicArg(2));
+    private static final MethodHandle TCGETATTR = downcall("tcgetattr", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS));
+    private static final MethodHandle TCSETATTR = downcall("tcsetattr", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS));
+    private static final MethodHandle CFSETISPEED = downcall("cfsetispeed", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+    private static final MethodHandle CFSETOSPEED = downcall("cfsetospeed", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+    private static final MethodHandle TCFLUSH = downcall("tcflush", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT));
+    private static final MethodHandle POLL = downcall("poll", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT), ERRNO);
+    private static final MethodHandle EPOLL_CREATE1 = downcall("epoll_create1", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle EPOLL_CTL = downcall("epoll_ctl", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS));
+    private static final MethodHandle EPOLL_WAIT = downcall("epoll_wait", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT), ERRNO);
+    private static final MethodHandle EVENTFD = downcall("eventfd", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT));
+
+    /**
+     * Native memory which is used by one thread, so calls don't allocate anything
+     */
+    private static final class Scratch {
+        final MemorySegment callState;
+        final MemorySegment buffer;
+        final MemorySegment termios;
+        final MemorySegment value;
+        final MemorySegment structs;
+
+        Scratch() {
+            Arena arena = Arena.ofAuto();
+            callState = arena.allocate(CALL_STATE_LAYOUT);
+            buffer = arena.allocate(BUFFER_SIZE, 8);
+            termios = arena.allocate(TERMIOS_SIZE, 8);
+            value = arena.allocate(8, 8);
+            structs = arena.allocate(POLLER_MAX_EVENTS * 16, 8);
+        }
+
+        int errno() {
+            return callState.get(JAVA_INT, ERRNO_OFFSET);
+        }
+    }
+
+    private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    public FfmSerialNativeInterface() {
+        super(false);
+        String arch = System.getProperty("os.arch");
+        if(getOsType() != OS_LINUX || !(arch.equals("amd64") || arch.equals("aarch64"))){
+            throw new UnsupportedOperationException("FFM backend supports only Linux x86_64 and aarch64");
+        }
+    }
+
+    @Override
+    public String getBackendName() {
+        return "ffm";
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+        MemorySegment symbol = LIBC.find(name).orElseThrow();
+        return LINKER.downcallHandle(symbol, descriptor, options);
+    }
+
+    private static RuntimeException rethrow(Throwable ex) {
+        if(ex instanceof RuntimeException){
+            return (RuntimeException)ex;
+        }
+        if(ex instanceof Error){
+            throw (Error)ex;
+        }
+        return new IllegalStateException(ex);
+    }
+
+    //libc calls ->
+    private static int open(Scratch s, MemorySegment path, int flags) {
+        try {
+            return (int)OPEN.invokeExact(s.callState, path, flags);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int close(int fd) {
+        try {
+            return (int)CLOSE.invokeExact(fd);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static long read(Scratch s, int fd, MemorySegment buffer, long count) {
+        try {
+            return (long)READ.invokeExact(s.callState, fd, buffer, count);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static long write(Scratch s, int fd, MemorySegment buffer, long count) {
+        try {
+            return (long)WRITE.invokeExact(s.callState, fd, buffer, count);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static long writev(Scratch s, int fd, MemorySegment iov, int iovCount) {
+        try {
+            return (long)WRITEV.invokeExact(s.callState, fd, iov, iovCount);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int ioctl(int fd, long request, MemorySegment argument) {
+        try {
+            return (int)IOCTL_PTR.invokeExact(fd, request, argument);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int ioctl(int fd, long request, int argument) {
+        try {
+            return (int)IOCTL_INT.invokeExact(fd, request, argument);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int fcntl(int fd, int command, int argument) {
+        try {
+            return (int)FCNTL.invokeExact(fd, command, argument);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int tcgetattr(int fd, MemorySegment termios) {
+        try {
+            return (int)TCGETATTR.invokeExact(fd, termios);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int tcsetattr(int fd, int action, MemorySegment termios) {
+        try {
+            return (int)TCSETATTR.invokeExact(fd, action, termios);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int cfsetspeed(MemorySegment termios, int speed) {
+        try {
+            if((int)CFSETISPEED.invokeExact(termios, speed) < 0){
+                return -1;
+            }
+            return (int)CFSETOSPEED.invokeExact(termios, speed);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int tcflush(int fd, int queue) {
+        try {
+            return (int)TCFLUSH.invokeExact(fd, queue);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int poll(Scratch s, MemorySegment fds, long count, int timeout) {
+        try {
+            return (int)POLL.invokeExact(s.callState, fds, count, timeout);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int epollCreate(int flags) {
+        try {
+            return (int)EPOLL_CREATE1.invokeExact(flags);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int epollCtl(int epollFd, int operation, int fd, MemorySegment event) {
+        try {
+            return (int)EPOLL_CTL.invokeExact(epollFd, operation, fd, event);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int epollWait(Scratch s, int epollFd, MemorySegment events, int maxEvents, int timeout) {
+        try {
+            return (int)EPOLL_WAIT.invokeExact(s.callState, epollFd, events, maxEvents, timeout);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static int eventfd(int initValue, int flags) {
+        try {
+            return (int)EVENTFD.invokeExact(initValue, flags);
+        }
+        catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+    //<- libc calls
+
+    private static int getIntValue(int fd, long request) {
+        MemorySegment value = scratch.get().value;
+        value.set(JAVA_INT, 0, 0);
+        if(ioctl(fd, request, value) < 0){
+            return -1;
+        }
+        return value.get(JAVA_INT, 0);
+    }
+
+    private static int getLinesStatus(int fd) {
+        int lines = getIntValue(fd, TIOCMGET);
+        return lines < 0 ? 0 : lines;
+    }
+
+    private static boolean setLines(int fd, int lines, boolean enabled) {
+        MemorySegment value = scratch.get().value;
+        value.set(JAVA_INT, 0, 0);
+        ioctl(fd, TIOCMGET, value);
+        int status = value.get(JAVA_INT, 0);
+        value.set(JAVA_INT, 0, enabled ? (status | lines) : (status & ~lines));
+        return ioctl(fd, TIOCMSET, value) >= 0;
+    }
+
+    private static int getBaudRateByNum(int baudRate) {
+        for(int[] pair : BAUD_RATES){
+            if(pair[0] == baudRate){
+                return pair[1];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as waitBytesAvailable() in JNI library: returns count of bytes in input buffer,
+     * 0 if timeout is elapsed or -1 if error has occurred or port was hung up
+     */
+    private static int waitBytesAvailable(Scratch s, int fd, int timeout) {
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        int remains = timeout;
+        int result;
+        while(true){
+            s.structs.set(JAVA_INT, 0, fd);
+            s.structs.set(JAVA_SHORT, 4, POLLIN);
+            s.structs.set(JAVA_SHORT, 6, (short)0);
+            result = poll(s, s.structs, 1, remains);
+            if(result >= 0 || s.errno() != EINTR){
+                break;
+            }
+            if(timeout > 0){
+                remains = (int)Math.max(0, (deadline - System.nanoTime()) / 1000000L);
+            }
+        }
+        if(result <= 0){
+            return result < 0 ? -1 : 0;
+        }
+        int bytesAvailable = getIntValue(fd, FIONREAD);
+        return bytesAvailable > 0 ? bytesAvailable : -1;
+    }
+
+    /**
+     * Same as writeAll() in JNI library: the thread sleeps in poll() while output buffer is full,
+     * it's used only by writeBytes()
+     */
+    private static int writeAll(Scratch s, int fd, MemorySegment buffer, int length) {
+        int written = 0;
+        while(written < length){
+            long result = write(s, fd, buffer.asSlice(written), length - written);
+            if(result > 0){
+                written += (int)result;
+            }
+            else if(result < 0 && s.errno() == EINTR){
+                continue;
+            }
+            else if(result < 0 && s.errno() == EAGAIN && waitWritable(s, fd)){
+                continue;
+            }
+            else {
+                return -1;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Same as writeAvailable() in JNI library: only bytes which fit into output buffer are written
+     */
+    private static int writeAvailable(Scratch s, int fd, MemorySegment buffer, int length) {
+        int written = 0;
+        while(written < length){
+            long result = write(s, fd, buffer.asSlice(written), length - written);
+            if(result > 0){
+                written += (int)result;
+            }
+            else if(result < 0 && s.errno() == EINTR){
+                continue;
+            }
+            else if(result < 0 && s.errno() == EAGAIN){
+                break;
+            }
+            else {
+                return written > 0 ? written : -1;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Same as waitWritable() in JNI library: descriptor is in non-blocking mode, write() returns EAGAIN
+     * if output buffer is full
+     */
+    private static boolean waitWritable(Scratch s, int fd) {
+        int result;
+        do {
+            s.structs.set(JAVA_INT, 0, fd);
+            s.structs.set(JAVA_SHORT, 4, POLLOUT);
+            s.structs.set(JAVA_SHORT, 6, (short)0);
+            result = poll(s, s.structs, 1, -1);
+        } while(result < 0 && s.errno() == EINTR);
+        return result > 0 && (s.structs.get(JAVA_SHORT, 6) & (POLLERR | POLLHUP | POLLNVAL)) == 0;
+    }
+
+    /**
+     * Same as writevAvailable() in JNI library: partially written vectors are advanced and written again
+     * while output buffer has free space
+     */
+    private static int writevAvailable(Scratch s, int fd, MemorySegment iov, int iovCount) {
+        int written = 0;
+        int first = 0;
+        while(first < iovCount){
+            long result = writev(s, fd, iov.asSlice(first * IOVEC_SIZE), iovCount - first);
+            if(result < 0 && s.errno() == EINTR){
+                continue;
+            }
+            if(result < 0 && s.errno() == EAGAIN){
+                break;
+            }
+            if(result <= 0){
+                return written > 0 ? written : -1;
+            }
+            written += (int)result;
+            while(first < iovCount && result >= iov.get(JAVA_LONG, first * IOVEC_SIZE + 8)){
+                result -= iov.get(JAVA_LONG, first * IOVEC_SIZE + 8);
+                first++;
+            }
+            if(first < iovCount){
+                long entry = first * IOVEC_SIZE;
+                iov.set(JAVA_LONG, entry, iov.get(JAVA_LONG, entry) + result);
+                iov.set(JAVA_LONG, entry + 8, iov.get(JAVA_LONG, entry + 8) - result);
+            }
+        }
+        return written;
+    }
+
+    private static MemorySegment directSegment(ByteBuffer buffer, int position, int length) {
+        if(!buffer.isDirect()){
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.clear();
+        return MemorySegment.ofBuffer(view).asSlice(position, length);
+    }
+
+    @Override
+    public long openPort(String portName, boolean useTIOCEXCL) {
+        Scratch s = scratch.get();
+        byte[] name = portName.getBytes(StandardCharsets.UTF_8);
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment path = arena.allocate(name.length + 1);
+            MemorySegment.copy(name, 0, path, JAVA_BYTE, 0, name.length);
+            path.set(JAVA_BYTE, name.length, (byte)0);
+            int fd = open(s, path, O_RDWR | O_NOCTTY | O_NDELAY);
+            if(fd < 0){
+                switch (s.errno()) {
+                    case EBUSY:
+                        return ERR_PORT_BUSY;
+                    case EACCES:
+                        return ERR_PERMISSION_DENIED;
+                    case ENOENT:
+                    default:
+                        return ERR_PORT_NOT_FOUND;
+                }
+            }
+            if(tcgetattr(fd, s.termios) != 0){
+                close(fd);
+                return ERR_INCORRECT_SERIAL_PORT;
+            }
+            if(useTIOCEXCL){
+                ioctl(fd, TIOCEXCL, 0);
+            }
+            //Descriptor stays in non-blocking mode, as in JNI library
+            return fd;
+        }
+    }
+
+    @Override
+    public boolean setParams(long handle, int baudRate, int dataBits, int stopBits, int parity, boolean setRTS, boolean setDTR, int flags) {
+        int fd = (int)handle;
+        MemorySegment termios = scratch.get().termios;
+        if(tcgetattr(fd, termios) != 0){
+            return false;
+        }
+        int speed = getBaudRateByNum(baudRate);
+        if(speed != -1){
+            if(cfsetspeed(termios, speed) < 0){
+                return false;
+            }
+            termios.set(JAVA_INT, C_CFLAG, termios.get(JAVA_INT, C_CFLAG) & ~CIBAUD);
+        }
+        int cflag = termios.get(JAVA_INT, C_CFLAG);
+        int iflag = termios.get(JAVA_INT, C_IFLAG);
+        int lflag = termios.get(JAVA_INT, C_LFLAG);
+        int oflag = termios.get(JAVA_INT, C_OFLAG);
+
+        cflag &= ~CSIZE;
+        switch (dataBits) {
+            case 5:
+                cflag |= CS5;
+                break;
+            case 6:
+                cflag |= CS6;
+                break;
+            case 7:
+                cflag |= CS7;
+                break;
+            case 8:
+                cflag |= CS8;
+                break;
+            default:
+                return false;
+        }
+
+        if(stopBits == 0){
+            cflag &= ~CSTOPB;
+        }
+        else if(stopBits == 1 || stopBits == 2){
+            cflag |= CSTOPB;
+        }
+        else {
+            return false;
+        }
+
+        cflag |= (CREAD | CLOCAL);
+        cflag &= ~CRTSCTS;
+        lflag &= ~(ICANON | ECHO | ECHOE | ECHOK | ECHONL | ECHOCTL | ECHOPRT | ECHOKE | ISIG | IEXTEN);
+        iflag &= ~(IXON | IXOFF | IXANY | INPCK | IGNPAR | PARMRK | ISTRIP | IGNBRK | BRKINT | INLCR | IGNCR | ICRNL | IUCLC);
+        oflag &= ~OPOST;
+
+        if((flags & 1) != 0){//PARAMS_FLAG_IGNPAR
+            iflag |= IGNPAR;
+        }
+        if((flags & 2) != 0){//PARAMS_FLAG_PARMRK
+            iflag |= PARMRK;
+        }
+
+        cflag &= ~(PARENB | PARODD | CMSPAR);
+        switch (parity) {
+            case 0:
+                break;
+            case 1:
+                cflag |= (PARENB | PARODD);
+                iflag |= INPCK;
+                break;
+            case 2:
+                cflag |= PARENB;
+                iflag |= INPCK;
+                break;
+            case 3:
+                cflag |= (PARENB | PARODD | CMSPAR);
+                iflag |= INPCK;
+                break;
+            case 4:
+                cflag |= (PARENB | CMSPAR);
+                iflag |= INPCK;
+                break;
+            default:
+                return false;
+        }
+
+        termios.set(JAVA_INT, C_CFLAG, cflag);
+        termios.set(JAVA_INT, C_IFLAG, iflag);
+        termios.set(JAVA_INT, C_LFLAG, lflag);
+        termios.set(JAVA_INT, C_OFLAG, oflag);
+        termios.set(JAVA_BYTE, C_CC + VMIN, (byte)0);
+        termios.set(JAVA_BYTE, C_CC + VTIME, (byte)0);
+        if(tcsetattr(fd, TCSANOW, termios) != 0){
+            return false;
+        }
+        if(speed == -1 && !setNonStandardBaudRate(fd, baudRate)){
+            return false;
+        }
+
+        MemorySegment value = scratch.get().value;
+        if(ioctl(fd, TIOCMGET, value) < 0){
+            return false;
+        }
+        int lines = value.get(JAVA_INT, 0);
+        lines = setRTS ? (lines | TIOCM_RTS) : (lines & ~TIOCM_RTS);
+        lines = setDTR ? (lines | TIOCM_DTR) : (lines & ~TIOCM_DTR);
+        value.set(JAVA_INT, 0, lines);
+        return ioctl(fd, TIOCMSET, value) >= 0;
+    }
+
+    private static boolean setNonStandardBaudRate(int fd, int baudRate) {
+        MemorySegment termios2 = scratch.get().structs;
+        if(baudRate <= 0 || ioctl(fd, TCGETS2, termios2) != 0){
+            return false;
+        }
+        int cflag = termios2.get(JAVA_INT, C_CFLAG);
+        cflag &= ~(CBAUD | (CBAUD << IBSHIFT));
+        cflag |= (BOTHER | (BOTHER << IBSHIFT));
+        termios2.set(JAVA_INT, C_CFLAG, cflag);
+        termios2.set(JAVA_INT, C_ISPEED2, baudRate);
+        termios2.set(JAVA_INT, C_OSPEED2, baudRate);
+        return ioctl(fd, TCSETS2, termios2) == 0;
+    }
+
+    @Override
+    public int getBaudRate(long handle) {
+        MemorySegment termios2 = scratch.get().structs;
+        if(ioctl((int)handle, TCGETS2, termios2) != 0){
+            return -1;
+        }
+        return termios2.get(JAVA_INT, C_OSPEED2);
+    }
+
+    @Override
+    public boolean setLowLatency(long handle, boolean enabled) {
+        int fd = (int)handle;
+        MemorySegment serial = scratch.get().structs;
+        if(ioctl(fd, TIOCGSERIAL, serial) < 0){
+            return false;
+        }
+        int flags = serial.get(JAVA_INT, SERIAL_FLAGS);
+        flags = enabled ? (flags | ASYNC_LOW_LATENCY) : (flags & ~ASYNC_LOW_LATENCY);
+        serial.set(JAVA_INT, SERIAL_FLAGS, flags);
+        if(ioctl(fd, TIOCSSERIAL, serial) < 0 || ioctl(fd, TIOCGSERIAL, serial) < 0){
+            return false;
+        }
+        return ((serial.get(JAVA_INT, SERIAL_FLAGS) & ASYNC_LOW_LATENCY) != 0) == enabled;
+    }
+
+    @Override
+    public boolean purgePort(long handle, int flags) {
+        int queue;
+        if((flags & SerialPort.PURGE_RXCLEAR) != 0 && (flags & SerialPort.PURGE_TXCLEAR) != 0){
+            queue = TCIOFLUSH;
+        }
+        else if((flags & SerialPort.PURGE_RXCLEAR) != 0){
+            queue = TCIFLUSH;
+        }
+        else if((flags & SerialPort.PURGE_TXCLEAR) != 0){
+            queue = TCOFLUSH;
+        }
+        else {
+            return (flags & (SerialPort.PURGE_RXABORT | SerialPort.PURGE_TXABORT)) != 0;
+        }
+        return tcflush((int)handle, queue) == 0;
+    }
+
+    @Override
+    public boolean closePort(long handle) {
+        ioctl((int)handle, TIOCNXCL, 0);
+        return close((int)handle) == 0;
+    }
+
+    @Override
+    public boolean setEventsMask(long handle, int mask) {
+        return true;
+    }
+
+    @Override
+    public int getEventsMask(long handle) {
+        return -1;
+    }
+
+    @Override
+    public int[][] waitEvents(long handle) {
+        int[] state = new int[STATE_SIZE];
+        getEventsState(handle, state);
+        return new int[][]{
+            {512, state[STATE_INTERRUPT_BREAK]},
+            {1024, state[STATE_INTERRUPT_TX]},
+            {2048, state[STATE_INTERRUPT_FRAME]},
+            {4096, state[STATE_INTERRUPT_OVERRUN]},
+            {8192, state[STATE_INTERRUPT_PARITY]},
+            {SerialPort.MASK_CTS, state[STATE_CTS]},
+            {SerialPort.MASK_DSR, state[STATE_DSR]},
+            {SerialPort.MASK_RING, state[STATE_RING]},
+            {SerialPort.MASK_RLSD, state[STATE_RLSD]},
+            {SerialPort.MASK_RXCHAR, state[STATE_INPUT_BYTES]},
+            {SerialPort.MASK_TXEMPTY, state[STATE_OUTPUT_BYTES]}
+        };
+    }
+
+    @Override
+    public boolean setRTS(long handle, boolean value) {
+        return setLines((int)handle, TIOCM_RTS, value);
+    }
+
+    @Override
+    public boolean setDTR(long handle, boolean value) {
+        return setLines((int)handle, TIOCM_DTR, value);
+    }
+
+    @Override
+    public byte[] readBytes(long handle, int byteCount) {
+        byte[] buffer = new byte[byteCount];
+        int readCount = 0;
+        while(readCount < byteCount){
+            int result = readBytesArray(handle, buffer, readCount, byteCount - readCount);
+            if(result < 0){
+                return null;
+            }
+            readCount += result;
+        }
+        return buffer;
+    }
+
+    @Override
+    public boolean isConnected(long handle) {
+        return tcgetattr((int)handle, scratch.get().termios) == 0;
+    }
+
+    @Override
+    public boolean writeBytes(long handle, byte[] buffer) {
+        Scratch s = scratch.get();
+        int written = 0;
+        while(written < buffer.length){
+            int chunkSize = Math.min(buffer.length - written, BUFFER_SIZE);
+            MemorySegment.copy(buffer, written, s.buffer, JAVA_BYTE, 0, chunkSize);
+            if(writeAll(s, (int)handle, s.buffer, chunkSize) != chunkSize){
+                return false;
+            }
+            written += chunkSize;
+        }
+        return true;
+    }
+
+    @Override
+    public int readBytesArray(long handle, byte[] buffer, int offset, int length) {
+        if(length <= 0){
+            return 0;
+        }
+        Scratch s = scratch.get();
+        int bytesAvailable = waitBytesAvailable(s, (int)handle, -1);
+        if(bytesAvailable < 0){
+            return -1;
+        }
+        int byteCount = Math.min(Math.min(bytesAvailable, length), BUFFER_SIZE);
+        long result = read(s, (int)handle, s.buffer, byteCount);
+        if(result <= 0){
+            return -1;
+        }
+        MemorySegment.copy(s.buffer, JAVA_BYTE, 0, buffer, offset, (int)result);
+        return (int)result;
+    }
+
+    @Override
+    public int readBytesDirect(long handle, ByteBuffer buffer, int position, int length) {
+        MemorySegment segment = directSegment(buffer, position, length);
+        if(segment == null){
+            return -1;
+        }
+        if(length <= 0){
+            return 0;
+        }
+        Scratch s = scratch.get();
+        int bytesAvailable = waitBytesAvailable(s, (int)handle, -1);
+        if(bytesAvailable < 0){
+            return -1;
+        }
+        long result = read(s, (int)handle, segment, Math.min(bytesAvailable, length));
+        return result > 0 ? (int)result : -1;
+    }
+
+    @Override
+    public int readBytesTimeout(long handle, byte[] buffer, int offset, int minCount, int maxCount, int timeout) {
+        Scratch s = scratch.get();
+        int fd = (int)handle;
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        int readCount = 0;
+        while(true){
+            int bytesAvailable = getIntValue(fd, FIONREAD);
+            if(bytesAvailable < 0){
+                return readCount > 0 ? readCount : -1;
+            }
+            if(bytesAvailable > 0 && readCount < maxCount){
+                int byteCount = Math.min(Math.min(bytesAvailable, maxCount - readCount), BUFFER_SIZE);
+                long result = read(s, fd, s.buffer, byteCount);
+                if(result > 0){
+                    MemorySegment.copy(s.buffer, JAVA_BYTE, 0, buffer, offset + readCount, (int)result);
+                    readCount += (int)result;
+                }
+                else if(result == 0 || (s.errno() != EINTR && s.errno() != EAGAIN)){
+                    return readCount > 0 ? readCount : -1;
+                }
+            }
+            if(readCount >= minCount){
+                break;
+            }
+            int remains = (int)((deadline - System.nanoTime()) / 1000000L);
+            if(remains <= 0){
+                break;
+            }
+            if(waitBytesAvailable(s, fd, remains) < 0){
+                return readCount > 0 ? readCount : -1;
+            }
+        }
+        return readCount;
+    }
+
+    @Override
+    public int readFrame(long handle, byte[] buffer, int offset, int maxSize, int gap, int timeout) {
+        if(maxSize <= 0){
+            return 0;
+        }
+        Scratch s = scratch.get();
+        int fd = (int)handle;
+        int bytesAvailable = waitBytesAvailable(s, fd, timeout);
+        if(bytesAvailable <= 0){
+            return bytesAvailable;
+        }
+        int readCount = 0;
+        while(true){
+            int byteCount = Math.min(Math.min(bytesAvailable, maxSize - readCount), BUFFER_SIZE);
+            long result = read(s, fd, s.buffer, byteCount);
+            if(result > 0){
+                MemorySegment.copy(s.buffer, JAVA_BYTE, 0, buffer, offset + readCount, (int)result);
+                readCount += (int)result;
+            }
+            else if(result == 0 || s.errno() != EINTR){
+                return readCount > 0 ? readCount : -1;
+            }
+            if(readCount >= maxSize){
+                break;
+            }
+            bytesAvailable = waitBytesAvailable(s, fd, gap);
+            if(bytesAvailable <= 0){
+                break;
+            }
+        }
+        return readCount;
+    }
+
+    @Override
+    public long readUntil(long handle, byte[] buffer, int offset, int length, int delimiter) {
+        if(length <= 0){
+            return 0;
+        }
+        Scratch s = scratch.get();
+        int fd = (int)handle;
+        int bytesAvailable = waitBytesAvailable(s, fd, 0);
+        if(bytesAvailable <= 0){
+            return bytesAvailable;
+        }
+        long result;
+        do {
+            result = read(s, fd, s.buffer, Math.min(Math.min(bytesAvailable, length), BUFFER_SIZE));
+        } while(result < 0 && s.errno() == EINTR);
+        if(result <= 0){
+            return -1;
+        }
+        long lineLength = 0;
+        byte value = (byte)delimiter;
+        for(int i = 0; i < (int)result; i++){
+            if(s.buffer.get(JAVA_BYTE, i) == value){
+                lineLength = i + 1;
+                break;
+            }
+        }
+        MemorySegment.copy(s.buffer, JAVA_BYTE, 0, buffer, offset, (int)result);
+        return (lineLength << 32) | result;
+    }
+
+    @Override
+    public boolean setEventChar(long handle, int eventChar) {
+        return false;
+    }
+
+    @Override
+    public int writeBytesArray(long handle, byte[] buffer, int offset, int length) {
+        Scratch s = scratch.get();
+        int written = 0;
+        while(written < length){
+            int chunkSize = Math.min(length - written, BUFFER_SIZE);
+            MemorySegment.copy(buffer, offset + written, s.buffer, JAVA_BYTE, 0, chunkSize);
+            int result = writeAvailable(s, (int)handle, s.buffer, chunkSize);
+            if(result < 0){
+                return written > 0 ? written : -1;
+            }
+            written += result;
+            if(result < chunkSize){
+                break;//Output buffer is full
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public int writeBytesDirect(long handle, ByteBuffer buffer, int position, int length) {
+        MemorySegment segment = directSegment(buffer, position, length);
+        if(segment == null){
+            return -1;
+        }
+        return writeAvailable(scratch.get(), (int)handle, segment, length);
+    }
+
+    @Override
+    public int writeBytesVector(long handle, Object[] buffers, int[] offsets, int[] lengths) {
+        Scratch s = scratch.get();
+        int fd = (int)handle;
+        MemorySegment iov = s.structs;
+        int iovCount = 0;
+        long iovSize = 0;
+        int bufferUsed = 0;
+        int written = 0;
+        for(int i = 0; i < buffers.length; i++){
+            MemorySegment direct = null;
+            if(buffers[i] instanceof ByteBuffer){
+                direct = directSegment((ByteBuffer)buffers[i], offsets[i], lengths[i]);
+                if(direct == null){
+                    return -1;
+                }
+            }
+            int offset = offsets[i];
+            int length = lengths[i];
+            while(length > 0){
+                if(iovCount == WRITE_VECTOR_SIZE || (direct == null && bufferUsed == BUFFER_SIZE)){
+                    int result = writevAvailable(s, fd, iov, iovCount);
+                    if(result < 0){
+                        return written > 0 ? written : -1;
+                    }
+                    written += result;
+                    if(result < iovSize){
+                        return written;//Output buffer is full
+                    }
+                    iovCount = 0;
+                    iovSize = 0;
+                    bufferUsed = 0;
+                }
+                long entry = iovCount * IOVEC_SIZE;
+                if(direct != null){
+                    iov.set(JAVA_LONG, entry, direct.address());
+                    iov.set(JAVA_LONG, entry + 8, length);
+                    iovSize += length;
+                    length = 0;
+                }
+                else {
+                    int partSize = Math.min(length, BUFFER_SIZE - bufferUsed);
+                    MemorySegment.copy((byte[])buffers[i], offset, s.buffer, JAVA_BYTE, bufferUsed, partSize);
+                    iov.set(JAVA_LONG, entry, s.buffer.address() + bufferUsed);
+                    iov.set(JAVA_LONG, entry + 8, partSize);
+                    iovSize += partSize;
+                    bufferUsed += partSize;
+                    offset += partSize;
+                    length -= partSize;
+                }
+                iovCount++;
+            }
+        }
+        if(iovCount > 0){
+            int result = writevAvailable(s, fd, iov, iovCount);
+            return result < 0 ? (written > 0 ? written : -1) : written + result;
+        }
+        return written;
+    }
+
+    @Override
+    public int[] getBuffersBytesCount(long handle) {
+        return new int[]{getIntValue((int)handle, FIONREAD), getIntValue((int)handle, TIOCOUTQ)};
+    }
+
+    @Override
+    public boolean setFlowControlMode(long handle, int mask) {
+        MemorySegment termios = scratch.get().termios;
+        if(tcgetattr((int)handle, termios) != 0){
+            return false;
+        }
+        int cflag = termios.get(JAVA_INT, C_CFLAG) & ~CRTSCTS;
+        int iflag = termios.get(JAVA_INT, C_IFLAG) & ~(IXON | IXOFF);
+        if((mask & (SerialPort.FLOWCONTROL_RTSCTS_IN | SerialPort.FLOWCONTROL_RTSCTS_OUT)) != 0){
+            cflag |= CRTSCTS;
+        }
+        if((mask & SerialPort.FLOWCONTROL_XONXOFF_IN) != 0){
+            iflag |= IXOFF;
+        }
+        if((mask & SerialPort.FLOWCONTROL_XONXOFF_OUT) != 0){
+            iflag |= IXON;
+        }
+        termios.set(JAVA_INT, C_CFLAG, cflag);
+        termios.set(JAVA_INT, C_IFLAG, iflag);
+        return tcsetattr((int)handle, TCSANOW, termios) == 0;
+    }
+
+    @Override
+    public int getFlowControlMode(long handle) {
+        MemorySegment termios = scratch.get().termios;
+        int mask = 0;
+        if(tcgetattr((int)handle, termios) == 0){
+            if((termios.get(JAVA_INT, C_CFLAG) & CRTSCTS) != 0){
+                mask |= (SerialPort.FLOWCONTROL_RTSCTS_IN | SerialPort.FLOWCONTROL_RTSCTS_OUT);
+            }
+            int iflag = termios.get(JAVA_INT, C_IFLAG);
+            if((iflag & IXOFF) != 0){
+                mask |= SerialPort.FLOWCONTROL_XONXOFF_IN;
+            }
+            if((iflag & IXON) != 0){
+                mask |= SerialPort.FLOWCONTROL_XONXOFF_OUT;
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public String[] getSerialPortNames() {
+        return null;
+    }
+
+    @Override
+    public int[] getLinesStatus(long handle) {
+        int lines = getLinesStatus((int)handle);
+        return new int[]{
+            (lines & TIOCM_CTS) != 0 ? 1 : 0,
+            (lines & TIOCM_DSR) != 0 ? 1 : 0,
+            (lines & TIOCM_RNG) != 0 ? 1 : 0,
+            (lines & TIOCM_CAR) != 0 ? 1 : 0
+        };
+    }
+
+    @Override
+    public boolean sendBreak(long handle, int duration) {
+        if(duration <= 0 || ioctl((int)handle, TIOCSBRK, 0) < 0){
+            return false;
+        }
+        try {
+            Thread.sleep(duration);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return ioctl((int)handle, TIOCCBRK, 0) >= 0;
+    }
+
+    @Override
+    public boolean getEventsState(long handle, int[] state) {
+        int fd = (int)handle;
+        int inputBytes = getIntValue(fd, FIONREAD);
+        if(inputBytes < 0){
+            return false;
+        }
+        int outputBytes = getIntValue(fd, TIOCOUTQ);
+        int lines = getLinesStatus(fd);
+        state[STATE_INPUT_BYTES] = inputBytes;
+        state[STATE_OUTPUT_BYTES] = outputBytes < 0 ? 0 : outputBytes;
+        state[STATE_CTS] = (lines & TIOCM_CTS) != 0 ? 1 : 0;
+        state[STATE_DSR] = (lines & TIOCM_DSR) != 0 ? 1 : 0;
+        state[STATE_RING] = (lines & TIOCM_RNG) != 0 ? 1 : 0;
+        state[STATE_RLSD] = (lines & TIOCM_CAR) != 0 ? 1 : 0;
+        MemorySegment icount = scratch.get().structs;
+        if(ioctl(fd, TIOCGICOUNT, icount) >= 0){
+            state[STATE_INTERRUPT_BREAK] = icount.get(JAVA_INT, ICOUNT_BRK);
+            state[STATE_INTERRUPT_TX] = icount.get(JAVA_INT, ICOUNT_TX);
+            state[STATE_INTERRUPT_FRAME] = icount.get(JAVA_INT, ICOUNT_FRAME);
+            state[STATE_INTERRUPT_OVERRUN] = icount.get(JAVA_INT, ICOUNT_OVERRUN);
+            state[STATE_INTERRUPT_PARITY] = icount.get(JAVA_INT, ICOUNT_PARITY);
+        }
+        else {
+            for(int i = STATE_INTERRUPT_BREAK; i <= STATE_INTERRUPT_PARITY; i++){
+                state[i] = -1;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Handle of poller contains epoll descriptor in high half and eventfd descriptor in low half
+     */
+    private static int getEpollFd(long poller) {
+        return (int)(poller >>> 32);
+    }
+
+    private static int getWakeupFd(long poller) {
+        return (int)poller;
+    }
+
+    private static boolean pollerControl(long poller, int operation, long handle, int events) {
+        MemorySegment event = scratch.get().structs;
+        int epollEvents = 0;
+        if((events & POLLER_IN) != 0){
+            epollEvents |= EPOLLIN;
+        }
+        if((events & POLLER_OUT) != 0){
+            epollEvents |= EPOLLOUT;
+        }
+        if((events & POLLER_EDGE_TRIGGERED) != 0){
+            epollEvents |= EPOLLET;
+        }
+        event.set(JAVA_INT, 0, epollEvents);
+        event.set(JAVA_LONG_UNALIGNED, EPOLL_DATA_OFFSET, handle);
+        return epollCtl(getEpollFd(poller), operation, (int)handle, event) == 0;
+    }
+
+    @Override
+    public long createPoller() {
+        int epollFd = epollCreate(EPOLL_CLOEXEC);
+        if(epollFd < 0){
+            return -1;
+        }
+        int wakeupFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+        if(wakeupFd < 0){
+            close(epollFd);
+            return -1;
+        }
+        MemorySegment event = scratch.get().structs;
+        event.set(JAVA_INT, 0, EPOLLIN);
+        event.set(JAVA_LONG_UNALIGNED, EPOLL_DATA_OFFSET, POLLER_WAKEUP_TAG);
+        if(epollCtl(epollFd, EPOLL_CTL_ADD, wakeupFd, event) != 0){
+            close(wakeupFd);
+            close(epollFd);
+            return -1;
+        }
+        return ((long)epollFd << 32) | (wakeupFd & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public boolean pollerAdd(long poller, long handle, int events) {
+        return pollerControl(poller, EPOLL_CTL_ADD, handle, events);
+    }
+
+    @Override
+    public boolean pollerModify(long poller, long handle, int events) {
+        return pollerControl(poller, EPOLL_CTL_MOD, handle, events);
+    }
+
+    @Override
+    public boolean pollerRemove(long poller, long handle) {
+        return pollerControl(poller, EPOLL_CTL_DEL, handle, 0);
+    }
+
+    @Override
+    public int pollerWait(long poller, long[] handles, int[] events, int timeout) {
+        Scratch s = scratch.get();
+        int maxEvents = Math.min(Math.min(handles.length, events.length), POLLER_MAX_EVENTS);
+        if(maxEvents <= 0){
+            return -1;
+        }
+        int result = epollWait(s, getEpollFd(poller), s.structs, maxEvents, timeout);
+        if(result < 0){
+            return s.errno() == EINTR ? 0 : -1;
+        }
+        int readyCount = 0;
+        for(int i = 0; i < result; i++){
+            long base = (long)i * EPOLL_EVENT_SIZE;
+            long handle = s.structs.get(JAVA_LONG_UNALIGNED, base + EPOLL_DATA_OFFSET);
+            if(handle == POLLER_WAKEUP_TAG){
+                while(read(s, getWakeupFd(poller), s.value, 8) > 0);
+                continue;
+            }
+            int epollEvents = s.structs.get(JAVA_INT, base);
+            int ready = 0;
+            if((epollEvents & EPOLLIN) != 0){
+                ready |= POLLER_IN;
+            }
+            if((epollEvents & EPOLLOUT) != 0){
+                ready |= POLLER_OUT;
+            }
+            if((epollEvents & EPOLLERR) != 0){
+                ready |= POLLER_ERROR;
+            }
+            if((epollEvents & EPOLLHUP) != 0){
+                ready |= POLLER_HANGUP;
+            }
+            handles[readyCount] = handle;
+            events[readyCount] = ready;
+            readyCount++;
+        }
+        return readyCount;
+    }
+
+    @Override
+    public boolean pollerWakeup(long poller) {
+        Scratch s = scratch.get();
+        s.value.set(JAVA_LONG, 0, 1L);
+        return write(s, getWakeupFd(poller), s.value, 8) == 8;
+    }
+
+    @Override
+    public void destroyPoller(long poller) {
+        close(getWakeupFd(poller));
+        close(getEpollFd(poller));
+    }
+
+    @Override
+    public long createLinesWaiter(long handle) {
+        return -1;
+    }
+
+    @Override
+    public long getLinesWaiterEventHandle(long waiter) {
+        return -1;
+    }
+
+    @Override
+    public int getChangedLines(long waiter) {
+        return -1;
+    }
+
+    @Override
+    public void destroyLinesWaiter(long waiter) {
+        //Lines waiter is never created
+    }
+
+    @Override
+    public long createBackgroundReader(long handle, ByteBuffer ring) {
+        return -1;
+    }
+
+    @Override
+    public long getBackgroundReaderEventHandle(long reader) {
+        return -1;
+    }
+
+    @Override
+    public void waitBackgroundReader(long reader, int timeout) {
+        //Background reader is never created
+    }
+
+    @Override
+    public void wakeupBackgroundReader(long reader) {
+        //Background reader is never created
+    }
+
+    @Override
+    public void stopBackgroundReader(long reader) {
+        //Background reader is never created
+    }
+
+    @Override
+    public void destroyBackgroundReader(long reader) {
+        //Background reader is never created
+    }
+
+    /**
+     * Canceller is eventfd, its descriptor is stored in both halves of the handle like in the native library
+     */
+    @Override
+    public long createCanceller() {
+        int fd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+        return fd < 0 ? -1 : ((long)fd << 32) | fd;
+    }
+
+    @Override
+    public boolean cancel(long canceller) {
+        Scratch s = scratch.get();
+        s.value.set(JAVA_LONG, 0, 1L);
+        return write(s, (int)canceller, s.value, 8) == 8;
+    }
+
+    @Override
+    public void destroyCanceller(long canceller) {
+        close((int)canceller);
+    }
+
+    @Override
+    public int waitPort(long handle, long canceller, int events, int timeout) {
+        Scratch s = scratch.get();
+        short interest = 0;
+        if((events & POLLER_IN) != 0){
+            interest |= POLLIN;
+        }
+        if((events & POLLER_OUT) != 0){
+            interest |= POLLOUT;
+        }
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        int remains = timeout;
+        int result;
+        while(true){
+            s.structs.set(JAVA_INT, 0, (int)handle);
+            s.structs.set(JAVA_SHORT, 4, interest);
+            s.structs.set(JAVA_SHORT, 6, (short)0);
+            s.structs.set(JAVA_INT, POLLFD_SIZE, canceller == -1 ? -1 : (int)canceller);
+            s.structs.set(JAVA_SHORT, POLLFD_SIZE + 4, POLLIN);
+            s.structs.set(JAVA_SHORT, POLLFD_SIZE + 6, (short)0);
+            result = poll(s, s.structs, 2, remains);
+            if(result >= 0 || s.errno() != EINTR){
+                break;
+            }
+            if(timeout > 0){
+                remains = (int)Math.max(0, (deadline - System.nanoTime()) / 1000000L);
+            }
+        }
+        if(result <= 0){
+            return result < 0 ? -1 : 0;
+        }
+        if(s.structs.get(JAVA_SHORT, POLLFD_SIZE + 6) != 0){
+            return 0;
+        }
+        short revents = s.structs.get(JAVA_SHORT, 6);
+        int ready = 0;
+        if((revents & POLLIN) != 0){
+            ready |= POLLER_IN;
+        }
+        if((revents & POLLOUT) != 0){
+            ready |= POLLER_OUT;
+        }
+        if((revents & (POLLERR | POLLNVAL)) != 0){
+            ready |= POLLER_ERROR;
+        }
+        if((revents & POLLHUP) != 0){
+            ready |= POLLER_HANGUP;
+        }
+        return ready;
+    }
+}
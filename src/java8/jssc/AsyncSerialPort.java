@@ -0,0 +1,480 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINER;
+
+/**
+ * Asynchronous facade over the opened port, read and write operations return {@link CompletableFuture}.
+ * Read operations are completed by event listener of the port (<b>MASK_RXCHAR</b>), so no thread is blocked
+ * for pending read, timeouts of all facades are handled by one shared timer thread. Write operations are
+ * executed one by one in own thread of facade, which is started only while there are queued writes.
+ * <br>Cancelled read doesn't take any bytes from the port (they are left for the next read). Write, which is
+ * in progress, is stopped by cancellation: the rest of its bytes isn't sent and output buffer of the driver is purged.
+ * <br>Facade adds own event listener to the port, so other listener can't be used at the same time,
+ * blocking read methods of the port shall not be used too. Dependent actions of futures (not async ones)
+ * are executed by event thread of the port or by writer thread, so they shouldn't block.
+ * <br><b>Note: </b>requires Java 8+
+ *
+ * @since 2.9.0
+ */
+public class AsyncSerialPort {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int WRITER_KEEP_ALIVE = 1000;
+
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    private Logger logger = Logger.getLogger("AsyncSerialPort");
+
+    private final ISerialPort port;
+    private final String portName;
+    //lock protects received bytes and queue of pending reads
+    private final Object lock = new Object();
+    private final ArrayDeque<ReadOperation> reads = new ArrayDeque<ReadOperation>();
+    private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+    private int count = 0;
+    private boolean closed = false;
+    private final ThreadPoolExecutor writer;
+
+    /**
+     * Create facade and add its event listener to the port
+     *
+     * @param port opened port
+     *
+     * @throws SerialPortException if listener can't be added
+     */
+    public AsyncSerialPort(ISerialPort port) throws SerialPortException {
+        this.port = port;
+        this.portName = port.getPortName();
+        writer = new ThreadPoolExecutor(1, 1, WRITER_KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                                        createThreadFactory("jSSC async writer " + portName));
+        writer.allowCoreThreadTimeOut(true);
+        port.addEventListener(new Listener(), SerialPort.MASK_RXCHAR);
+    }
+
+    /**
+     * Getting the port which is used by facade
+     */
+    public ISerialPort getPort() {
+        return port;
+    }
+
+    /**
+     * Read <b>byteCount</b> bytes
+     *
+     * @param byteCount count of bytes for reading
+     * @param timeout timeout in milliseconds, negative value means infinite waiting
+     *
+     * @return Future which is completed by byte array with "byteCount" length, or exceptionally by
+     * {@link SerialPortTimeoutException} if timeout is elapsed (received bytes are not lost in this case)
+     */
+    public CompletableFuture<byte[]> readAsync(final int byteCount, int timeout) {
+        if(byteCount < 0){
+            throw new IllegalArgumentException("byteCount < 0");
+        }
+        return addRead(new ReadOperation("readAsync()", timeout) {
+            @Override
+            int match(byte[] buffer, int count) {
+                return (count >= byteCount ? byteCount : -1);
+            }
+        });
+    }
+
+    /**
+     * Read bytes until <b>delimiter</b> is received
+     *
+     * @param delimiter sequence of bytes which finishes the data (for example CR LF)
+     * @param timeout timeout in milliseconds, negative value means infinite waiting
+     *
+     * @return Future which is completed by byte array ending with delimiter, or exceptionally by
+     * {@link SerialPortTimeoutException} if timeout is elapsed (received bytes are not lost in this case)
+     */
+    public CompletableFuture<byte[]> readUntilAsync(final byte[] delimiter, int timeout) {
+        if(delimiter.length == 0){
+            throw new IllegalArgumentException("Empty delimiter");
+        }
+        final byte[] pattern = delimiter.clone();
+        return addRead(new ReadOperation("readUntilAsync()", timeout) {
+
+            //Bytes before this position are already checked, it's valid while operation is the first in queue
+            private int scanned = 0;
+
+            @Override
+            int match(byte[] buffer, int count) {
+                for(int end = Math.max(scanned, pattern.length); end <= count; end++){
+                    int i = 0;
+                    while(i < pattern.length && buffer[end - pattern.length + i] == pattern[i]){
+                        i++;
+                    }
+                    if(i == pattern.length){
+                        return end;
+                    }
+                }
+                scanned = count + 1;
+                return -1;
+            }
+        });
+    }
+
+    /**
+     * Write byte array. Writes are executed in order of calls
+     *
+     * @param buffer bytes to write (array shall not be changed until the future is completed)
+     *
+     * @return Future which is completed by result of <b>writeBytes(byte[])</b> of the port
+     */
+    public CompletableFuture<Boolean> writeAsync(byte[] buffer) {
+        WriteOperation operation = new WriteOperation(buffer);
+        synchronized(lock){
+            if(closed){
+                operation.future.completeExceptionally(notOpened("writeAsync()"));
+                return operation.future;
+            }
+            writer.execute(operation);
+        }
+        return operation.future;
+    }
+
+    /**
+     * Stop the facade: event listener is removed from the port and pending operations fail with
+     * <b>TYPE_PORT_NOT_OPENED</b> exception. The port itself isn't closed
+     *
+     * @throws SerialPortException if listener can't be removed
+     */
+    public void close() throws SerialPortException {
+        List<ReadOperation> pending;
+        synchronized(lock){
+            if(closed){
+                return;
+            }
+            closed = true;
+            pending = new ArrayList<ReadOperation>(reads);
+            reads.clear();
+        }
+        if (logger.isLoggable(FINER)) { logger.finer("Closing async facade of " + portName + ", pending reads: " + pending.size()); }
+        for(ReadOperation operation : pending){
+            operation.fail(notOpened(operation.methodName));
+        }
+        for(Runnable task : writer.shutdownNow()){
+            ((WriteOperation)task).fail(notOpened("writeAsync()"));
+        }
+        if(port.isOpened()){
+            port.removeEventListener();
+        }
+    }
+
+    private CompletableFuture<byte[]> addRead(ReadOperation operation) {
+        synchronized(lock){
+            if(closed){
+                operation.future.completeExceptionally(notOpened(operation.methodName));
+                return operation.future;
+            }
+            reads.add(operation);
+        }
+        completeReady(takeReady());
+        operation.schedule();
+        return operation.future;
+    }
+
+    /**
+     * Take operations which can be completed by received bytes (in order of calls)
+     */
+    private List<Object[]> takeReady() {
+        List<Object[]> ready = null;
+        synchronized(lock){
+            while(!reads.isEmpty()){
+                ReadOperation operation = reads.peek();
+                int byteCount = operation.match(buffer, count);
+                if(byteCount < 0){
+                    break;
+                }
+                reads.poll();
+                byte[] result = Arrays.copyOf(buffer, byteCount);
+                count -= byteCount;
+                System.arraycopy(buffer, byteCount, buffer, 0, count);
+                if(ready == null){
+                    ready = new ArrayList<Object[]>();
+                }
+                ready.add(new Object[]{operation, result});
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Futures are completed without lock, because dependent actions are executed by this thread
+     */
+    private void completeReady(List<Object[]> ready) {
+        if(ready != null){
+            for(Object[] item : ready){
+                ((ReadOperation)item[0]).complete((byte[])item[1]);
+            }
+        }
+    }
+
+    private void failReads(SerialPortException exception) {
+        List<ReadOperation> pending;
+        synchronized(lock){
+            pending = new ArrayList<ReadOperation>(reads);
+            reads.clear();
+        }
+        for(ReadOperation operation : pending){
+            operation.fail(exception);
+        }
+    }
+
+    private void received(byte[] data) {
+        synchronized(lock){
+            if(count + data.length > buffer.length){
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + data.length));
+            }
+            System.arraycopy(data, 0, buffer, count, data.length);
+            count += data.length;
+        }
+        completeReady(takeReady());
+    }
+
+    private SerialPortException notOpened(String methodName) {
+        return new SerialPortException(portName, methodName, SerialPortException.TYPE_PORT_NOT_OPENED);
+    }
+
+    private class Listener implements SerialPortEventListener {
+
+        @Override
+        public void serialEvent(SerialPortEvent serialPortEvent) {
+            if(serialPortEvent.getEventType() != SerialPortEvent.RXCHAR){
+                return;
+            }
+            try {
+                byte[] data = port.readBytes();
+                if(data != null){
+                    received(data);
+                }
+            }
+            catch (SerialPortException ex) {
+                failReads(ex);
+            }
+        }
+
+        /**
+         * Called by event thread of the port if port is disconnected
+         */
+        public void errorOccurred(SerialPortException exception) {
+            failReads(exception);
+        }
+    }
+
+    /**
+     * Pending read operation, it's removed from the queue before completion,
+     * so it's completed only once by data, timeout, error or cancellation
+     */
+    private abstract class ReadOperation implements Runnable {
+
+        final String methodName;
+        final int timeout;
+        final CompletableFuture<byte[]> future = new CompletableFuture<byte[]>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                if(!remove()){
+                    return false;
+                }
+                boolean result = super.cancel(mayInterruptIfRunning);
+                //Bytes which were waited by this operation may complete the next one
+                completeReady(takeReady());
+                return result;
+            }
+        };
+        private volatile ScheduledFuture<?> timeoutTask;
+
+        ReadOperation(String methodName, int timeout) {
+            this.methodName = methodName;
+            this.timeout = timeout;
+        }
+
+        /**
+         * @return count of bytes from the beginning of buffer which complete the operation, or -1
+         */
+        abstract int match(byte[] buffer, int count);
+
+        void schedule() {
+            if(timeout >= 0 && !future.isDone()){
+                timeoutTask = timer.schedule(this, timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Timeout is elapsed
+         */
+        @Override
+        public void run() {
+            if(remove()){
+                future.completeExceptionally(new SerialPortTimeoutException(portName, methodName, timeout));
+                completeReady(takeReady());
+            }
+        }
+
+        void complete(byte[] result) {
+            cancelTimeout();
+            future.complete(result);
+        }
+
+        void fail(SerialPortException exception) {
+            cancelTimeout();
+            future.completeExceptionally(exception);
+        }
+
+        private boolean remove() {
+            synchronized(lock){
+                if(!reads.remove(this)){
+                    return false;
+                }
+            }
+            cancelTimeout();
+            return true;
+        }
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> task = timeoutTask;
+            if(task != null){
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Queued write operation. If it's cancelled while it's being written, writer thread is interrupted:
+     * in *nix the port is written by slices and interrupt stops the writing at the next waiting for free
+     * space, in Windows pending write is aborted by <b>PURGE_TXABORT</b>. Output buffer of the driver is
+     * purged by the writer thread after that, so the next write isn't affected
+     */
+    private class WriteOperation implements Runnable {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+
+        private final byte[] data;
+        private int state = QUEUED;
+        private Thread thread;
+        final CompletableFuture<Boolean> future = new CompletableFuture<Boolean>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean result = super.cancel(mayInterruptIfRunning);
+                if(result){
+                    abort();
+                }
+                return result;
+            }
+        };
+
+        WriteOperation(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public void run() {
+            synchronized(this){
+                if(future.isDone()){
+                    state = FINISHED;
+                    return;
+                }
+                state = RUNNING;
+                thread = Thread.currentThread();
+            }
+            try {
+                future.complete(port.writeBytes(data));
+            }
+            catch (SerialPortException ex) {
+                future.completeExceptionally(ex);
+            }
+            finally {
+                synchronized(this){
+                    state = FINISHED;
+                    thread = null;
+                }
+                //Interrupt of cancelled write shall not affect the next one
+                Thread.interrupted();
+                if(future.isCancelled()){
+                    purge(SerialPort.PURGE_TXCLEAR);
+                }
+            }
+        }
+
+        void fail(SerialPortException exception) {
+            future.completeExceptionally(exception);
+        }
+
+        private void abort() {
+            synchronized(this){
+                if(state != RUNNING){
+                    return;
+                }
+                thread.interrupt();
+                //Operation can't be finished while the lock is held, so the next write isn't aborted
+                purge(SerialPort.PURGE_TXABORT);
+            }
+        }
+
+        private void purge(int flags) {
+            try {
+                port.purgePort(flags);
+            }
+            catch (SerialPortException ex) {
+                //Port is closed, nothing to purge
+            }
+        }
+    }
+
+    private static ThreadFactory createThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, createThreadFactory("jSSC async timer"));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,345 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINER;
+
+/**
+ * Publisher of data received by the port. Reader thread reads the port into pooled direct buffers
+ * (the native code fills them without copying), they are passed to the subscriber according to its demand
+ * by the executor (<b>ForkJoinPool.commonPool()</b> by default), so slow subscriber doesn't stop reading.
+ * <br>Buffer passed to <b>onNext()</b> is valid only until this method returns, after that it's reused
+ * for the next data, so subscriber shall copy bytes which it needs later.
+ * <br>If subscriber is slow and all buffers are filled, <b>overflow policy</b> is applied:
+ * <br><b>OVERFLOW_BLOCK</b> - reader stops reading the port until buffer is free (data is stored in
+ * the driver, it may be lost there if the device doesn't stop sending),
+ * <br><b>OVERFLOW_DROP_OLDEST</b> - the oldest undelivered buffer is dropped (see {@link #getDroppedBytes()}),
+ * <br><b>OVERFLOW_FLOW_CONTROL</b> - like <b>OVERFLOW_BLOCK</b>, but RTS line is deasserted while reader
+ * is blocked, so device with hardware flow control stops sending (port shall not use
+ * <b>FLOWCONTROL_RTSCTS_IN</b> mode, in this mode the driver controls RTS itself).
+ * <br>Publisher has only one subscriber, it completes when the port is closed or hung up.
+ * <br><b>Note: </b>requires Java 9+
+ *
+ * @since 2.9.0
+ */
+public class SerialPortPublisher implements Flow.Publisher<ByteBuffer> {
+
+    public static final int OVERFLOW_BLOCK = 0;
+    public static final int OVERFLOW_DROP_OLDEST = 1;
+    public static final int OVERFLOW_FLOW_CONTROL = 2;
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int DEFAULT_BUFFER_COUNT = 16;
+
+    private Logger logger = Logger.getLogger("SerialPortPublisher");
+
+    private final IExtendedSerialPort port;
+    private final int overflowPolicy;
+    private final Executor executor;
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+    private final AtomicLong droppedBytes = new AtomicLong();
+    private Subscription subscription;
+
+    /**
+     * Create publisher with 16 buffers of 4096 bytes and <b>OVERFLOW_BLOCK</b> policy
+     *
+     * @param port opened port
+     */
+    public SerialPortPublisher(IExtendedSerialPort port) {
+        this(port, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT, OVERFLOW_BLOCK);
+    }
+
+    /**
+     * Create publisher which delivers data by <b>ForkJoinPool.commonPool()</b>
+     *
+     * @param port opened port
+     * @param bufferSize size of pooled buffer
+     * @param bufferCount count of pooled buffers (not less than 2)
+     * @param overflowPolicy <b>OVERFLOW_BLOCK</b>, <b>OVERFLOW_DROP_OLDEST</b> or <b>OVERFLOW_FLOW_CONTROL</b>
+     */
+    public SerialPortPublisher(IExtendedSerialPort port, int bufferSize, int bufferCount, int overflowPolicy) {
+        this(port, bufferSize, bufferCount, overflowPolicy, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param port opened port
+     * @param bufferSize size of pooled buffer
+     * @param bufferCount count of pooled buffers (not less than 2)
+     * @param overflowPolicy <b>OVERFLOW_BLOCK</b>, <b>OVERFLOW_DROP_OLDEST</b> or <b>OVERFLOW_FLOW_CONTROL</b>
+     * @param executor executor which calls methods of subscriber
+     */
+    public SerialPortPublisher(IExtendedSerialPort port, int bufferSize, int bufferCount, int overflowPolicy, Executor executor) {
+        if(bufferSize <= 0 || bufferCount < 2){
+            throw new IllegalArgumentException("Buffer size <= 0 or buffer count < 2");
+        }
+        if(overflowPolicy < OVERFLOW_BLOCK || overflowPolicy > OVERFLOW_FLOW_CONTROL){
+            throw new IllegalArgumentException("Unknown overflow policy: " + overflowPolicy);
+        }
+        this.port = port;
+        this.overflowPolicy = overflowPolicy;
+        this.executor = executor;
+        freeBuffers = new ArrayBlockingQueue<ByteBuffer>(bufferCount);
+        for(int i = 0; i < bufferCount; i++){
+            freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        if(subscriber == null){
+            throw new NullPointerException("subscriber");
+        }
+        Subscription newSubscription;
+        synchronized(this){
+            if(subscription != null){
+                newSubscription = null;
+            }
+            else {
+                newSubscription = new Subscription(subscriber);
+                subscription = newSubscription;
+            }
+        }
+        if(newSubscription == null){
+            //Data of the port can be consumed only once
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher of " + port.getPortName() + " has subscriber already"));
+            return;
+        }
+        subscriber.onSubscribe(newSubscription);
+        newSubscription.start();
+    }
+
+    /**
+     * Getting count of bytes dropped by <b>OVERFLOW_DROP_OLDEST</b> policy
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    private class Subscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        //Filled buffers in order of receiving (it's guarded by itself)
+        private final ArrayDeque<ByteBuffer> filledBuffers = new ArrayDeque<ByteBuffer>();
+        private final AtomicLong requested = new AtomicLong();
+        //Only one task of executor delivers buffers at the moment, other calls just increase this counter
+        private final AtomicInteger drainers = new AtomicInteger();
+        private final Runnable drainTask = new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        };
+        private final Thread reader;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private volatile Throwable error;
+        private boolean terminated = false;
+
+        Subscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+            reader = new Thread(this, "jSSC publisher " + port.getPortName());
+            reader.setDaemon(true);
+        }
+
+        void start() {
+            if(!cancelled){
+                reader.start();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0){
+                error = new IllegalArgumentException("Non-positive request: " + n);
+                done = true;
+                stopReader();
+            }
+            else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n;
+                    if(next < 0){
+                        next = Long.MAX_VALUE;
+                    }
+                } while(!requested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stopReader();
+        }
+
+        private void stopReader() {
+            if(reader.isAlive() && reader != Thread.currentThread()){
+                //Read and waiting for free buffer are interruptible
+                reader.interrupt();
+            }
+        }
+
+        /**
+         * Reader thread
+         */
+        @Override
+        public void run() {
+            if (logger.isLoggable(FINER)) { logger.finer("Publisher of " + port.getPortName() + " started, policy: " + overflowPolicy); }
+            try {
+                while(!cancelled && !done){
+                    ByteBuffer buffer = takeFreeBuffer();
+                    buffer.clear();
+                    int result = port.read(buffer);
+                    if(result < 0){
+                        //Port is hung up
+                        freeBuffers.add(buffer);
+                        break;
+                    }
+                    buffer.flip();
+                    synchronized(filledBuffers){
+                        filledBuffers.add(buffer);
+                    }
+                    drain();
+                }
+            }
+            catch (InterruptedException ex) {
+                //Subscription is cancelled
+            }
+            catch (SerialPortException ex) {
+                if(!cancelled && !ex.getExceptionType().equals(SerialPortException.TYPE_PORT_NOT_OPENED) &&
+                   !ex.getExceptionType().equals(SerialPortException.TYPE_INTERRUPTED)){
+                    error = ex;
+                }
+            }
+            if (logger.isLoggable(FINER)) { logger.finer("Publisher of " + port.getPortName() + " stopped"); }
+            done = true;
+            drain();
+        }
+
+        private ByteBuffer takeFreeBuffer() throws InterruptedException, SerialPortException {
+            ByteBuffer buffer = freeBuffers.poll();
+            if(buffer != null){
+                return buffer;
+            }
+            if(overflowPolicy == OVERFLOW_DROP_OLDEST){
+                synchronized(filledBuffers){
+                    buffer = filledBuffers.poll();
+                }
+                if(buffer != null){
+                    droppedBytes.addAndGet(buffer.remaining());
+                    return buffer;
+                }
+            }
+            else if(overflowPolicy == OVERFLOW_FLOW_CONTROL){
+                port.setRTS(false);
+                try {
+                    return freeBuffers.take();
+                }
+                finally {
+                    if(port.isOpened()){
+                        port.setRTS(true);
+                    }
+                }
+            }
+            return freeBuffers.take();
+        }
+
+        private void drain() {
+            if(drainers.getAndIncrement() == 0){
+                executor.execute(drainTask);
+            }
+        }
+
+        /**
+         * Deliver filled buffers while there is demand, then signal completion if reader is stopped
+         * and all buffers are delivered. Signals are never sent concurrently or recursively
+         */
+        private void drainLoop() {
+            int missed = 1;
+            do {
+                while(!cancelled && !terminated && requested.get() > 0){
+                    ByteBuffer buffer;
+                    synchronized(filledBuffers){
+                        buffer = filledBuffers.poll();
+                    }
+                    if(buffer == null){
+                        break;
+                    }
+                    if(requested.get() != Long.MAX_VALUE){
+                        requested.decrementAndGet();
+                    }
+                    try {
+                        subscriber.onNext(buffer);
+                    }
+                    catch (RuntimeException ex) {
+                        //Subscriber violates the specification, it doesn't get any signals more
+                        cancel();
+                        logger.warning("onNext() of subscriber failed: " + ex);
+                    }
+                    finally {
+                        freeBuffers.add(buffer);
+                    }
+                }
+                if(done && !cancelled && !terminated && (error != null || isEmpty())){
+                    terminated = true;
+                    if(error != null){
+                        subscriber.onError(error);
+                    }
+                    else {
+                        subscriber.onComplete();
+                    }
+                }
+                missed = drainers.addAndGet(-missed);
+            } while(missed != 0);
+        }
+
+        private boolean isEmpty() {
+            synchronized(filledBuffers){
+                return filledBuffers.isEmpty();
+            }
+        }
+    }
+}
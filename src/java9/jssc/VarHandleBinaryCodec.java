@@ -0,0 +1,120 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Implementation of {@link BinaryCodec} based on <b>VarHandle</b> byte array views: a value is read or written
+ * by one (possibly unaligned) memory access with byte swapping if needed, arrays of bytes are converted
+ * by 8 bytes at once. It's created by {@link BinaryCodec#getInstance()} through reflection.
+ * <br><b>Note: </b>requires Java 9+
+ *
+ * @since 2.9.0
+ */
+class VarHandleBinaryCodec extends BinaryCodec {
+
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    VarHandleBinaryCodec() {
+    }
+
+    @Override
+    short getShort(byte[] buffer, int index, boolean bigEndian) {
+        return bigEndian ? (short)SHORT_BE.get(buffer, index) : (short)SHORT_LE.get(buffer, index);
+    }
+
+    @Override
+    int getInt(byte[] buffer, int index, boolean bigEndian) {
+        return bigEndian ? (int)INT_BE.get(buffer, index) : (int)INT_LE.get(buffer, index);
+    }
+
+    @Override
+    long getLong(byte[] buffer, int index, boolean bigEndian) {
+        return bigEndian ? (long)LONG_BE.get(buffer, index) : (long)LONG_LE.get(buffer, index);
+    }
+
+    @Override
+    void putShort(byte[] buffer, int index, short value, boolean bigEndian) {
+        if(bigEndian){
+            SHORT_BE.set(buffer, index, value);
+        }
+        else {
+            SHORT_LE.set(buffer, index, value);
+        }
+    }
+
+    @Override
+    void putInt(byte[] buffer, int index, int value, boolean bigEndian) {
+        if(bigEndian){
+            INT_BE.set(buffer, index, value);
+        }
+        else {
+            INT_LE.set(buffer, index, value);
+        }
+    }
+
+    @Override
+    void putLong(byte[] buffer, int index, long value, boolean bigEndian) {
+        if(bigEndian){
+            LONG_BE.set(buffer, index, value);
+        }
+        else {
+            LONG_LE.set(buffer, index, value);
+        }
+    }
+
+    @Override
+    void getUnsignedBytes(byte[] src, int srcIndex, int[] dst, int dstIndex, int length) {
+        int i = 0;
+        for(; i <= length - 8; i += 8){
+            long value = (long)LONG_LE.get(src, srcIndex + i);
+            for(int j = 0; j < 8; j++){
+                dst[dstIndex + i + j] = (int)(value >>> (j << 3)) & 0xFF;
+            }
+        }
+        super.getUnsignedBytes(src, srcIndex + i, dst, dstIndex + i, length - i);
+    }
+
+    @Override
+    void putBytes(int[] src, int srcIndex, byte[] dst, int dstIndex, int length) {
+        int i = 0;
+        for(; i <= length - 8; i += 8){
+            long value = 0;
+            for(int j = 0; j < 8; j++){
+                value |= (src[srcIndex + i + j] & 0xFFL) << (j << 3);
+            }
+            LONG_LE.set(dst, dstIndex + i, value);
+        }
+        super.putBytes(src, srcIndex + i, dst, dstIndex + i, length - i);
+    }
+}
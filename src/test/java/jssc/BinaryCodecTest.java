@@ -0,0 +1,122 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Test of binary codecs: values written and read by the shift based {@link BinaryCodec} and by the implementation
+ * returned by {@link BinaryCodec#getInstance()} (<b>VarHandle</b> based if classes of src/java9 are on the class path
+ * and Java is 9+) shall be the same as values of <b>ByteBuffer</b> in both byte orders at all offsets,
+ * conversion of int arrays is checked for lengths around 8 bytes blocks.
+ * <p>
+ * Compile sources of jSSC (src/java, src/java9 for Java 9+) and this folder and run:
+ * <pre>
+ * java -cp classes jssc.BinaryCodecTest
+ * </pre>
+ * Exit code is not zero if the test has failed
+ *
+ * @since 2.9.0
+ */
+public class BinaryCodecTest {
+
+    private static final int BUFFER_SIZE = 32;
+    private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+
+    public static void main(String[] args) {
+        BinaryCodec[] codecs = {new BinaryCodec(), BinaryCodec.getInstance()};
+        Random random = new Random(1);
+        for(BinaryCodec codec : codecs){
+            for(int i = 0; i < 1000; i++){
+                values(codec, random);
+            }
+            intArrays(codec, random);
+        }
+        System.out.println("OK (" + name(BinaryCodec.getInstance()) + ")");
+    }
+
+    private static void values(BinaryCodec codec, Random random) {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        random.nextBytes(bytes);
+        long value = random.nextLong();
+        for(ByteOrder order : ORDERS){
+            boolean bigEndian = (order == ByteOrder.BIG_ENDIAN);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+            for(int index = 0; index <= BUFFER_SIZE - 8; index++){
+                check(codec.getShort(bytes, index, bigEndian) == buffer.getShort(index), codec, "getShort", order, index);
+                check(codec.getInt(bytes, index, bigEndian) == buffer.getInt(index), codec, "getInt", order, index);
+                check(codec.getLong(bytes, index, bigEndian) == buffer.getLong(index), codec, "getLong", order, index);
+            }
+            byte[] expected = new byte[BUFFER_SIZE];
+            byte[] actual = new byte[BUFFER_SIZE];
+            ByteBuffer expectedBuffer = ByteBuffer.wrap(expected).order(order);
+            for(int index = 0; index <= BUFFER_SIZE - 8; index++){
+                expectedBuffer.putShort(index, (short)value);
+                codec.putShort(actual, index, (short)value, bigEndian);
+                check(expectedBuffer.equals(ByteBuffer.wrap(actual)), codec, "putShort", order, index);
+                expectedBuffer.putInt(index, (int)value);
+                codec.putInt(actual, index, (int)value, bigEndian);
+                check(expectedBuffer.equals(ByteBuffer.wrap(actual)), codec, "putInt", order, index);
+                expectedBuffer.putLong(index, value);
+                codec.putLong(actual, index, value, bigEndian);
+                check(expectedBuffer.equals(ByteBuffer.wrap(actual)), codec, "putLong", order, index);
+            }
+        }
+    }
+
+    private static void intArrays(BinaryCodec codec, Random random) {
+        for(int length = 0; length <= 20; length++){
+            for(int offset = 0; offset < 3; offset++){
+                byte[] bytes = new byte[length + offset];
+                random.nextBytes(bytes);
+                int[] values = new int[length + 1];
+                codec.getUnsignedBytes(bytes, offset, values, 1, length);
+                for(int i = 0; i < length; i++){
+                    check(values[i + 1] == (bytes[offset + i] & 0xFF), codec, "getUnsignedBytes", null, i);
+                }
+                //High bits are ignored
+                for(int i = 1; i <= length; i++){
+                    values[i] |= random.nextInt() << 8;
+                }
+                byte[] result = new byte[length + offset];
+                System.arraycopy(bytes, 0, result, 0, offset);
+                codec.putBytes(values, 1, result, offset, length);
+                check(ByteBuffer.wrap(bytes).equals(ByteBuffer.wrap(result)), codec, "putBytes", null, length);
+            }
+        }
+    }
+
+    private static String name(BinaryCodec codec) {
+        return codec.getClass().getSimpleName();
+    }
+
+    private static void check(boolean condition, BinaryCodec codec, String method, ByteOrder order, int index) {
+        if(!condition){
+            throw new AssertionError(name(codec) + "." + method + " failed, order " + order + ", index " + index);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Round-trip test of frame codecs. Frames with all byte values, with bytes which shall be escaped
+ * and of lengths around block boundaries are encoded into one stream and decoded back:
+ * <ul>
+ * <li>from the whole stream and from the stream split into small pieces;</li>
+ * <li>with empty frames between other frames (SLIP ignores them, other codecs return them);</li>
+ * <li>with frame which doesn't fit into the output buffer (it's dropped, the next frame is decoded).</li>
+ * </ul>
+ * Encoded frames shall fit into {@link FrameCodec#getMaxEncodedLength(int)} bytes.
+ * <p>
+ * Compile sources of jSSC (src/java) and this folder and run:
+ * <pre>
+ * java -cp classes jssc.FrameCodecTest
+ * </pre>
+ * Exit code is not zero if the test has failed
+ *
+ * @since 2.9.0
+ */
+public class FrameCodecTest {
+
+    private static final int MAX_FRAME_SIZE = 600;
+    private static final int[] CHUNK_SIZES = {1, 2, 3, 7, 64, Integer.MAX_VALUE};
+
+    public static void main(String[] args) {
+        FrameCodec[] codecs = {new SlipCodec(), new CobsCodec(), new HdlcCodec(), new LengthPrefixCodec(),
+                               new LengthPrefixCodec(1, false), new LengthPrefixCodec(4, false)};
+        //1 byte header can't describe longer frames
+        int[] maxLengths = {MAX_FRAME_SIZE, MAX_FRAME_SIZE, MAX_FRAME_SIZE, MAX_FRAME_SIZE, 255, MAX_FRAME_SIZE};
+        for(int i = 0; i < codecs.length; i++){
+            FrameCodec codec = codecs[i];
+            roundTrip(codec, frames(maxLengths[i]));
+            emptyFrames(codec);
+            outputOverflow(codec);
+        }
+        hdlcErrors();
+        System.out.println("OK");
+    }
+
+    private static void roundTrip(FrameCodec codec, List<byte[]> frames) {
+        byte[] stream = encode(codec, frames);
+        for(int chunkSize : CHUNK_SIZES){
+            List<byte[]> decoded = new ArrayList<byte[]>();
+            int errors = decode(codec, stream, chunkSize, MAX_FRAME_SIZE, decoded);
+            check(errors == 0, name(codec) + ": " + errors + " errors, chunk " + chunkSize);
+            checkFrames(codec, frames, decoded, "chunk " + chunkSize);
+        }
+    }
+
+    private static void emptyFrames(FrameCodec codec) {
+        List<byte[]> frames = new ArrayList<byte[]>();
+        frames.add(new byte[0]);
+        frames.add(new byte[]{1, 2, 3});
+        frames.add(new byte[0]);
+        frames.add(new byte[0]);
+        frames.add(new byte[]{4});
+        List<byte[]> expected = new ArrayList<byte[]>();
+        for(byte[] frame : frames){
+            //SLIP frame is finished by END byte and END bytes in a row are ignored
+            if(frame.length > 0 || !(codec instanceof SlipCodec)){
+                expected.add(frame);
+            }
+        }
+        byte[] stream = encode(codec, frames);
+        for(int chunkSize : CHUNK_SIZES){
+            List<byte[]> decoded = new ArrayList<byte[]>();
+            int errors = decode(codec, stream, chunkSize, MAX_FRAME_SIZE, decoded);
+            check(errors == 0, name(codec) + ": " + errors + " errors on empty frames, chunk " + chunkSize);
+            checkFrames(codec, expected, decoded, "empty frames, chunk " + chunkSize);
+        }
+    }
+
+    private static void outputOverflow(FrameCodec codec) {
+        int capacity = 100;
+        List<byte[]> frames = new ArrayList<byte[]>();
+        frames.add(pattern(10, 0));
+        frames.add(pattern(capacity + 1, 1));
+        frames.add(pattern(capacity, 2));
+        frames.add(pattern(capacity * 2, 3));
+        frames.add(pattern(5, 4));
+        List<byte[]> expected = new ArrayList<byte[]>();
+        expected.add(frames.get(0));
+        expected.add(frames.get(2));
+        expected.add(frames.get(4));
+        byte[] stream = encode(codec, frames);
+        for(int chunkSize : CHUNK_SIZES){
+            List<byte[]> decoded = new ArrayList<byte[]>();
+            int errors = decode(codec, stream, chunkSize, capacity, decoded);
+            check(errors == 2, name(codec) + ": " + errors + " errors instead of 2 on overflow, chunk " + chunkSize);
+            checkFrames(codec, expected, decoded, "overflow, chunk " + chunkSize);
+        }
+    }
+
+    private static void hdlcErrors() {
+        HdlcCodec codec = new HdlcCodec();
+        List<byte[]> frames = new ArrayList<byte[]>();
+        frames.add(new byte[]{1, 2, 3, 4});
+        frames.add(new byte[]{5, 6});
+        byte[] stream = encode(codec, frames);
+        //Content of the first frame is damaged, FCS doesn't match
+        stream[2] ^= 0x01;
+        List<byte[]> decoded = new ArrayList<byte[]>();
+        check(decode(codec, stream, Integer.MAX_VALUE, MAX_FRAME_SIZE, decoded) == 1, "HDLC: damaged frame isn't detected");
+        checkFrames(codec, frames.subList(1, 2), decoded, "damaged frame");
+        //One byte between flags can't contain FCS, several flags in a row are allowed
+        byte[] shortFrame = {HdlcCodec.FLAG, 0x01, HdlcCodec.FLAG, HdlcCodec.FLAG, HdlcCodec.FLAG};
+        decoded.clear();
+        check(decode(codec, shortFrame, Integer.MAX_VALUE, MAX_FRAME_SIZE, decoded) == 1, "HDLC: short frame isn't detected");
+        check(decoded.isEmpty(), "HDLC: short frame is decoded");
+        //Broken escape sequence at the end of frame
+        byte[] escape = {HdlcCodec.FLAG, 0x01, 0x02, 0x03, HdlcCodec.ESC, HdlcCodec.FLAG};
+        decoded.clear();
+        check(decode(codec, escape, Integer.MAX_VALUE, MAX_FRAME_SIZE, decoded) == 1, "HDLC: broken escape isn't detected");
+    }
+
+    private static List<byte[]> frames(int maxLength) {
+        List<byte[]> frames = new ArrayList<byte[]>();
+        byte[] all = new byte[256];
+        for(int i = 0; i < all.length; i++){
+            all[i] = (byte)i;
+        }
+        frames.add(Arrays.copyOf(all, Math.min(all.length, maxLength)));
+        //Bytes which are delimiters or escapes in some codec
+        byte[] special = {(byte)0xC0, (byte)0xDB, (byte)0xDC, (byte)0xDD, 0x7E, 0x7D, 0x5E, 0x5D, 0x00, 0x20};
+        byte[] escapes = new byte[Math.min(maxLength, 300)];
+        for(int i = 0; i < escapes.length; i++){
+            escapes[i] = special[i % special.length];
+        }
+        frames.add(escapes);
+        frames.add(new byte[]{0x00});
+        frames.add(new byte[]{0x00, 0x00});
+        frames.add(new byte[]{(byte)0xC0});
+        frames.add(new byte[]{0x7E});
+        //COBS blocks are 254 bytes long
+        for(int length : new int[]{1, 253, 254, 255, 508, 509, MAX_FRAME_SIZE}){
+            if(length <= maxLength){
+                frames.add(pattern(length, length));
+                byte[] zeros = pattern(length, length);
+                zeros[length - 1] = 0;
+                frames.add(zeros);
+            }
+        }
+        Random random = new Random(2014);
+        for(int i = 0; i < 50; i++){
+            byte[] frame = new byte[1 + random.nextInt(maxLength)];
+            random.nextBytes(frame);
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    //Non-zero bytes without delimiters of any codec
+    private static byte[] pattern(int length, int seed) {
+        byte[] frame = new byte[length];
+        for(int i = 0; i < length; i++){
+            frame[i] = (byte)(1 + (i + seed) % 100);
+        }
+        return frame;
+    }
+
+    private static byte[] encode(FrameCodec codec, List<byte[]> frames) {
+        ByteBuffer stream = ByteBuffer.allocate(frames.size() * codec.getMaxEncodedLength(MAX_FRAME_SIZE * 2));
+        for(byte[] frame : frames){
+            //Output buffer has exactly the maximum length, so the encoder shall not exceed it
+            ByteBuffer out = ByteBuffer.allocate(codec.getMaxEncodedLength(frame.length));
+            codec.encode(ByteBuffer.wrap(frame), out);
+            out.flip();
+            stream.put(out);
+        }
+        return Arrays.copyOf(stream.array(), stream.position());
+    }
+
+    /**
+     * Decode the stream passing it by chunks of <b>chunkSize</b> bytes
+     *
+     * @return Count of dropped frames
+     */
+    private static int decode(FrameCodec codec, byte[] stream, int chunkSize, int capacity, List<byte[]> decoded) {
+        codec.reset();
+        ByteBuffer out = ByteBuffer.allocate(capacity);
+        int errors = 0;
+        for(int offset = 0; offset < stream.length; offset += chunkSize){
+            ByteBuffer in = ByteBuffer.wrap(stream, offset, Math.min(chunkSize, stream.length - offset));
+            while(in.hasRemaining()){
+                int result = codec.decode(in, out);
+                if(result == FrameCodec.RESULT_FRAME){
+                    decoded.add(Arrays.copyOf(out.array(), out.position()));
+                    out.clear();
+                }
+                else if(result == FrameCodec.RESULT_ERROR){
+                    errors++;
+                    out.clear();
+                }
+                else {
+                    check(!in.hasRemaining(), name(codec) + ": underflow with remaining input");
+                }
+            }
+        }
+        check(out.position() == 0, name(codec) + ": unfinished frame at the end of stream");
+        return errors;
+    }
+
+    private static void checkFrames(FrameCodec codec, List<byte[]> expected, List<byte[]> decoded, String message) {
+        check(expected.size() == decoded.size(), name(codec) + ": " + decoded.size() + " frames instead of " + expected.size() + ", " + message);
+        for(int i = 0; i < expected.size(); i++){
+            check(Arrays.equals(expected.get(i), decoded.get(i)), name(codec) + ": frame " + i + " differs, " + message);
+        }
+    }
+
+    private static String name(FrameCodec codec) {
+        return codec.getClass().getSimpleName();
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
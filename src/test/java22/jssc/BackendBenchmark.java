@@ -0,0 +1,114 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Comparison of JNI and FFM backends on pseudo-terminal pairs (Linux). Every operation is a round trip:
+ * the backend writes message to the slave side, the master side reads it and answers with message
+ * of the same size, the backend reads the answer. Work of the master side is the same for both
+ * backends, so the difference of results is the difference of backends. Heap arrays and direct
+ * buffers are measured separately, allocated bytes are counted for the benchmark thread.
+ * <p>
+ * Compile sources of jSSC (src/java, src/java22) and this folder with Java 22+ and run:
+ * <pre>
+ * java --enable-native-access=ALL-UNNAMED -cp classes jssc.BackendBenchmark [iterations]
+ * </pre>
+ *
+ * @since 2.9.0
+ */
+public class BackendBenchmark {
+
+    private static final int[] MESSAGE_SIZES = {16, 256, 4096};
+    private static final int DEFAULT_ITERATIONS = 20000;
+
+    public static void main(String[] args) throws Throwable {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS);
+        SerialNativeInterface[] backends = {new SerialNativeInterface(), new FfmSerialNativeInterface()};
+        System.out.println("Round trips: " + iterations);
+        System.out.println(String.format("%-8s%-8s%10s%14s%16s", "backend", "buffer", "size", "ns/op", "alloc bytes/op"));
+        for(int size : MESSAGE_SIZES){
+            for(boolean direct : new boolean[]{false, true}){
+                for(SerialNativeInterface backend : backends){
+                    //Warm up, then measure
+                    run(backend, size, direct, iterations / 4);
+                    long[] result = run(backend, size, direct, iterations);
+                    System.out.println(String.format("%-8s%-8s%10d%14d%16d", backend.getBackendName(), (direct ? "direct" : "array"),
+                                                     size, result[0] / iterations, result[1] / iterations));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Elapsed nanoseconds and allocated bytes
+     */
+    private static long[] run(SerialNativeInterface backend, int size, boolean direct, int iterations) throws Throwable {
+        PtyPair pty = new PtyPair(size);
+        long handle = backend.openPort(pty.getSlaveName(), false);
+        if(handle < 0){
+            throw new IllegalStateException("Can't open " + pty.getSlaveName() + " by " + backend.getBackendName());
+        }
+        //Raw mode is set, result is false because pseudo-terminal has no modem lines
+        backend.setParams(handle, 115200, 8, 0, 0, true, true, 0);
+        byte[] array = new byte[size];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        try {
+            for(int i = 0; i < iterations; i++){
+                int written = 0;
+                while(written < size){
+                    int result = (direct ? backend.writeBytesDirect(handle, buffer, written, size - written)
+                                         : backend.writeBytesArray(handle, array, written, size - written));
+                    if(result < 0){
+                        throw new IllegalStateException("Write has failed");
+                    }
+                    written += result;
+                }
+                pty.readMaster(size);
+                pty.writeMaster(size);
+                int readCount = 0;
+                while(readCount < size){
+                    int result = (direct ? backend.readBytesDirect(handle, buffer, readCount, size - readCount)
+                                         : backend.readBytesArray(handle, array, readCount, size - readCount));
+                    if(result <= 0){
+                        throw new IllegalStateException("Read has failed");
+                    }
+                    readCount += result;
+                }
+            }
+            return new long[]{System.nanoTime() - start, threads.getThreadAllocatedBytes(threadId) - allocated};
+        }
+        finally {
+            backend.closePort(handle);
+            pty.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Encoding and decoding speed of frame codecs (SLIP, COBS, HDLC and length prefix). Frames have
+ * random content, so bytes which shall be escaped occur with their natural frequency. Buffers are
+ * reused between operations (as {@link SerialPortFramer} does), decoding consumes one encoded frame
+ * per operation. Allocated bytes are counted for the benchmark thread, they shall be zero.
+ * <p>
+ * Compile sources of jSSC (src/java, src/java22) and this folder with Java 22+ and run:
+ * <pre>
+ * java -cp classes jssc.FrameCodecBenchmark [iterations]
+ * </pre>
+ *
+ * @since 2.9.0
+ */
+public class FrameCodecBenchmark {
+
+    private static final int[] FRAME_SIZES = {16, 256, 4096};
+    private static final int DEFAULT_ITERATIONS = 200000;
+
+    public static void main(String[] args) throws Throwable {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS);
+        FrameCodec[] codecs = {new SlipCodec(), new CobsCodec(), new HdlcCodec(), new LengthPrefixCodec()};
+        Random random = new Random(1);
+        System.out.println("Iterations: " + iterations + " (divided by size / 16 for longer frames)");
+        System.out.println(String.format("%-20s%-8s%10s%14s%12s%16s", "codec", "op", "size", "ns/op", "MB/s", "alloc bytes/op"));
+        for(int size : FRAME_SIZES){
+            byte[] frame = new byte[size];
+            random.nextBytes(frame);
+            int count = Math.max(1000, iterations / Math.max(1, size / 16));
+            for(FrameCodec codec : codecs){
+                for(boolean decode : new boolean[]{false, true}){
+                    //Warm up, then measure
+                    run(codec, frame, decode, count / 4);
+                    long[] result = run(codec, frame, decode, count);
+                    System.out.println(String.format("%-20s%-8s%10d%14d%12.1f%16d", codec.getClass().getSimpleName(), (decode ? "decode" : "encode"),
+                                                     size, result[0] / count, (double)size * count * 1000 / result[0], result[1] / count));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Elapsed nanoseconds and allocated bytes
+     */
+    private static long[] run(FrameCodec codec, byte[] frame, boolean decode, int iterations) {
+        ByteBuffer content = ByteBuffer.wrap(frame);
+        ByteBuffer encoded = ByteBuffer.allocate(codec.getMaxEncodedLength(frame.length));
+        ByteBuffer decoded = ByteBuffer.allocate(frame.length);
+        codec.reset();
+        codec.encode(content, encoded);
+        encoded.flip();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++){
+            if(decode){
+                encoded.rewind();
+                decoded.clear();
+                if(codec.decode(encoded, decoded) != FrameCodec.RESULT_FRAME || decoded.position() != frame.length){
+                    throw new IllegalStateException(codec.getClass().getSimpleName() + ": frame isn't decoded");
+                }
+            }
+            else {
+                content.rewind();
+                encoded.clear();
+                codec.encode(content, encoded);
+            }
+        }
+        return new long[]{System.nanoTime() - start, threads.getThreadAllocatedBytes(threadId) - allocated};
+    }
+}
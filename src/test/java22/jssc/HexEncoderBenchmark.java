@@ -0,0 +1,148 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Comparison of the old encoding of <b>readHexString()</b> and <b>readHexStringArray()</b>
+ * (<b>Integer.toHexString().toUpperCase()</b> for every byte, string concatenation) with
+ * {@link HexEncoder}. The port isn't involved, both paths encode the same received bytes,
+ * results of both paths are compared before measuring. Allocated bytes are counted for the
+ * benchmark thread.
+ * <p>
+ * Compile sources of jSSC (src/java, src/java22) and this folder with Java 22+ and run:
+ * <pre>
+ * java -cp classes jssc.HexEncoderBenchmark [iterations]
+ * </pre>
+ *
+ * @since 2.9.0
+ */
+public class HexEncoderBenchmark {
+
+    private static final int[] MESSAGE_SIZES = {16, 256, 4096};
+    private static final int DEFAULT_ITERATIONS = 20000;
+    private static final String SEPARATOR = " ";
+
+    private static final int METHOD_STRING = 0;
+    private static final int METHOD_STRING_ARRAY = 1;
+
+    //Prevents elimination of results by the compiler
+    private static int sink;
+
+    public static void main(String[] args) throws Throwable {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS);
+        System.out.println("Iterations: " + iterations + " (divided by size / 16 for longer messages)");
+        System.out.println(String.format("%-20s%-8s%10s%14s%16s", "method", "path", "size", "ns/op", "alloc bytes/op"));
+        for(int size : MESSAGE_SIZES){
+            byte[] data = new byte[size];
+            for(int i = 0; i < size; i++){
+                data[i] = (byte)(i * 31 + 7);
+            }
+            check(data);
+            int count = Math.max(100, iterations / Math.max(1, size / 16));
+            for(int method : new int[]{METHOD_STRING, METHOD_STRING_ARRAY}){
+                for(boolean table : new boolean[]{false, true}){
+                    //Warm up, then measure
+                    run(data, method, table, count / 4);
+                    long[] result = run(data, method, table, count);
+                    System.out.println(String.format("%-20s%-8s%10d%14d%16d", (method == METHOD_STRING ? "readHexString" : "readHexStringArray"),
+                                                     (table ? "new" : "old"), size, result[0] / count, result[1] / count));
+                }
+            }
+        }
+    }
+
+    private static void check(byte[] data) {
+        if(!oldHexString(data, SEPARATOR).equals(HexEncoder.toHexString(data, 0, data.length, SEPARATOR))){
+            throw new IllegalStateException("Strings are different");
+        }
+        String[] oldStrings = oldHexStringArray(data);
+        String[] newStrings = HexEncoder.toHexStringArray(data, 0, data.length);
+        for(int i = 0; i < data.length; i++){
+            if(!oldStrings[i].equals(newStrings[i])){
+                throw new IllegalStateException("String arrays are different");
+            }
+        }
+    }
+
+    /**
+     * @return Elapsed nanoseconds and allocated bytes
+     */
+    private static long[] run(byte[] data, int method, boolean table, int iterations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++){
+            if(method == METHOD_STRING){
+                String result = (table ? HexEncoder.toHexString(data, 0, data.length, SEPARATOR) : oldHexString(data, SEPARATOR));
+                sink += result.length();
+            }
+            else {
+                String[] result = (table ? HexEncoder.toHexStringArray(data, 0, data.length) : oldHexStringArray(data));
+                sink += result[result.length - 1].length();
+            }
+        }
+        return new long[]{System.nanoTime() - start, threads.getThreadAllocatedBytes(threadId) - allocated};
+    }
+
+    /**
+     * Encoding of <b>readHexString(int, String)</b> before {@link HexEncoder}
+     */
+    private static String oldHexString(byte[] data, String separator) {
+        String[] strBuffer = oldHexStringArray(data);
+        String returnString = "";
+        boolean insertSeparator = false;
+        for(String value : strBuffer){
+            if(insertSeparator){
+                returnString += separator;
+            }
+            returnString += value;
+            insertSeparator = true;
+        }
+        return returnString;
+    }
+
+    /**
+     * Encoding of <b>readHexStringArray(int)</b> before {@link HexEncoder}, including conversion
+     * of bytes to int array which was done by <b>readIntArray()</b>
+     */
+    private static String[] oldHexStringArray(byte[] data) {
+        int[] intBuffer = new int[data.length];
+        for(int i = 0; i < data.length; i++){
+            intBuffer[i] = data[i] & 0xFF;
+        }
+        String[] strBuffer = new String[intBuffer.length];
+        for(int i = 0; i < intBuffer.length; i++){
+            String value = Integer.toHexString(intBuffer[i]).toUpperCase();
+            if(value.length() == 1) {
+                value = "0" + value;
+            }
+            strBuffer[i] = value;
+        }
+        return strBuffer;
+    }
+}
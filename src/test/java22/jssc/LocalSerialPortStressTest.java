@@ -0,0 +1,347 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrent stress test of LocalSerialPort on pseudo-terminal pairs (Linux). The master side
+ * of the pair echoes all received bytes back, so everything written by the port is read by it again.
+ * <p>
+ * Mixed load: writer threads send numbered records by all write methods, one reader takes them
+ * back by plain and frame reads, other thread changes parameters, flow control and low latency mode
+ * all the time. Every record shall be received whole and in order of its writer, and the flow control
+ * mode which was set last shall be kept.
+ * <p>
+ * Closing: the master side doesn't read, so output buffer becomes full and writers (platform and virtual
+ * threads) are blocked as well as the reader. Blocked writer shall leave on interrupt, all other threads
+ * shall leave in time when the port is closed.
+ * <p>
+ * Compile sources of jSSC (src/java, src/java22) and this folder with Java 22+ and run:
+ * <pre>
+ * java --enable-native-access=ALL-UNNAMED -cp classes jssc.LocalSerialPortStressTest [records]
+ * </pre>
+ * Exit code is not zero if the test has failed
+ *
+ * @since 2.9.0
+ */
+public class LocalSerialPortStressTest {
+
+    private static final int WRITERS = 4;
+    private static final int RECORD_SIZE = 16;
+    private static final int DEFAULT_RECORDS = 2000;
+    private static final int READ_TIMEOUT = 5000;
+    private static final long CLOSE_TIMEOUT = 2000;
+
+    public static void main(String[] args) throws Throwable {
+        int records = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RECORDS);
+        mixedLoad(records);
+        closeWhileBlocked();
+        System.out.println("OK");
+    }
+
+    private static void mixedLoad(int records) throws Throwable {
+        final PtyPair pty = new PtyPair(4096);
+        final SerialPort port = new SerialPort(pty.getSlaveName());
+        port.openPort();
+        //Raw mode is set, result is false because pseudo-terminal has no modem lines
+        port.setParams(SerialPort.BAUDRATE_115200, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        threads.add(start("echo", failure, new Task() {
+            public void run() throws Throwable {
+                byte[] buffer = new byte[4096];
+                int count;
+                while((count = pty.readMaster(buffer, 0, buffer.length)) > 0){
+                    pty.writeMaster(buffer, 0, count);
+                }
+            }
+        }));
+        final List<Thread> writers = new ArrayList<Thread>();
+        for(int i = 0; i < WRITERS; i++){
+            final int writer = i;
+            writers.add(start("writer-" + i, failure, new Task() {
+                public void run() throws Throwable {
+                    for(int sequence = 0; sequence < records; sequence++){
+                        write(port, record(writer, sequence), sequence);
+                    }
+                }
+            }));
+        }
+        final int[] lastFlowControl = {SerialPort.FLOWCONTROL_NONE};
+        Thread config = start("config", failure, new Task() {
+            public void run() throws Throwable {
+                for(int i = 0; isAlive(writers); i++){
+                    port.setParams((i % 2 == 0 ? SerialPort.BAUDRATE_9600 : SerialPort.BAUDRATE_115200),
+                                   SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+                    lastFlowControl[0] = (i % 3 == 0 ? SerialPort.FLOWCONTROL_RTSCTS_IN | SerialPort.FLOWCONTROL_RTSCTS_OUT
+                                                     : SerialPort.FLOWCONTROL_NONE);
+                    port.setFlowControlMode(lastFlowControl[0]);
+                    port.setLowLatency(i % 2 == 0);
+                    Thread.sleep(1);
+                }
+            }
+        });
+        threads.add(config);
+        threads.addAll(writers);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] buffer = new byte[255];
+        int expected = WRITERS * records * RECORD_SIZE;
+        try {
+            for(int i = 0; received.size() < expected && failure.get() == null; i++){
+                if(i % 2 == 0){
+                    byte[] frame = port.readFrame(buffer.length, 100, READ_TIMEOUT);
+                    received.write(frame, 0, frame.length);
+                }
+                else {
+                    int count = port.read(buffer, 0, buffer.length);
+                    check(count > 0, "read() has returned " + count);
+                    received.write(buffer, 0, count);
+                }
+            }
+            join(writers);
+            join(config);
+            check(port.getFlowControlMode() == lastFlowControl[0], "Flow control mode is lost: " + port.getFlowControlMode());
+        }
+        finally {
+            port.closePort();
+            join(threads);
+            pty.close();
+        }
+        rethrow(failure);
+        checkRecords(received.toByteArray(), records);
+        System.out.println("Mixed load: " + received.size() + " bytes are received");
+    }
+
+    private static void closeWhileBlocked() throws Throwable {
+        final PtyPair pty = new PtyPair(4096);
+        final SerialPort port = new SerialPort(pty.getSlaveName());
+        port.openPort();
+        port.setParams(SerialPort.BAUDRATE_115200, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        //Nothing is sent by the master side, so the reader waits until the port is closed
+        threads.add(start("blocked-reader", failure, new Task() {
+            public void run() throws Throwable {
+                expectClosed(new Task() {
+                    public void run() throws Throwable {
+                        port.read(new byte[16], 0, 16);
+                    }
+                });
+            }
+        }));
+        for(int i = 0; i < 2; i++){
+            Task writer = new Task() {
+                public void run() throws Throwable {
+                    expectClosed(new Task() {
+                        public void run() throws Throwable {
+                            byte[] block = new byte[65536];
+                            while(true){
+                                port.write(block, 0, block.length);
+                            }
+                        }
+                    });
+                }
+            };
+            threads.add(i == 0 ? start("blocked-writer", failure, writer) : startVirtual("blocked-virtual-writer", failure, writer));
+        }
+        final ByteBuffer interruptedBlock = ByteBuffer.allocateDirect(65536);
+        final AtomicReference<String> interruptedType = new AtomicReference<String>();
+        Thread interrupted = start("interrupted-writer", failure, new Task() {
+            public void run() throws Throwable {
+                try {
+                    port.write(interruptedBlock);
+                }
+                catch (SerialPortException ex) {
+                    interruptedType.set(ex.getExceptionType());
+                }
+            }
+        });
+        threads.add(start("blocked-config", failure, new Task() {
+            public void run() throws Throwable {
+                expectClosed(new Task() {
+                    public void run() throws Throwable {
+                        while(true){
+                            port.setParams(SerialPort.BAUDRATE_9600, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+                            port.setFlowControlMode(SerialPort.FLOWCONTROL_NONE);
+                        }
+                    }
+                });
+            }
+        }));
+        Thread.sleep(500);
+        interrupted.interrupt();
+        join(interrupted);
+        check(SerialPortException.TYPE_INTERRUPTED.equals(interruptedType.get()), "Interrupted writer has got: " + interruptedType.get());
+        long start = System.currentTimeMillis();
+        try {
+            port.closePort();
+            join(threads);
+        }
+        finally {
+            pty.close();
+        }
+        rethrow(failure);
+        long elapsed = System.currentTimeMillis() - start;
+        check(elapsed < CLOSE_TIMEOUT, "Closing has taken " + elapsed + " ms");
+        System.out.println("Closing with blocked threads: " + elapsed + " ms");
+    }
+
+    /**
+     * Write record by one of write methods, every call shall write all bytes
+     */
+    private static void write(SerialPort port, byte[] record, int method) throws SerialPortException {
+        switch(method % 5){
+            case 0:
+                check(port.writeBytes(record), "writeBytes() has failed");
+                break;
+            case 1:
+                check(port.write(record, 0, record.length) == record.length, "write(byte[]) is incomplete");
+                break;
+            case 2:
+                ByteBuffer direct = ByteBuffer.allocateDirect(record.length);
+                direct.put(record).flip();
+                check(port.write(direct) == record.length && !direct.hasRemaining(), "write(ByteBuffer) is incomplete");
+                break;
+            case 3:
+                ByteBuffer head = ByteBuffer.wrap(record, 0, 5);
+                ByteBuffer tail = ByteBuffer.allocateDirect(record.length - 5);
+                tail.put(record, 5, record.length - 5).flip();
+                check(port.write(new ByteBuffer[]{head, tail}) == record.length && !head.hasRemaining() && !tail.hasRemaining(),
+                      "write(ByteBuffer[]) is incomplete");
+                break;
+            default:
+                byte[] first = new byte[7];
+                byte[] second = new byte[record.length - 7];
+                System.arraycopy(record, 0, first, 0, first.length);
+                System.arraycopy(record, first.length, second, 0, second.length);
+                check(port.writeBytes(first, second), "writeBytes(byte[]...) has failed");
+        }
+    }
+
+    /**
+     * Record: writer number, sequence number (4 bytes) and bytes which depend on both of them
+     */
+    private static byte[] record(int writer, int sequence) {
+        byte[] record = new byte[RECORD_SIZE];
+        record[0] = (byte)writer;
+        for(int i = 0; i < 4; i++){
+            record[1 + i] = (byte)(sequence >>> (24 - i * 8));
+        }
+        for(int i = 5; i < RECORD_SIZE; i++){
+            record[i] = (byte)(writer * 31 + sequence + i);
+        }
+        return record;
+    }
+
+    private static void checkRecords(byte[] data, int records) {
+        check(data.length == WRITERS * records * RECORD_SIZE, "Received " + data.length + " bytes");
+        int[] nextSequence = new int[WRITERS];
+        for(int offset = 0; offset < data.length; offset += RECORD_SIZE){
+            int writer = data[offset];
+            check(writer >= 0 && writer < WRITERS, "Unknown writer " + writer + " at " + offset);
+            byte[] record = record(writer, nextSequence[writer]++);
+            for(int i = 0; i < RECORD_SIZE; i++){
+                check(data[offset + i] == record[i], "Record of writer " + writer + " is broken at " + offset);
+            }
+        }
+    }
+
+    private static void expectClosed(Task task) throws Throwable {
+        try {
+            task.run();
+            throw new AssertionError("Operation has finished without exception");
+        }
+        catch (SerialPortException ex) {
+            String type = ex.getExceptionType();
+            check(type.equals(SerialPortException.TYPE_PORT_NOT_OPENED) || type.equals(SerialPortException.TYPE_INTERRUPTED),
+                  "Unexpected exception: " + ex.getMessage());
+        }
+    }
+
+    private interface Task {
+        void run() throws Throwable;
+    }
+
+    private static Thread start(String name, AtomicReference<Throwable> failure, Task task) {
+        Thread thread = new Thread(runnable(failure, task), name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static Thread startVirtual(String name, AtomicReference<Throwable> failure, Task task) {
+        return Thread.ofVirtual().name(name).start(runnable(failure, task));
+    }
+
+    private static Runnable runnable(final AtomicReference<Throwable> failure, final Task task) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                }
+                catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            }
+        };
+    }
+
+    private static boolean isAlive(List<Thread> threads) {
+        for(Thread thread : threads){
+            if(thread.isAlive()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void join(Thread thread) throws InterruptedException {
+        thread.join(CLOSE_TIMEOUT);
+        check(!thread.isAlive(), "Thread " + thread.getName() + " is blocked");
+    }
+
+    private static void join(List<Thread> threads) throws InterruptedException {
+        for(Thread thread : threads){
+            join(thread);
+        }
+    }
+
+    private static void rethrow(AtomicReference<Throwable> failure) throws Throwable {
+        if(failure.get() != null){
+            throw failure.get();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.util.Arrays;
+
+/**
+ * Effect of {@link SerialPort#setLowLatency(boolean)} on round trip latency. Every operation is
+ * a round trip: the port writes message, the other side answers with message of the same size
+ * and the port reads the answer. Each size is measured with low latency mode disabled and enabled,
+ * mean, median and 99th percentile of round trip time are printed together with settings which were
+ * really applied (<b>LOW_LATENCY_DRIVER</b>, <b>LOW_LATENCY_TIMER</b>).
+ * <p>
+ * By default the other side is the master of pseudo-terminal pair (Linux), which answers from its
+ * own thread. Pseudo-terminal has neither <b>ASYNC_LOW_LATENCY</b> nor <b>latency_timer</b>, so nothing
+ * is applied there and results show only the cost of the mode switching path. To see the effect of
+ * the driver and of the USB adapter's timer, pass the name of real port with TX connected to RX
+ * (loopback plug), then the answer is the echo of the port itself.
+ * <p>
+ * Compile sources of jSSC (src/java, src/java22) and this folder with Java 22+ and run:
+ * <pre>
+ * java --enable-native-access=ALL-UNNAMED -cp classes jssc.LowLatencyBenchmark [iterations] [loopback port]
+ * </pre>
+ *
+ * @since 2.9.0
+ */
+public class LowLatencyBenchmark {
+
+    private static final int[] MESSAGE_SIZES = {1, 16, 256};
+    private static final int DEFAULT_ITERATIONS = 5000;
+
+    public static void main(String[] args) throws Throwable {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS);
+        String loopbackPort = (args.length > 1 ? args[1] : null);
+        System.out.println("Round trips: " + iterations + ", other side: " + (loopbackPort != null ? "loopback of " + loopbackPort : "pseudo-terminal"));
+        System.out.println(String.format("%-8s%-12s%8s%12s%12s%12s", "low lat", "applied", "size", "mean us", "p50 us", "p99 us"));
+        for(int size : MESSAGE_SIZES){
+            for(boolean lowLatency : new boolean[]{false, true}){
+                //Warm up, then measure
+                run(loopbackPort, size, lowLatency, iterations / 4);
+                long[] samples = new long[iterations];
+                int applied = run(loopbackPort, size, lowLatency, samples);
+                Arrays.sort(samples);
+                long total = 0;
+                for(long sample : samples){
+                    total += sample;
+                }
+                System.out.println(String.format("%-8s%-12s%8d%12.1f%12.1f%12.1f", (lowLatency ? "on" : "off"), appliedToString(applied), size,
+                                                 total / 1000.0 / iterations, samples[iterations / 2] / 1000.0, samples[(int)(iterations * 0.99)] / 1000.0));
+            }
+        }
+    }
+
+    private static String appliedToString(int applied) {
+        if(applied == 0){
+            return "none";
+        }
+        String result = "";
+        if((applied & SerialPort.LOW_LATENCY_DRIVER) != 0){
+            result += "driver";
+        }
+        if((applied & SerialPort.LOW_LATENCY_TIMER) != 0){
+            result += (result.length() > 0 ? "+timer" : "timer");
+        }
+        return result;
+    }
+
+    private static int run(String loopbackPort, int size, boolean lowLatency, int iterations) throws Throwable {
+        return run(loopbackPort, size, lowLatency, new long[iterations]);
+    }
+
+    /**
+     * @return Applied low latency settings, round trip times in nanoseconds are stored to <b>samples</b>
+     */
+    private static int run(String loopbackPort, final int size, boolean lowLatency, long[] samples) throws Throwable {
+        final int iterations = samples.length;
+        final PtyPair pty = (loopbackPort == null ? new PtyPair(size) : null);
+        final Throwable[] answerError = new Throwable[1];
+        Thread answering = null;
+        SerialPort port = new SerialPort(pty != null ? pty.getSlaveName() : loopbackPort);
+        port.openPort();
+        try {
+            port.setParams(SerialPort.BAUDRATE_115200, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+            port.purgePort(SerialPort.PURGE_RXCLEAR | SerialPort.PURGE_TXCLEAR);
+            int applied = port.setLowLatency(lowLatency);
+            if(pty != null){
+                answering = new Thread("LowLatencyBenchmark answer"){
+                    @Override
+                    public void run() {
+                        try {
+                            for(int i = 0; i < iterations; i++){
+                                pty.readMaster(size);
+                                pty.writeMaster(size);
+                            }
+                        }
+                        catch (Throwable ex) {
+                            answerError[0] = ex;
+                        }
+                    }
+                };
+                answering.setDaemon(true);
+                answering.start();
+            }
+            byte[] message = new byte[size];
+            byte[] answer = new byte[size];
+            for(int i = 0; i < iterations; i++){
+                long start = System.nanoTime();
+                int written = 0;
+                while(written < size){
+                    int result = port.write(message, written, size - written);
+                    if(result < 0){
+                        throw new IllegalStateException("Write has failed");
+                    }
+                    written += result;
+                }
+                int readCount = 0;
+                while(readCount < size){
+                    int result = port.read(answer, readCount, size - readCount);
+                    if(result <= 0){
+                        throw new IllegalStateException("Read has failed");
+                    }
+                    readCount += result;
+                }
+                samples[i] = System.nanoTime() - start;
+            }
+            if(answering != null){
+                answering.join();
+                if(answerError[0] != null){
+                    throw answerError[0];
+                }
+            }
+            if(lowLatency){
+                port.setLowLatency(false);
+            }
+            return applied;
+        }
+        finally {
+            port.closePort();
+            if(pty != null){
+                pty.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Pseudo-terminal pair for benchmarks and stress tests (Linux). The slave side is opened
+ * by jSSC as usual serial port, the master side is read and written by libc calls directly.
+ * Reading and writing of the master side use own native buffers, so they may be done by different threads
+ *
+ * @since 2.9.0
+ */
+final class PtyPair {
+
+    private static final int O_RDWR = 0x2;
+    private static final int O_NOCTTY = 0x100;
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final MethodHandle POSIX_OPENPT = downcall("posix_openpt", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle GRANTPT = downcall("grantpt", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle UNLOCKPT = downcall("unlockpt", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle PTSNAME = downcall("ptsname", FunctionDescriptor.of(ADDRESS, JAVA_INT));
+    private static final MethodHandle READ = downcall("read", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+    private static final MethodHandle WRITE = downcall("write", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+    private static final MethodHandle CLOSE = downcall("close", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+
+    private final Arena arena = Arena.ofShared();
+    private final int masterFd;
+    private final String slaveName;
+    private final MemorySegment readBuffer;
+    private final MemorySegment writeBuffer;
+
+    PtyPair(int bufferSize) throws Throwable {
+        masterFd = (int)POSIX_OPENPT.invokeExact(O_RDWR | O_NOCTTY);
+        if(masterFd < 0 || (int)GRANTPT.invokeExact(masterFd) != 0 || (int)UNLOCKPT.invokeExact(masterFd) != 0){
+            throw new IllegalStateException("Can't create pseudo-terminal");
+        }
+        MemorySegment name = ((MemorySegment)PTSNAME.invokeExact(masterFd)).reinterpret(256);
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; name.get(JAVA_BYTE, i) != 0; i++){
+            builder.append((char)name.get(JAVA_BYTE, i));
+        }
+        slaveName = builder.toString();
+        readBuffer = arena.allocate(bufferSize);
+        writeBuffer = arena.allocate(bufferSize);
+    }
+
+    /**
+     * Name of the slave side, which is opened by jSSC
+     */
+    String getSlaveName() {
+        return slaveName;
+    }
+
+    /**
+     * Read exactly <b>length</b> bytes from the master side into native read buffer of the pair
+     */
+    void readMaster(int length) throws Throwable {
+        int readCount = 0;
+        while(readCount < length){
+            long result = (long)READ.invokeExact(masterFd, readBuffer.asSlice(readCount), (long)(length - readCount));
+            if(result <= 0){
+                throw new IllegalStateException("Can't read from pseudo-terminal");
+            }
+            readCount += (int)result;
+        }
+    }
+
+    /**
+     * Copy bytes of the last reading from the master side into array
+     */
+    void copyRead(byte[] data, int length) {
+        MemorySegment.copy(readBuffer, JAVA_BYTE, 0, data, 0, length);
+    }
+
+    /**
+     * Write first <b>length</b> bytes of native write buffer of the pair to the master side
+     */
+    void writeMaster(int length) throws Throwable {
+        int written = 0;
+        while(written < length){
+            long result = (long)WRITE.invokeExact(masterFd, writeBuffer.asSlice(written), (long)(length - written));
+            if(result <= 0){
+                throw new IllegalStateException("Can't write to pseudo-terminal");
+            }
+            written += (int)result;
+        }
+    }
+
+    /**
+     * Write bytes of array to the master side
+     */
+    void writeMaster(byte[] data, int offset, int length) throws Throwable {
+        MemorySegment.copy(data, offset, writeBuffer, JAVA_BYTE, 0, length);
+        writeMaster(length);
+    }
+
+    /**
+     * Read up to <b>length</b> bytes (at least one) from the master side into array
+     */
+    int readMaster(byte[] data, int offset, int length) throws Throwable {
+        long result = (long)READ.invokeExact(masterFd, readBuffer, Math.min((long)length, readBuffer.byteSize()));
+        if(result <= 0){
+            return -1;
+        }
+        MemorySegment.copy(readBuffer, JAVA_BYTE, 0, data, offset, (int)result);
+        return (int)result;
+    }
+
+    void close() throws Throwable {
+        int result = (int)CLOSE.invokeExact(masterFd);
+        arena.close();
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor) {
+        return LINKER.downcallHandle(LINKER.defaultLookup().find(name).orElseThrow(), descriptor);
+    }
+}
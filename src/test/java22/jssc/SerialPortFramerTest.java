@@ -0,0 +1,201 @@
+/* jSSC (Java Simple Serial Connector) - serial port communication library.
+ * © Alexey Sokolov (scream3r), 2010-2014.
+ *
+ * This file is part of jSSC.
+ *
+ * jSSC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jSSC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jSSC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If you use jSSC in public project you can inform me about this by e-mail,
+ * of course if you want it.
+ *
+ * e-mail: scream3r.org@gmail.com
+ * web-site: http://scream3r.org | http://code.google.com/p/java-simple-serial-connector/
+ */
+package jssc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test of {@link SerialPortFramer} with every codec on pseudo-terminal pair (Linux):
+ * <ul>
+ * <li>written frames (empty, with escaped bytes, of maximum size) shall come to the master side encoded,
+ * too long frame shall be rejected;</li>
+ * <li>frames written by the master side in small pieces shall be read whole, empty frames shall be
+ * returned (except SLIP, which ignores them), too long frame shall be dropped and counted;</li>
+ * <li>released frame shall not be accessible;</li>
+ * <li>blocked readFrame() shall return null when the port is closed.</li>
+ * </ul>
+ * Compile sources of jSSC (src/java, src/java22) and this folder with Java 22+ and run:
+ * <pre>
+ * java --enable-native-access=ALL-UNNAMED -cp classes jssc.SerialPortFramerTest
+ * </pre>
+ * Exit code is not zero if the test has failed
+ *
+ * @since 2.9.0
+ */
+public class SerialPortFramerTest {
+
+    private static final int MAX_FRAME_SIZE = 64;
+    private static final int PIECE_SIZE = 5;
+
+    public static void main(String[] args) throws Throwable {
+        FrameCodec[] codecs = {new SlipCodec(), new CobsCodec(), new HdlcCodec(), new LengthPrefixCodec()};
+        for(FrameCodec codec : codecs){
+            PtyPair pty = new PtyPair(8192);
+            SerialPort port = new SerialPort(pty.getSlaveName());
+            port.openPort();
+            //Raw mode is set, result is false because pseudo-terminal has no modem lines
+            port.setParams(SerialPort.BAUDRATE_115200, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+            SerialPortFramer framer = new SerialPortFramer(port, codec, MAX_FRAME_SIZE);
+            writeFrames(pty, framer, codec);
+            readFrames(pty, framer, codec);
+            closeWhileReading(port, framer);
+            pty.close();
+        }
+        System.out.println("OK");
+    }
+
+    private static void writeFrames(PtyPair pty, SerialPortFramer framer, FrameCodec codec) throws Throwable {
+        List<byte[]> frames = frames();
+        for(int i = 0; i < frames.size(); i++){
+            byte[] frame = frames.get(i);
+            if(i % 2 == 0){
+                framer.writeFrame(frame, 0, frame.length);
+            }
+            else {
+                ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+                direct.put(frame).flip();
+                framer.writeFrame(direct);
+                check(!direct.hasRemaining(), name(codec) + ": position of written frame isn't advanced");
+            }
+            byte[] expected = encode(codec, frame);
+            pty.readMaster(expected.length);
+            byte[] received = new byte[expected.length];
+            pty.copyRead(received, received.length);
+            check(Arrays.equals(expected, received), name(codec) + ": written frame " + i + " differs");
+        }
+        try {
+            framer.writeFrame(new byte[MAX_FRAME_SIZE + 1], 0, MAX_FRAME_SIZE + 1);
+            throw new AssertionError(name(codec) + ": too long frame is written");
+        }
+        catch (SerialPortException ex) {
+            check(SerialPortException.TYPE_PARAMETER_IS_NOT_CORRECT.equals(ex.getExceptionType()), ex.getMessage());
+        }
+    }
+
+    private static void readFrames(PtyPair pty, SerialPortFramer framer, FrameCodec codec) throws Throwable {
+        List<byte[]> frames = frames();
+        //Too long frame is inserted in the middle, it shall be dropped
+        frames.add(3, pattern(MAX_FRAME_SIZE + 1, 7));
+        ByteBuffer stream = ByteBuffer.allocate(frames.size() * codec.getMaxEncodedLength(MAX_FRAME_SIZE + 1));
+        for(byte[] frame : frames){
+            stream.put(encode(codec, frame));
+        }
+        //The master side writes by small pieces, so frames are split between reads of the port
+        byte[] data = Arrays.copyOf(stream.array(), stream.position());
+        for(int offset = 0; offset < data.length; offset += PIECE_SIZE){
+            pty.writeMaster(data, offset, Math.min(PIECE_SIZE, data.length - offset));
+            Thread.sleep(1);
+        }
+        long errors = framer.getErrorCount();
+        for(int i = 0; i < frames.size(); i++){
+            byte[] expected = frames.get(i);
+            if(expected.length > MAX_FRAME_SIZE || (expected.length == 0 && codec instanceof SlipCodec)){
+                continue;
+            }
+            SerialPortFramer.Frame frame = framer.readFrame();
+            check(frame != null, name(codec) + ": port is closed");
+            ByteBuffer buffer = frame.getBuffer();
+            byte[] received = new byte[buffer.remaining()];
+            buffer.get(received);
+            check(Arrays.equals(expected, received), name(codec) + ": read frame " + i + " differs, length " + received.length);
+            frame.release();
+            try {
+                frame.getBuffer();
+                throw new AssertionError(name(codec) + ": released frame is accessible");
+            }
+            catch (IllegalStateException ex) {
+                //Expected
+            }
+        }
+        check(framer.getErrorCount() == errors + 1, name(codec) + ": " + (framer.getErrorCount() - errors) + " frames are dropped instead of 1");
+    }
+
+    private static void closeWhileReading(final SerialPort port, final SerialPortFramer framer) throws Throwable {
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    result.set(framer.readFrame() == null ? "null" : "frame");
+                }
+                catch (Throwable ex) {
+                    result.set(ex);
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        Thread.sleep(200);
+        port.closePort();
+        reader.join(2000);
+        check(!reader.isAlive(), "readFrame() is blocked after closing");
+        check("null".equals(result.get()), "readFrame() after closing: " + result.get());
+    }
+
+    private static List<byte[]> frames() {
+        List<byte[]> frames = new ArrayList<byte[]>();
+        frames.add(pattern(10, 0));
+        frames.add(new byte[0]);
+        //Bytes which are delimiters or escapes in some codec
+        byte[] special = {(byte)0xC0, (byte)0xDB, 0x7E, 0x7D, 0x00};
+        byte[] escapes = new byte[MAX_FRAME_SIZE];
+        for(int i = 0; i < escapes.length; i++){
+            escapes[i] = special[i % special.length];
+        }
+        frames.add(escapes);
+        frames.add(pattern(MAX_FRAME_SIZE, 1));
+        frames.add(new byte[0]);
+        frames.add(pattern(1, 2));
+        return frames;
+    }
+
+    //Non-zero bytes without delimiters of any codec
+    private static byte[] pattern(int length, int seed) {
+        byte[] frame = new byte[length];
+        for(int i = 0; i < length; i++){
+            frame[i] = (byte)(1 + (i + seed) % 100);
+        }
+        return frame;
+    }
+
+    private static byte[] encode(FrameCodec codec, byte[] frame) {
+        ByteBuffer out = ByteBuffer.allocate(codec.getMaxEncodedLength(frame.length));
+        codec.encode(ByteBuffer.wrap(frame), out);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static String name(FrameCodec codec) {
+        return codec.getClass().getSimpleName();
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}